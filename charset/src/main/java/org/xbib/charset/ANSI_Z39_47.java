@@ -31,8 +31,6 @@
  */
 package org.xbib.charset;
 
-import java.io.CharArrayWriter;
-
 import java.nio.ByteBuffer;
 import java.nio.CharBuffer;
 import java.nio.charset.Charset;
@@ -40,6 +38,7 @@ import java.nio.charset.CharsetDecoder;
 import java.nio.charset.CharsetEncoder;
 import java.nio.charset.CoderResult;
 
+import java.util.Arrays;
 import java.util.HashMap;
 
 /**
@@ -49,7 +48,7 @@ import java.util.HashMap;
 public class ANSI_Z39_47 extends Charset {
 
     private final static HashMap encodeMap = new HashMap();
-    private final static HashMap decodeMap = new HashMap();
+    private final static char[] decodeTable = new char[256];
     private Charset encodeCharset;
 
     public ANSI_Z39_47() {
@@ -63,7 +62,7 @@ public class ANSI_Z39_47 extends Charset {
         for (char c = from; c <= to; c++) {
             if (code[i] != '\u0000') {
                 encodeMap.put(Character.valueOf(code[i]), Character.valueOf(c));
-                decodeMap.put(Character.valueOf(c), Character.valueOf(code[i]));
+                decodeTable[c] = code[i];
             }
             i++;
         }
@@ -128,62 +127,115 @@ public class ANSI_Z39_47 extends Charset {
         }
     }
 
+    /**
+     * Decodes bytes by a lookup in the decode table. Diacritics precede the base character in Z39.47,
+     * so they are held back until the base character is decoded and then appended in input order.
+     * Diacritics at the end of the input without a base character are dropped.
+     */
     private static class Z39_47_Decoder extends CharsetDecoder {
 
+        private char[] diacritics = new char[8];
+
+        private int diacriticsCount;
+
         Z39_47_Decoder(Charset cs, CharsetDecoder baseDecoder) {
             super(cs, baseDecoder.averageCharsPerByte(),
                     baseDecoder.maxCharsPerByte());
         }
 
-        private boolean isDiacritical(char ch) {
-            return (ch >= 0xE0 && ch <= 0xFF);
+        private static boolean isDiacritical(int b) {
+            return b >= 0xE0;
         }
 
         protected CoderResult decodeLoop(ByteBuffer in, CharBuffer out) {
-            CharArrayWriter w = new CharArrayWriter();
-            CharArrayWriter diacritics = new CharArrayWriter();
+            if (in.hasArray() && out.hasArray()) {
+                return decodeArrayLoop(in, out);
+            }
+            return decodeBufferLoop(in, out);
+        }
 
-            int pos = in.position();
-            int bufpos = 0;
-            while (in.hasRemaining()) {
-                byte b = in.get();
-                char oldChar = (char) (b & 0xFF);
-                Character mapChar = (Character) decodeMap.get(Character.valueOf(oldChar));
-                char ch = mapChar != null ? mapChar.charValue() : oldChar;
-                if (isDiacritical(oldChar)) {
-                    diacritics.write(ch);
-                } else {
-                    // save the char
-                    w.write(ch);
-                    // add diacritics if exist.
-                    // diacritics must be appended in Unicode, but are
-                    // prepended in Z39.47
-                    if (diacritics.toString().length() > 0) {
-                        try {
-                            w.write(diacritics.toCharArray());
-                        } catch (Exception e) {
-                            e.printStackTrace();
+        @Override
+        protected CoderResult implFlush(CharBuffer out) {
+            diacriticsCount = 0;
+            return CoderResult.UNDERFLOW;
+        }
+
+        @Override
+        protected void implReset() {
+            diacriticsCount = 0;
+        }
+
+        private CoderResult decodeArrayLoop(ByteBuffer in, CharBuffer out) {
+            byte[] src = in.array();
+            int sp = in.arrayOffset() + in.position();
+            int sl = in.arrayOffset() + in.limit();
+            char[] dst = out.array();
+            int dp = out.arrayOffset() + out.position();
+            int dl = out.arrayOffset() + out.limit();
+            try {
+                while (sp < sl) {
+                    int b = src[sp] & 0xFF;
+                    char ch = decodeTable[b];
+                    if (isDiacritical(b)) {
+                        push(ch);
+                    } else {
+                        if (dl - dp < diacriticsCount + 1) {
+                            return CoderResult.OVERFLOW;
+                        }
+                        dst[dp++] = ch;
+                        if (diacriticsCount > 0) {
+                            System.arraycopy(diacritics, 0, dst, dp, diacriticsCount);
+                            dp += diacriticsCount;
+                            diacriticsCount = 0;
                         }
-                        // reset diacritics temp buffer
-                        diacritics = new CharArrayWriter();
                     }
-                // character sequence plus diacritics complete.
+                    sp++;
                 }
+                return CoderResult.UNDERFLOW;
+            } finally {
+                in.position(sp - in.arrayOffset());
+                out.position(dp - out.arrayOffset());
             }
-            char[] buf = w.toCharArray();
-            for (char ch : buf) {
-                if (!out.hasRemaining()) {
-                    in.position(pos - 1);
-                    return CoderResult.OVERFLOW;
+        }
+
+        private CoderResult decodeBufferLoop(ByteBuffer in, CharBuffer out) {
+            int mark = in.position();
+            try {
+                while (in.hasRemaining()) {
+                    int b = in.get() & 0xFF;
+                    char ch = decodeTable[b];
+                    if (isDiacritical(b)) {
+                        push(ch);
+                    } else {
+                        if (out.remaining() < diacriticsCount + 1) {
+                            return CoderResult.OVERFLOW;
+                        }
+                        out.put(ch);
+                        if (diacriticsCount > 0) {
+                            out.put(diacritics, 0, diacriticsCount);
+                            diacriticsCount = 0;
+                        }
+                    }
+                    mark++;
                 }
-                out.put(ch);
+                return CoderResult.UNDERFLOW;
+            } finally {
+                in.position(mark);
             }
-            return CoderResult.UNDERFLOW;
+        }
+
+        private void push(char ch) {
+            if (diacriticsCount == diacritics.length) {
+                diacritics = Arrays.copyOf(diacritics, diacriticsCount * 2);
+            }
+            diacritics[diacriticsCount++] = ch;
         }
     }
-    
 
     static {
+        for (int i = 0; i < decodeTable.length; i++) {
+            decodeTable[i] = (char) i;
+        }
         ANSI_Z39_47.charTable('\u00a0', '\u00ff',
                 new char[]{
                     '\u00a0', '\u0141', '\u00d8', '\u0110', '\u00de', '\u00c6',
@@ -1,4 +1,3 @@
-
 package org.xbib.charset;
 
 import java.nio.ByteBuffer;
@@ -10,6 +9,106 @@ import java.nio.charset.CoderResult;
 
 public class ISO_5428 extends Charset {
 
+    private final static int TONOS = 1;
+
+    private final static int DIALITIKA = 2;
+
+    /**
+     * Decode tables for letters without accent, with tonos, with dialitika,
+     * and with tonos and dialitika. A zero entry means there is no precomposed character.
+     */
+    private final static char[][] tables = new char[4][256];
+
+    static {
+        for (int i = 0; i < 256; i++) {
+            tables[0][i] = (char) i;
+        }
+        /*  alpha */
+        letter(0xe1, '\u03b1', '\u03ac', '\u0000', '\u0000');
+        letter(0xc1, '\u0391', '\u0386', '\u0000', '\u0000');
+        /*  Beta */
+        letter(0xe2, '\u03b2');
+        letter(0xc2, '\u0392');
+        /*  Gamma */
+        letter(0xe4, '\u03b3');
+        letter(0xc4, '\u0393');
+        /*  Delta */
+        letter(0xe5, '\u03b4');
+        letter(0xc5, '\u0394');
+        /*  epsilon */
+        letter(0xe6, '\u03b5', '\u03ad', '\u0000', '\u0000');
+        letter(0xc6, '\u0395', '\u0388', '\u0000', '\u0000');
+        /*  Zeta */
+        letter(0xe9, '\u03b6');
+        letter(0xc9, '\u0396');
+        /*  Eta */
+        letter(0xea, '\u03b7', '\u03ae', '\u0000', '\u0000');
+        letter(0xca, '\u0397', '\u0389', '\u0000', '\u0000');
+        /*  Theta */
+        letter(0xeb, '\u03b8');
+        letter(0xcb, '\u0398');
+        /*  Iota */
+        letter(0xec, '\u03b9', '\u03af', '\u03ca', '\u0390');
+        letter(0xcc, '\u0399', '\u038a', '\u03aa', '\u0000');
+        /*  Kappa */
+        letter(0xed, '\u03ba');
+        letter(0xcd, '\u039a');
+        /*  Lambda */
+        letter(0xee, '\u03bb');
+        letter(0xce, '\u039b');
+        /*  Mu */
+        letter(0xef, '\u03bc');
+        letter(0xcf, '\u039c');
+        /*  Nu */
+        letter(0xf0, '\u03bd');
+        letter(0xd0, '\u039d');
+        /*  Xi */
+        letter(0xf1, '\u03be');
+        letter(0xd1, '\u039e');
+        /*  Omicron */
+        letter(0xf2, '\u03bf', '\u03cc', '\u0000', '\u0000');
+        letter(0xd2, '\u039f', '\u038c', '\u0000', '\u0000');
+        /*  Pi */
+        letter(0xf3, '\u03c0');
+        letter(0xd3, '\u03a0');
+        /*  Rho */
+        letter(0xf5, '\u03c1');
+        letter(0xd5, '\u03a1');
+        /*  Sigma, small sigma at end of words */
+        letter(0xf6, '\u03c3');
+        letter(0xf7, '\u03c2');
+        letter(0xd6, '\u03a3');
+        /*  Tau */
+        letter(0xf8, '\u03c4');
+        letter(0xd8, '\u03a4');
+        /*  Upsilon */
+        letter(0xf9, '\u03c5', '\u03cd', '\u03cb', '\u03b0');
+        letter(0xd9, '\u03a5', '\u038e', '\u03ab', '\u0000');
+        /*  Phi */
+        letter(0xfa, '\u03c6');
+        letter(0xda, '\u03a6');
+        /*  Chi */
+        letter(0xfb, '\u03c7');
+        letter(0xdb, '\u03a7');
+        /*  Psi */
+        letter(0xfc, '\u03c8');
+        letter(0xdc, '\u03a8');
+        /*  Omega */
+        letter(0xfd, '\u03c9', '\u03ce', '\u0000', '\u0000');
+        letter(0xdd, '\u03a9', '\u038f', '\u0000', '\u0000');
+    }
+
+    private static void letter(int b, char plain) {
+        tables[0][b] = plain;
+    }
+
+    private static void letter(int b, char plain, char tonos, char dialitika, char tonosDialitika) {
+        tables[0][b] = plain;
+        tables[TONOS][b] = tonos;
+        tables[DIALITIKA][b] = dialitika;
+        tables[TONOS | DIALITIKA][b] = tonosDialitika;
+    }
+
     public ISO_5428() {
         super("ISO_5428", null);
     }
@@ -29,329 +128,66 @@ public class ISO_5428 extends Charset {
         return null;
     }
 
+    /**
+     * Tonos (0xa2) and dialitika (0xa3) precede the letter. If there is no precomposed
+     * character for the accented letter, the letter is followed by combining diaeresis
+     * and combining acute accent.
+     */
     private static final class Decoder extends CharsetDecoder {
 
+        private int accents;
+
         Decoder(Charset cs) {
             super(cs, 1.0f, 1.0f);
         }
 
         protected CoderResult decodeLoop(ByteBuffer in, CharBuffer out) {
-            boolean tonos = false;
-            boolean dialitika = false;
-            while (in.hasRemaining()) {
-                byte b = in.get();
-                if (!out.hasRemaining()) {
-                    in.position(in.position() - 1);
-                    return CoderResult.OVERFLOW;
-                }
-                if (b == (byte) 0xa2) {
-                    tonos = true;
-                } else if (b == (byte) 0xa3) {
-                    dialitika = true;
-                }
-                int i = (int) b;
-                char c;
-                switch (i) {
-                    case 0xe1: {
-                        /*  alpha small */
-                        c = tonos ? '\u03ac' : '\u03b1';
-                        break;
-                    }
-                    case 0xc1: {
-                        /*  alpha capital */
-                        c = tonos ? '\u0386' : '\u0391';
-                        break;
-                    }
-                    case 0xe2: {
-                         /*  Beta small */
-                        c = '\u03b2';
-                        break;
-                    }
-                    case 0xc2: {
-                        /*  Beta capital */
-                        c = '\u0392';
-                        break;
-                    }
-                    case 0xe4: {
-                        /*  Gamma small */
-                        c = '\u03b3';
-                        break;
-                    }
-                    case 0xc4: {
-                        /*  Gamma capital */
-                        c = '\u0393';
-                        break;
-                    }
-                    case 0xe5: {
-                        /*  Delta small */
-                        c = '\u03b4';
-                        break;
-                    }
-                    case 0xc5: {
-                        /*  Delta capital */
-                        c = '\u0394';
-                        break;
-                    }
-                    case 0xe6: {
-                        /*  epsilon small */
-                        c = tonos ? '\u03ad' : '\u03b5';
-                        break;
-                    }
-                    case 0xc6: {
-                        /*  epsilon capital */
-                        c = tonos ? '\u0388' : '\u0395';
-                        break;
-                    }
-                    case 0xe9: {
-                        /*  Zeta small */
-                        c = '\u03b6';
-                        break;
-                    }
-                    case 0xc9: {
-                        /*  Zeta capital */
-                        c = '\u0396';
-                        break;
-                    }
-                    case 0xea: {
-                        /*  Eta small */
-                        c = tonos ? '\u03ae' : '\u03b7';
-                        break;
-                    }
-                    case 0xca: {
-                        /*  Eta capital */
-                        c = tonos ? '\u0389' : '\u0397';
-                        break;
-                    }
-                    case 0xeb: {
-                        /*  Theta small */
-                        c = '\u03b8';
-                        break;
-                    }
-                    case 0xcb: {
-                        /*  Theta capital */
-                        c = '\u0398';
-                        break;
-                    }
-                    case 0xec: {
-                        /*  Iota small */
-                        if (tonos) {
-                            if (dialitika) {
-                                c = '\u0390';
-                            } else {
-                                c = '\u03af';
+            int mark = in.position();
+            try {
+                while (in.hasRemaining()) {
+                    int b = in.get() & 0xff;
+                    if (b == 0xa2) {
+                        accents |= TONOS;
+                    } else if (b == 0xa3) {
+                        accents |= DIALITIKA;
+                    } else {
+                        char c = tables[accents][b];
+                        if (c != 0 || accents == 0) {
+                            if (!out.hasRemaining()) {
+                                return CoderResult.OVERFLOW;
                             }
-                        } else if (dialitika) {
-                            c = '\u03ca';
-                        } else {
-                            c = '\u03b9';
-                        }
-                        break;
-                    }
-                    case 0xcc: {
-                        /*  Iota capital */
-                        if (tonos) {
-                            c = '\u038a';
-                        } else if (dialitika) {
-                            c = '\u03aa';
+                            out.put(c);
                         } else {
-                            c = '\u0399';
-                        }
-                        break;
-                    }
-                    case 0xed: {
-                        /*  Kappa small */
-                        c = '\u03ba';
-                        break;
-                    }
-                    case 0xcd: {
-                        /*  Kappa capital */
-                        c = '\u039a';
-                        break;
-                    }
-                    case 0xee: {
-                        /*  Lambda small */
-                        c = '\u03bb';
-                        break;
-                    }
-                    case 0xce: {
-                        /*  Lambda capital */
-                        c = '\u039b';
-                        break;
-                    }
-                    case 0xef: {
-                        /*  Mu small */
-                        c = '\u03bc';
-                        break;
-                    }
-                    case 0xcf:
-                        /*  Mu capital */
-                        c = '\u039c';
-                        break;
-                    case 0xf0: {
-                        /*  Nu small */
-                        c = '\u03bd';
-                        break;
-                    }
-                    case 0xd0: {
-                        /*  Nu capital */
-                        c = '\u039d';
-                        break;
-                    }
-                    case 0xf1: {
-                        /*  Xi small */
-                        c = '\u03be';
-                        break;
-                    }
-                    case 0xd1: {
-                        /*  Xi capital */
-                        c = '\u039e';
-                        break;
-                    }
-                    case 0xf2: {
-                        /*  Omicron small */
-                        if (tonos) {
-                            c = '\u03cc';
-                        } else {
-                            c = '\u03bf';
-                        }
-                        break;
-                    }
-                    case 0xd2: {
-                        /*  Omicron capital */
-                        if (tonos) {
-                            c = '\u038c';
-                        } else {
-                            c = '\u039f';
-                        }
-                        break;
-                    }
-                    case 0xf3: {
-                        /*  Pi small */
-                        c = '\u03c0';
-                        break;
-                    }
-                    case 0xd3: {
-                        /*  Pi capital */
-                        c = '\u03a0';
-                        break;
-                    }
-                    case 0xf5: {
-                        /*  Rho small */
-                        c = '\u03c1';
-                        break;
-                    }
-                    case 0xd5: {
-                        /*  Rho capital */
-                        c = '\u03a1';
-                        break;
-                    }
-                    case 0xf7: {
-                        /*  Sigma small (end of words) */
-                        c = '\u03c2';
-                        break;
-                    }
-                    case 0xf6: {
-                        /*  Sigma small */
-                        c = '\u03c3';
-                        break;
-                    }
-                    case 0xd6: {
-                        /*  Sigma capital */
-                        c = '\u03a3';
-                        break;
-                    }
-                    case 0xf8: {
-                        /*  Tau small */
-                        c = '\u03c4';
-                        break;
-                    }
-                    case 0xd8: {
-                        /*  Tau capital */
-                        c = '\u03a4';
-                        break;
-                    }
-                    case 0xf9: {
-                        /*  Upsilon small */
-                        if (tonos) {
-                            if (dialitika) {
-                                c = '\u03b0';
-                            } else {
-                                c = '\u03cd';
+                            if (out.remaining() < 1 + Integer.bitCount(accents)) {
+                                return CoderResult.OVERFLOW;
+                            }
+                            out.put(tables[0][b]);
+                            if ((accents & DIALITIKA) != 0) {
+                                out.put('\u0308');
+                            }
+                            if ((accents & TONOS) != 0) {
+                                out.put('\u0301');
                             }
-                        } else if (dialitika) {
-                            c = '\u03cb';
-                        } else {
-                            c = '\u03c5';
-                        }
-                        break;
-                    }
-                    case 0xd9: {
-                        /*  Upsilon capital */
-                        if (tonos) {
-                            c = '\u038e';
-                        } else if (dialitika) {
-                            c = '\u03ab';
-                        } else {
-                            c = '\u03a5';
-                        }
-                        break;
-                    }
-                    case 0xfa: {
-                        /*  Phi small */
-                        c = '\u03c6';
-                        break;
-                    }
-                    case 0xda: {
-                        /*  Phi capital */
-                        c = '\u03a6';
-                        break;
-                    }
-                    case 0xfb: {
-                        /*  Chi small */
-                        c = '\u03c7';
-                        break;
-                    }
-                    case 0xdb: {
-                        /*  Chi capital */
-                        c = '\u03a7';
-                        break;
-                    }
-                    case 0xfc: {
-                        /*  Psi small */
-                        c = '\u03c8';
-                        break;
-                    }
-                    case 0xdc: {
-                        /*  Psi capital */
-                        c = '\u03a8';
-                        break;
-                    }
-                    case 0xfd: {
-                        /*  Omega small */
-                        if (tonos) {
-                            c = '\u03ce';
-                        } else {
-                            c = '\u03c9';
-                        }
-                        break;
-                    }
-                    case 0xdd: {
-                        /*  Omega capital */
-                        if (tonos) {
-                            c = '\u038f';
-                        } else {
-                            c = '\u03a9';
                         }
-                        break;
-                    }
-                    default: {
-                        c = (char) b;
+                        accents = 0;
                     }
+                    mark++;
                 }
-                out.put(c);
+                return CoderResult.UNDERFLOW;
+            } finally {
+                in.position(mark);
             }
+        }
 
+        @Override
+        protected CoderResult implFlush(CharBuffer out) {
+            accents = 0;
             return CoderResult.UNDERFLOW;
         }
+
+        @Override
+        protected void implReset() {
+            accents = 0;
+        }
     }
 }
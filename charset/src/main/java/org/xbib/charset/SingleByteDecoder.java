@@ -37,11 +37,40 @@ import java.nio.charset.Charset;
 import java.nio.charset.CoderResult;
 import java.nio.charset.CharsetDecoder;
 import java.text.Normalizer;
+import java.util.Arrays;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
 
+/**
+ * Decoder for single byte character sets where combining diacritics precede the base character.
+ *
+ * A group of combining bytes and a base byte is decoded to the base character followed by
+ * the diacritics in reverse order, and normalized to NFC if characters are composed after conversion.
+ *
+ * The byte mapping of a decoder class is compiled once into primitive tables. Bytes without diacritics
+ * are decoded by a single table lookup. The composition of a base character with a single diacritic
+ * is looked up in a precomposition table which is filled on first use of a pair. Only groups with
+ * several diacritics or unmapped bytes are passed to {@link Normalizer}.
+ *
+ * Pending combining bytes are kept in the decoder, so a group may span input buffers. Combining bytes
+ * without a base character at the end of the input are dropped.
+ */
 public abstract class SingleByteDecoder extends CharsetDecoder {
 
+    private final static ConcurrentMap<Class<?>, Table> tables = new ConcurrentHashMap<Class<?>, Table>();
+
     private boolean composeCharactersAfterConversion = true;
 
+    private Table table;
+
+    private byte[] pending = new byte[8];
+
+    private int pendingCount;
+
+    private char[] groupChars = new char[8];
+
+    private final StringBuilder groupBuilder = new StringBuilder();
+
     /**
      * @return Returns the composeCharactersAfterConversion.
      */
@@ -64,51 +93,258 @@ public abstract class SingleByteDecoder extends CharsetDecoder {
 
     @Override
     protected CoderResult decodeLoop(ByteBuffer in, CharBuffer out) {
-        ByteBuffer inputBuffer = ByteBuffer.allocate(30);
-        while (in.hasRemaining()) {
-            byte c = in.get();
-            inputBuffer.put(c);
-
-            StringBuilder convertedInputBuffer = null;
-            if (!isCombiningCharacter(c)) {
-                convertedInputBuffer = new StringBuilder();
-                for (int i = inputBuffer.position() - 1; i >= 0; i--) {
-                    char convertedCharacter = byteToChar(inputBuffer.get(i));
-                    String convertedCharacterAsString;
-                    if (convertedCharacter == 0) {
-                        convertedCharacterAsString = replacement();
-                    } else {
-                        convertedCharacterAsString = String
-                                .valueOf(convertedCharacter);
+        if (table == null) {
+            table = tables.get(getClass());
+            if (table == null) {
+                table = new Table(this);
+                tables.putIfAbsent(getClass(), table);
+            }
+        }
+        if (in.hasArray() && out.hasArray()) {
+            return decodeArrayLoop(in, out);
+        }
+        return decodeBufferLoop(in, out);
+    }
+
+    @Override
+    protected CoderResult implFlush(CharBuffer out) {
+        pendingCount = 0;
+        return CoderResult.UNDERFLOW;
+    }
+
+    @Override
+    protected void implReset() {
+        pendingCount = 0;
+    }
+
+    public abstract boolean isCombiningCharacter(byte c);
+
+    public abstract char byteToChar(byte b);
+
+    private CoderResult decodeArrayLoop(ByteBuffer in, CharBuffer out) {
+        byte[] src = in.array();
+        int sp = in.arrayOffset() + in.position();
+        int sl = in.arrayOffset() + in.limit();
+        char[] dst = out.array();
+        int dp = out.arrayOffset() + out.position();
+        int dl = out.arrayOffset() + out.limit();
+        char[] direct = composeCharactersAfterConversion ? table.composed : table.chars;
+        boolean[] combining = table.combining;
+        try {
+            while (sp < sl) {
+                byte b = src[sp];
+                int i = b & 0xff;
+                if (combining[i]) {
+                    push(b);
+                    sp++;
+                    continue;
+                }
+                char c = direct[i];
+                if (pendingCount == 0 && c != 0) {
+                    if (dp >= dl) {
+                        return CoderResult.OVERFLOW;
                     }
+                    dst[dp++] = c;
+                    sp++;
+                    continue;
+                }
+                int n = group(b);
+                if (dl - dp < n) {
+                    return CoderResult.OVERFLOW;
+                }
+                System.arraycopy(groupChars, 0, dst, dp, n);
+                dp += n;
+                pendingCount = 0;
+                sp++;
+            }
+            return CoderResult.UNDERFLOW;
+        } finally {
+            in.position(sp - in.arrayOffset());
+            out.position(dp - out.arrayOffset());
+        }
+    }
 
-                    convertedInputBuffer.append(convertedCharacterAsString);
+    private CoderResult decodeBufferLoop(ByteBuffer in, CharBuffer out) {
+        char[] direct = composeCharactersAfterConversion ? table.composed : table.chars;
+        boolean[] combining = table.combining;
+        int mark = in.position();
+        try {
+            while (in.hasRemaining()) {
+                byte b = in.get();
+                int i = b & 0xff;
+                if (combining[i]) {
+                    push(b);
+                    mark++;
+                    continue;
                 }
+                char c = direct[i];
+                if (pendingCount == 0 && c != 0) {
+                    if (!out.hasRemaining()) {
+                        return CoderResult.OVERFLOW;
+                    }
+                    out.put(c);
+                    mark++;
+                    continue;
+                }
+                int n = group(b);
+                if (out.remaining() < n) {
+                    return CoderResult.OVERFLOW;
+                }
+                out.put(groupChars, 0, n);
+                pendingCount = 0;
+                mark++;
+            }
+            return CoderResult.UNDERFLOW;
+        } finally {
+            in.position(mark);
+        }
+    }
+
+    private void push(byte b) {
+        if (pendingCount == pending.length) {
+            pending = Arrays.copyOf(pending, pendingCount * 2);
+        }
+        pending[pendingCount++] = b;
+    }
 
-                if (this.composeCharactersAfterConversion) {
-                    convertedInputBuffer = new StringBuilder(Normalizer.normalize(convertedInputBuffer.toString(), Normalizer.Form.NFC));
+    /**
+     * Decode the pending combining bytes with a base byte into the group buffer.
+     *
+     * @param b the base byte
+     * @return the number of characters in the group buffer
+     */
+    private int group(byte b) {
+        char[] chars = table.chars;
+        char base = chars[b & 0xff];
+        if (composeCharactersAfterConversion) {
+            if (pendingCount == 1) {
+                int p = table.pair(pending[0] & 0xff, b & 0xff);
+                if (p > 0) {
+                    groupChars[0] = (char) p;
+                    return 1;
+                } else if (p == Table.KEEP) {
+                    groupChars[0] = base;
+                    groupChars[1] = chars[pending[0] & 0xff];
+                    return 2;
                 }
-                
             }
-            if (convertedInputBuffer != null) {
-                if (out.remaining() < convertedInputBuffer.length()) {
-                    /*
-                     * output buffer is to small --> reset position and return
-                     * OVERFLOW
-                     */
-                    in.position(in.position() - inputBuffer.position());
-                    return CoderResult.OVERFLOW;
+        } else if (base != 0) {
+            ensureGroupCapacity(pendingCount + 1);
+            groupChars[0] = base;
+            int n = 1;
+            for (int i = pendingCount - 1; i >= 0; i--) {
+                char c = chars[pending[i] & 0xff];
+                if (c == 0) {
+                    n = -1;
+                    break;
                 }
-                out.append(convertedInputBuffer);
-                inputBuffer.clear();
+                groupChars[n++] = c;
             }
+            if (n > 0) {
+                return n;
+            }
+        }
+        // general case: unmapped bytes, or more than one diacritic
+        groupBuilder.setLength(0);
+        append(base);
+        for (int i = pendingCount - 1; i >= 0; i--) {
+            append(chars[pending[i] & 0xff]);
+        }
+        CharSequence s = composeCharactersAfterConversion ?
+                Normalizer.normalize(groupBuilder, Normalizer.Form.NFC) : groupBuilder;
+        int n = s.length();
+        ensureGroupCapacity(n);
+        for (int i = 0; i < n; i++) {
+            groupChars[i] = s.charAt(i);
+        }
+        return n;
+    }
 
+    private void append(char c) {
+        if (c == 0) {
+            groupBuilder.append(replacement());
+        } else {
+            groupBuilder.append(c);
         }
-        return CoderResult.UNDERFLOW;
     }
 
-    public abstract boolean isCombiningCharacter(byte c);
+    private void ensureGroupCapacity(int n) {
+        if (groupChars.length < n) {
+            groupChars = new char[Math.max(n, groupChars.length * 2)];
+        }
+    }
 
-    public abstract char byteToChar(byte b);
+    /**
+     * The compiled byte mapping of a decoder class.
+     */
+    private static class Table {
 
+        final static int SLOW = -1;
+
+        final static int KEEP = -2;
+
+        /**
+         * Unicode character of each byte, 0 if unmapped
+         */
+        final char[] chars = new char[256];
+
+        /**
+         * NFC of the character of each byte, 0 if unmapped or not a single character
+         */
+        final char[] composed = new char[256];
+
+        final boolean[] combining = new boolean[256];
+
+        /**
+         * Index of each combining byte into the pair table, -1 for other bytes
+         */
+        final int[] index = new int[256];
+
+        /**
+         * Composition of a combining byte and a base byte: the composed character,
+         * KEEP if both characters are left as they are, SLOW if the pair must be normalized,
+         * or 0 if not computed yet.
+         */
+        final int[] pairs;
+
+        Table(SingleByteDecoder decoder) {
+            int n = 0;
+            for (int i = 0; i < 256; i++) {
+                byte b = (byte) i;
+                char c = decoder.byteToChar(b);
+                chars[i] = c;
+                if (c != 0) {
+                    String s = Normalizer.normalize(String.valueOf(c), Normalizer.Form.NFC);
+                    composed[i] = s.length() == 1 ? s.charAt(0) : 0;
+                }
+                combining[i] = decoder.isCombiningCharacter(b);
+                index[i] = combining[i] ? n++ : -1;
+            }
+            pairs = new int[n * 256];
+        }
+
+        int pair(int mark, int base) {
+            int k = index[mark] * 256 + base;
+            int p = pairs[k];
+            if (p == 0) {
+                p = compose(chars[base], chars[mark]);
+                pairs[k] = p;
+            }
+            return p;
+        }
+
+        private static int compose(char base, char mark) {
+            if (base == 0 || mark == 0) {
+                return SLOW;
+            }
+            String s = Normalizer.normalize(new String(new char[]{base, mark}), Normalizer.Form.NFC);
+            if (s.length() == 1) {
+                return s.charAt(0);
+            }
+            if (s.length() == 2 && s.charAt(0) == base && s.charAt(1) == mark) {
+                return KEEP;
+            }
+            return SLOW;
+        }
+    }
 }
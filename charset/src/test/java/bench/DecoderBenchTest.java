@@ -0,0 +1,113 @@
+package bench;
+
+import com.carrotsearch.junitbenchmarks.AbstractBenchmark;
+import com.carrotsearch.junitbenchmarks.BenchmarkOptions;
+import org.junit.Test;
+import org.xbib.charset.DecoderTest;
+import org.xbib.charset.SingleByteDecoder;
+
+import java.io.ByteArrayOutputStream;
+import java.io.CharArrayWriter;
+import java.nio.ByteBuffer;
+import java.nio.charset.Charset;
+import java.util.HashMap;
+import java.util.Map;
+
+import static org.junit.Assert.assertEquals;
+
+/**
+ * Compares the table driven decoders with the decoding before the decode tables.
+ */
+public class DecoderBenchTest extends AbstractBenchmark {
+
+    private final static int LINES = 131072;
+
+    private final static Charset MAB = Charset.forName("x-MAB");
+
+    private final static Charset ANSEL = Charset.forName("ANSEL");
+
+    private final static byte[] MAB_BYTES = sample((byte) 0xc9);
+
+    private final static byte[] ANSEL_BYTES = sample((byte) 0xe8);
+
+    private final static Map<Character, Character> anselMap = anselMap();
+
+    @BenchmarkOptions(benchmarkRounds = 10, warmupRounds = 3)
+    @Test
+    public void testMabLegacy() throws Exception {
+        SingleByteDecoder decoder = (SingleByteDecoder) MAB.newDecoder();
+        String s = DecoderTest.legacyDecode(decoder, true, MAB_BYTES);
+        assertEquals(LINES * 31, s.length());
+    }
+
+    @BenchmarkOptions(benchmarkRounds = 10, warmupRounds = 3)
+    @Test
+    public void testMab() throws Exception {
+        String s = new String(MAB_BYTES, MAB);
+        assertEquals(LINES * 31, s.length());
+    }
+
+    @BenchmarkOptions(benchmarkRounds = 10, warmupRounds = 3)
+    @Test
+    public void testAnselLegacy() throws Exception {
+        String s = legacyAnsel(ANSEL_BYTES);
+        assertEquals(LINES * 32, s.length());
+    }
+
+    @BenchmarkOptions(benchmarkRounds = 10, warmupRounds = 3)
+    @Test
+    public void testAnsel() throws Exception {
+        String s = new String(ANSEL_BYTES, ANSEL);
+        assertEquals(LINES * 32, s.length());
+    }
+
+    /**
+     * Four megabytes of text with a diacritic preceding a base character in every line of 32 bytes.
+     */
+    private static byte[] sample(byte diacritic) {
+        byte[] line = "Geschichte der Universitat zu M.".getBytes();
+        ByteArrayOutputStream out = new ByteArrayOutputStream();
+        for (int n = 0; n < LINES; n++) {
+            for (int i = 0; i < line.length - 1; i++) {
+                if (i == 24) {
+                    out.write(diacritic);
+                }
+                out.write(line[i]);
+            }
+        }
+        return out.toByteArray();
+    }
+
+    /**
+     * The decoding of ANSI_Z39_47 before the decode table.
+     */
+    private static String legacyAnsel(byte[] b) {
+        ByteBuffer in = ByteBuffer.wrap(b);
+        CharArrayWriter w = new CharArrayWriter();
+        CharArrayWriter diacritics = new CharArrayWriter();
+        while (in.hasRemaining()) {
+            char oldChar = (char) (in.get() & 0xFF);
+            Character mapChar = anselMap.get(Character.valueOf(oldChar));
+            char ch = mapChar != null ? mapChar : oldChar;
+            if (oldChar >= 0xE0 && oldChar <= 0xFF) {
+                diacritics.write(ch);
+            } else {
+                w.write(ch);
+                if (diacritics.toString().length() > 0) {
+                    w.write(diacritics.toCharArray(), 0, diacritics.size());
+                    diacritics = new CharArrayWriter();
+                }
+            }
+        }
+        return new String(w.toCharArray());
+    }
+
+    private static Map<Character, Character> anselMap() {
+        Map<Character, Character> map = new HashMap<Character, Character>();
+        for (int i = 0xa0; i <= 0xff; i++) {
+            String s = new String(new byte[]{(byte) i, 'a'}, ANSEL);
+            map.put((char) i, i >= 0xe0 ? s.charAt(1) : s.charAt(0));
+        }
+        return map;
+    }
+}
@@ -0,0 +1,183 @@
+package org.xbib.charset;
+
+import java.nio.ByteBuffer;
+import java.nio.CharBuffer;
+import java.nio.charset.Charset;
+import java.nio.charset.CharsetDecoder;
+import java.nio.charset.CoderResult;
+import java.text.Normalizer;
+import java.util.Random;
+import org.testng.Assert;
+import org.testng.annotations.Test;
+
+public class DecoderTest extends Assert {
+
+    @Test
+    public void testMabPairs() throws Exception {
+        assertPairs(new MabCharset(true));
+        assertPairs(new MabCharset(false));
+    }
+
+    @Test
+    public void testPicaPairs() throws Exception {
+        assertPairs(new PicaCharset(true));
+        assertPairs(new PicaCharset(false));
+    }
+
+    @Test
+    public void testMabGroups() throws Exception {
+        assertGroups(new MabCharset(true));
+        assertGroups(new MabCharset(false));
+    }
+
+    @Test
+    public void testPicaGroups() throws Exception {
+        assertGroups(new PicaCharset(true));
+        assertGroups(new PicaCharset(false));
+    }
+
+    @Test
+    public void testMabChunks() throws Exception {
+        Charset charset = Charset.forName("x-MAB");
+        byte[] b = randomBytes(10000);
+        assertEquals(decodeInChunks(charset, b, 7, 16), charset.newDecoder().decode(ByteBuffer.wrap(b)).toString());
+        assertEquals(decodeInChunks(charset, b, 1, 16), charset.newDecoder().decode(ByteBuffer.wrap(b)).toString());
+    }
+
+    @Test
+    public void testMabDirectBuffer() throws Exception {
+        Charset charset = Charset.forName("x-MAB");
+        byte[] b = randomBytes(10000);
+        ByteBuffer buf = ByteBuffer.allocateDirect(b.length);
+        buf.put(b).flip();
+        assertEquals(charset.newDecoder().decode(buf).toString(),
+                charset.newDecoder().decode(ByteBuffer.wrap(b)).toString());
+    }
+
+    @Test
+    public void testAnsel() throws Exception {
+        Charset charset = Charset.forName("ANSEL");
+        // diacritics precede the base character and are appended in input order
+        byte[] b = new byte[]{(byte) 0xe8, 'a', 'b', (byte) 0xe2, (byte) 0xf2, 'c', (byte) 0xa2};
+        String s = "a\u0308b" + "c\u0301\u0323" + "\u00d8";
+        assertEquals(charset.newDecoder().decode(ByteBuffer.wrap(b)).toString(), s);
+        assertEquals(decodeInChunks(charset, b, 1, 16), s);
+        // diacritics without base character at the end are dropped
+        b = new byte[]{'a', (byte) 0xe8};
+        assertEquals(charset.newDecoder().decode(ByteBuffer.wrap(b)).toString(), "a");
+    }
+
+    @Test
+    public void testAnselChunks() throws Exception {
+        Charset charset = Charset.forName("ANSEL");
+        byte[] b = randomBytes(10000);
+        assertEquals(decodeInChunks(charset, b, 5, 16), charset.newDecoder().decode(ByteBuffer.wrap(b)).toString());
+    }
+
+    @Test
+    public void testISO5428() throws Exception {
+        Charset charset = Charset.forName("ISO-5428");
+        byte[] b = new byte[]{(byte) 0xc1, (byte) 0xe2, (byte) 0xa2, (byte) 0xe1, ' ',
+                (byte) 0xa2, (byte) 0xa3, (byte) 0xec, (byte) 0xa3, (byte) 0xe1, (byte) 0xf7};
+        String s = "\u0391\u03b2\u03ac \u0390\u03b1\u0308\u03c2";
+        assertEquals(charset.newDecoder().decode(ByteBuffer.wrap(b)).toString(), s);
+        assertEquals(decodeInChunks(charset, b, 1, 16), s);
+    }
+
+    private void assertPairs(Charset charset) throws Exception {
+        SingleByteDecoder decoder = (SingleByteDecoder) charset.newDecoder();
+        boolean compose = decoder.isComposeCharactersAfterConversion();
+        byte[] b = new byte[2];
+        for (int i = 0; i < 256; i++) {
+            b[0] = (byte) i;
+            for (int j = 0; j < 256; j++) {
+                b[1] = (byte) j;
+                assertEquals(decoder.decode(ByteBuffer.wrap(b)).toString(), legacyDecode(decoder, compose, b),
+                        "bytes " + i + " " + j);
+            }
+        }
+    }
+
+    private void assertGroups(Charset charset) throws Exception {
+        SingleByteDecoder decoder = (SingleByteDecoder) charset.newDecoder();
+        boolean compose = decoder.isComposeCharactersAfterConversion();
+        Random random = new Random(42L);
+        byte[] b = new byte[4];
+        for (int n = 0; n < 50000; n++) {
+            for (int i = 0; i < b.length - 1; i++) {
+                b[i] = (byte) (0xc0 + random.nextInt(64));
+            }
+            b[b.length - 1] = (byte) random.nextInt(256);
+            assertEquals(decoder.decode(ByteBuffer.wrap(b)).toString(), legacyDecode(decoder, compose, b));
+        }
+    }
+
+    private static byte[] randomBytes(int length) {
+        Random random = new Random(17L);
+        byte[] b = new byte[length];
+        for (int i = 0; i < length; i++) {
+            b[i] = (byte) (random.nextInt(4) == 0 ? 0xc0 + random.nextInt(64) : 0x20 + random.nextInt(0x60));
+        }
+        return b;
+    }
+
+    private static String decodeInChunks(Charset charset, byte[] b, int inSize, int outSize) {
+        CharsetDecoder decoder = charset.newDecoder();
+        StringBuilder sb = new StringBuilder();
+        ByteBuffer in = ByteBuffer.allocate(inSize);
+        CharBuffer out = CharBuffer.allocate(outSize);
+        int pos = 0;
+        while (true) {
+            while (in.hasRemaining() && pos < b.length) {
+                in.put(b[pos++]);
+            }
+            in.flip();
+            boolean endOfInput = pos == b.length;
+            CoderResult result = decoder.decode(in, out, endOfInput);
+            out.flip();
+            sb.append(out);
+            out.clear();
+            in.compact();
+            if (endOfInput && result.isUnderflow() && in.position() == 0) {
+                break;
+            }
+        }
+        while (decoder.flush(out).isOverflow()) {
+            out.flip();
+            sb.append(out);
+            out.clear();
+        }
+        out.flip();
+        sb.append(out);
+        return sb.toString();
+    }
+
+    /**
+     * The decoding of SingleByteDecoder before the decode tables, one byte group at a time.
+     */
+    public static String legacyDecode(SingleByteDecoder decoder, boolean compose, byte[] b) {
+        StringBuilder sb = new StringBuilder();
+        ByteBuffer inputBuffer = ByteBuffer.allocate(30);
+        for (byte c : b) {
+            inputBuffer.put(c);
+            if (!decoder.isCombiningCharacter(c)) {
+                StringBuilder convertedInputBuffer = new StringBuilder();
+                for (int i = inputBuffer.position() - 1; i >= 0; i--) {
+                    char convertedCharacter = decoder.byteToChar(inputBuffer.get(i));
+                    if (convertedCharacter == 0) {
+                        convertedInputBuffer.append(decoder.replacement());
+                    } else {
+                        convertedInputBuffer.append(convertedCharacter);
+                    }
+                }
+                if (compose) {
+                    convertedInputBuffer = new StringBuilder(Normalizer.normalize(convertedInputBuffer.toString(),
+                            Normalizer.Form.NFC));
+                }
+                sb.append(convertedInputBuffer);
+                inputBuffer.clear();
+            }
+        }
+        return sb.toString();
+    }
+}
@@ -5,11 +5,20 @@ import java.util.Map;
 import java.util.ServiceLoader;
 import java.util.Set;
 import java.util.WeakHashMap;
+import java.util.concurrent.ConcurrentHashMap;
 
+/**
+ * The stream codecs, by suffix.
+ *
+ * A suffix can be mapped to another codec, for example "gz" to the parallel gzip codec "pgz",
+ * with {@link #setCodec(String, String)} or with the system property <code>xbib.codec.gz=pgz</code>.
+ */
 public class StreamCodecService {
 
     private final static Map<String, StreamCodec> codecs = new WeakHashMap<String, StreamCodec>();
 
+    private final static Map<String, String> suffixes = new ConcurrentHashMap<String, String>();
+
     private final static StreamCodecService instance = new StreamCodecService();
 
     private StreamCodecService() {
@@ -19,6 +28,12 @@ public class StreamCodecService {
                 codecs.put(codec.getName(), codec);
             }
         }
+        for (String suffix : codecs.keySet()) {
+            String name = System.getProperty("xbib.codec." + suffix);
+            if (name != null) {
+                setCodec(suffix, name);
+            }
+        }
     }
 
     public static StreamCodecService getInstance() {
@@ -26,12 +41,33 @@ public class StreamCodecService {
     }
 
     public StreamCodec getCodec(String suffix) {
-        if (codecs.containsKey(suffix)) {
-            return codecs.get(suffix);
+        String name = suffixes.get(suffix);
+        if (name == null) {
+            name = suffix;
+        }
+        if (codecs.containsKey(name)) {
+            return codecs.get(name);
         }
         throw new IllegalArgumentException("Stream codec for " + suffix + " not found in " + codecs);
     }
 
+    /**
+     * Use the codec with the given name for a suffix.
+     *
+     * @param suffix the suffix
+     * @param name the name of the codec, or the suffix itself for the codec of the suffix
+     */
+    public void setCodec(String suffix, String name) {
+        if (!codecs.containsKey(name)) {
+            throw new IllegalArgumentException("Stream codec " + name + " not found in " + codecs);
+        }
+        if (suffix.equals(name)) {
+            suffixes.remove(suffix);
+        } else {
+            suffixes.put(suffix, name);
+        }
+    }
+
     public static Set<String> getCodecs() {
         return codecs.keySet();
     }
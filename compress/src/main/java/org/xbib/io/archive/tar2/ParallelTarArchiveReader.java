@@ -0,0 +1,277 @@
+package org.xbib.io.archive.tar2;
+
+import java.io.IOException;
+import java.io.InterruptedIOException;
+import java.util.TreeMap;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+
+/**
+ * Reads the entries of a tar archive on one thread and processes them on many.
+ *
+ * The calling thread reads and decompresses the archive sequentially and copies
+ * each entry into a buffer from a fixed pool. The buffers are handed to a pool of
+ * workers which parse them with the {@link Handler}. A buffer returns to the pool
+ * when its entry is emitted, so the number of entries in flight, and the memory,
+ * is bounded by the number of buffers. The buffers grow to the largest entry seen
+ * and are reused.
+ *
+ * Without order, each worker emits its result right after parsing, so emit must be
+ * thread safe. With order, the results are emitted one at a time in the order of
+ * the entries in the archive.
+ *
+ * If an entry fails, reading stops, the entries after the failed entry are not
+ * emitted, and the exception is thrown after the entries in flight are done.
+ *
+ * @param <T> the type of the parsed entries
+ */
+public class ParallelTarArchiveReader<T> {
+
+    /**
+     * Parses and emits the entries of an archive.
+     *
+     * @param <T> the type of the parsed entries
+     */
+    public interface Handler<T> {
+
+        /**
+         * Parse an entry. The buffer is only valid until this method returns.
+         *
+         * @param name   the name of the entry
+         * @param buf    the buffer holding the entry
+         * @param length the length of the entry in the buffer
+         * @return the parsed entry
+         * @throws IOException if the entry can not be parsed
+         */
+        T parse(String name, byte[] buf, int length) throws IOException;
+
+        /**
+         * Emit a parsed entry.
+         *
+         * @param name   the name of the entry
+         * @param result the parsed entry
+         * @throws IOException if the entry can not be emitted
+         */
+        void emit(String name, T result) throws IOException;
+    }
+
+    private final Handler<T> handler;
+
+    private int workers = Runtime.getRuntime().availableProcessors();
+
+    private int buffers;
+
+    private int bufferSize = 8192;
+
+    private boolean ordered;
+
+    public ParallelTarArchiveReader(Handler<T> handler) {
+        this.handler = handler;
+    }
+
+    public ParallelTarArchiveReader<T> setWorkers(int workers) {
+        this.workers = workers;
+        return this;
+    }
+
+    /**
+     * Set the number of buffers, which is the maximum number of entries in flight.
+     * The default is four buffers per worker.
+     */
+    public ParallelTarArchiveReader<T> setBuffers(int buffers) {
+        this.buffers = buffers;
+        return this;
+    }
+
+    /**
+     * Set the initial size of a buffer.
+     */
+    public ParallelTarArchiveReader<T> setBufferSize(int bufferSize) {
+        this.bufferSize = bufferSize;
+        return this;
+    }
+
+    public ParallelTarArchiveReader<T> setOrdered(boolean ordered) {
+        this.ordered = ordered;
+        return this;
+    }
+
+    /**
+     * Read the entries of an open tar session.
+     *
+     * @param session the session
+     * @return the number of entries read
+     * @throws IOException if reading fails, or the first exception of parsing or emitting an entry
+     */
+    public long read(TarSession session) throws IOException {
+        if (session.getInputStream() == null) {
+            throw new IOException("session not open for input");
+        }
+        return read(session.getInputStream());
+    }
+
+    /**
+     * Read the entries of a tar archive stream. Directories are skipped.
+     * The method returns after all entries are emitted.
+     *
+     * @param in the tar archive stream
+     * @return the number of entries read
+     * @throws IOException if reading fails, or the first exception of parsing or emitting an entry
+     */
+    public long read(TarArchiveInputStream in) throws IOException {
+        int size = buffers > 0 ? buffers : 4 * workers;
+        BlockingQueue<EntryBuffer> pool = new ArrayBlockingQueue<EntryBuffer>(size);
+        for (int i = 0; i < size; i++) {
+            pool.add(new EntryBuffer(bufferSize));
+        }
+        Run run = new Run(pool);
+        ExecutorService executorService = Executors.newFixedThreadPool(workers);
+        long count = 0L;
+        try {
+            TarArchiveInputEntry entry;
+            while (!run.failed() && (entry = in.getNextTarEntry()) != null) {
+                if (entry.isDirectory()) {
+                    continue;
+                }
+                if (entry.getEntrySize() > Integer.MAX_VALUE) {
+                    throw new IOException("entry too large: " + entry.getName());
+                }
+                EntryBuffer buffer = pool.take();
+                buffer.fill(count++, entry.getName(), in, (int) entry.getEntrySize());
+                executorService.execute(new Task(run, buffer));
+            }
+            // all buffers are back when all entries are emitted
+            for (int i = 0; i < size; i++) {
+                pool.take();
+            }
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new InterruptedIOException("interrupted while reading " + count + " entries");
+        } finally {
+            executorService.shutdownNow();
+        }
+        Throwable t = run.failure;
+        if (t instanceof IOException) {
+            throw (IOException) t;
+        }
+        if (t != null) {
+            throw new IOException(t);
+        }
+        return count;
+    }
+
+    private static class EntryBuffer {
+
+        long sequence;
+
+        String name;
+
+        byte[] buf;
+
+        int length;
+
+        Object result;
+
+        EntryBuffer(int size) {
+            this.buf = new byte[size];
+        }
+
+        void fill(long sequence, String name, TarArchiveInputStream in, int length) throws IOException {
+            this.sequence = sequence;
+            this.name = name;
+            this.length = length;
+            this.result = null;
+            if (buf.length < length) {
+                buf = new byte[Math.max(length, 2 * buf.length)];
+            }
+            if (length > 0 && in.read(buf, 0, length) != length) {
+                throw new IOException("unexpected end of entry " + name);
+            }
+        }
+    }
+
+    /**
+     * The state of one read: the buffer pool, the failed entry with the lowest sequence
+     * number, and for ordered emitting, the parsed entries waiting for their predecessors.
+     */
+    private class Run {
+
+        final BlockingQueue<EntryBuffer> pool;
+
+        final TreeMap<Long, EntryBuffer> waiting = new TreeMap<Long, EntryBuffer>();
+
+        long next = 0L;
+
+        volatile long failedAt = Long.MAX_VALUE;
+
+        Throwable failure;
+
+        Run(BlockingQueue<EntryBuffer> pool) {
+            this.pool = pool;
+        }
+
+        boolean failed() {
+            return failedAt != Long.MAX_VALUE;
+        }
+
+        synchronized void fail(long sequence, Throwable t) {
+            if (sequence < failedAt) {
+                failedAt = sequence;
+                failure = t;
+            }
+        }
+
+        @SuppressWarnings("unchecked")
+        void emit(EntryBuffer buffer) {
+            if (buffer.sequence < failedAt) {
+                try {
+                    handler.emit(buffer.name, (T) buffer.result);
+                } catch (Throwable t) {
+                    fail(buffer.sequence, t);
+                }
+            }
+            buffer.result = null;
+            pool.add(buffer);
+        }
+
+        void emitOrdered(EntryBuffer buffer) {
+            synchronized (waiting) {
+                waiting.put(buffer.sequence, buffer);
+                while (!waiting.isEmpty() && waiting.firstKey() == next) {
+                    emit(waiting.pollFirstEntry().getValue());
+                    next++;
+                }
+            }
+        }
+    }
+
+    private class Task implements Runnable {
+
+        private final Run run;
+
+        private final EntryBuffer buffer;
+
+        Task(Run run, EntryBuffer buffer) {
+            this.run = run;
+            this.buffer = buffer;
+        }
+
+        @Override
+        public void run() {
+            try {
+                if (buffer.sequence < run.failedAt) {
+                    buffer.result = handler.parse(buffer.name, buffer.buf, buffer.length);
+                }
+            } catch (Throwable t) {
+                run.fail(buffer.sequence, t);
+            }
+            if (ordered) {
+                run.emitOrdered(buffer);
+            } else {
+                run.emit(buffer);
+            }
+        }
+    }
+}
@@ -0,0 +1,177 @@
+
+package org.xbib.io.compress;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.util.LinkedList;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+
+/**
+ * An input stream that reads ahead the members of a concatenated compressed stream and decompresses
+ * them on a worker pool while the reader consumes the members before.
+ *
+ * If a member can not be cut out of the input without decompressing it, the subclass hands
+ * the input to a sequential decoder with {@link #remainder(InputStream)}. When the sequential decoder
+ * is exhausted, reading members continues.
+ */
+public abstract class ParallelBlockInputStream extends InputStream {
+
+    private final ExecutorService executor;
+
+    private final boolean shutdown;
+
+    private final int readAhead;
+
+    private final LinkedList<Future<byte[]>> pending;
+
+    private byte[] current;
+
+    private int pos;
+
+    private InputStream remainder;
+
+    private boolean eof;
+
+    private boolean closed;
+
+    protected ParallelBlockInputStream(int threads) {
+        this(Executors.newFixedThreadPool(threads, ParallelBlockOutputStream.daemonThreadFactory("decompress")),
+                true, 2 * threads);
+    }
+
+    protected ParallelBlockInputStream(ExecutorService executor, int readAhead) {
+        this(executor, false, readAhead);
+    }
+
+    private ParallelBlockInputStream(ExecutorService executor, boolean shutdown, int readAhead) {
+        this.executor = executor;
+        this.shutdown = shutdown;
+        this.readAhead = Math.max(1, readAhead);
+        this.pending = new LinkedList<Future<byte[]>>();
+    }
+
+    /**
+     * Read the next compressed member from the input.
+     *
+     * @return the member, or null if there are no more members or the rest of the input
+     * has been handed over with {@link #remainder(InputStream)}
+     * @throws IOException if the input can not be read
+     */
+    protected abstract byte[] readMember() throws IOException;
+
+    /**
+     * Decompress a member.
+     *
+     * @param member the member
+     * @return the decompressed bytes
+     * @throws IOException if the member is corrupt
+     */
+    protected abstract byte[] decompress(byte[] member) throws IOException;
+
+    /**
+     * Close the underlying input.
+     *
+     * @throws IOException if closing fails
+     */
+    protected abstract void closeInput() throws IOException;
+
+    /**
+     * Continue with a sequential decoder after all members read so far. Called from {@link #readMember()}
+     * before returning null.
+     *
+     * @param in the sequential decoder for the rest of the input
+     */
+    protected void remainder(InputStream in) {
+        this.remainder = in;
+    }
+
+    @Override
+    public int read() throws IOException {
+        byte[] b = new byte[1];
+        int n = read(b, 0, 1);
+        return n == -1 ? -1 : b[0] & 0xff;
+    }
+
+    @Override
+    public int read(byte[] b, int off, int len) throws IOException {
+        if (closed) {
+            throw new IOException("stream closed");
+        }
+        if (off < 0 || len < 0 || off + len > b.length) {
+            throw new IndexOutOfBoundsException();
+        }
+        if (len == 0) {
+            return 0;
+        }
+        while (true) {
+            if (current != null && pos < current.length) {
+                int n = Math.min(len, current.length - pos);
+                System.arraycopy(current, pos, b, off, n);
+                pos += n;
+                return n;
+            }
+            // the sequential decoder continues after all members read before it
+            if (pending.isEmpty() && remainder != null) {
+                int n = remainder.read(b, off, len);
+                if (n != -1) {
+                    return n;
+                }
+                remainder = null;
+            }
+            fill();
+            if (!pending.isEmpty()) {
+                current = ParallelBlockOutputStream.get(pending.removeFirst());
+                pos = 0;
+            } else if (remainder == null) {
+                return -1;
+            }
+        }
+    }
+
+    @Override
+    public int available() throws IOException {
+        return current != null ? current.length - pos : 0;
+    }
+
+    @Override
+    public void close() throws IOException {
+        if (closed) {
+            return;
+        }
+        closed = true;
+        try {
+            for (Future<byte[]> future : pending) {
+                future.cancel(true);
+            }
+            pending.clear();
+            current = null;
+            if (remainder != null) {
+                remainder.close();
+            }
+            closeInput();
+        } finally {
+            if (shutdown) {
+                executor.shutdown();
+            }
+        }
+    }
+
+    private void fill() throws IOException {
+        while (!eof && remainder == null && pending.size() < readAhead) {
+            final byte[] member = readMember();
+            if (member == null) {
+                eof = remainder == null;
+                break;
+            }
+            pending.add(executor.submit(new Callable<byte[]>() {
+                @Override
+                public byte[] call() throws Exception {
+                    return decompress(member);
+                }
+            }));
+        }
+    }
+}
@@ -0,0 +1,213 @@
+
+package org.xbib.io.compress;
+
+import java.io.IOException;
+import java.io.InterruptedIOException;
+import java.io.OutputStream;
+import java.util.LinkedList;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * An output stream that cuts the uncompressed data into blocks of a fixed size and compresses
+ * the blocks on a worker pool. Each block is compressed into a complete member of the target format
+ * and the members are written in order, so the output is a concatenation of members.
+ *
+ * Not more than twice the number of workers blocks are in flight, a writer waits for the oldest block
+ * before it may submit another one.
+ */
+public abstract class ParallelBlockOutputStream extends OutputStream {
+
+    private final OutputStream out;
+
+    private final ExecutorService executor;
+
+    private final boolean shutdown;
+
+    private final int maxPending;
+
+    private final LinkedList<Future<byte[]>> pending;
+
+    private final int blockSize;
+
+    private byte[] buffer;
+
+    private int count;
+
+    private long members;
+
+    private boolean closed;
+
+    protected ParallelBlockOutputStream(OutputStream out, int blockSize, int threads) {
+        this(out, blockSize, Executors.newFixedThreadPool(threads, daemonThreadFactory("compress")), true, 2 * threads);
+    }
+
+    protected ParallelBlockOutputStream(OutputStream out, int blockSize, ExecutorService executor, int maxPending) {
+        this(out, blockSize, executor, false, maxPending);
+    }
+
+    private ParallelBlockOutputStream(OutputStream out, int blockSize, ExecutorService executor,
+                                      boolean shutdown, int maxPending) {
+        if (blockSize < 1) {
+            throw new IllegalArgumentException("illegal block size: " + blockSize);
+        }
+        this.out = out;
+        this.blockSize = blockSize;
+        this.executor = executor;
+        this.shutdown = shutdown;
+        this.maxPending = Math.max(1, maxPending);
+        this.pending = new LinkedList<Future<byte[]>>();
+        this.buffer = new byte[blockSize];
+    }
+
+    /**
+     * Compress a block into a complete member.
+     *
+     * @param b   the block
+     * @param len the number of bytes in the block
+     * @return the member
+     * @throws IOException if compression fails
+     */
+    protected abstract byte[] compress(byte[] b, int len) throws IOException;
+
+    public int getBlockSize() {
+        return blockSize;
+    }
+
+    /**
+     * The number of members written so far.
+     *
+     * @return the number of members
+     */
+    public long getMembers() {
+        return members;
+    }
+
+    @Override
+    public void write(int b) throws IOException {
+        ensureOpen();
+        buffer[count++] = (byte) b;
+        if (count == blockSize) {
+            submit();
+        }
+    }
+
+    @Override
+    public void write(byte[] b, int off, int len) throws IOException {
+        ensureOpen();
+        if (off < 0 || len < 0 || off + len > b.length) {
+            throw new IndexOutOfBoundsException();
+        }
+        while (len > 0) {
+            int n = Math.min(len, blockSize - count);
+            System.arraycopy(b, off, buffer, count, n);
+            count += n;
+            off += n;
+            len -= n;
+            if (count == blockSize) {
+                submit();
+            }
+        }
+    }
+
+    /**
+     * Compress the buffered bytes into a member of their own and wait for all members being written.
+     *
+     * @throws IOException if compression or writing fails
+     */
+    @Override
+    public void flush() throws IOException {
+        ensureOpen();
+        if (count > 0) {
+            submit();
+        }
+        while (!pending.isEmpty()) {
+            writeNext();
+        }
+        out.flush();
+    }
+
+    @Override
+    public void close() throws IOException {
+        if (closed) {
+            return;
+        }
+        try {
+            // an empty stream still needs one member to be a valid file
+            if (count > 0 || members + pending.size() == 0) {
+                submit();
+            }
+            while (!pending.isEmpty()) {
+                writeNext();
+            }
+            out.close();
+        } finally {
+            closed = true;
+            for (Future<byte[]> future : pending) {
+                future.cancel(true);
+            }
+            pending.clear();
+            if (shutdown) {
+                executor.shutdown();
+            }
+        }
+    }
+
+    private void submit() throws IOException {
+        while (pending.size() >= maxPending) {
+            writeNext();
+        }
+        final byte[] b = buffer;
+        final int len = count;
+        pending.add(executor.submit(new Callable<byte[]>() {
+            @Override
+            public byte[] call() throws Exception {
+                return compress(b, len);
+            }
+        }));
+        buffer = new byte[blockSize];
+        count = 0;
+    }
+
+    private void writeNext() throws IOException {
+        out.write(get(pending.removeFirst()));
+        members++;
+    }
+
+    private void ensureOpen() throws IOException {
+        if (closed) {
+            throw new IOException("stream closed");
+        }
+    }
+
+    static byte[] get(Future<byte[]> future) throws IOException {
+        try {
+            return future.get();
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new InterruptedIOException();
+        } catch (ExecutionException e) {
+            if (e.getCause() instanceof IOException) {
+                throw (IOException) e.getCause();
+            }
+            throw new IOException(e.getCause());
+        }
+    }
+
+    static ThreadFactory daemonThreadFactory(final String name) {
+        final AtomicInteger n = new AtomicInteger();
+        return new ThreadFactory() {
+            @Override
+            public Thread newThread(Runnable r) {
+                Thread thread = new Thread(r, name + "-" + n.incrementAndGet());
+                thread.setDaemon(true);
+                return thread;
+            }
+        };
+    }
+}
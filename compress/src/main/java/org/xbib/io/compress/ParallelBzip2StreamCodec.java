@@ -0,0 +1,43 @@
+
+package org.xbib.io.compress;
+
+import org.xbib.io.StreamCodec;
+import org.xbib.io.compress.bzip2.ParallelBzip2InputStream;
+import org.xbib.io.compress.bzip2.ParallelBzip2OutputStream;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+
+/**
+ * A bzip2 codec that compresses and decompresses blocks of 900k on all available processors.
+ * For encoding, the buffer size is the block size. For decoding, it is the initial size of the
+ * read buffer for cutting streams. It can replace the "bz2" codec, see {@link org.xbib.io.StreamCodecService}.
+ */
+public class ParallelBzip2StreamCodec implements StreamCodec<ParallelBzip2InputStream, ParallelBzip2OutputStream> {
+
+    @Override
+    public String getName() {
+        return "pbz2";
+    }
+
+    @Override
+    public ParallelBzip2InputStream decode(InputStream in) throws IOException {
+        return new ParallelBzip2InputStream(in);
+    }
+
+    @Override
+    public ParallelBzip2InputStream decode(InputStream in, int bufsize) throws IOException {
+        return new ParallelBzip2InputStream(in, bufsize);
+    }
+
+    @Override
+    public ParallelBzip2OutputStream encode(OutputStream out) throws IOException {
+        return new ParallelBzip2OutputStream(out);
+    }
+
+    @Override
+    public ParallelBzip2OutputStream encode(OutputStream out, int bufsize) throws IOException {
+        return new ParallelBzip2OutputStream(out, bufsize);
+    }
+}
@@ -0,0 +1,43 @@
+
+package org.xbib.io.compress;
+
+import org.xbib.io.StreamCodec;
+import org.xbib.io.compress.gzip.ParallelGzipInputStream;
+import org.xbib.io.compress.gzip.ParallelGzipOutputStream;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+
+/**
+ * A gzip codec that compresses and decompresses blocks of 1 MB on all available processors.
+ * For encoding, the buffer size is the block size. For decoding, it applies to gzip streams
+ * not written by this codec. It can replace the "gz" codec, see {@link org.xbib.io.StreamCodecService}.
+ */
+public class ParallelGzipStreamCodec implements StreamCodec<ParallelGzipInputStream, ParallelGzipOutputStream> {
+
+    @Override
+    public String getName() {
+        return "pgz";
+    }
+
+    @Override
+    public ParallelGzipInputStream decode(InputStream in) throws IOException {
+        return new ParallelGzipInputStream(in);
+    }
+
+    @Override
+    public ParallelGzipInputStream decode(InputStream in, int bufsize) throws IOException {
+        return new ParallelGzipInputStream(in, bufsize);
+    }
+
+    @Override
+    public ParallelGzipOutputStream encode(OutputStream out) throws IOException {
+        return new ParallelGzipOutputStream(out);
+    }
+
+    @Override
+    public ParallelGzipOutputStream encode(OutputStream out, int bufsize) throws IOException {
+        return new ParallelGzipOutputStream(out, bufsize);
+    }
+}
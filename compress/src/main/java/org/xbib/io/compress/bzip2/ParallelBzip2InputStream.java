@@ -0,0 +1,156 @@
+
+package org.xbib.io.compress.bzip2;
+
+import org.xbib.io.compress.ParallelBlockInputStream;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.SequenceInputStream;
+import java.util.Arrays;
+import java.util.concurrent.ExecutorService;
+
+/**
+ * Reads a multi-stream bzip2 file and decompresses the streams in parallel.
+ *
+ * Streams start byte aligned with "BZh", the block size and the magic of the first block
+ * or of the end of stream, so the input is cut at these ten bytes. A stream that is longer than
+ * the maximum member size, as a file of the bzip2 tool with more than a few blocks, is decompressed
+ * sequentially.
+ */
+public class ParallelBzip2InputStream extends ParallelBlockInputStream {
+
+    public final static int MAX_MEMBER_SIZE = 4 << 20;
+
+    private final static byte[] BLOCK_MAGIC = {0x31, 0x41, 0x59, 0x26, 0x53, 0x59};
+
+    private final static byte[] EOS_MAGIC = {0x17, 0x72, 0x45, 0x38, 0x50, (byte) 0x90};
+
+    private InputStream in;
+
+    private byte[] buf;
+
+    private int start;
+
+    private int scan;
+
+    private int limit;
+
+    private boolean eof;
+
+    private long members;
+
+    public ParallelBzip2InputStream(InputStream in) {
+        this(in, 65536);
+    }
+
+    public ParallelBzip2InputStream(InputStream in, int bufsize) {
+        this(in, bufsize, Runtime.getRuntime().availableProcessors());
+    }
+
+    public ParallelBzip2InputStream(InputStream in, int bufsize, int threads) {
+        super(threads);
+        this.in = in;
+        this.buf = new byte[Math.max(bufsize, 65536)];
+    }
+
+    public ParallelBzip2InputStream(InputStream in, int bufsize, ExecutorService executor, int readAhead) {
+        super(executor, readAhead);
+        this.in = in;
+        this.buf = new byte[Math.max(bufsize, 65536)];
+    }
+
+    @Override
+    protected byte[] readMember() throws IOException {
+        while (limit - start < 10 && !eof) {
+            readInput();
+        }
+        if (limit == start) {
+            return null;
+        }
+        if (limit - start < 10 || !isStreamStart(start)) {
+            if (members == 0) {
+                throw new IOException("stream is not bzip2");
+            }
+            // trailing garbage
+            return null;
+        }
+        if (scan < start + 10) {
+            scan = start + 10;
+        }
+        while (true) {
+            for (; scan + 10 <= limit; scan++) {
+                if (buf[scan] == 'B' && isStreamStart(scan)) {
+                    return cut(scan);
+                }
+            }
+            if (eof) {
+                return cut(limit);
+            }
+            if (limit - start >= MAX_MEMBER_SIZE) {
+                in = new SequenceInputStream(new ByteArrayInputStream(Arrays.copyOfRange(buf, start, limit)), in);
+                start = scan = limit = 0;
+                remainder(new Bzip2InputStream(in));
+                return null;
+            }
+            readInput();
+        }
+    }
+
+    @Override
+    protected byte[] decompress(byte[] member) throws IOException {
+        Bzip2InputStream bzin = new Bzip2InputStream(new ByteArrayInputStream(member));
+        ByteArrayOutputStream out = new ByteArrayOutputStream(member.length * 4);
+        byte[] b = new byte[65536];
+        int n;
+        while ((n = bzin.read(b, 0, b.length)) != -1) {
+            out.write(b, 0, n);
+        }
+        return out.toByteArray();
+    }
+
+    @Override
+    protected void closeInput() throws IOException {
+        in.close();
+    }
+
+    private byte[] cut(int end) {
+        byte[] member = Arrays.copyOfRange(buf, start, end);
+        start = end;
+        members++;
+        return member;
+    }
+
+    private void readInput() throws IOException {
+        if (limit == buf.length) {
+            if (start > 0) {
+                System.arraycopy(buf, start, buf, 0, limit - start);
+                limit -= start;
+                scan -= start;
+                start = 0;
+            } else {
+                buf = Arrays.copyOf(buf, buf.length * 2);
+            }
+        }
+        int n = in.read(buf, limit, buf.length - limit);
+        if (n == -1) {
+            eof = true;
+        } else {
+            limit += n;
+        }
+    }
+
+    private boolean isStreamStart(int i) {
+        if (buf[i] != 'B' || buf[i + 1] != 'Z' || buf[i + 2] != 'h' || buf[i + 3] < '1' || buf[i + 3] > '9') {
+            return false;
+        }
+        byte[] magic = buf[i + 4] == BLOCK_MAGIC[0] ? BLOCK_MAGIC : EOS_MAGIC;
+        for (int j = 0; j < 6; j++) {
+            if (buf[i + 4 + j] != magic[j]) {
+                return false;
+            }
+        }
+        return true;
+    }
+}
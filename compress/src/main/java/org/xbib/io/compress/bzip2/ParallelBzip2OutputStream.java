@@ -0,0 +1,58 @@
+
+package org.xbib.io.compress.bzip2;
+
+import org.xbib.io.compress.ParallelBlockOutputStream;
+
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.util.concurrent.ExecutorService;
+
+/**
+ * Writes a multi-stream bzip2 file with the streams compressed in parallel. Every block of
+ * 900k is a complete bzip2 stream, like pbzip2 writes them.
+ */
+public class ParallelBzip2OutputStream extends ParallelBlockOutputStream {
+
+    public final static int DEFAULT_BLOCK_SIZE = 900000;
+
+    /**
+     * A stream without blocks, BZip2Deflate can not compress empty input.
+     */
+    private final static byte[] EMPTY_STREAM = {
+            'B', 'Z', 'h', '9', 0x17, 0x72, 0x45, 0x38, 0x50, (byte) 0x90, 0, 0, 0, 0
+    };
+
+    public ParallelBzip2OutputStream(OutputStream out) {
+        this(out, DEFAULT_BLOCK_SIZE);
+    }
+
+    public ParallelBzip2OutputStream(OutputStream out, int blockSize) {
+        this(out, blockSize, Runtime.getRuntime().availableProcessors());
+    }
+
+    public ParallelBzip2OutputStream(OutputStream out, int blockSize, int threads) {
+        super(out, blockSize, threads);
+    }
+
+    public ParallelBzip2OutputStream(OutputStream out, int blockSize, ExecutorService executor, int maxPending) {
+        super(out, blockSize, executor, maxPending);
+    }
+
+    @Override
+    protected byte[] compress(byte[] b, int len) throws IOException {
+        if (len == 0) {
+            return EMPTY_STREAM.clone();
+        }
+        ByteArrayOutputStream out = new ByteArrayOutputStream(len / 4 + 64);
+        BZip2Deflate deflater = new BZip2Deflate(9, 65536, true);
+        deflater.setInput(b, 0, len);
+        deflater.finish();
+        byte[] buf = new byte[65536];
+        int n;
+        while ((n = deflater.deflate(buf)) > 0) {
+            out.write(buf, 0, n);
+        }
+        return out.toByteArray();
+    }
+}
@@ -0,0 +1,157 @@
+
+package org.xbib.io.compress.gzip;
+
+import org.xbib.io.compress.ParallelBlockInputStream;
+
+import java.io.EOFException;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.PushbackInputStream;
+import java.util.concurrent.ExecutorService;
+import java.util.zip.CRC32;
+import java.util.zip.DataFormatException;
+import java.util.zip.GZIPInputStream;
+import java.util.zip.Inflater;
+import java.util.zip.ZipException;
+
+import static org.xbib.io.compress.gzip.ParallelGzipOutputStream.HEADER_LENGTH;
+import static org.xbib.io.compress.gzip.ParallelGzipOutputStream.MAX_BLOCK_SIZE;
+import static org.xbib.io.compress.gzip.ParallelGzipOutputStream.SI1;
+import static org.xbib.io.compress.gzip.ParallelGzipOutputStream.SI2;
+
+/**
+ * Reads a multi-member gzip stream and inflates the members written by {@link ParallelGzipOutputStream}
+ * in parallel. From the first member without the member length on, the input is read by a
+ * {@link GZIPInputStream}, so any gzip stream can be read.
+ */
+public class ParallelGzipInputStream extends ParallelBlockInputStream {
+
+    /**
+     * The largest member length accepted from the member header, the deflated maximum block
+     * with the worst case expansion of stored blocks and the member header and trailer.
+     * A member with a larger length is read by a {@link GZIPInputStream}.
+     */
+    public final static int MAX_MEMBER_LENGTH = MAX_BLOCK_SIZE + MAX_BLOCK_SIZE / 1000 + 1024;
+
+    private final PushbackInputStream in;
+
+    private final int bufsize;
+
+    private long members;
+
+    private boolean sequential;
+
+    public ParallelGzipInputStream(InputStream in) {
+        this(in, 8192);
+    }
+
+    public ParallelGzipInputStream(InputStream in, int bufsize) {
+        this(in, bufsize, Runtime.getRuntime().availableProcessors());
+    }
+
+    public ParallelGzipInputStream(InputStream in, int bufsize, int threads) {
+        super(threads);
+        this.in = new PushbackInputStream(in, HEADER_LENGTH);
+        this.bufsize = bufsize;
+    }
+
+    public ParallelGzipInputStream(InputStream in, int bufsize, ExecutorService executor, int readAhead) {
+        super(executor, readAhead);
+        this.in = new PushbackInputStream(in, HEADER_LENGTH);
+        this.bufsize = bufsize;
+    }
+
+    @Override
+    protected byte[] readMember() throws IOException {
+        if (sequential) {
+            return null;
+        }
+        byte[] header = new byte[HEADER_LENGTH];
+        int n = readFully(header, 0, 10);
+        if (n == 0) {
+            return null;
+        }
+        if (members > 0 && (n < 2 || header[0] != (byte) 0x1f || header[1] != (byte) 0x8b)) {
+            // trailing garbage, ignored like GZIPInputStream does
+            return null;
+        }
+        if (n == 10 && header[2] == 8 && header[3] == 4) {
+            n += readFully(header, 10, HEADER_LENGTH - 10);
+            if (n == HEADER_LENGTH && header[10] == 8 && header[11] == 0
+                    && header[12] == SI1 && header[13] == SI2 && header[14] == 4 && header[15] == 0) {
+                int length = getInt(header, 16);
+                if (length > HEADER_LENGTH + 8 && length <= MAX_MEMBER_LENGTH) {
+                    byte[] member = new byte[length];
+                    System.arraycopy(header, 0, member, 0, HEADER_LENGTH);
+                    if (readFully(member, HEADER_LENGTH, length - HEADER_LENGTH) < length - HEADER_LENGTH) {
+                        throw new EOFException("unexpected end of gzip stream");
+                    }
+                    members++;
+                    return member;
+                }
+            }
+        }
+        in.unread(header, 0, n);
+        sequential = true;
+        remainder(new GZIPInputStream(in, bufsize));
+        return null;
+    }
+
+    @Override
+    protected byte[] decompress(byte[] member) throws IOException {
+        int off = 12 + ((member[10] & 0xff) | (member[11] & 0xff) << 8);
+        int len = member.length - off - 8;
+        int crc = getInt(member, member.length - 8);
+        int size = getInt(member, member.length - 4);
+        if (len < 0 || size < 0 || size > MAX_BLOCK_SIZE) {
+            throw new ZipException("corrupt gzip member");
+        }
+        byte[] b = new byte[size];
+        Inflater inflater = new Inflater(true);
+        try {
+            inflater.setInput(member, off, len);
+            int n = 0;
+            while (n < size) {
+                int i = inflater.inflate(b, n, size - n);
+                if (i == 0 && (inflater.finished() || inflater.needsInput() || inflater.needsDictionary())) {
+                    break;
+                }
+                n += i;
+            }
+            if (n < size || !inflater.finished() && (inflater.inflate(new byte[1]) > 0 || !inflater.finished())) {
+                throw new ZipException("corrupt gzip member");
+            }
+        } catch (DataFormatException e) {
+            throw new ZipException(e.getMessage());
+        } finally {
+            inflater.end();
+        }
+        CRC32 crc32 = new CRC32();
+        crc32.update(b, 0, size);
+        if ((int) crc32.getValue() != crc) {
+            throw new ZipException("corrupt gzip trailer");
+        }
+        return b;
+    }
+
+    @Override
+    protected void closeInput() throws IOException {
+        in.close();
+    }
+
+    private int readFully(byte[] b, int off, int len) throws IOException {
+        int n = 0;
+        while (n < len) {
+            int i = in.read(b, off + n, len - n);
+            if (i == -1) {
+                break;
+            }
+            n += i;
+        }
+        return n;
+    }
+
+    private static int getInt(byte[] b, int off) {
+        return (b[off] & 0xff) | (b[off + 1] & 0xff) << 8 | (b[off + 2] & 0xff) << 16 | (b[off + 3] & 0xff) << 24;
+    }
+}
@@ -0,0 +1,108 @@
+
+package org.xbib.io.compress.gzip;
+
+import org.xbib.io.compress.ParallelBlockOutputStream;
+
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.util.concurrent.ExecutorService;
+import java.util.zip.CRC32;
+import java.util.zip.Deflater;
+
+/**
+ * Writes a multi-member gzip stream (RFC 1952) with the members compressed in parallel.
+ *
+ * Each member carries the extra field subfield "xb" with the length of the member, so
+ * the {@link ParallelGzipInputStream} can cut the members out of the input without inflating them.
+ * Other gzip decoders skip the extra field and read the stream as usual.
+ */
+public class ParallelGzipOutputStream extends ParallelBlockOutputStream {
+
+    public final static int DEFAULT_BLOCK_SIZE = 1 << 20;
+
+    /**
+     * The largest block size, which bounds the member size a reader must accept.
+     */
+    public final static int MAX_BLOCK_SIZE = 1 << 26;
+
+    final static int HEADER_LENGTH = 20;
+
+    final static byte SI1 = 'x';
+
+    final static byte SI2 = 'b';
+
+    private final int level;
+
+    public ParallelGzipOutputStream(OutputStream out) {
+        this(out, DEFAULT_BLOCK_SIZE);
+    }
+
+    public ParallelGzipOutputStream(OutputStream out, int blockSize) {
+        this(out, blockSize, Runtime.getRuntime().availableProcessors(), Deflater.DEFAULT_COMPRESSION);
+    }
+
+    public ParallelGzipOutputStream(OutputStream out, int blockSize, int threads, int level) {
+        super(out, checkBlockSize(blockSize), threads);
+        this.level = level;
+    }
+
+    public ParallelGzipOutputStream(OutputStream out, int blockSize, ExecutorService executor, int maxPending,
+                                    int level) {
+        super(out, checkBlockSize(blockSize), executor, maxPending);
+        this.level = level;
+    }
+
+    @Override
+    protected byte[] compress(byte[] b, int len) throws IOException {
+        ByteArrayOutputStream out = new ByteArrayOutputStream(len / 2 + 64);
+        out.write(new byte[HEADER_LENGTH]);
+        Deflater deflater = new Deflater(level, true);
+        try {
+            deflater.setInput(b, 0, len);
+            deflater.finish();
+            byte[] buf = new byte[65536];
+            while (!deflater.finished()) {
+                int n = deflater.deflate(buf);
+                out.write(buf, 0, n);
+            }
+        } finally {
+            deflater.end();
+        }
+        CRC32 crc = new CRC32();
+        crc.update(b, 0, len);
+        writeInt(out, (int) crc.getValue());
+        writeInt(out, len);
+        byte[] member = out.toByteArray();
+        // ID1, ID2, CM = deflate, FLG = FEXTRA, MTIME = 0, XFL = 0, OS = unknown
+        member[0] = (byte) 0x1f;
+        member[1] = (byte) 0x8b;
+        member[2] = 8;
+        member[3] = 4;
+        member[9] = (byte) 0xff;
+        // XLEN, then the subfield with SI1, SI2, LEN and the member length
+        member[10] = 8;
+        member[12] = SI1;
+        member[13] = SI2;
+        member[14] = 4;
+        member[16] = (byte) member.length;
+        member[17] = (byte) (member.length >>> 8);
+        member[18] = (byte) (member.length >>> 16);
+        member[19] = (byte) (member.length >>> 24);
+        return member;
+    }
+
+    private static int checkBlockSize(int blockSize) {
+        if (blockSize > MAX_BLOCK_SIZE) {
+            throw new IllegalArgumentException("block size too large: " + blockSize);
+        }
+        return blockSize;
+    }
+
+    private static void writeInt(ByteArrayOutputStream out, int i) {
+        out.write(i);
+        out.write(i >>> 8);
+        out.write(i >>> 16);
+        out.write(i >>> 24);
+    }
+}
@@ -0,0 +1,413 @@
+
+package org.xbib.io.compress.xz;
+
+import org.xbib.io.compress.xz.check.Check;
+import org.xbib.io.compress.xz.common.StreamFlags;
+import org.xbib.io.compress.xz.index.IndexEncoder;
+
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.InterruptedIOException;
+import java.io.OutputStream;
+import java.util.LinkedList;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.ThreadFactory;
+
+/**
+ * Compresses into the .xz file format with one XZ Block for every
+ * <code>blockSize</code> bytes of input. The Blocks are encoded in parallel
+ * and written in order, followed by an Index that lists all Blocks.
+ * <p/>
+ * The output can be read by every XZ decoder, and because the Index knows
+ * every Block, {@link SeekableXZInputStream} can decompress any byte range
+ * by decompressing only the Blocks covering it.
+ * <p/>
+ * Each thread needs the encoder memory of the filter chain (about 94&nbsp;MiB
+ * for the LZMA2 preset 6) plus two Blocks of input and output.
+ * <p/>
+ * <h4>Example</h4>
+ * <p><blockquote><pre>
+ * FileOutputStream outfile = new FileOutputStream("foo.xz");
+ * ParallelXZOutputStream outxz = new ParallelXZOutputStream(outfile,
+ *         new FilterOptions[] { new LZMA2Options() }, XZ.CHECK_CRC64,
+ *         4 &lt;&lt; 20, 4);
+ * </pre></blockquote>
+ */
+public class ParallelXZOutputStream extends FinishableOutputStream {
+    private OutputStream out;
+    private final StreamFlags streamFlags = new StreamFlags();
+    private final IndexEncoder index = new IndexEncoder();
+    private final FilterEncoder[] filters;
+    private final int blockSize;
+    private final ExecutorService executor;
+    private final boolean shutdownExecutor;
+    private final int maxPending;
+    private final LinkedList<Future<EncodedBlock>> pending = new LinkedList<Future<EncodedBlock>>();
+
+    private byte[] buffer;
+    private int count = 0;
+
+    private IOException exception = null;
+    private boolean finished = false;
+
+    /**
+     * Creates a new parallel XZ compressor using one filter, CRC64 as
+     * the integrity check, the default Block size and one thread for
+     * every available processor.
+     *
+     * @param out           output stream to which the compressed data
+     *                      will be written
+     * @param filterOptions filter options to use
+     * @throws UnsupportedOptionsException invalid filter chain
+     * @throws java.io.IOException         may be thrown from <code>out</code>
+     */
+    public ParallelXZOutputStream(OutputStream out, FilterOptions filterOptions)
+            throws IOException {
+        this(out, new FilterOptions[]{filterOptions}, XZ.CHECK_CRC64,
+                getDefaultBlockSize(filterOptions),
+                Runtime.getRuntime().availableProcessors());
+    }
+
+    /**
+     * Creates a new parallel XZ compressor with its own threads.
+     *
+     * @param out           output stream to which the compressed data
+     *                      will be written
+     * @param filterOptions array of filter options to use
+     * @param checkType     type of the integrity check,
+     *                      for example XZ.CHECK_CRC32
+     * @param blockSize     uncompressed size of a XZ Block
+     * @param threads       number of encoder threads
+     * @throws UnsupportedOptionsException invalid filter chain
+     * @throws java.io.IOException         may be thrown from <code>out</code>
+     */
+    public ParallelXZOutputStream(OutputStream out, FilterOptions[] filterOptions,
+                                  int checkType, int blockSize, int threads)
+            throws IOException {
+        this(out, filterOptions, checkType, blockSize,
+                Executors.newFixedThreadPool(threads, daemonThreadFactory()),
+                true, 2 * threads);
+    }
+
+    /**
+     * Creates a new parallel XZ compressor that encodes on the given executor.
+     * The executor is not shut down by this stream.
+     *
+     * @param out           output stream to which the compressed data
+     *                      will be written
+     * @param filterOptions array of filter options to use
+     * @param checkType     type of the integrity check,
+     *                      for example XZ.CHECK_CRC32
+     * @param blockSize     uncompressed size of a XZ Block
+     * @param executor      executor for encoding the Blocks
+     * @param maxPending    maximum number of Blocks being encoded
+     * @throws UnsupportedOptionsException invalid filter chain
+     * @throws java.io.IOException         may be thrown from <code>out</code>
+     */
+    public ParallelXZOutputStream(OutputStream out, FilterOptions[] filterOptions,
+                                  int checkType, int blockSize,
+                                  ExecutorService executor, int maxPending)
+            throws IOException {
+        this(out, filterOptions, checkType, blockSize, executor, false, maxPending);
+    }
+
+    private ParallelXZOutputStream(OutputStream out, FilterOptions[] filterOptions,
+                                   int checkType, int blockSize,
+                                   ExecutorService executor, boolean shutdownExecutor,
+                                   int maxPending)
+            throws IOException {
+        if (filterOptions.length < 1 || filterOptions.length > 4) {
+            throw new UnsupportedOptionsException(
+                    "XZ filter chain must be 1-4 filters");
+        }
+
+        if (blockSize < 1) {
+            throw new UnsupportedOptionsException(
+                    "XZ Block size must be positive");
+        }
+
+        FilterEncoder[] newFilters = new FilterEncoder[filterOptions.length];
+        for (int i = 0; i < filterOptions.length; ++i) {
+            newFilters[i] = filterOptions[i].getFilterEncoder();
+        }
+
+        RawCoder.validate(newFilters);
+
+        // Fail early on an unsupported check type.
+        Check.getInstance(checkType);
+
+        this.out = out;
+        this.filters = newFilters;
+        this.blockSize = blockSize;
+        this.executor = executor;
+        this.shutdownExecutor = shutdownExecutor;
+        this.maxPending = Math.max(1, maxPending);
+        this.buffer = new byte[blockSize];
+
+        streamFlags.checkType = checkType;
+        XZOutputStream.encodeStreamHeader(out, streamFlags);
+    }
+
+    /**
+     * Gets the default Block size for a filter chain: three times the LZMA2
+     * dictionary size, but at least 1&nbsp;MiB.
+     *
+     * @param filterOptions filter options
+     * @return the Block size
+     */
+    public static int getDefaultBlockSize(FilterOptions filterOptions) {
+        int dictSize = filterOptions instanceof LZMA2Options
+                ? ((LZMA2Options) filterOptions).getDictSize()
+                : LZMA2Options.DICT_SIZE_DEFAULT;
+        return (int) Math.min(Math.max(3L * dictSize, 1 << 20), 1 << 30);
+    }
+
+    public int getBlockSize() {
+        return blockSize;
+    }
+
+    /**
+     * Writes one byte to be compressed.
+     *
+     * @throws XZIOException       <code>finish()</code> or <code>close()</code>
+     *                             was already called
+     * @throws java.io.IOException may be thrown by the underlying output stream
+     */
+    public void write(int b) throws IOException {
+        byte[] buf = new byte[]{(byte) b};
+        write(buf, 0, 1);
+    }
+
+    /**
+     * Writes an array of bytes to be compressed. A Block is handed to
+     * the encoder threads when it is full.
+     *
+     * @param buf buffer of bytes to be written
+     * @param off start offset in <code>buf</code>
+     * @param len number of bytes to write
+     * @throws XZIOException       XZ Stream has grown too big
+     * @throws XZIOException       <code>finish()</code> or <code>close()</code>
+     *                             was already called and len &gt; 0
+     * @throws java.io.IOException may be thrown by the underlying output stream
+     */
+    public void write(byte[] buf, int off, int len) throws IOException {
+        if (off < 0 || len < 0 || off + len < 0 || off + len > buf.length) {
+            throw new IndexOutOfBoundsException();
+        }
+
+        if (exception != null) {
+            throw exception;
+        }
+
+        if (finished) {
+            throw new XZIOException("Stream finished or closed");
+        }
+
+        try {
+            while (len > 0) {
+                int n = Math.min(len, blockSize - count);
+                System.arraycopy(buf, off, buffer, count, n);
+                count += n;
+                off += n;
+                len -= n;
+                if (count == blockSize) {
+                    submit();
+                }
+            }
+        } catch (IOException e) {
+            exception = e;
+            throw e;
+        }
+    }
+
+    /**
+     * Finishes the current XZ Block early. The next byte written starts
+     * a new Block. If there is no unfinished Block open, this function
+     * will do nothing.
+     *
+     * @throws XZIOException       XZ Stream has grown too big
+     * @throws XZIOException       stream finished or closed
+     * @throws java.io.IOException may be thrown by the underlying output stream
+     */
+    public void endBlock() throws IOException {
+        if (exception != null) {
+            throw exception;
+        }
+
+        if (finished) {
+            throw new XZIOException("Stream finished or closed");
+        }
+
+        if (count > 0) {
+            try {
+                submit();
+            } catch (IOException e) {
+                exception = e;
+                throw e;
+            }
+        }
+    }
+
+    /**
+     * Finishes the current XZ Block, waits for all Blocks to be written
+     * and calls <code>out.flush()</code>.
+     *
+     * @throws XZIOException       XZ Stream has grown too big
+     * @throws XZIOException       stream finished or closed
+     * @throws java.io.IOException may be thrown by the underlying output stream
+     */
+    public void flush() throws IOException {
+        endBlock();
+
+        try {
+            while (!pending.isEmpty()) {
+                writeNext();
+            }
+            out.flush();
+        } catch (IOException e) {
+            exception = e;
+            throw e;
+        }
+    }
+
+    /**
+     * Finishes compression without closing the underlying stream.
+     * No more data can be written to this stream after finishing.
+     *
+     * @throws XZIOException       XZ Stream has grown too big
+     * @throws java.io.IOException may be thrown by the underlying output stream
+     */
+    public void finish() throws IOException {
+        if (!finished) {
+            endBlock();
+
+            try {
+                while (!pending.isEmpty()) {
+                    writeNext();
+                }
+                index.encode(out);
+                XZOutputStream.encodeStreamFooter(out, streamFlags, index);
+            } catch (IOException e) {
+                exception = e;
+                throw e;
+            }
+
+            finished = true;
+            buffer = null;
+            if (shutdownExecutor) {
+                executor.shutdown();
+            }
+        }
+    }
+
+    /**
+     * Finishes compression and closes the underlying stream.
+     * The underlying stream <code>out</code> is closed even if finishing
+     * fails.
+     *
+     * @throws XZIOException       XZ Stream has grown too big
+     * @throws java.io.IOException may be thrown by the underlying output stream
+     */
+    public void close() throws IOException {
+        if (out != null) {
+            try {
+                finish();
+            } catch (IOException e) {
+            }
+
+            for (Future<EncodedBlock> future : pending) {
+                future.cancel(true);
+            }
+            pending.clear();
+            if (shutdownExecutor) {
+                executor.shutdown();
+            }
+
+            try {
+                out.close();
+            } catch (IOException e) {
+                if (exception == null) {
+                    exception = e;
+                }
+            }
+
+            out = null;
+        }
+
+        if (exception != null) {
+            throw exception;
+        }
+    }
+
+    private void submit() throws IOException {
+        while (pending.size() >= maxPending) {
+            writeNext();
+        }
+
+        final byte[] b = buffer;
+        final int len = count;
+        pending.add(executor.submit(new Callable<EncodedBlock>() {
+            public EncodedBlock call() throws IOException {
+                return encode(b, len);
+            }
+        }));
+
+        buffer = new byte[blockSize];
+        count = 0;
+    }
+
+    private void writeNext() throws IOException {
+        EncodedBlock block;
+        try {
+            block = pending.removeFirst().get();
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new InterruptedIOException();
+        } catch (ExecutionException e) {
+            if (e.getCause() instanceof IOException) {
+                throw (IOException) e.getCause();
+            }
+            throw new XZIOException(String.valueOf(e.getCause()));
+        }
+
+        out.write(block.data);
+        index.add(block.unpaddedSize, block.uncompressedSize);
+    }
+
+    private EncodedBlock encode(byte[] b, int len) throws IOException {
+        ByteArrayOutputStream bufStream = new ByteArrayOutputStream(len / 2 + 64);
+        BlockOutputStream blockEncoder = new BlockOutputStream(bufStream, filters,
+                Check.getInstance(streamFlags.checkType));
+        blockEncoder.write(b, 0, len);
+        blockEncoder.finish();
+        return new EncodedBlock(bufStream.toByteArray(),
+                blockEncoder.getUnpaddedSize(),
+                blockEncoder.getUncompressedSize());
+    }
+
+    private static ThreadFactory daemonThreadFactory() {
+        return new ThreadFactory() {
+            public Thread newThread(Runnable r) {
+                Thread thread = new Thread(r, "xz-encoder");
+                thread.setDaemon(true);
+                return thread;
+            }
+        };
+    }
+
+    private static class EncodedBlock {
+        final byte[] data;
+        final long unpaddedSize;
+        final long uncompressedSize;
+
+        EncodedBlock(byte[] data, long unpaddedSize, long uncompressedSize) {
+            this.data = data;
+            this.unpaddedSize = unpaddedSize;
+            this.uncompressedSize = uncompressedSize;
+        }
+    }
+}
@@ -0,0 +1,630 @@
+
+package org.xbib.io.compress.xz;
+
+import org.xbib.io.compress.xz.check.Check;
+import org.xbib.io.compress.xz.common.DecoderUtil;
+import org.xbib.io.compress.xz.common.StreamFlags;
+import org.xbib.io.compress.xz.index.BlockInfo;
+import org.xbib.io.compress.xz.index.IndexDecoder;
+
+import java.io.ByteArrayInputStream;
+import java.io.DataInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.InterruptedIOException;
+import java.util.ArrayList;
+import java.util.LinkedList;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.ThreadFactory;
+
+/**
+ * Decompresses a .xz file in random access mode.
+ * <p/>
+ * The Indexes of all Streams in the file are read when the stream is
+ * created. Reading at a position decompresses only the XZ Blocks that
+ * cover it. Blocks are decompressed on worker threads: sequential reading
+ * decompresses the following Blocks ahead, and
+ * {@link #read(long, byte[], int, int)} decompresses all Blocks of
+ * a byte range concurrently.
+ * <p/>
+ * Random access is only efficient if the file has many small Blocks,
+ * as written by {@link ParallelXZOutputStream}. Blocks larger than
+ * {@link #setMaxBufferedBlockSize(int)}, for example the single Block of
+ * a file compressed by a single-threaded encoder, are decompressed
+ * sequentially from the start of the Block.
+ */
+public class SeekableXZInputStream extends SeekableInputStream {
+    /**
+     * Blocks up to this uncompressed size are decompressed into memory
+     * on the worker threads by default.
+     */
+    public static final int MAX_BUFFERED_BLOCK_SIZE = 64 << 20;
+
+    private SeekableInputStream in;
+    private final int memoryLimit;
+    private final ExecutorService executor;
+    private final boolean shutdownExecutor;
+    private final int readAhead;
+
+    /**
+     * Block positions in the file, Unpadded Sizes, uncompressed start
+     * positions and sizes, and check types, in file order.
+     */
+    private final long[] compressedOffset;
+    private final long[] unpaddedSize;
+    private final long[] uncompressedOffset;
+    private final long[] uncompressedSize;
+    private final int[] checkType;
+    private final long length;
+
+    /**
+     * Blocks being decompressed ahead, starting at <code>pendingBlock</code>.
+     */
+    private final LinkedList<Future<byte[]>> pending = new LinkedList<Future<byte[]>>();
+    private int pendingBlock = -1;
+
+    /**
+     * The buffered Block at <code>currentBlock</code>.
+     */
+    private byte[] current = null;
+    private int currentBlock = -1;
+
+    /**
+     * Sequential decoder of a large Block.
+     */
+    private InputStream largeDecoder = null;
+    private int largeBlock = -1;
+    private long largePos = 0;
+
+    private long pos = 0;
+    private IOException exception = null;
+    private int maxBufferedBlockSize = MAX_BUFFERED_BLOCK_SIZE;
+
+    /**
+     * Creates a new seekable XZ decompressor with one thread for every
+     * available processor and without a memory usage limit.
+     *
+     * @param in seekable input stream containing one or more XZ Streams
+     * @throws XZFormatException           input is not in the XZ format
+     * @throws CorruptedInputException     XZ data is corrupt or truncated
+     * @throws UnsupportedOptionsException XZ headers seem valid but they
+     *                                     specify options not supported
+     *                                     by this implementation
+     * @throws java.io.IOException         may be thrown by <code>in</code>
+     */
+    public SeekableXZInputStream(SeekableInputStream in) throws IOException {
+        this(in, -1, Runtime.getRuntime().availableProcessors());
+    }
+
+    /**
+     * Creates a new seekable XZ decompressor with its own threads.
+     *
+     * @param in          seekable input stream containing one or more
+     *                    XZ Streams
+     * @param memoryLimit memory usage limit in kibibytes (KiB) for
+     *                    a single Block or <code>-1</code> to impose
+     *                    no memory usage limit
+     * @param threads     number of decoder threads
+     * @throws java.io.IOException see above
+     */
+    public SeekableXZInputStream(SeekableInputStream in, int memoryLimit,
+                                 int threads) throws IOException {
+        this(in, memoryLimit,
+                Executors.newFixedThreadPool(threads, daemonThreadFactory()),
+                true, 2 * threads);
+    }
+
+    /**
+     * Creates a new seekable XZ decompressor that decodes on the given
+     * executor. The executor is not shut down by this stream.
+     *
+     * @param in          seekable input stream containing one or more
+     *                    XZ Streams
+     * @param memoryLimit memory usage limit in kibibytes (KiB) for
+     *                    a single Block or <code>-1</code> to impose
+     *                    no memory usage limit
+     * @param executor    executor for decoding the Blocks
+     * @param readAhead   number of Blocks decoded ahead when reading
+     *                    sequentially
+     * @throws java.io.IOException see above
+     */
+    public SeekableXZInputStream(SeekableInputStream in, int memoryLimit,
+                                 ExecutorService executor, int readAhead)
+            throws IOException {
+        this(in, memoryLimit, executor, false, readAhead);
+    }
+
+    private SeekableXZInputStream(SeekableInputStream in, int memoryLimit,
+                                  ExecutorService executor,
+                                  boolean shutdownExecutor, int readAhead)
+            throws IOException {
+        this.in = in;
+        this.memoryLimit = memoryLimit;
+        this.executor = executor;
+        this.shutdownExecutor = shutdownExecutor;
+        this.readAhead = Math.max(1, readAhead);
+
+        // Read the Streams from the end of the file to the beginning.
+        ArrayList<long[]> blocks = new ArrayList<long[]>();
+        DataInputStream inData = new DataInputStream(in);
+        byte[] buf = new byte[DecoderUtil.STREAM_HEADER_SIZE];
+        long streamEnd = in.length();
+        if ((streamEnd & 3) != 0) {
+            throw new CorruptedInputException(
+                    "XZ file size is not a multiple of 4 bytes");
+        }
+
+        long streamPadding = 0;
+        while (streamEnd > 0) {
+            if (streamEnd < DecoderUtil.STREAM_HEADER_SIZE) {
+                throw new CorruptedInputException();
+            }
+
+            in.seek(streamEnd - DecoderUtil.STREAM_HEADER_SIZE);
+            inData.readFully(buf);
+
+            // Stream Padding is a multiple of four null bytes.
+            if (buf[8] == 0x00 && buf[9] == 0x00 && buf[10] == 0x00
+                    && buf[11] == 0x00) {
+                streamPadding += 4;
+                streamEnd -= 4;
+                continue;
+            }
+
+            StreamFlags streamFooterFlags = DecoderUtil.decodeStreamFooter(buf);
+            long indexPos = streamEnd - DecoderUtil.STREAM_HEADER_SIZE
+                    - streamFooterFlags.backwardSize;
+            if (indexPos < DecoderUtil.STREAM_HEADER_SIZE) {
+                throw new CorruptedInputException(
+                        "Backward Size in XZ Stream Footer is too big");
+            }
+
+            in.seek(indexPos);
+            IndexDecoder index = new IndexDecoder(in, streamFooterFlags,
+                    streamPadding, memoryLimit);
+
+            long streamStart = streamEnd - index.getStreamSize();
+            if (streamStart < 0) {
+                throw new CorruptedInputException(
+                        "XZ Index indicates too big compressed size "
+                                + "for the XZ Stream");
+            }
+
+            in.seek(streamStart);
+            inData.readFully(buf);
+            StreamFlags streamHeaderFlags = DecoderUtil.decodeStreamHeader(buf);
+            if (!DecoderUtil.areStreamFlagsEqual(streamHeaderFlags,
+                    streamFooterFlags)) {
+                throw new CorruptedInputException(
+                        "XZ Stream Footer does not match Stream Header");
+            }
+
+            // Fail early on an unsupported check type.
+            Check.getInstance(streamHeaderFlags.checkType);
+
+            ArrayList<long[]> streamBlocks = new ArrayList<long[]>();
+            while (index.hasNext()) {
+                BlockInfo info = index.getNext();
+                streamBlocks.add(new long[]{
+                        streamStart + info.compressedOffset,
+                        info.unpaddedSize,
+                        info.uncompressedSize,
+                        streamHeaderFlags.checkType});
+            }
+            blocks.addAll(0, streamBlocks);
+
+            streamEnd = streamStart;
+            streamPadding = 0;
+        }
+
+        int n = blocks.size();
+        compressedOffset = new long[n];
+        unpaddedSize = new long[n];
+        uncompressedOffset = new long[n];
+        uncompressedSize = new long[n];
+        checkType = new int[n];
+        long sum = 0;
+        for (int i = 0; i < n; ++i) {
+            long[] block = blocks.get(i);
+            compressedOffset[i] = block[0];
+            unpaddedSize[i] = block[1];
+            uncompressedOffset[i] = sum;
+            uncompressedSize[i] = block[2];
+            checkType[i] = (int) block[3];
+            sum += block[2];
+        }
+        length = sum;
+    }
+
+    /**
+     * Sets the largest uncompressed Block size that is decompressed into
+     * memory. Larger Blocks are decompressed sequentially.
+     *
+     * @param maxBufferedBlockSize size in bytes
+     */
+    public void setMaxBufferedBlockSize(int maxBufferedBlockSize) {
+        this.maxBufferedBlockSize = maxBufferedBlockSize;
+        for (Future<byte[]> future : pending) {
+            future.cancel(true);
+        }
+        pending.clear();
+        pendingBlock = -1;
+        current = null;
+        currentBlock = -1;
+    }
+
+    /**
+     * Gets the number of XZ Blocks in the file.
+     */
+    public int getBlockCount() {
+        return compressedOffset.length;
+    }
+
+    /**
+     * Gets the uncompressed size of the file.
+     */
+    public long length() throws IOException {
+        ensureOpen();
+        return length;
+    }
+
+    /**
+     * Gets the current uncompressed position.
+     */
+    public long position() throws IOException {
+        ensureOpen();
+        return pos;
+    }
+
+    /**
+     * Seeks to an uncompressed position. No decompression happens before
+     * the next read.
+     *
+     * @param pos new uncompressed read position
+     * @throws XZIOException       if <code>pos</code> is negative, or
+     *                             if stream has been closed
+     */
+    public void seek(long pos) throws IOException {
+        ensureOpen();
+        if (pos < 0) {
+            throw new XZIOException("Negative seek position: " + pos);
+        }
+        this.pos = pos;
+    }
+
+    public int read() throws IOException {
+        byte[] buf = new byte[1];
+        return read(buf, 0, 1) == -1 ? -1 : (buf[0] & 0xFF);
+    }
+
+    /**
+     * Decompresses into an array of bytes from the current position,
+     * decompressing the following Blocks ahead.
+     *
+     * @param buf target buffer for uncompressed data
+     * @param off start offset in <code>buf</code>
+     * @param len maximum number of uncompressed bytes to read
+     * @return number of bytes read, or <code>-1</code> to indicate
+     * the end of the compressed stream
+     * @throws java.io.IOException see the constructor
+     */
+    public int read(byte[] buf, int off, int len) throws IOException {
+        if (off < 0 || len < 0 || off + len < 0 || off + len > buf.length) {
+            throw new IndexOutOfBoundsException();
+        }
+
+        ensureOpen();
+
+        if (len == 0) {
+            return 0;
+        }
+
+        if (pos >= length) {
+            return -1;
+        }
+
+        try {
+            int block = locate(pos);
+            int n;
+            if (uncompressedSize[block] > maxBufferedBlockSize) {
+                n = readLarge(block, pos, buf, off, len);
+            } else {
+                if (block != currentBlock) {
+                    current = next(block);
+                    currentBlock = block;
+                }
+                int start = (int) (pos - uncompressedOffset[block]);
+                n = Math.min(len, current.length - start);
+                System.arraycopy(current, start, buf, off, n);
+            }
+            pos += n;
+            return n;
+        } catch (IOException e) {
+            exception = e;
+            throw e;
+        }
+    }
+
+    /**
+     * Decompresses a byte range without changing the current position.
+     * All Blocks covering the range are decompressed concurrently.
+     *
+     * @param pos uncompressed position of the first byte
+     * @param buf target buffer for uncompressed data
+     * @param off start offset in <code>buf</code>
+     * @param len maximum number of uncompressed bytes to read
+     * @return number of bytes read, which is less than <code>len</code>
+     * only at the end of the file, or <code>-1</code> if
+     * <code>pos</code> is at or after the end of the file
+     * @throws java.io.IOException see the constructor
+     */
+    public int read(long pos, byte[] buf, int off, int len) throws IOException {
+        if (off < 0 || len < 0 || off + len < 0 || off + len > buf.length) {
+            throw new IndexOutOfBoundsException();
+        }
+
+        ensureOpen();
+
+        if (pos < 0) {
+            throw new XZIOException("Negative read position: " + pos);
+        }
+
+        if (pos >= length) {
+            return len == 0 ? 0 : -1;
+        }
+
+        len = (int) Math.min(len, length - pos);
+        if (len == 0) {
+            return 0;
+        }
+
+        try {
+            int first = locate(pos);
+            int last = locate(pos + len - 1);
+            ArrayList<Future<byte[]>> futures = new ArrayList<Future<byte[]>>();
+            for (int i = first; i <= last; ++i) {
+                futures.add(uncompressedSize[i] > maxBufferedBlockSize
+                        ? null : submit(i));
+            }
+
+            int n = 0;
+            for (int i = first; i <= last; ++i) {
+                long p = pos + n;
+                int start = (int) (p - uncompressedOffset[i]);
+                int size = (int) Math.min(len - n,
+                        uncompressedSize[i] - (p - uncompressedOffset[i]));
+                Future<byte[]> future = futures.get(i - first);
+                if (future == null) {
+                    while (size > 0) {
+                        int k = readLarge(i, p, buf, off + n, size);
+                        n += k;
+                        p += k;
+                        size -= k;
+                    }
+                } else {
+                    System.arraycopy(get(future), start, buf, off + n, size);
+                    n += size;
+                }
+            }
+
+            return n;
+        } catch (IOException e) {
+            exception = e;
+            throw e;
+        }
+    }
+
+    public int available() throws IOException {
+        ensureOpen();
+        if (currentBlock != -1 && pos >= uncompressedOffset[currentBlock]
+                && pos < uncompressedOffset[currentBlock] + current.length) {
+            return (int) (uncompressedOffset[currentBlock] + current.length - pos);
+        }
+        return 0;
+    }
+
+    public void close() throws IOException {
+        if (in != null) {
+            try {
+                for (Future<byte[]> future : pending) {
+                    future.cancel(true);
+                }
+                pending.clear();
+                current = null;
+                largeDecoder = null;
+                in.close();
+            } finally {
+                in = null;
+                if (shutdownExecutor) {
+                    executor.shutdown();
+                }
+            }
+        }
+    }
+
+    private void ensureOpen() throws IOException {
+        if (in == null) {
+            throw new XZIOException("Stream closed");
+        }
+
+        if (exception != null) {
+            throw exception;
+        }
+    }
+
+    /**
+     * Finds the Block containing an uncompressed position.
+     */
+    private int locate(long target) {
+        int left = 0;
+        int right = uncompressedOffset.length - 1;
+        while (left < right) {
+            int i = left + (right - left + 1) / 2;
+            if (uncompressedOffset[i] <= target) {
+                left = i;
+            } else {
+                right = i - 1;
+            }
+        }
+
+        // Skip empty Blocks.
+        while (uncompressedSize[left] == 0) {
+            ++left;
+        }
+
+        return left;
+    }
+
+    /**
+     * Takes a Block from the read ahead queue and refills the queue with
+     * the following small Blocks. A Block that is not next in the queue
+     * restarts the queue.
+     */
+    private byte[] next(int block) throws IOException {
+        if (block != pendingBlock) {
+            for (Future<byte[]> future : pending) {
+                future.cancel(true);
+            }
+            pending.clear();
+            pendingBlock = block;
+        }
+
+        int i = pendingBlock + pending.size();
+        while (pending.size() < readAhead && i < compressedOffset.length
+                && uncompressedSize[i] <= maxBufferedBlockSize) {
+            pending.add(submit(i++));
+        }
+
+        ++pendingBlock;
+        return get(pending.removeFirst());
+    }
+
+    /**
+     * Reads the compressed Block on this thread and decompresses it on
+     * a worker thread.
+     */
+    private Future<byte[]> submit(final int block) throws IOException {
+        final byte[] compressed = new byte[(int) ((unpaddedSize[block] + 3) & ~3)];
+        in.seek(compressedOffset[block]);
+        new DataInputStream(in).readFully(compressed);
+        return executor.submit(new Callable<byte[]>() {
+            public byte[] call() throws IOException {
+                return decompress(block, compressed);
+            }
+        });
+    }
+
+    private byte[] decompress(int block, byte[] compressed) throws IOException {
+        InputStream blockDecoder;
+        try {
+            blockDecoder = new BlockInputStream(
+                    new ByteArrayInputStream(compressed),
+                    Check.getInstance(checkType[block]), memoryLimit,
+                    unpaddedSize[block], uncompressedSize[block]);
+        } catch (IndexIndicatorException e) {
+            throw new CorruptedInputException(
+                    "XZ Index does not match a Block Header");
+        }
+
+        byte[] buf = new byte[(int) uncompressedSize[block]];
+        new DataInputStream(blockDecoder).readFully(buf);
+        if (blockDecoder.read() != -1) {
+            throw new CorruptedInputException();
+        }
+
+        return buf;
+    }
+
+    /**
+     * Reads from a large Block with a sequential decoder, which is
+     * restarted at the beginning of the Block to seek backwards.
+     */
+    private int readLarge(int block, long p, byte[] buf, int off, int len)
+            throws IOException {
+        if (block != largeBlock || p < largePos) {
+            try {
+                largeDecoder = new BlockInputStream(
+                        new PositionedInputStream(compressedOffset[block]),
+                        Check.getInstance(checkType[block]), memoryLimit,
+                        unpaddedSize[block], uncompressedSize[block]);
+            } catch (IndexIndicatorException e) {
+                throw new CorruptedInputException(
+                        "XZ Index does not match a Block Header");
+            }
+            largeBlock = block;
+            largePos = uncompressedOffset[block];
+        }
+
+        while (largePos < p) {
+            long skipped = largeDecoder.skip(p - largePos);
+            if (skipped <= 0) {
+                throw new CorruptedInputException();
+            }
+            largePos += skipped;
+        }
+
+        int n = (int) Math.min(len,
+                uncompressedOffset[block] + uncompressedSize[block] - p);
+        n = largeDecoder.read(buf, off, n);
+        if (n <= 0) {
+            throw new CorruptedInputException();
+        }
+
+        largePos += n;
+        return n;
+    }
+
+    private static byte[] get(Future<byte[]> future) throws IOException {
+        try {
+            return future.get();
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new InterruptedIOException();
+        } catch (ExecutionException e) {
+            if (e.getCause() instanceof IOException) {
+                throw (IOException) e.getCause();
+            }
+            throw new XZIOException(String.valueOf(e.getCause()));
+        }
+    }
+
+    private static ThreadFactory daemonThreadFactory() {
+        return new ThreadFactory() {
+            public Thread newThread(Runnable r) {
+                Thread thread = new Thread(r, "xz-decoder");
+                thread.setDaemon(true);
+                return thread;
+            }
+        };
+    }
+
+    /**
+     * Reads the file from its own position, so the sequential decoder
+     * of a large Block is not disturbed by reading other Blocks.
+     */
+    private class PositionedInputStream extends InputStream {
+        private long filePos;
+
+        PositionedInputStream(long filePos) {
+            this.filePos = filePos;
+        }
+
+        public int read() throws IOException {
+            byte[] buf = new byte[1];
+            return read(buf, 0, 1) == -1 ? -1 : (buf[0] & 0xFF);
+        }
+
+        public int read(byte[] buf, int off, int len) throws IOException {
+            in.seek(filePos);
+            int n = in.read(buf, off, len);
+            if (n > 0) {
+                filePos += n;
+            }
+            return n;
+        }
+    }
+}
@@ -0,0 +1,120 @@
+package org.xbib.io.archives.tar;
+
+import org.testng.Assert;
+import org.testng.annotations.Test;
+import org.xbib.io.archive.tar2.ParallelTarArchiveReader;
+import org.xbib.io.archive.tar2.TarArchiveInputStream;
+import org.xbib.io.archive.tar2.TarArchiveOutputEntry;
+import org.xbib.io.archive.tar2.TarArchiveOutputStream;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.zip.GZIPInputStream;
+import java.util.zip.GZIPOutputStream;
+
+public class ParallelTarArchiveReaderTest {
+
+    private final static int ENTRIES = 2000;
+
+    @Test
+    public void testOrdered() throws Exception {
+        final List<String> records = new ArrayList<String>();
+        long count = new ParallelTarArchiveReader<String>(new RecordHandler(records))
+                .setWorkers(4)
+                .setBuffers(8)
+                .setBufferSize(16)
+                .setOrdered(true)
+                .read(tar());
+        Assert.assertEquals(count, ENTRIES);
+        Assert.assertEquals(records, expected());
+    }
+
+    @Test
+    public void testUnordered() throws Exception {
+        final List<String> records = Collections.synchronizedList(new ArrayList<String>());
+        long count = new ParallelTarArchiveReader<String>(new RecordHandler(records))
+                .setWorkers(4)
+                .read(tar());
+        Assert.assertEquals(count, ENTRIES);
+        List<String> sorted = new ArrayList<String>(records);
+        Collections.sort(sorted);
+        List<String> expected = expected();
+        Collections.sort(expected);
+        Assert.assertEquals(sorted, expected);
+    }
+
+    @Test
+    public void testFailure() throws Exception {
+        final List<String> records = Collections.synchronizedList(new ArrayList<String>());
+        try {
+            new ParallelTarArchiveReader<String>(new RecordHandler(records) {
+                @Override
+                public String parse(String name, byte[] buf, int length) throws IOException {
+                    if (name.equals("record-100.xml")) {
+                        throw new IOException("broken record");
+                    }
+                    return super.parse(name, buf, length);
+                }
+            }).setWorkers(4).setOrdered(true).read(tar());
+            Assert.fail("expected an exception");
+        } catch (IOException e) {
+            Assert.assertEquals(e.getMessage(), "broken record");
+        }
+        Assert.assertEquals(records, expected().subList(0, 100));
+    }
+
+    private static class RecordHandler implements ParallelTarArchiveReader.Handler<String> {
+
+        private final List<String> records;
+
+        RecordHandler(List<String> records) {
+            this.records = records;
+        }
+
+        @Override
+        public String parse(String name, byte[] buf, int length) throws IOException {
+            return name + " " + new String(buf, 0, length, "UTF-8");
+        }
+
+        @Override
+        public void emit(String name, String result) {
+            records.add(result);
+        }
+    }
+
+    private static List<String> expected() {
+        List<String> expected = new ArrayList<String>();
+        for (int i = 0; i < ENTRIES; i++) {
+            expected.add("record-" + i + ".xml " + record(i));
+        }
+        return expected;
+    }
+
+    private static String record(int i) {
+        StringBuilder sb = new StringBuilder("<record id=\"" + i + "\">");
+        // vary the size, so the buffers have to grow
+        for (int j = 0; j < i % 97; j++) {
+            sb.append("<field>").append(j).append("</field>");
+        }
+        return sb.append("</record>").toString();
+    }
+
+    private static TarArchiveInputStream tar() throws IOException {
+        ByteArrayOutputStream out = new ByteArrayOutputStream();
+        TarArchiveOutputStream tar = new TarArchiveOutputStream(new GZIPOutputStream(out));
+        for (int i = 0; i < ENTRIES; i++) {
+            byte[] b = record(i).getBytes("UTF-8");
+            TarArchiveOutputEntry entry = new TarArchiveOutputEntry("record-" + i + ".xml");
+            entry.setEntrySize(b.length);
+            tar.putArchiveEntry(entry);
+            tar.write(b, 0, b.length);
+            tar.closeArchiveEntry();
+        }
+        tar.close();
+        return new TarArchiveInputStream(new GZIPInputStream(new ByteArrayInputStream(out.toByteArray())));
+    }
+}
@@ -0,0 +1,111 @@
+package org.xbib.io.compress.bzip2;
+
+import org.testng.Assert;
+import org.testng.annotations.Test;
+import org.xbib.io.StreamCodec;
+import org.xbib.io.StreamCodecService;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.util.Random;
+
+public class ParallelBzip2Test extends Assert {
+
+    @Test
+    public void testRoundTrip() throws Exception {
+        byte[] b = sample(1000000);
+        ByteArrayOutputStream out = new ByteArrayOutputStream();
+        ParallelBzip2OutputStream zOut = new ParallelBzip2OutputStream(out, 100000, 4);
+        zOut.write(b);
+        zOut.close();
+        assertEquals(zOut.getMembers(), 10L);
+        assertEquals(readAll(new ParallelBzip2InputStream(new ByteArrayInputStream(out.toByteArray()), 8192, 4)), b);
+        // the first stream is a complete bzip2 stream
+        byte[] first = readAll(new Bzip2InputStream(new ByteArrayInputStream(out.toByteArray())));
+        assertEquals(first.length, 100000);
+    }
+
+    @Test
+    public void testEmpty() throws Exception {
+        ByteArrayOutputStream out = new ByteArrayOutputStream();
+        new ParallelBzip2OutputStream(out).close();
+        assertEquals(readAll(new ParallelBzip2InputStream(new ByteArrayInputStream(out.toByteArray()))).length, 0);
+    }
+
+    @Test
+    public void testForeignStreams() throws Exception {
+        byte[] b = sample(300000);
+        ByteArrayOutputStream out = new ByteArrayOutputStream();
+        OutputStream zOut = new Bzip2OutputStream(out);
+        zOut.write(b, 0, 150000);
+        zOut.close();
+        zOut = new ParallelBzip2OutputStream(out, 50000, 2);
+        zOut.write(b, 150000, 150000);
+        zOut.close();
+        assertEquals(readAll(new ParallelBzip2InputStream(new ByteArrayInputStream(out.toByteArray()))), b);
+    }
+
+    @Test
+    public void testCodec() throws Exception {
+        StreamCodec codec = StreamCodecService.getInstance().getCodec("pbz2");
+        byte[] b = sample(100000);
+        ByteArrayOutputStream out = new ByteArrayOutputStream();
+        OutputStream zOut = codec.encode(out);
+        zOut.write(b);
+        zOut.close();
+        assertEquals(readAll(codec.decode(new ByteArrayInputStream(out.toByteArray()))), b);
+    }
+
+    @Test
+    public void testCodecBlockSize() throws Exception {
+        StreamCodec codec = StreamCodecService.getInstance().getCodec("pbz2");
+        ByteArrayOutputStream out = new ByteArrayOutputStream();
+        ParallelBzip2OutputStream zOut = (ParallelBzip2OutputStream) codec.encode(out, 50000);
+        zOut.write(sample(200000));
+        zOut.close();
+        assertEquals(zOut.getMembers(), 4L);
+    }
+
+    @Test
+    public void testCodecForSuffix() throws Exception {
+        StreamCodecService service = StreamCodecService.getInstance();
+        byte[] b = sample(100000);
+        ByteArrayOutputStream out = new ByteArrayOutputStream();
+        OutputStream zOut = new Bzip2OutputStream(out);
+        zOut.write(b);
+        zOut.close();
+        service.setCodec("bz2", "pbz2");
+        try {
+            InputStream in = service.getCodec("bz2").decode(new ByteArrayInputStream(out.toByteArray()));
+            assertTrue(in instanceof ParallelBzip2InputStream);
+            assertEquals(readAll(in), b);
+        } finally {
+            service.setCodec("bz2", "bz2");
+        }
+    }
+
+    private static byte[] sample(int length) {
+        Random random = new Random(42L);
+        String[] words = {"Geschichte", "der", "Universität", "Bonn", "1818", "bis", "heute", "Band"};
+        ByteArrayOutputStream out = new ByteArrayOutputStream(length);
+        while (out.size() < length) {
+            byte[] w = (words[random.nextInt(words.length)] + " ").getBytes();
+            out.write(w, 0, Math.min(w.length, length - out.size()));
+        }
+        return out.toByteArray();
+    }
+
+    private static byte[] readAll(InputStream in) throws IOException {
+        ByteArrayOutputStream out = new ByteArrayOutputStream();
+        byte[] b = new byte[8192];
+        int n;
+        while ((n = in.read(b)) != -1) {
+            out.write(b, 0, n);
+        }
+        in.close();
+        return out.toByteArray();
+    }
+}
@@ -0,0 +1,150 @@
+package org.xbib.io.compress.gzip;
+
+import org.testng.Assert;
+import org.testng.annotations.Test;
+import org.xbib.io.StreamCodec;
+import org.xbib.io.StreamCodecService;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.util.Random;
+import java.util.zip.GZIPInputStream;
+import java.util.zip.GZIPOutputStream;
+
+public class ParallelGzipTest extends Assert {
+
+    @Test
+    public void testRoundTrip() throws Exception {
+        byte[] b = sample(3000000);
+        ByteArrayOutputStream out = new ByteArrayOutputStream();
+        ParallelGzipOutputStream zOut = new ParallelGzipOutputStream(out, 65536, 4, 6);
+        zOut.write(b, 0, 1000);
+        zOut.write(b[1000]);
+        zOut.write(b, 1001, b.length - 1001);
+        zOut.close();
+        assertEquals(zOut.getMembers(), (b.length + 65535) / 65536);
+        assertEquals(readAll(new ParallelGzipInputStream(new ByteArrayInputStream(out.toByteArray()), 8192, 4)), b);
+        // a standard multi-member gzip stream
+        assertEquals(readAll(new GZIPInputStream(new ByteArrayInputStream(out.toByteArray()))), b);
+    }
+
+    @Test
+    public void testEmpty() throws Exception {
+        ByteArrayOutputStream out = new ByteArrayOutputStream();
+        new ParallelGzipOutputStream(out).close();
+        assertEquals(readAll(new GZIPInputStream(new ByteArrayInputStream(out.toByteArray()))).length, 0);
+        assertEquals(readAll(new ParallelGzipInputStream(new ByteArrayInputStream(out.toByteArray()))).length, 0);
+    }
+
+    @Test
+    public void testForeignMembers() throws Exception {
+        byte[] b = sample(200000);
+        ByteArrayOutputStream out = new ByteArrayOutputStream();
+        OutputStream zOut = new ParallelGzipOutputStream(out, 16384, 2, 6);
+        zOut.write(b, 0, 100000);
+        zOut.close();
+        zOut = new GZIPOutputStream(out);
+        zOut.write(b, 100000, 100000);
+        zOut.close();
+        // parallel members first, then GZIPInputStream for the member without length
+        assertEquals(readAll(new ParallelGzipInputStream(new ByteArrayInputStream(out.toByteArray()))), b);
+    }
+
+    @Test
+    public void testCodec() throws Exception {
+        StreamCodec codec = StreamCodecService.getInstance().getCodec("pgz");
+        byte[] b = sample(100000);
+        ByteArrayOutputStream out = new ByteArrayOutputStream();
+        OutputStream zOut = codec.encode(out);
+        zOut.write(b);
+        zOut.close();
+        assertEquals(readAll(codec.decode(new ByteArrayInputStream(out.toByteArray()))), b);
+    }
+
+    @Test
+    public void testCodecBlockSize() throws Exception {
+        StreamCodec codec = StreamCodecService.getInstance().getCodec("pgz");
+        ByteArrayOutputStream out = new ByteArrayOutputStream();
+        ParallelGzipOutputStream zOut = (ParallelGzipOutputStream) codec.encode(out, 16384);
+        zOut.write(sample(100000));
+        zOut.close();
+        assertEquals(zOut.getMembers(), 7L);
+    }
+
+    @Test
+    public void testCodecForSuffix() throws Exception {
+        StreamCodecService service = StreamCodecService.getInstance();
+        byte[] b = sample(100000);
+        ByteArrayOutputStream out = new ByteArrayOutputStream();
+        OutputStream zOut = new GZIPOutputStream(out);
+        zOut.write(b);
+        zOut.close();
+        service.setCodec("gz", "pgz");
+        try {
+            InputStream in = service.getCodec("gz").decode(new ByteArrayInputStream(out.toByteArray()));
+            assertTrue(in instanceof ParallelGzipInputStream);
+            assertEquals(readAll(in), b);
+        } finally {
+            service.setCodec("gz", "gz");
+        }
+        assertTrue(service.getCodec("gz").decode(new ByteArrayInputStream(out.toByteArray())) instanceof GZIPInputStream);
+    }
+
+    @Test
+    public void testCorruptMemberLength() throws Exception {
+        byte[] b = sample(100000);
+        ByteArrayOutputStream out = new ByteArrayOutputStream();
+        OutputStream zOut = new ParallelGzipOutputStream(out);
+        zOut.write(b);
+        zOut.close();
+        byte[] z = out.toByteArray();
+        // a member length of 2 GB is not trusted, the member is read by GZIPInputStream
+        z[16] = (byte) 0xff;
+        z[17] = (byte) 0xff;
+        z[18] = (byte) 0xff;
+        z[19] = (byte) 0x7f;
+        assertEquals(readAll(new ParallelGzipInputStream(new ByteArrayInputStream(z))), b);
+    }
+
+    @Test(expectedExceptions = IllegalArgumentException.class)
+    public void testBlockSizeTooLarge() throws Exception {
+        new ParallelGzipOutputStream(new ByteArrayOutputStream(), ParallelGzipOutputStream.MAX_BLOCK_SIZE + 1);
+    }
+
+    @Test(expectedExceptions = IOException.class)
+    public void testCorrupt() throws Exception {
+        byte[] b = sample(100000);
+        ByteArrayOutputStream out = new ByteArrayOutputStream();
+        OutputStream zOut = new ParallelGzipOutputStream(out);
+        zOut.write(b);
+        zOut.close();
+        byte[] z = out.toByteArray();
+        z[z.length - 6] ^= 1;
+        readAll(new ParallelGzipInputStream(new ByteArrayInputStream(z)));
+    }
+
+    static byte[] sample(int length) {
+        Random random = new Random(42L);
+        String[] words = {"Geschichte", "der", "Universität", "Bonn", "1818", "bis", "heute", "Band"};
+        ByteArrayOutputStream out = new ByteArrayOutputStream(length);
+        while (out.size() < length) {
+            byte[] w = (words[random.nextInt(words.length)] + " ").getBytes();
+            out.write(w, 0, Math.min(w.length, length - out.size()));
+        }
+        return out.toByteArray();
+    }
+
+    static byte[] readAll(InputStream in) throws IOException {
+        ByteArrayOutputStream out = new ByteArrayOutputStream();
+        byte[] b = new byte[8192];
+        int n;
+        while ((n = in.read(b)) != -1) {
+            out.write(b, 0, n);
+        }
+        in.close();
+        return out.toByteArray();
+    }
+}
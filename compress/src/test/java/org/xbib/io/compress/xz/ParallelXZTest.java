@@ -0,0 +1,114 @@
+package org.xbib.io.compress.xz;
+
+import org.testng.Assert;
+import org.testng.annotations.Test;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.util.Arrays;
+import java.util.Random;
+
+public class ParallelXZTest extends Assert {
+
+    @Test
+    public void testRoundTrip() throws Exception {
+        byte[] b = sample(1000000);
+        byte[] xz = compress(b, 65536);
+        // a standard XZ stream with one Block per 64k
+        assertEquals(readAll(new XZInputStream(new ByteArrayInputStream(xz))), b);
+        SeekableXZInputStream in = new SeekableXZInputStream(seekable(xz), -1, 4);
+        assertEquals(in.getBlockCount(), 16);
+        assertEquals(in.length(), (long) b.length);
+        assertEquals(readAll(in), b);
+    }
+
+    @Test
+    public void testRandomAccess() throws Exception {
+        byte[] b = sample(1000000);
+        SeekableXZInputStream in = new SeekableXZInputStream(seekable(compress(b, 65536)), -1, 4);
+        Random random = new Random(17L);
+        for (int i = 0; i < 50; i++) {
+            int pos = random.nextInt(b.length);
+            int len = random.nextInt(200000);
+            byte[] buf = new byte[len];
+            int n = in.read(pos, buf, 0, len);
+            int expected = Math.min(len, b.length - pos);
+            assertEquals(n, expected);
+            assertEquals(Arrays.copyOf(buf, n), Arrays.copyOfRange(b, pos, pos + n));
+            // seek and read sequentially
+            in.seek(pos);
+            byte[] buf2 = new byte[expected];
+            new java.io.DataInputStream(in).readFully(buf2);
+            assertEquals(buf2, Arrays.copyOfRange(b, pos, pos + expected));
+        }
+        assertEquals(in.read(b.length, new byte[1], 0, 1), -1);
+        in.close();
+    }
+
+    @Test
+    public void testConcatenatedStreamsAndLargeBlocks() throws Exception {
+        byte[] b = sample(300000);
+        ByteArrayOutputStream out = new ByteArrayOutputStream();
+        out.write(compress(Arrays.copyOfRange(b, 0, 100000), 30000));
+        // Stream Padding
+        out.write(new byte[8]);
+        XZOutputStream xzOut = new XZOutputStream(out, new LZMA2Options(1));
+        xzOut.write(b, 100000, 200000);
+        xzOut.close();
+        SeekableXZInputStream in = new SeekableXZInputStream(seekable(out.toByteArray()), -1, 2);
+        assertEquals(in.getBlockCount(), 5);
+        in.setMaxBufferedBlockSize(100000);
+        byte[] buf = new byte[150000];
+        assertEquals(in.read(50000, buf, 0, buf.length), buf.length);
+        assertEquals(buf, Arrays.copyOfRange(b, 50000, 200000));
+        assertEquals(in.read(250000, buf, 0, 10), 10);
+        assertEquals(Arrays.copyOf(buf, 10), Arrays.copyOfRange(b, 250000, 250010));
+        assertEquals(readAll(in), b);
+    }
+
+    private static byte[] compress(byte[] b, int blockSize) throws IOException {
+        ByteArrayOutputStream out = new ByteArrayOutputStream();
+        ParallelXZOutputStream xzOut = new ParallelXZOutputStream(out,
+                new FilterOptions[]{new LZMA2Options(1)}, XZ.CHECK_CRC32, blockSize, 4);
+        xzOut.write(b, 0, 1000);
+        xzOut.write(b[1000]);
+        xzOut.write(b, 1001, b.length - 1001);
+        xzOut.close();
+        return out.toByteArray();
+    }
+
+    private static SeekableInputStream seekable(byte[] b) throws IOException {
+        File file = File.createTempFile("xbib-", ".xz");
+        file.deleteOnExit();
+        FileOutputStream out = new FileOutputStream(file);
+        out.write(b);
+        out.close();
+        return new SeekableFileInputStream(file);
+    }
+
+    private static byte[] sample(int length) {
+        Random random = new Random(42L);
+        String[] words = {"Geschichte", "der", "Universität", "Bonn", "1818", "bis", "heute", "Band"};
+        ByteArrayOutputStream out = new ByteArrayOutputStream(length);
+        while (out.size() < length) {
+            byte[] w = (words[random.nextInt(words.length)] + " ").getBytes();
+            out.write(w, 0, Math.min(w.length, length - out.size()));
+        }
+        return out.toByteArray();
+    }
+
+    private static byte[] readAll(InputStream in) throws IOException {
+        ByteArrayOutputStream out = new ByteArrayOutputStream();
+        byte[] b = new byte[8192];
+        int n;
+        while ((n = in.read(b)) != -1) {
+            out.write(b, 0, n);
+        }
+        in.close();
+        return out.toByteArray();
+    }
+}
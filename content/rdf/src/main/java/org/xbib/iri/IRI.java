@@ -47,46 +47,49 @@ import java.io.IOException;
 import java.net.MalformedURLException;
 import java.net.URI;
 import java.net.URISyntaxException;
-import java.util.regex.Matcher;
-import java.util.regex.Pattern;
+import java.util.concurrent.atomic.AtomicReferenceArray;
 
+/**
+ * An IRI.
+ *
+ * The IRI is stored in its string form, the components are kept as offsets into this string
+ * and are only cut out when requested. The ASCII forms of the components are computed on demand.
+ *
+ * IRIs are immutable. {@link #create(String)} interns IRIs in a bounded cache keyed by the string form,
+ * so repeated IRIs in a stream share one instance and are parsed only once.
+ */
 public class IRI implements Cloneable, Comparable<IRI>, Node {
 
     private final static SchemeRegistry registry = SchemeRegistry.getInstance();
 
-    protected Scheme schemeClass;
-
-    private String scheme;
+    private final static int CACHE_SIZE = 1 << 14;
 
-    private String schemeSpecificPart;
+    private final static AtomicReferenceArray<IRI> cache = new AtomicReferenceArray<IRI>(CACHE_SIZE);
 
-    private String authority;
+    protected Scheme schemeClass;
 
-    private String userinfo;
+    private String scheme;
 
-    private String host;
+    private String value;
 
-    private int port = -1;
+    // offsets into value, -1 if the component is absent
+    private int authority = -1;
 
-    private String path;
+    private int userinfoEnd = -1;
 
-    private String query;
+    private int host = -1;
 
-    private String fragment;
-
-    private String a_schemeSpecificPart;
+    private int hostEnd = -1;
 
-    private String a_host;
+    private int path = -1;
 
-    private String a_fragment;
+    private int query = -1;
 
-    private String a_path;
+    private int fragment = -1;
 
-    private String a_query;
-
-    private String a_userinfo;
+    private int port = -1;
 
-    private String a_authority;
+    private String a_schemeSpecificPart;
 
     @Override
     public boolean isVisible() {
@@ -185,25 +188,34 @@ public class IRI implements Cloneable, Comparable<IRI>, Node {
     }
 
     public IRI(IRI iri) {
-        fromIRI(iri);
-        build();
+        this.scheme = iri.getScheme();
+        this.schemeClass = registry.getScheme(scheme);
+        build(iri.getAuthority(), null, null, -1, iri.getPath(), iri.getQuery(), iri.getFragment(), false);
+        parseAuthority();
     }
 
     public IRI(URI uri) {
-        fromURI(uri);
-        build();
+        this.scheme = uri.getScheme();
+        this.schemeClass = registry.getScheme(scheme);
+        build(uri.getAuthority(), null, null, -1, uri.getPath(), uri.getQuery(), uri.getFragment(), false);
+        parseAuthority();
     }
 
     public IRI(String scheme, String schemeSpecificPart, String fragment) {
-        this.scheme = scheme.toLowerCase();
-        this.schemeSpecificPart = schemeSpecificPart;
-        this.fragment = fragment;
-        build();
+        this.scheme = scheme != null ? scheme.toLowerCase() : null;
+        StringBuilder buf = new StringBuilder();
+        appendScheme(buf);
+        buf.append(schemeSpecificPart);
+        if (fragment != null) {
+            buf.append('#');
+            this.fragment = buf.length();
+            buf.append(fragment);
+        }
+        this.value = buf.toString();
     }
 
     public IRI(String iri) {
         parse(CharUtils.stripBidi(iri));
-        build();
     }
 
     public IRI(String iri, Normalizer.Form nf) throws IOException {
@@ -221,45 +233,106 @@ public class IRI implements Cloneable, Comparable<IRI>, Node {
         String fragment) {
         this.schemeClass = schemeClass;
         this.scheme = scheme != null ? scheme.toLowerCase() : null;
-        this.authority = authority;
-        this.userinfo = userinfo;
-        this.host = host;
-        this.port = port;
-        this.path = path;
-        this.query = query;
-        this.fragment = fragment;
-        build();
+        build(authority, userinfo, host, port, path, query, fragment, authority != null);
     }
 
+    /**
+     * Create an IRI from a string. IRIs are looked up by their string form in a bounded cache
+     * before the string is parsed, a colliding IRI is evicted from the cache.
+     *
+     * @param iri the IRI string
+     * @return the IRI
+     */
     public static IRI create(String iri) {
-        return new IRI(iri);
-    }
-
-    private IRI build() {
+        int h = iri.hashCode();
+        int slot = (h ^ (h >>> 16)) & (CACHE_SIZE - 1);
+        IRI cached = cache.get(slot);
+        if (cached != null && cached.value.equals(iri)) {
+            return cached;
+        }
+        IRI created = new IRI(iri);
+        cache.lazySet(slot, created);
+        return created;
+    }
+
+    /**
+     * Build the string form from the components and record the component offsets.
+     * If an authority is given which does not contain the user info and host, the authority
+     * is rebuilt from user info, host, and port.
+     */
+    private void build(String authority, String userinfo, String host, int port,
+                       String path, String query, String fragment, boolean keepAuthority) {
         if (authority == null && (userinfo != null || host != null)) {
             StringBuilder buf = new StringBuilder();
             buildAuthority(buf, userinfo, host, port);
             authority = (buf.length() != 0) ? buf.toString() : null;
         }
+        this.port = port;
+        this.userinfoEnd = -1;
+        this.host = -1;
+        this.hostEnd = -1;
+        this.query = -1;
+        this.fragment = -1;
         StringBuilder buf = new StringBuilder();
-        buildSchemeSpecificPart(buf, authority, path, query, fragment);
-        schemeSpecificPart = buf.toString();
-        return this;
+        appendScheme(buf);
+        if (authority != null) {
+            buf.append("//");
+            this.authority = buf.length();
+            buf.append(authority);
+            int pos = this.authority;
+            if (userinfo != null) {
+                if (authority.startsWith(userinfo) && authority.length() > userinfo.length()
+                        && authority.charAt(userinfo.length()) == '@') {
+                    this.userinfoEnd = pos + userinfo.length();
+                    pos = userinfoEnd + 1;
+                } else if (keepAuthority) {
+                    build(null, userinfo, host, port, path, query, fragment, false);
+                    return;
+                }
+            }
+            if (host != null) {
+                int i = buf.indexOf(host, pos);
+                if (i >= 0) {
+                    this.host = i;
+                    this.hostEnd = i + host.length();
+                } else if (keepAuthority) {
+                    build(null, userinfo, host, port, path, query, fragment, false);
+                    return;
+                }
+            }
+        } else {
+            this.authority = -1;
+        }
+        this.path = path != null ? buf.length() : -1;
+        if (path != null) {
+            buf.append(path);
+        }
+        if (query != null) {
+            buf.append('?');
+            this.query = buf.length();
+            buf.append(query);
+        }
+        if (fragment != null) {
+            buf.append('#');
+            this.fragment = buf.length();
+            buf.append(fragment);
+        }
+        this.value = buf.toString();
+    }
+
+    private void appendScheme(StringBuilder buf) {
+        if (scheme != null && scheme.length() != 0) {
+            buf.append(scheme);
+            buf.append(':');
+        }
     }
 
+    /**
+     * The string form is a function of the components, so it is equal for equal IRIs.
+     */
     @Override
     public int hashCode() {
-        final int PRIME = 31;
-        int result = 1;
-        result = PRIME * result + ((authority == null) ? 0 : authority.hashCode());
-        result = PRIME * result + ((fragment == null) ? 0 : fragment.hashCode());
-        result = PRIME * result + ((host == null) ? 0 : host.hashCode());
-        result = PRIME * result + ((path == null) ? 0 : path.hashCode());
-        result = PRIME * result + port;
-        result = PRIME * result + ((query == null) ? 0 : query.hashCode());
-        result = PRIME * result + ((scheme == null) ? 0 : scheme.hashCode());
-        result = PRIME * result + ((userinfo == null) ? 0 : userinfo.hashCode());
-        return result;
+        return value.hashCode();
     }
 
     @Override
@@ -274,42 +347,9 @@ public class IRI implements Cloneable, Comparable<IRI>, Node {
             return false;
         }
         final IRI other = (IRI) obj;
-        if (authority == null) {
-            if (other.authority != null) {
-                return false;
-            }
-        } else if (!authority.equals(other.authority)) {
-            return false;
-        }
-        if (fragment == null) {
-            if (other.fragment != null) {
-                return false;
-            }
-        } else if (!fragment.equals(other.fragment)) {
-            return false;
-        }
-        if (host == null) {
-            if (other.host != null) {
-                return false;
-            }
-        } else if (!host.equals(other.host)) {
-            return false;
-        }
-        if (path == null) {
-            if (other.path != null) {
-                return false;
-            }
-        } else if (!path.equals(other.path)) {
-            return false;
-        }
-        if (port != other.port) {
-            return false;
-        }
-        if (query == null) {
-            if (other.query != null) {
-                return false;
-            }
-        } else if (!query.equals(other.query)) {
+        if (port != other.port || authority != other.authority || userinfoEnd != other.userinfoEnd
+                || host != other.host || hostEnd != other.hostEnd || path != other.path
+                || query != other.query || fragment != other.fragment) {
             return false;
         }
         if (scheme == null) {
@@ -319,45 +359,64 @@ public class IRI implements Cloneable, Comparable<IRI>, Node {
         } else if (!scheme.equals(other.scheme)) {
             return false;
         }
-        if (userinfo == null) {
-            if (other.userinfo != null) {
-                return false;
-            }
-        } else if (!userinfo.equals(other.userinfo)) {
-            return false;
-        }
-        return true;
+        return value.equals(other.value);
+    }
+
+    private int schemeSpecificPartStart() {
+        return scheme != null && scheme.length() != 0 ? scheme.length() + 1 : 0;
+    }
+
+    private int fragmentEnd() {
+        return value.length();
+    }
+
+    private int queryEnd() {
+        return fragment >= 0 ? fragment - 1 : value.length();
+    }
+
+    private int pathEnd() {
+        return query >= 0 ? query - 1 : queryEnd();
+    }
+
+    private int authorityEnd() {
+        return path >= 0 ? path : pathEnd();
+    }
+
+    private String part(int start, int end) {
+        return start >= 0 ? value.substring(start, end) : null;
+    }
+
+    private String nonEmptyPart(int start, int end) {
+        return start >= 0 && end > start ? value.substring(start, end) : null;
     }
 
     public String getAuthority() {
-        return (authority != null && authority.length() > 0) ? authority : null;
+        return nonEmptyPart(authority, authorityEnd());
     }
 
     public String getFragment() {
-        return fragment;
+        return part(fragment, fragmentEnd());
     }
 
     public String getHost() {
-        return (host != null && host.length() > 0) ? host : null;
+        return nonEmptyPart(host, hostEnd);
     }
 
     public IDNA getIDN() {
-        return new IDNA(host);
+        return new IDNA(part(host, hostEnd));
     }
 
     public String getASCIIHost() {
-        if (host != null && a_host == null) {
-            if (host.startsWith("[")) {
-                a_host = host;
-            } else {
-                a_host = IDNA.toASCII(host);
-            }
+        String host = part(this.host, hostEnd);
+        if (host == null) {
+            return null;
         }
+        String a_host = host.startsWith("[") ? host : IDNA.toASCII(host);
         return (a_host != null && a_host.length() > 0) ? a_host : null;
     }
 
     public String getPath() {
-        return path;
+        return part(path, pathEnd());
     }
 
     public int getPort() {
@@ -365,7 +424,7 @@ public class IRI implements Cloneable, Comparable<IRI>, Node {
     }
 
     public String getQuery() {
-        return query;
+        return part(query, queryEnd());
     }
 
     public String getScheme() {
@@ -373,46 +432,35 @@ public class IRI implements Cloneable, Comparable<IRI>, Node {
     }
 
     public String getSchemeSpecificPart() {
-        return schemeSpecificPart;
+        return value.substring(schemeSpecificPartStart());
     }
 
     public String getUserInfo() {
-        return userinfo;
+        return part(userinfoEnd >= 0 ? authority : -1, userinfoEnd);
     }
 
     public String getASCIIAuthority() {
-        if (authority != null && a_authority == null) {
-            a_authority = buildASCIIAuthority();
+        if (authority < 0) {
+            return null;
         }
+        String a_authority = buildASCIIAuthority();
         return (a_authority != null && a_authority.length() > 0) ? a_authority : null;
     }
 
     public String getASCIIFragment() {
-        if (fragment != null && a_fragment == null) {
-            a_fragment = UrlEncoding.encode(fragment, Profile.FRAGMENT.filter());
-        }
-        return a_fragment;
+        return fragment >= 0 ? UrlEncoding.encode(getFragment(), Profile.FRAGMENT.filter()) : null;
     }
 
     public String getASCIIPath() {
-        if (path != null && a_path == null) {
-            a_path = UrlEncoding.encode(path, Profile.PATH.filter());
-        }
-        return a_path;
+        return path >= 0 ? UrlEncoding.encode(getPath(), Profile.PATH.filter()) : null;
     }
 
     public String getASCIIQuery() {
-        if (query != null && a_query == null) {
-            a_query = UrlEncoding.encode(query, Profile.QUERY.filter(), Profile.PATH.filter());
-        }
-        return a_query;
+        return query >= 0 ? UrlEncoding.encode(getQuery(), Profile.QUERY.filter(), Profile.PATH.filter()) : null;
     }
 
     public String getASCIIUserInfo() {
-        if (userinfo != null && a_userinfo == null) {
-            a_userinfo = UrlEncoding.encode(userinfo, Profile.USERINFO.filter());
-        }
-        return a_userinfo;
+        return userinfoEnd >= 0 ? UrlEncoding.encode(getUserInfo(), Profile.USERINFO.filter()) : null;
     }
 
     public String getASCIISchemeSpecificPart() {
@@ -430,7 +478,7 @@ public class IRI implements Cloneable, Comparable<IRI>, Node {
             buildAuthority(buf, getASCIIUserInfo(), getASCIIHost(), getPort());
             return buf.toString();
         } else {
-            return UrlEncoding.encode(authority, Profile.AUTHORITY.filter());
+            return UrlEncoding.encode(part(authority, authorityEnd()), Profile.AUTHORITY.filter());
         }
     }
 
@@ -439,7 +487,7 @@ public class IRI implements Cloneable, Comparable<IRI>, Node {
     }
 
     public boolean isOpaque() {
-        return path == null;
+        return path < 0;
     }
 
     public static IRI relativize(IRI b, IRI c) {
@@ -474,16 +522,16 @@ public class IRI implements Cloneable, Comparable<IRI>, Node {
     }
 
     public boolean isPathAbsolute() {
-        String path = getPath();
-        return (path != null) && path.length() > 0 && path.charAt(0) == '/';
+        return path >= 0 && pathEnd() > path && value.charAt(path) == '/';
     }
 
     public boolean isSameDocumentReference() {
-        return scheme == null && authority == null
-                && (path == null || path.length() == 0 || path.equals("."))
-                && query == null;
+        if (scheme != null || authority >= 0 || query >= 0) {
+            return false;
+        }
+        int len = path >= 0 ? pathEnd() - path : 0;
+        return len == 0 || (len == 1 && value.charAt(path) == '.');
     }
-
     public IRI resolve(IRI iri) {
         return resolve(this, iri);
     }
@@ -664,34 +712,16 @@ public class IRI implements Cloneable, Comparable<IRI>, Node {
     }
 
     public String toString() {
-        StringBuilder buf = new StringBuilder();
-        String scheme = getScheme();
-        if (scheme != null && scheme.length() != 0) {
-            buf.append(scheme);
-            buf.append(':');
-        }
-        buf.append(getSchemeSpecificPart());
-        return buf.toString();
+        return value;
     }
 
     public String toEncodedString() {
-        StringBuilder buf = new StringBuilder();
-        String scheme = getScheme();
-        if (scheme != null && scheme.length() != 0) {
-            buf.append(scheme);
-            buf.append(':');
-        }
-        buf.append(getSchemeSpecificPart());
-        return UrlEncoding.encode(buf.toString(), Profile.SCHEMESPECIFICPART.filter());
+        return UrlEncoding.encode(value, Profile.SCHEMESPECIFICPART.filter());
     }
 
     public String toASCIIString() {
         StringBuilder buf = new StringBuilder();
-        String scheme = getScheme();
-        if (scheme != null && scheme.length() != 0) {
-            buf.append(scheme);
-            buf.append(':');
-        }
+        appendScheme(buf);
         buf.append(getASCIISchemeSpecificPart());
         return buf.toString();
     }
@@ -712,71 +742,109 @@ public class IRI implements Cloneable, Comparable<IRI>, Node {
         return new Builder();
     }
 
+    /**
+     * Find user info, host, and port in the authority, like the pattern
+     * {@code ^(?:(.*)?@)?((?:\[.*\])|(?:[^:]*))?(?::(\d+))?}
+     */
     private void parseAuthority() {
-        if (authority != null) {
-            Matcher auth = AUTHORITYPATTERN.matcher(authority);
-            if (auth.find()) {
-                userinfo = auth.group(1);
-                host = auth.group(2);
-                if (auth.group(3) != null) {
-                    port = Integer.parseInt(auth.group(3));
-                } else {
-                    port = -1;
-                }
+        if (authority < 0) {
+            return;
+        }
+        int end = authorityEnd();
+        int pos = authority;
+        int at = value.lastIndexOf('@', end - 1);
+        if (at >= pos) {
+            userinfoEnd = at;
+            pos = at + 1;
+        }
+        host = pos;
+        int bracket = pos < end && value.charAt(pos) == '[' ? value.lastIndexOf(']', end - 1) : -1;
+        if (bracket > pos) {
+            pos = bracket + 1;
+        } else {
+            while (pos < end && value.charAt(pos) != ':') {
+                pos++;
             }
-            try {
-                CharUtils.verify(userinfo, Profile.IUSERINFO);
-                CharUtils.verify(host, Profile.IHOST);
-            } catch (InvalidCharacterException e) {
-                throw new IRISyntaxException(e);
+        }
+        hostEnd = pos;
+        port = -1;
+        if (pos + 1 < end && value.charAt(pos) == ':' && isDigit(value.charAt(pos + 1))) {
+            int digits = pos + 1;
+            while (digits < end && isDigit(value.charAt(digits))) {
+                digits++;
             }
+            port = Integer.parseInt(value.substring(pos + 1, digits));
+        }
+        try {
+            if (userinfoEnd >= 0) {
+                CharUtils.verify(value, authority, userinfoEnd, Profile.IUSERINFO);
+            }
+            CharUtils.verify(value, host, hostEnd, Profile.IHOST);
+        } catch (InvalidCharacterException e) {
+            throw new IRISyntaxException(e);
         }
     }
 
-    private void fromURI(URI uri) {
-        SchemeRegistry reg = SchemeRegistry.getInstance();
-        scheme = uri.getScheme();
-        schemeClass = reg.getScheme(scheme);
-        authority = uri.getAuthority();
-        path = uri.getPath();
-        query = uri.getQuery();
-        fragment = uri.getFragment();
-        parseAuthority();
-    }
-
-    private void fromIRI(IRI uri) {
-        SchemeRegistry reg = SchemeRegistry.getInstance();
-        scheme = uri.getScheme();
-        schemeClass = reg.getScheme(scheme);
-        authority = uri.getAuthority();
-        path = uri.getPath();
-        query = uri.getQuery();
-        fragment = uri.getFragment();
-        parseAuthority();
+    private static boolean isDigit(char c) {
+        return c >= '0' && c <= '9';
     }
 
+    /**
+     * Split the IRI into scheme, authority, path, query and fragment, like the pattern
+     * {@code ^(?:([^:/?#]+):)?(?://([^/?#]*))?([^?#]*)(?:\?([^#]*))?(?:#(.*))?}
+     */
     private void parse(String iri) {
         try {
-            SchemeRegistry reg = SchemeRegistry.getInstance();
-            Matcher irim = IRIPATTERN.matcher(iri);
-            if (irim.find()) {
-                scheme = irim.group(1);
-                schemeClass = reg.getScheme(scheme);
-                authority = irim.group(2);
-                path = irim.group(3);
-                query = irim.group(4);
-                fragment = irim.group(5);
-                parseAuthority();
-                try {
+            int len = iri.length();
+            int pos = 0;
+            while (pos < len && ":/?#".indexOf(iri.charAt(pos)) < 0) {
+                pos++;
+            }
+            if (pos > 0 && pos < len && iri.charAt(pos) == ':') {
+                scheme = iri.substring(0, pos).intern();
+                schemeClass = registry.getScheme(scheme);
+                pos++;
+            } else {
+                pos = 0;
+            }
+            if (iri.startsWith("//", pos)) {
+                pos += 2;
+                authority = pos;
+                while (pos < len && "/?#".indexOf(iri.charAt(pos)) < 0) {
+                    pos++;
+                }
+            }
+            path = pos;
+            while (pos < len && iri.charAt(pos) != '?' && iri.charAt(pos) != '#') {
+                pos++;
+            }
+            if (pos < len && iri.charAt(pos) == '?') {
+                query = ++pos;
+                while (pos < len && iri.charAt(pos) != '#') {
+                    pos++;
+                }
+            }
+            if (pos < len) {
+                fragment = ++pos;
+                while (pos < len && !isLineTerminator(iri.charAt(pos))) {
+                    pos++;
+                }
+            }
+            value = pos < len ? iri.substring(0, pos) : iri;
+            parseAuthority();
+            try {
+                if (scheme != null) {
                     CharUtils.verify(scheme, Profile.SCHEME);
-                    CharUtils.verify(path, Profile.IPATH);
-                    CharUtils.verify(query, Profile.IQUERY);
-                    CharUtils.verify(fragment, Profile.IFRAGMENT);
-                } catch (InvalidCharacterException e) {
-                    throw new IRISyntaxException(e);
                 }
-            } else {
-                throw new IRISyntaxException("Invalid Syntax");
+                CharUtils.verify(value, path, pathEnd(), Profile.IPATH);
+                if (query >= 0) {
+                    CharUtils.verify(value, query, queryEnd(), Profile.IQUERY);
+                }
+                if (fragment >= 0) {
+                    CharUtils.verify(value, fragment, fragmentEnd(), Profile.IFRAGMENT);
+                }
+            } catch (InvalidCharacterException e) {
+                throw new IRISyntaxException(e);
             }
         } catch (IRISyntaxException e) {
             throw e;
@@ -785,11 +853,9 @@ public class IRI implements Cloneable, Comparable<IRI>, Node {
         }
     }
 
-    private static final Pattern IRIPATTERN =
-            Pattern.compile("^(?:([^:/?#]+):)?(?://([^/?#]*))?([^?#]*)(?:\\?([^#]*))?(?:#(.*))?");
-
-    private static final Pattern AUTHORITYPATTERN =
-            Pattern.compile("^(?:(.*)?@)?((?:\\[.*\\])|(?:[^:]*))?(?::(\\d+))?");
+    private static boolean isLineTerminator(char c) {
+        return c == '\n' || c == '\r' || c == '\u0085' || c == '\u2028' || c == '\u2029';
+    }
 
     public static void preinit() {
         UnicodeCharacterDatabase.getCanonicalClass(1);
@@ -805,54 +871,65 @@ public class IRI implements Cloneable, Comparable<IRI>, Node {
         if (isOpaque()) {
             if (that.isOpaque()) {
                 // Both opaque
-                if ((c = compare(schemeSpecificPart, that.schemeSpecificPart)) != 0) {
+                if ((c = compare(that, schemeSpecificPartStart(), value.length(),
+                        that.schemeSpecificPartStart(), that.value.length(), false)) != 0) {
                     return c;
                 }
-                return compare(fragment, that.fragment);
+                return compare(that, fragment, fragmentEnd(), that.fragment, that.fragmentEnd(), false);
             }
             return +1;
         } else if (that.isOpaque()) {
             return -1;
         }
         // Hierarchical
-        if ((host != null) && (that.host != null)) {
+        if ((host >= 0) && (that.host >= 0)) {
             // Both server-based
-            if ((c = compare(userinfo, that.userinfo)) != 0) {
+            if ((c = compare(that, userinfoEnd >= 0 ? authority : -1, userinfoEnd,
+                    that.userinfoEnd >= 0 ? that.authority : -1, that.userinfoEnd, false)) != 0) {
                 return c;
             }
-            if ((c = compareIgnoringCase(host, that.host)) != 0) {
+            if ((c = compare(that, host, hostEnd, that.host, that.hostEnd, true)) != 0) {
                 return c;
             }
             if ((c = port - that.port) != 0) {
                 return c;
             }
         } else {
-            if ((c = compare(authority, that.authority)) != 0) {
+            if ((c = compare(that, authority, authorityEnd(), that.authority, that.authorityEnd(), false)) != 0) {
                 return c;
             }
         }
-        if ((c = compare(path, that.path)) != 0) {
+        if ((c = compare(that, path, pathEnd(), that.path, that.pathEnd(), false)) != 0) {
             return c;
         }
-        if ((c = compare(query, that.query)) != 0) {
+        if ((c = compare(that, query, queryEnd(), that.query, that.queryEnd(), false)) != 0) {
             return c;
         }
-        return compare(fragment, that.fragment);
+        return compare(that, fragment, fragmentEnd(), that.fragment, that.fragmentEnd(), false);
     }
 
-    private int compare(String s, String t) {
-        if (s == t) {
-            return 0;
+    /**
+     * Compare a component of this IRI with a component of another IRI, absent components sort first.
+     */
+    private int compare(IRI that, int s, int send, int t, int tend, boolean ignoreCase) {
+        if (s < 0) {
+            return t < 0 ? 0 : -1;
         }
-        if (s != null) {
-            if (t != null) {
-                return s.compareTo(t);
-            } else {
-                return +1;
+        if (t < 0) {
+            return +1;
+        }
+        int sn = send - s;
+        int tn = tend - t;
+        int n = sn < tn ? sn : tn;
+        for (int i = 0; i < n; i++) {
+            char sc = value.charAt(s + i);
+            char tc = that.value.charAt(t + i);
+            int c = ignoreCase ? toLower(sc) - toLower(tc) : sc - tc;
+            if (c != 0) {
+                return c;
             }
-        } else {
-            return -1;
         }
+        return sn - tn;
     }
 
     private int compareIgnoringCase(String s, String t) {
@@ -47,4 +47,11 @@ public interface RdfGraph<Params extends RdfGraphParams> extends RdfContentGener
 
     boolean hasResource(IRI predicate);
 
+    /**
+     * Create a new blank resource which can be received by this graph.
+     *
+     * @return a new blank resource
+     */
+    Resource newResource();
+
 }
@@ -0,0 +1,245 @@
+/*
+ * Licensed to Jörg Prante and xbib under one or more contributor
+ * license agreements. See the NOTICE.txt file distributed with this work
+ * for additional information regarding copyright ownership.
+ *
+ * Copyright (C) 2012 Jörg Prante and xbib
+ *
+ * This program is free software; you can redistribute it and/or modify
+ * it under the terms of the GNU Affero General Public License as published
+ * by the Free Software Foundation; either version 3 of the License, or
+ * (at your option) any later version.
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the
+ * GNU Affero General Public License for more details.
+ *
+ * You should have received a copy of the GNU Affero General Public License
+ * along with this program; if not, see http://www.gnu.org/licenses
+ * or write to the Free Software Foundation, Inc., 51 Franklin Street,
+ * Fifth Floor, Boston, MA 02110-1301 USA.
+ *
+ * The interactive user interfaces in modified source and object code
+ * versions of this program must display Appropriate Legal Notices,
+ * as required under Section 5 of the GNU Affero General Public License.
+ *
+ * In accordance with Section 7(b) of the GNU Affero General Public
+ * License, these Appropriate Legal Notices must retain the display of the
+ * "Powered by xbib" logo. If the display of the logo is not reasonably
+ * feasible for technical reasons, the Appropriate Legal Notices must display
+ * the words "Powered by xbib".
+ */
+package org.xbib.rdf.memory;
+
+import org.xbib.iri.IRI;
+import org.xbib.rdf.Node;
+import org.xbib.rdf.RdfContentGenerator;
+import org.xbib.rdf.RdfGraph;
+import org.xbib.rdf.RdfGraphParams;
+import org.xbib.rdf.Resource;
+import org.xbib.rdf.Triple;
+
+import java.io.IOException;
+import java.util.Arrays;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.Map;
+
+/**
+ * A graph for the resources of a single record.
+ *
+ * The properties of all resources are kept in flat arrays, each resource links its properties
+ * into a chain. Grouping by subject and predicate happens only when the resources are read,
+ * e.g. by a content generator. The arrays are kept when the graph is cleared, so a graph
+ * can be reused for the next record without allocating maps for each resource.
+ *
+ * Resources of this graph are valid until the graph is cleared.
+ */
+public class BufferedRdfGraph implements RdfGraph<RdfGraphParams> {
+
+    private final Map<IRI, Resource> resources = new LinkedHashMap<IRI, Resource>();
+
+    private RdfGraphParams params = MemoryRdfGraphParams.DEFAULT_PARAMS;
+
+    private IRI[] predicates;
+
+    private Node[] objects;
+
+    private int[] next;
+
+    private int size;
+
+    public BufferedRdfGraph() {
+        this(256);
+    }
+
+    public BufferedRdfGraph(int capacity) {
+        this.predicates = new IRI[capacity];
+        this.objects = new Node[capacity];
+        this.next = new int[capacity];
+    }
+
+    /**
+     * Remove all resources and properties from this graph.
+     */
+    public void clear() {
+        Arrays.fill(predicates, 0, size, null);
+        Arrays.fill(objects, 0, size, null);
+        size = 0;
+        resources.clear();
+    }
+
+    /**
+     * The number of properties in this graph.
+     * @return the number of properties
+     */
+    public int size() {
+        return size;
+    }
+
+    @Override
+    public Iterator<Resource> getResources() {
+        return resources.values().iterator();
+    }
+
+    @Override
+    public BufferedRdfGraph putResource(IRI id, Resource resource) {
+        resources.put(id, resource);
+        return this;
+    }
+
+    @Override
+    public Resource getResource(IRI predicate) {
+        return resources.get(predicate);
+    }
+
+    @Override
+    public Resource removeResource(IRI predicate) {
+        return resources.remove(predicate);
+    }
+
+    @Override
+    public boolean hasResource(IRI predicate) {
+        return resources.containsKey(predicate);
+    }
+
+    @Override
+    public Resource newResource() {
+        return new BufferedResource(this).blank();
+    }
+
+    @Override
+    public BufferedRdfGraph setParams(RdfGraphParams params) {
+        this.params = params;
+        return this;
+    }
+
+    @Override
+    public RdfGraphParams getParams() {
+        return params;
+    }
+
+    @Override
+    public BufferedRdfGraph startStream() {
+        return this;
+    }
+
+    @Override
+    public RdfContentGenerator setBaseUri(String baseUri) {
+        startPrefixMapping("", baseUri);
+        return this;
+    }
+
+    @Override
+    public BufferedRdfGraph startPrefixMapping(String prefix, String uri) {
+        params.getNamespaceContext().addNamespace(prefix, uri);
+        return this;
+    }
+
+    @Override
+    public BufferedRdfGraph endPrefixMapping(String prefix) {
+        // ignore
+        return this;
+    }
+
+    @Override
+    public BufferedRdfGraph receive(IRI identifier) {
+        // ignore
+        return this;
+    }
+
+    @Override
+    public BufferedRdfGraph receive(Triple triple) {
+        IRI subject = triple.subject().id();
+        Resource resource = resources.get(subject);
+        if (resource == null) {
+            resource = new BufferedResource(this).id(subject);
+            resources.put(subject, resource);
+        }
+        resource.add(triple);
+        return this;
+    }
+
+    @Override
+    public BufferedRdfGraph endStream() {
+        return this;
+    }
+
+    @Override
+    public BufferedRdfGraph receive(Resource resource) throws IOException {
+        resources.put(resource.id(), resource);
+        return this;
+    }
+
+    @Override
+    public void close() throws IOException {
+    }
+
+    @Override
+    public void flush() throws IOException {
+    }
+
+    /**
+     * Append a property to a chain.
+     *
+     * @param last the last property of the chain, or -1 for a new chain
+     * @param predicate the predicate
+     * @param object the object
+     * @return the index of the new property
+     */
+    int append(int last, IRI predicate, Node object) {
+        if (size == predicates.length) {
+            int capacity = predicates.length * 2;
+            predicates = Arrays.copyOf(predicates, capacity);
+            objects = Arrays.copyOf(objects, capacity);
+            next = Arrays.copyOf(next, capacity);
+        }
+        predicates[size] = predicate;
+        objects[size] = object;
+        next[size] = -1;
+        if (last >= 0) {
+            next[last] = size;
+        }
+        return size++;
+    }
+
+    IRI predicate(int i) {
+        return predicates[i];
+    }
+
+    void predicate(int i, IRI predicate) {
+        predicates[i] = predicate;
+    }
+
+    Node object(int i) {
+        return objects[i];
+    }
+
+    int next(int i) {
+        return next[i];
+    }
+
+    void next(int i, int n) {
+        next[i] = n;
+    }
+}
@@ -0,0 +1,634 @@
+/*
+ * Licensed to Jörg Prante and xbib under one or more contributor
+ * license agreements. See the NOTICE.txt file distributed with this work
+ * for additional information regarding copyright ownership.
+ *
+ * Copyright (C) 2012 Jörg Prante and xbib
+ *
+ * This program is free software; you can redistribute it and/or modify
+ * it under the terms of the GNU Affero General Public License as published
+ * by the Free Software Foundation; either version 3 of the License, or
+ * (at your option) any later version.
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the
+ * GNU Affero General Public License for more details.
+ *
+ * You should have received a copy of the GNU Affero General Public License
+ * along with this program; if not, see http://www.gnu.org/licenses
+ * or write to the Free Software Foundation, Inc., 51 Franklin Street,
+ * Fifth Floor, Boston, MA 02110-1301 USA.
+ *
+ * The interactive user interfaces in modified source and object code
+ * versions of this program must display Appropriate Legal Notices,
+ * as required under Section 5 of the GNU Affero General Public License.
+ *
+ * In accordance with Section 7(b) of the GNU Affero General Public
+ * License, these Appropriate Legal Notices must retain the display of the
+ * "Powered by xbib" logo. If the display of the logo is not reasonably
+ * feasible for technical reasons, the Appropriate Legal Notices must display
+ * the words "Powered by xbib".
+ */
+package org.xbib.rdf.memory;
+
+import org.xbib.iri.IRI;
+import org.xbib.rdf.Literal;
+import org.xbib.rdf.Node;
+import org.xbib.rdf.RdfConstants;
+import org.xbib.rdf.Resource;
+import org.xbib.rdf.Triple;
+import org.xbib.rdf.XSDResourceIdentifiers;
+
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Iterator;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Objects;
+import java.util.Set;
+
+/**
+ * A resource of a {@link BufferedRdfGraph}.
+ *
+ * The properties are stored in the graph, the resource only knows the first and the last
+ * property of its chain. Like {@link MemoryResource}, properties are grouped by predicate
+ * in the order of first appearance, and equal objects of a predicate are added only once.
+ */
+public class BufferedResource implements Resource, Comparable<Resource>, XSDResourceIdentifiers {
+
+    private final BufferedRdfGraph graph;
+
+    private int first = -1;
+
+    private int last = -1;
+
+    private long blank;
+
+    private IRI id;
+
+    private boolean embedded;
+
+    private boolean deleted;
+
+    BufferedResource(BufferedRdfGraph graph) {
+        this.graph = graph;
+    }
+
+    /**
+     * Make this resource a blank node. The identifier is only built when it is requested.
+     *
+     * @return this resource
+     */
+    public BufferedResource blank() {
+        this.id = null;
+        this.blank = MemoryResource.next();
+        this.embedded = true;
+        return this;
+    }
+
+    @Override
+    public BufferedResource id(IRI id) {
+        this.id = id;
+        this.blank = 0L;
+        if (id != null) {
+            embedded = MemoryResource.GENID.equals(id.getScheme());
+        }
+        return this;
+    }
+
+    @Override
+    public IRI id() {
+        if (id == null && blank > 0L) {
+            id = IRI.builder().curie(MemoryResource.GENID, "b" + blank).build();
+        }
+        return id;
+    }
+
+    @Override
+    public int compareTo(Resource r) {
+        return id() == null ? -1 : id().toString().compareTo(r.id().toString());
+    }
+
+    @Override
+    public int hashCode() {
+        return id() != null ? id().hashCode() : -1;
+    }
+
+    @Override
+    public boolean equals(Object obj) {
+        return id() != null && obj != null && obj instanceof Resource && id().equals(((Resource) obj).id());
+    }
+
+    @Override
+    public boolean isEmbedded() {
+        return embedded;
+    }
+
+    @Override
+    public boolean isVisible() {
+        return !embedded;
+    }
+
+    @Override
+    public String toString() {
+        if (id == null && blank == 0L) {
+            blank();
+        }
+        if (embedded) {
+            return id == null ? MemoryResource.PLACEHOLDER + "b" + blank :
+                    MemoryResource.PLACEHOLDER + id.getSchemeSpecificPart();
+        }
+        return id.toString();
+    }
+
+    @Override
+    public Resource add(Triple triple) {
+        if (triple == null) {
+            return this;
+        }
+        IRI id = triple.subject().id();
+        if (id == null || id.equals(id())) {
+            add(triple.predicate(), triple.object());
+        } else {
+            for (int i = first; i >= 0; i = graph.next(i)) {
+                Node node = graph.object(i);
+                if (node instanceof Resource && id.equals(((Resource) node).id())) {
+                    return ((Resource) node).add(triple);
+                }
+            }
+            // nothing found, continue with a new resource with new subject
+            return new BufferedResource(graph).id(id).add(triple);
+        }
+        return this;
+    }
+
+    @Override
+    public Resource add(IRI predicate, Node object) {
+        put(predicate, object);
+        return this;
+    }
+
+    @Override
+    public Resource add(IRI predicate, IRI iri) {
+        return add(predicate, new BufferedResource(graph).id(iri));
+    }
+
+    @Override
+    public Resource add(IRI predicate, Literal literal) {
+        if (predicate != null && literal != null) {
+            put(predicate, literal);
+        }
+        return this;
+    }
+
+    @Override
+    public Resource add(IRI predicate, Resource resource) {
+        if (resource == null) {
+            return this;
+        }
+        if (resource.id() == null) {
+            resource.id(id());
+            Resource r = newResource(predicate);
+            resource.triples().forEachRemaining(r::add);
+        } else {
+            put(predicate, resource);
+        }
+        return this;
+    }
+
+    @Override
+    public Resource add(IRI predicate, String value) {
+        return add(predicate, newLiteral(value));
+    }
+
+    @Override
+    public Resource add(IRI predicate, Integer value) {
+        return add(predicate, newLiteral(value));
+    }
+
+    @Override
+    public Resource add(IRI predicate, Boolean value) {
+        return add(predicate, newLiteral(value));
+    }
+
+    @Override
+    public Resource add(IRI predicate, Iterator it) {
+        it.forEachRemaining(object -> {
+            if (object instanceof Map) {
+                add(predicate, (Map) object);
+            } else if (object instanceof List) {
+                add(predicate, ((List) object).iterator());
+            } else if (object instanceof Resource) {
+                add(predicate, (Resource) object);
+            } else {
+                add(predicate, newLiteral(object));
+            }
+        });
+        return this;
+    }
+
+    @Override
+    public Resource add(IRI predicate, Map map) {
+        Resource r = newResource(predicate);
+        for (Object pred : map.keySet()) {
+            Object obj = map.get(pred);
+            if (obj instanceof Map) {
+                r.add(newPredicate(pred), (Map) obj);
+            } else if (obj instanceof List) {
+                r.add(newPredicate(pred), ((List) obj).iterator());
+            } else if (obj instanceof Resource) {
+                r.add(newPredicate(pred), (Resource) obj);
+            } else {
+                r.add(newPredicate(pred), newLiteral(obj));
+            }
+        }
+        return this;
+    }
+
+    @Override
+    public Resource add(String predicate, String value) {
+        return add(newPredicate(predicate), value);
+    }
+
+    @Override
+    public Resource add(String predicate, Integer value) {
+        return add(newPredicate(predicate), value);
+    }
+
+    @Override
+    public Resource add(String predicate, Boolean value) {
+        return add(newPredicate(predicate), value);
+    }
+
+    @Override
+    public Resource add(String predicate, Literal value) {
+        return add(newPredicate(predicate), value);
+    }
+
+    @Override
+    public Resource add(String predicate, IRI externalResource) {
+        return add(newPredicate(predicate), externalResource);
+    }
+
+    @Override
+    public Resource add(String predicate, Resource resource) {
+        return add(newPredicate(predicate), resource);
+    }
+
+    @Override
+    public Resource add(String predicate, Map map) {
+        return add(newPredicate(predicate), map);
+    }
+
+    @Override
+    public Resource add(String predicate, Iterator it) {
+        return add(newPredicate(predicate), it);
+    }
+
+    @Override
+    public Resource add(Map map) {
+        for (Object pred : map.keySet()) {
+            Object obj = map.get(pred);
+            if (obj instanceof Map) {
+                Resource r = newResource(newPredicate(pred));
+                r.add((Map) obj);
+            } else if (obj instanceof List) {
+                add(newPredicate(pred), ((List) obj).iterator());
+            } else if (obj instanceof Resource) {
+                add(newPredicate(pred), (Resource) obj);
+            } else {
+                add(newPredicate(pred), newLiteral(obj));
+            }
+        }
+        return this;
+    }
+
+    /**
+     * The properties of the old predicate are moved behind the other properties, like
+     * removing and adding them again.
+     */
+    @Override
+    public Resource rename(IRI oldPredicate, IRI newPredicate) {
+        int i = first;
+        int moved = -1;
+        int movedLast = -1;
+        first = -1;
+        last = -1;
+        while (i >= 0) {
+            int n = graph.next(i);
+            graph.next(i, -1);
+            if (same(graph.predicate(i), oldPredicate)) {
+                if (movedLast >= 0) {
+                    graph.next(movedLast, i);
+                } else {
+                    moved = i;
+                }
+                movedLast = i;
+            } else {
+                link(i);
+            }
+            i = n;
+        }
+        while (moved >= 0) {
+            int n = graph.next(moved);
+            if (!contains(newPredicate, graph.object(moved))) {
+                graph.predicate(moved, newPredicate);
+                link(moved);
+            }
+            moved = n;
+        }
+        return this;
+    }
+
+    @Override
+    public Resource rename(String oldPredicate, String newPredicate) {
+        rename(newPredicate(oldPredicate), newPredicate(newPredicate));
+        return this;
+    }
+
+    public Resource remove(IRI predicate) {
+        if (predicate == null) {
+            return this;
+        }
+        unlink(predicate, null, true);
+        return this;
+    }
+
+    public Resource remove(IRI predicate, Node object) {
+        if (predicate == null) {
+            return this;
+        }
+        unlink(predicate, object, false);
+        return this;
+    }
+
+    @Override
+    public Resource a(IRI externalResource) {
+        add(newPredicate(RdfConstants.RDF_TYPE), externalResource);
+        return this;
+    }
+
+    @Override
+    public Set<IRI> predicates() {
+        Set<IRI> set = new LinkedHashSet<IRI>();
+        for (int i = first; i >= 0; i = graph.next(i)) {
+            set.add(graph.predicate(i));
+        }
+        return set;
+    }
+
+    @Override
+    public Iterator<Node> objects(IRI predicate) {
+        List<Node> list = new ArrayList<Node>();
+        for (int i = first; i >= 0; i = graph.next(i)) {
+            if (same(graph.predicate(i), predicate)) {
+                list.add(graph.object(i));
+            }
+        }
+        return list.iterator();
+    }
+
+    @Override
+    public Iterator<Node> objects(String predicate) {
+        return objects(newPredicate(predicate));
+    }
+
+    @Override
+    public Iterator<Literal> literals(IRI predicate) {
+        List<Literal> list = new ArrayList<Literal>();
+        for (int i = first; i >= 0; i = graph.next(i)) {
+            if (same(graph.predicate(i), predicate) && graph.object(i) instanceof Literal) {
+                list.add((Literal) graph.object(i));
+            }
+        }
+        return list.iterator();
+    }
+
+    @Override
+    public Iterator<Resource> resources(IRI predicate) {
+        List<Resource> list = new ArrayList<Resource>();
+        for (int i = first; i >= 0; i = graph.next(i)) {
+            if (same(graph.predicate(i), predicate) && graph.object(i) instanceof Resource) {
+                list.add((Resource) graph.object(i));
+            }
+        }
+        return list.iterator();
+    }
+
+    @Override
+    public Collection<Resource> embeddedResources(IRI predicate) {
+        List<Resource> list = new ArrayList<Resource>();
+        for (int i = first; i >= 0; i = graph.next(i)) {
+            Node node = graph.object(i);
+            if (same(graph.predicate(i), predicate) && node instanceof Resource && ((Resource) node).isEmbedded()) {
+                list.add((Resource) node);
+            }
+        }
+        return list;
+    }
+
+    @Override
+    public Iterator<Node> visibleObjects(IRI predicate) {
+        List<Node> list = new ArrayList<Node>();
+        for (int i = first; i >= 0; i = graph.next(i)) {
+            Node node = graph.object(i);
+            if (same(graph.predicate(i), predicate) && node.isVisible()) {
+                list.add(node);
+            }
+        }
+        return list.iterator();
+    }
+
+    @Override
+    public void compactPredicate(IRI predicate) {
+        Collection<Resource> resources = embeddedResources(predicate);
+        if (resources.size() == 1) {
+            Resource r = resources.iterator().next();
+            remove(predicate, r);
+            r.objects(predicate).forEachRemaining(object -> put(predicate, object));
+        }
+    }
+
+    @Override
+    public void clear() {
+        first = -1;
+        last = -1;
+    }
+
+    @Override
+    public boolean isEmpty() {
+        return first < 0;
+    }
+
+    @Override
+    public int size() {
+        return predicates().size();
+    }
+
+    @Override
+    public Resource setDeleted(boolean deleted) {
+        this.deleted = deleted;
+        return this;
+    }
+
+    @Override
+    public boolean isDeleted() {
+        return deleted;
+    }
+
+    @Override
+    public Resource newResource() {
+        return graph.newResource();
+    }
+
+    @Override
+    public Resource newResource(IRI predicate) {
+        Resource r = graph.newResource();
+        put(predicate, r);
+        return r;
+    }
+
+    @Override
+    public Resource newResource(String predicate) {
+        return newResource(newPredicate(predicate));
+    }
+
+    @Override
+    public Iterator<Triple> triples() {
+        return unfold(new ArrayList<Triple>(32), true).iterator();
+    }
+
+    @Override
+    public Iterator<Triple> properties() {
+        return unfold(new ArrayList<Triple>(32), false).iterator();
+    }
+
+    @Override
+    public Resource newSubject(Object subject) {
+        return subject == null ? null :
+                subject instanceof Resource ? (Resource) subject :
+                        subject instanceof IRI ? new BufferedResource(graph).id((IRI) subject) :
+                                new BufferedResource(graph).id(IRI.builder().curie(subject.toString()).build());
+    }
+
+    @Override
+    public IRI newPredicate(Object predicate) {
+        return predicate == null ? null :
+                predicate instanceof IRI ? (IRI) predicate :
+                        IRI.builder().curie(predicate.toString()).build();
+    }
+
+    @Override
+    public Node newObject(Object object) {
+        return object == null ? null :
+                object instanceof Literal ? (Literal) object :
+                        object instanceof IRI ? new BufferedResource(graph).id((IRI) object) :
+                                new MemoryLiteral(object);
+    }
+
+    @Override
+    public Literal newLiteral(Object value) {
+        if (value == null) {
+            return null;
+        }
+        if (value instanceof Literal) {
+            return (Literal) value;
+        }
+        if (value instanceof Double) {
+            return new MemoryLiteral(value).type(DOUBLE);
+        }
+        if (value instanceof Float) {
+            return new MemoryLiteral(value).type(FLOAT);
+        }
+        if (value instanceof Long) {
+            return new MemoryLiteral(value).type(LONG);
+        }
+        if (value instanceof Integer) {
+            return new MemoryLiteral(value).type(INT);
+        }
+        if (value instanceof Boolean) {
+            return new MemoryLiteral(value).type(BOOLEAN);
+        }
+        // untyped
+        return new MemoryLiteral(value);
+    }
+
+    private void put(IRI predicate, Node object) {
+        if (!contains(predicate, object)) {
+            last = graph.append(last, predicate, object);
+            if (first < 0) {
+                first = last;
+            }
+        }
+    }
+
+    private boolean contains(IRI predicate, Node object) {
+        for (int i = first; i >= 0; i = graph.next(i)) {
+            if (same(graph.predicate(i), predicate) && Objects.equals(graph.object(i), object)) {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    private void link(int i) {
+        graph.next(i, -1);
+        if (last >= 0) {
+            graph.next(last, i);
+        } else {
+            first = i;
+        }
+        last = i;
+    }
+
+    private void unlink(IRI predicate, Node object, boolean all) {
+        int i = first;
+        first = -1;
+        last = -1;
+        while (i >= 0) {
+            int n = graph.next(i);
+            if (!same(graph.predicate(i), predicate) || (!all && !Objects.equals(graph.object(i), object))) {
+                link(i);
+            }
+            i = n;
+        }
+    }
+
+    /**
+     * Unfold the properties grouped by predicate, in the order of first appearance of the predicate.
+     */
+    private List<Triple> unfold(List<Triple> list, boolean recursive) {
+        for (int i = first; i >= 0; i = graph.next(i)) {
+            IRI predicate = graph.predicate(i);
+            if (seen(predicate, i)) {
+                continue;
+            }
+            for (int j = i; j >= 0; j = graph.next(j)) {
+                if (same(graph.predicate(j), predicate)) {
+                    Node node = graph.object(j);
+                    list.add(new MemoryTriple(this, predicate, node));
+                    if (recursive && node instanceof BufferedResource) {
+                        ((BufferedResource) node).unfold(list, true);
+                    } else if (recursive && node instanceof Resource) {
+                        ((Resource) node).triples().forEachRemaining(list::add);
+                    }
+                }
+            }
+        }
+        return list;
+    }
+
+    private boolean seen(IRI predicate, int i) {
+        for (int j = first; j != i; j = graph.next(j)) {
+            if (same(graph.predicate(j), predicate)) {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    private static boolean same(IRI a, IRI b) {
+        return a == b || (a != null && a.equals(b));
+    }
+}
@@ -87,6 +87,11 @@ public class MemoryRdfGraph implements RdfGraph<RdfGraphParams> {
         return resources.containsKey(predicate);
     }
 
+    @Override
+    public Resource newResource() {
+        return new MemoryResource().blank();
+    }
+
     @Override
     public MemoryRdfGraph setParams(RdfGraphParams params) {
         this.params = params;
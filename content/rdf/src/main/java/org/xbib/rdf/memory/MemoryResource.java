@@ -60,9 +60,9 @@ public class MemoryResource implements Resource, Comparable<Resource>, XSDResour
 
     private final static AtomicLong nodeID = new AtomicLong();
 
-    private final static String GENID = "genid";
+    final static String GENID = "genid";
 
-    private final static String PLACEHOLDER = "_:";
+    final static String PLACEHOLDER = "_:";
 
     private final MultiMap<IRI, Node> attributes = new LinkedHashMultiMap<IRI, Node>();
 
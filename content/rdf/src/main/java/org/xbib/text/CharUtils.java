@@ -892,6 +892,26 @@ public final class CharUtils {
         verify(CodepointIterator.forCharSequence(s), profile);
     }
 
+    /**
+     * Verifies a range of a character sequence using the specified profile, without creating a substring
+     */
+    public static void verify(CharSequence s, int start, int end, Profile profile) throws InvalidCharacterException {
+        Filter filter = profile.filter();
+        int i = start;
+        while (i < end) {
+            char c = s.charAt(i++);
+            int codepoint = c;
+            if (isHighSurrogate(c) && i < end && isLowSurrogate(s.charAt(i))) {
+                codepoint = Character.toCodePoint(c, s.charAt(i++));
+            } else if (isHighSurrogate(c) || isLowSurrogate(c)) {
+                throw new InvalidCharacterException(c);
+            }
+            if (filter.accept(codepoint)) {
+                throw new InvalidCharacterException(codepoint);
+            }
+        }
+    }
+
     /**
      * Verifies a sequence of codepoints using the specified filter
      */
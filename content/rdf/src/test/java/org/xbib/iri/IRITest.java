@@ -3,6 +3,9 @@ package org.xbib.iri;
 import org.testng.Assert;
 import org.testng.annotations.Test;
 
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
+
 public class IRITest extends Assert {
 
     @Test
@@ -57,4 +60,105 @@ public class IRITest extends Assert {
         IRI i2 = IRI.create(s);
         assertEquals(i1, i2);
     }
+
+    @Test
+    public void testInterning() {
+        String s = "http://d-nb.info/gnd/118540238";
+        IRI i1 = IRI.create(s);
+        IRI i2 = IRI.create(new String(s.toCharArray()));
+        assertSame(i1, i2);
+        assertEquals(new IRI(s), i1);
+        assertEquals(new IRI(s).hashCode(), i1.hashCode());
+    }
+
+    @Test
+    public void testComponents() {
+        Pattern iriPattern =
+                Pattern.compile("^(?:([^:/?#]+):)?(?://([^/?#]*))?([^?#]*)(?:\\?([^#]*))?(?:#(.*))?");
+        Pattern authorityPattern =
+                Pattern.compile("^(?:(.*)?@)?((?:\\[.*\\])|(?:[^:]*))?(?::(\\d+))?");
+        String[] iris = {
+                "http://index?type#id",
+                "http://user@example.org:8080/a/b;c?x=1&y=2#frag",
+                "http://[::1]:80/p",
+                "http://[::1]/p",
+                "http://a:b@host/",
+                "http://host:/p",
+                "file:///etc/hosts",
+                "urn:isbn:3-88053-101-6",
+                "mailto:joe@example.org",
+                "//example.org/path",
+                "/just/a/path?q",
+                "?q#f",
+                "#f",
+                "",
+                "@context",
+                "http://\u00e4\u00f6\u00fc.example/\u00c4rger?\u00df#\u00e9"
+        };
+        for (String s : iris) {
+            IRI iri = IRI.create(s);
+            Matcher m = iriPattern.matcher(s);
+            assertTrue(m.find());
+            assertEquals(iri.getScheme(), m.group(1), s);
+            assertEquals(iri.getAuthority(), m.group(2) != null && m.group(2).length() > 0 ? m.group(2) : null, s);
+            assertEquals(iri.getPath(), m.group(3), s);
+            assertEquals(iri.getQuery(), m.group(4), s);
+            assertEquals(iri.getFragment(), m.group(5), s);
+            String userinfo = null;
+            String host = null;
+            int port = -1;
+            if (m.group(2) != null) {
+                Matcher a = authorityPattern.matcher(m.group(2));
+                assertTrue(a.find());
+                userinfo = a.group(1);
+                host = a.group(2) != null && a.group(2).length() > 0 ? a.group(2) : null;
+                port = a.group(3) != null ? Integer.parseInt(a.group(3)) : -1;
+            }
+            assertEquals(iri.getUserInfo(), userinfo, s);
+            assertEquals(iri.getHost(), host, s);
+            assertEquals(iri.getPort(), port, s);
+            assertEquals(iri.toString(), s);
+        }
+    }
+
+    @Test
+    public void testBuilder() {
+        IRI iri = IRI.create("http://user@example.org:8080/a/b;c?x=1&y=2#frag");
+        IRI built = IRI.builder()
+                .scheme(iri.getScheme())
+                .userinfo(iri.getUserInfo())
+                .host(iri.getHost())
+                .port(iri.getPort())
+                .path(iri.getPath())
+                .query(iri.getQuery())
+                .fragment(iri.getFragment())
+                .build();
+        assertEquals(built, iri);
+        assertEquals(built.compareTo(iri), 0);
+        assertEquals(built.getAuthority(), "user@example.org:8080");
+    }
+
+    @Test
+    public void testASCII() {
+        IRI iri = IRI.create("http://\u00e4\u00f6\u00fc.example/\u00c4rger?\u00df#\u00e9");
+        assertEquals(iri.getASCIIHost(), "xn--4ca0bs.example");
+        assertEquals(iri.getASCIIPath(), "/%C3%84rger");
+        assertEquals(iri.toASCIIString(), "http://xn--4ca0bs.example/%C3%84rger?%C3%9F#%C3%A9");
+    }
+
+    @Test
+    public void testResolve() {
+        IRI base = IRI.create("http://example.org/a/b/c");
+        assertEquals(base.resolve("d?q").toString(), "http://example.org/a/b/d?q");
+        assertEquals(base.resolve("#f").toString(), "http://example.org/a/b/c#f");
+        assertEquals(IRI.relativize(base, IRI.create("http://example.org/a/b/c/d")).toString(), "d");
+    }
+
+    @Test
+    public void testOpaque() {
+        IRI iri = IRI.builder().scheme("URN").schemeSpecificPart("isbn:123").build();
+        assertTrue(iri.isOpaque());
+        assertEquals(iri.toString(), "urn:isbn:123");
+        assertEquals(iri.getSchemeSpecificPart(), "isbn:123");
+    }
 }
@@ -0,0 +1,133 @@
+/*
+ * Licensed to Jörg Prante and xbib under one or more contributor
+ * license agreements. See the NOTICE.txt file distributed with this work
+ * for additional information regarding copyright ownership.
+ *
+ * Copyright (C) 2012 Jörg Prante and xbib
+ *
+ * This program is free software; you can redistribute it and/or modify
+ * it under the terms of the GNU Affero General Public License as published
+ * by the Free Software Foundation; either version 3 of the License, or
+ * (at your option) any later version.
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the
+ * GNU Affero General Public License for more details.
+ *
+ * You should have received a copy of the GNU Affero General Public License
+ * along with this program; if not, see http://www.gnu.org/licenses
+ * or write to the Free Software Foundation, Inc., 51 Franklin Street,
+ * Fifth Floor, Boston, MA 02110-1301 USA.
+ *
+ * The interactive user interfaces in modified source and object code
+ * versions of this program must display Appropriate Legal Notices,
+ * as required under Section 5 of the GNU Affero General Public License.
+ *
+ * In accordance with Section 7(b) of the GNU Affero General Public
+ * License, these Appropriate Legal Notices must retain the display of the
+ * "Powered by xbib" logo. If the display of the logo is not reasonably
+ * feasible for technical reasons, the Appropriate Legal Notices must display
+ * the words "Powered by xbib".
+ */
+package org.xbib.rdf.memory;
+
+import org.testng.Assert;
+import org.testng.annotations.Test;
+import org.xbib.iri.IRI;
+import org.xbib.rdf.RdfContentBuilder;
+import org.xbib.rdf.RdfGraph;
+import org.xbib.rdf.RdfGraphParams;
+import org.xbib.rdf.Resource;
+
+import java.io.IOException;
+import java.util.HashMap;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
+
+import static org.xbib.rdf.RdfContentFactory.ntripleBuilder;
+
+public class BufferedRdfGraphTest extends Assert {
+
+    @Test
+    public void testSameTriplesAsMemoryGraph() throws Exception {
+        String expected = write(build(new MemoryRdfGraph()));
+        assertTrue(expected.contains("\"John\""));
+        BufferedRdfGraph graph = new BufferedRdfGraph(4);
+        assertEquals(write(build(graph)), expected);
+        // a cleared graph is reused for the next record
+        graph.clear();
+        assertFalse(graph.getResources().hasNext());
+        assertEquals(write(build(graph)), expected);
+    }
+
+    @Test
+    public void testReadBack() throws Exception {
+        BufferedRdfGraph graph = new BufferedRdfGraph();
+        Resource r = graph.newResource();
+        r.add("dc:title", "Hello").add("dc:title", "Hello").add("dc:title", "World");
+        r.newResource("dc:creator").add("foaf:name", "Jane");
+        assertEquals(r.size(), 2);
+        Iterator<?> it = r.objects("dc:title");
+        assertEquals(it.next().toString(), "Hello");
+        assertEquals(it.next().toString(), "World");
+        assertFalse(it.hasNext());
+        assertEquals(r.embeddedResources(IRI.create("dc:creator")).size(), 1);
+        r.rename("dc:title", "dc:alternative");
+        assertFalse(r.objects("dc:title").hasNext());
+        assertTrue(r.objects("dc:alternative").hasNext());
+        assertTrue(r.toString().startsWith("_:b"));
+    }
+
+    private RdfGraph<RdfGraphParams> build(RdfGraph<RdfGraphParams> graph) throws IOException {
+        Resource root = graph.newResource();
+        graph.receive(root);
+        root.add("dc:title", "Hello World")
+                .add("dc:date", 2015)
+                .add("dc:subject", "A")
+                .add("dc:subject", "B")
+                .add("dc:subject", "A");
+        Resource creator = root.newResource("dc:creator");
+        creator.add("foaf:name", "Jane").add("foaf:mbox", IRI.create("mailto:jane@example.org"));
+        root.add("dc:publisher", "Library");
+        root.newResource("dc:creator").add("foaf:name", "John");
+        Map<String, Object> map = new LinkedHashMap<String, Object>();
+        map.put("dc:identifier", "123");
+        map.put("dc:format", "print");
+        root.add("dc:relation", map);
+        root.add("dc:temp", "renamed");
+        root.rename("dc:temp", "dc:description");
+        root.add("dc:subject", "C");
+        root.id(IRI.builder().fragment("record1").build());
+        return graph;
+    }
+
+    private String write(RdfGraph<RdfGraphParams> graph) throws IOException {
+        StringBuilder sb = new StringBuilder();
+        Iterator<Resource> it = graph.getResources();
+        while (it.hasNext()) {
+            RdfContentBuilder builder = ntripleBuilder();
+            builder.receive(it.next());
+            sb.append(builder.string());
+        }
+        return normalizeBlankNodes(sb.toString());
+    }
+
+    private static String normalizeBlankNodes(String s) {
+        Map<String, String> labels = new HashMap<String, String>();
+        Matcher m = Pattern.compile("_:b\\d+").matcher(s);
+        StringBuffer sb = new StringBuffer();
+        while (m.find()) {
+            String label = labels.get(m.group());
+            if (label == null) {
+                label = "_:n" + labels.size();
+                labels.put(m.group(), label);
+            }
+            m.appendReplacement(sb, label);
+        }
+        m.appendTail(sb);
+        return sb.toString();
+    }
+}
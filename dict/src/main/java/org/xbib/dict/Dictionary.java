@@ -5,23 +5,59 @@ import org.xbib.morph.fsa.FSABuilder;
 import org.xbib.morph.fsa.FSAFinalStatesIterator;
 import org.xbib.morph.fsa.FSATraversal;
 import org.xbib.morph.fsa.MatchResult;
+import org.xbib.morph.fsa.io.FSACodec;
+import org.xbib.morph.fsa.io.FSAUtils;
+
 import static org.xbib.morph.fsa.MatchResult.*;
 
 import java.io.BufferedReader;
+import java.io.File;
 import java.io.IOException;
+import java.io.OutputStream;
 import java.io.Reader;
 import java.nio.ByteBuffer;
 import java.nio.CharBuffer;
 import java.nio.charset.CharacterCodingException;
 import java.nio.charset.Charset;
+import java.nio.charset.CharsetEncoder;
+import java.nio.charset.CoderResult;
 import java.util.ArrayList;
 import java.util.Collections;
 import java.util.List;
 
+/**
+ * A dictionary of lines "word TAB base form" in a finite state automaton.
+ *
+ * The automaton is either built from the lines with {@link #load(Reader)}, or built once
+ * offline, written with {@link #write(FSACodec, OutputStream)} in FSA5 or CFSA2 format and
+ * memory-mapped with {@link #map(File)}. A mapped dictionary is traversed in the mapped file
+ * and does not occupy heap space.
+ */
 public class Dictionary {
 
     private final static Charset UTF8 = Charset.forName("UTF-8");
 
+    private final static ThreadLocal<CharsetEncoder> encoder = new ThreadLocal<CharsetEncoder>() {
+        @Override
+        protected CharsetEncoder initialValue() {
+            return UTF8.newEncoder();
+        }
+    };
+
+    private final static ThreadLocal<ByteBuffer> encodeBuffer = new ThreadLocal<ByteBuffer>() {
+        @Override
+        protected ByteBuffer initialValue() {
+            return ByteBuffer.allocate(256);
+        }
+    };
+
+    private final static ThreadLocal<MatchResult> matchResult = new ThreadLocal<MatchResult>() {
+        @Override
+        protected MatchResult initialValue() {
+            return new MatchResult();
+        }
+    };
+
     private FSA fsa;
 
     private FSATraversal matcher;
@@ -39,17 +75,48 @@ public class Dictionary {
         for (byte[] b : lines) {
             builder.add(b, 0, b.length);
         }
-        this.fsa = builder.complete();
+        return load(builder.complete());
+    }
+
+    public Dictionary load(FSA fsa) {
+        this.fsa = fsa;
         this.matcher = new FSATraversal(fsa);
         return this;
     }
 
+    /**
+     * Memory-maps a dictionary written by {@link #write(FSACodec, OutputStream)}.
+     */
+    public Dictionary map(File file) throws IOException {
+        return load(FSAUtils.<FSA>map(file));
+    }
+
+    /**
+     * Writes the automaton, for example with a {@link org.xbib.morph.fsa.io.CFSA2Codec}, so
+     * it can be mapped instead of being built again.
+     */
+    public <T extends OutputStream> T write(FSACodec codec, T out) throws IOException {
+        return codec.write(fsa, out);
+    }
+
+    public FSA getFSA() {
+        return fsa;
+    }
+
+    /**
+     * Looks up the base form of a word. The word is encoded into a buffer of the current thread.
+     */
     public String lookup(CharSequence prefix) throws CharacterCodingException {
-        return lookup(UTF8.newEncoder().encode(CharBuffer.wrap(prefix)), prefix.toString());
+        ByteBuffer buf = encode(prefix);
+        return lookup(buf.array(), 0, buf.limit(), prefix.toString());
     }
 
     public String lookup(ByteBuffer buf, String result) {
-        MatchResult match = matcher.match(buf.array(), buf.position(), buf.remaining(), fsa.getRootNode());
+        return lookup(buf.array(), buf.arrayOffset() + buf.position(), buf.remaining(), result);
+    }
+
+    private String lookup(byte[] b, int off, int len, String result) {
+        MatchResult match = matcher.match(matchResult.get(), b, off, len, fsa.getRootNode());
         switch (match.kind) {
             case SEQUENCE_IS_A_PREFIX: {
                 final int arc = fsa.getArc(match.node, (byte)'+');
@@ -57,7 +124,7 @@ public class Dictionary {
                     FSAFinalStatesIterator finalStatesIterator = new FSAFinalStatesIterator(fsa, fsa.getRootNode());
                     finalStatesIterator.restartFrom(fsa.getEndNode(arc));
                     if (finalStatesIterator.hasNext()) {
-                        buf = finalStatesIterator.next();
+                        ByteBuffer buf = finalStatesIterator.next();
                         String s = new String(buf.array(), buf.position(), buf.remaining(), UTF8);
                         return s.equals(result) ? s : lookup(buf, s);
                     }
@@ -74,4 +141,24 @@ public class Dictionary {
         return result;
     }
 
+    private static ByteBuffer encode(CharSequence s) throws CharacterCodingException {
+        CharsetEncoder enc = encoder.get().reset();
+        ByteBuffer buf = encodeBuffer.get();
+        int max = (int) Math.ceil(s.length() * enc.maxBytesPerChar());
+        if (buf.capacity() < max) {
+            buf = ByteBuffer.allocate(Math.max(max, buf.capacity() * 2));
+            encodeBuffer.set(buf);
+        }
+        buf.clear();
+        CoderResult cr = enc.encode(CharBuffer.wrap(s), buf, true);
+        if (cr.isError()) {
+            cr.throwException();
+        }
+        cr = enc.flush(buf);
+        if (cr.isError()) {
+            cr.throwException();
+        }
+        buf.flip();
+        return buf;
+    }
 }
@@ -0,0 +1,125 @@
+package org.xbib.fsa.moore.dictionary;
+
+import org.xbib.fsa.moore.State;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.IdentityHashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * An immutable, array-based copy of a {@link DictionaryAutomaton}.
+ *
+ * States are numbered breadth first, the root is state 0. The arcs of a state are stored
+ * contiguously from {@link #firstArc(int)} to {@link #firstArc(int) firstArc(state + 1)},
+ * sorted by their character. Walking the automaton reads int and char arrays only, so it
+ * does not allocate and can be shared by any number of threads.
+ */
+public final class CompiledDictionaryAutomaton {
+
+    private final int[] firstArc;
+
+    private final char[] labels;
+
+    private final int[] targets;
+
+    private final long[] finals;
+
+    private final int maxLength;
+
+    public CompiledDictionaryAutomaton(DictionaryAutomaton automaton) {
+        Map<State<Character, CharSequence>, Integer> ids = new IdentityHashMap<State<Character, CharSequence>, Integer>();
+        List<State<Character, CharSequence>> states = new ArrayList<State<Character, CharSequence>>();
+        State<Character, CharSequence> root = automaton.getCurrentState();
+        ids.put(root, 0);
+        states.add(root);
+        int arcs = 0;
+        for (int i = 0; i < states.size(); i++) {
+            for (State<Character, CharSequence> next : states.get(i).getFollowers()) {
+                if (!ids.containsKey(next)) {
+                    ids.put(next, states.size());
+                    states.add(next);
+                }
+                arcs++;
+            }
+        }
+        this.firstArc = new int[states.size() + 1];
+        this.labels = new char[arcs];
+        this.targets = new int[arcs];
+        this.finals = new long[(states.size() + 63) >>> 6];
+        int[] depth = new int[states.size()];
+        int max = 0;
+        int arc = 0;
+        for (int i = 0; i < states.size(); i++) {
+            State<Character, CharSequence> state = states.get(i);
+            firstArc[i] = arc;
+            if (state.isAccept()) {
+                finals[i >>> 6] |= 1L << i;
+                max = Math.max(max, depth[i]);
+            }
+            Character[] symbols = state.getTransitionSymbols().toArray(new Character[state.getNextStateCount()]);
+            Arrays.sort(symbols);
+            for (Character symbol : symbols) {
+                int target = ids.get(state.getNextState(symbol));
+                labels[arc] = symbol;
+                targets[arc] = target;
+                depth[target] = depth[i] + 1;
+                arc++;
+            }
+        }
+        firstArc[states.size()] = arc;
+        this.maxLength = max;
+    }
+
+    public int getRootState() {
+        return 0;
+    }
+
+    public int getStateCount() {
+        return firstArc.length - 1;
+    }
+
+    public int getArcCount() {
+        return labels.length;
+    }
+
+    /**
+     * The length of the longest word, the deepest a traversal has to go.
+     */
+    public int getMaxLength() {
+        return maxLength;
+    }
+
+    public int firstArc(int state) {
+        return firstArc[state];
+    }
+
+    public char label(int arc) {
+        return labels[arc];
+    }
+
+    public int target(int arc) {
+        return targets[arc];
+    }
+
+    public boolean isFinal(int state) {
+        return (finals[state >>> 6] & (1L << state)) != 0;
+    }
+
+    /**
+     * Gets the state reached by a character, or -1.
+     */
+    public int getNextState(int state, char c) {
+        int i = Arrays.binarySearch(labels, firstArc[state], firstArc[state + 1], c);
+        return i < 0 ? -1 : targets[i];
+    }
+
+    public boolean accept(CharSequence word) {
+        int state = 0;
+        for (int i = 0; i < word.length() && state >= 0; i++) {
+            state = getNextState(state, word.charAt(i));
+        }
+        return state >= 0 && isFinal(state);
+    }
+}
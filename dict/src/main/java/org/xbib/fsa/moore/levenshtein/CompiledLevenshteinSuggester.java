@@ -0,0 +1,271 @@
+package org.xbib.fsa.moore.levenshtein;
+
+import org.xbib.fsa.moore.Automaton;
+import org.xbib.fsa.moore.Suggester;
+import org.xbib.fsa.moore.dictionary.CompiledDictionaryAutomaton;
+import org.xbib.fsa.moore.dictionary.DictionaryAutomaton;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.Iterator;
+import java.util.List;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.RecursiveAction;
+
+/**
+ * A Suggester like {@link LevenshteinAutomatonSuggester}, which intersects the shared
+ * {@link ParametricLevenshteinTable} of edit distance 1 or 2 with a
+ * {@link CompiledDictionaryAutomaton}.
+ *
+ * The intersection is a depth first walk over both automata with int states. The stacks,
+ * the word buffer and the input are kept in a scratch object of the current thread, so
+ * only the suggestions themselves are allocated. Many inputs can be processed at once
+ * with {@link #getSuggestionsFor(List, boolean, int, ForkJoinPool)}.
+ *
+ * Like in {@link LevenshteinAutomatonSuggester}, the suggestions are the words of the smallest
+ * edit distance up to maxlevel. An input word found in the dictionary is only returned if
+ * exact is true. Edit distances greater than 2 are not supported, a greater maxlevel is
+ * treated as 2.
+ *
+ * The dictionary is compiled when it is first queried and again after {@link #add(CharSequence)}.
+ */
+public class CompiledLevenshteinSuggester implements Suggester {
+
+    private final static int BATCH_THRESHOLD = 16;
+
+    private final static ThreadLocal<Scratch> scratch = new ThreadLocal<Scratch>() {
+        @Override
+        protected Scratch initialValue() {
+            return new Scratch();
+        }
+    };
+
+    private final DictionaryAutomaton automaton;
+
+    private volatile CompiledDictionaryAutomaton compiled;
+
+    public CompiledLevenshteinSuggester(Iterable<CharSequence> sequence) {
+        this(new DictionaryAutomaton(sequence));
+    }
+
+    public CompiledLevenshteinSuggester(Iterator<CharSequence> sequence) {
+        this(new DictionaryAutomaton(sequence));
+    }
+
+    public CompiledLevenshteinSuggester(DictionaryAutomaton automaton) {
+        this.automaton = automaton;
+    }
+
+    public Automaton getAutomaton() {
+        return automaton;
+    }
+
+    /**
+     * Adding input to the dictionary automaton. The dictionary is compiled again on the next query.
+     *
+     * @param input
+     */
+    public synchronized void add(CharSequence input) {
+        automaton.add(input);
+        compiled = null;
+    }
+
+    public CompiledDictionaryAutomaton getCompiledAutomaton() {
+        CompiledDictionaryAutomaton dict = compiled;
+        if (dict == null) {
+            synchronized (this) {
+                dict = compiled;
+                if (dict == null) {
+                    dict = new CompiledDictionaryAutomaton(automaton);
+                    compiled = dict;
+                }
+            }
+        }
+        return dict;
+    }
+
+    /**
+     * Get suggestions for a given input.
+     *
+     * @param input
+     * @param withexact
+     * @return
+     */
+    public Collection<CharSequence> getSuggestionsFor(CharSequence input, boolean withexact, int maxlevel) {
+        return getSuggestionsFor(getCompiledAutomaton(), scratch.get(), input, withexact, maxlevel);
+    }
+
+    /**
+     * Get suggestions for many inputs in the common fork-join pool.
+     *
+     * @param inputs the inputs
+     * @param withexact
+     * @param maxlevel
+     * @return the suggestions, in the order of the inputs
+     */
+    public List<Collection<CharSequence>> getSuggestionsFor(List<? extends CharSequence> inputs,
+                                                            boolean withexact, int maxlevel) {
+        return getSuggestionsFor(inputs, withexact, maxlevel, ForkJoinPool.commonPool());
+    }
+
+    /**
+     * Get suggestions for many inputs in a fork-join pool.
+     *
+     * @param inputs the inputs
+     * @param withexact
+     * @param maxlevel
+     * @param pool the pool
+     * @return the suggestions, in the order of the inputs
+     */
+    @SuppressWarnings("unchecked")
+    public List<Collection<CharSequence>> getSuggestionsFor(List<? extends CharSequence> inputs,
+                                                            boolean withexact, int maxlevel, ForkJoinPool pool) {
+        Collection<CharSequence>[] results = new Collection[inputs.size()];
+        pool.invoke(new SuggestAction(getCompiledAutomaton(), inputs, withexact, maxlevel, results, 0, inputs.size()));
+        return Arrays.asList(results);
+    }
+
+    private static Collection<CharSequence> getSuggestionsFor(CompiledDictionaryAutomaton dict, Scratch scratch,
+                                                              CharSequence input, boolean withexact, int maxlevel) {
+        Collection<CharSequence> suggestions = new ArrayList<CharSequence>();
+        if (withexact && dict.accept(input)) {
+            suggestions.add(input.toString());
+        }
+        if (suggestions.isEmpty() && maxlevel > 0) {
+            scratch.prepare(dict, input);
+            recognize(dict, ParametricLevenshteinTable.forDistance(1), scratch, suggestions);
+            if (suggestions.isEmpty() && maxlevel > 1) {
+                recognize(dict, ParametricLevenshteinTable.forDistance(2), scratch, suggestions);
+            }
+        }
+        return suggestions;
+    }
+
+    /**
+     * Simultaneously traverses the dictionary and the Levenshtein table, and adds the words
+     * with an edit distance of exactly n to the result. Closer words are found with a smaller n.
+     */
+    private static void recognize(CompiledDictionaryAutomaton dict, ParametricLevenshteinTable table,
+                                  Scratch scratch, Collection<CharSequence> result) {
+        int n = table.getEditDistance();
+        int width = table.getWidth();
+        int length = scratch.length;
+        char[] input = scratch.input;
+        char[] word = scratch.word;
+        int[] dictStates = scratch.dictStates;
+        int[] levStates = scratch.levStates;
+        int[] arcs = scratch.arcs;
+        int depth = 0;
+        dictStates[0] = dict.getRootState();
+        levStates[0] = table.getStartState();
+        arcs[0] = dict.firstArc(dictStates[0]);
+        while (depth >= 0) {
+            int arc = arcs[depth];
+            if (arc == dict.firstArc(dictStates[depth] + 1) || depth == length + n) {
+                depth--;
+                continue;
+            }
+            arcs[depth] = arc + 1;
+            char c = dict.label(arc);
+            int bits = 0;
+            for (int i = 0; i < width; i++) {
+                int pos = depth - n + i;
+                if (pos >= 0 && pos < length && input[pos] == c) {
+                    bits |= 1 << i;
+                }
+            }
+            int lev = table.getNextState(levStates[depth], bits);
+            if (lev < 0) {
+                continue;
+            }
+            int target = dict.target(arc);
+            word[depth] = c;
+            depth++;
+            if (dict.isFinal(target) && table.getDistance(lev, length - depth) == n) {
+                result.add(new String(word, 0, depth));
+            }
+            dictStates[depth] = target;
+            levStates[depth] = lev;
+            arcs[depth] = dict.firstArc(target);
+        }
+    }
+
+    /**
+     * The per-thread state of a traversal. A traversal is never deeper than the input length plus 2.
+     */
+    private static class Scratch {
+
+        char[] input = new char[32];
+
+        char[] word = new char[32];
+
+        int[] dictStates = new int[32];
+
+        int[] levStates = new int[32];
+
+        int[] arcs = new int[32];
+
+        int length;
+
+        void prepare(CompiledDictionaryAutomaton dict, CharSequence s) {
+            length = s.length();
+            if (input.length < length) {
+                input = new char[Math.max(length, input.length * 2)];
+            }
+            for (int i = 0; i < length; i++) {
+                input[i] = s.charAt(i);
+            }
+            int depth = Math.min(length + 2, dict.getMaxLength()) + 1;
+            if (word.length < depth) {
+                int size = Math.max(depth, word.length * 2);
+                word = new char[size];
+                dictStates = new int[size];
+                levStates = new int[size];
+                arcs = new int[size];
+            }
+        }
+    }
+
+    private static class SuggestAction extends RecursiveAction {
+
+        private final CompiledDictionaryAutomaton dict;
+
+        private final List<? extends CharSequence> inputs;
+
+        private final boolean withexact;
+
+        private final int maxlevel;
+
+        private final Collection<CharSequence>[] results;
+
+        private final int from;
+
+        private final int to;
+
+        SuggestAction(CompiledDictionaryAutomaton dict, List<? extends CharSequence> inputs,
+                      boolean withexact, int maxlevel, Collection<CharSequence>[] results, int from, int to) {
+            this.dict = dict;
+            this.inputs = inputs;
+            this.withexact = withexact;
+            this.maxlevel = maxlevel;
+            this.results = results;
+            this.from = from;
+            this.to = to;
+        }
+
+        @Override
+        protected void compute() {
+            if (to - from <= BATCH_THRESHOLD) {
+                Scratch s = scratch.get();
+                for (int i = from; i < to; i++) {
+                    results[i] = getSuggestionsFor(dict, s, inputs.get(i), withexact, maxlevel);
+                }
+            } else {
+                int mid = (from + to) >>> 1;
+                invokeAll(new SuggestAction(dict, inputs, withexact, maxlevel, results, from, mid),
+                        new SuggestAction(dict, inputs, withexact, maxlevel, results, mid, to));
+            }
+        }
+    }
+}
@@ -0,0 +1,164 @@
+package org.xbib.fsa.moore.levenshtein;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+
+/**
+ * A parametric Levenshtein DFA for an edit distance n, precomputed into an int array.
+ *
+ * While a word is read character by character, a state stands for a band of the
+ * Levenshtein matrix row: after d characters, the distances between the word read so far
+ * and the input prefixes of length d-n to d+n, clipped to n+1. Outside of this band the
+ * distance is always greater than n. The transitions are labeled with characteristic
+ * vectors, where bit i is set if the character is equal to input character d-n+i, so the
+ * table does not depend on the input and is computed once per edit distance in
+ * {@link #forDistance(int)}.
+ *
+ * States which are more than n edits away from every input prefix are dropped, their
+ * transitions are -1.
+ */
+public final class ParametricLevenshteinTable {
+
+    private final int editDistance;
+
+    private final int width;
+
+    private final int[] transitions;
+
+    private final byte[] distances;
+
+    private ParametricLevenshteinTable(int editDistance) {
+        this.editDistance = editDistance;
+        this.width = 2 * editDistance + 1;
+        int columns = 1 << width;
+        int limit = editDistance + 1;
+        int codes = 1;
+        for (int i = 0; i < width; i++) {
+            codes *= limit + 1;
+        }
+        int[] ids = new int[codes];
+        Arrays.fill(ids, -1);
+        List<byte[]> states = new ArrayList<byte[]>();
+        byte[] start = new byte[width];
+        for (int k = 0; k < width; k++) {
+            start[k] = (byte) (k < editDistance ? limit : k - editDistance);
+        }
+        ids[code(start, limit)] = 0;
+        states.add(start);
+        int[] table = new int[columns];
+        int size = 0;
+        byte[] next = new byte[width];
+        for (int s = 0; s < states.size(); s++) {
+            byte[] row = states.get(s);
+            if (table.length < size + columns) {
+                table = Arrays.copyOf(table, table.length * 2);
+            }
+            for (int bits = 0; bits < columns; bits++) {
+                boolean alive = false;
+                for (int k = 0; k < width; k++) {
+                    int d = row[k] + ((bits & (1 << k)) != 0 ? 0 : 1);
+                    if (k + 1 < width) {
+                        d = Math.min(d, row[k + 1] + 1);
+                    }
+                    if (k > 0) {
+                        d = Math.min(d, next[k - 1] + 1);
+                    }
+                    next[k] = (byte) Math.min(d, limit);
+                    alive |= d <= editDistance;
+                }
+                int target = -1;
+                if (alive) {
+                    int code = code(next, limit);
+                    target = ids[code];
+                    if (target < 0) {
+                        target = states.size();
+                        ids[code] = target;
+                        states.add(next.clone());
+                    }
+                }
+                table[size++] = target;
+            }
+        }
+        this.transitions = Arrays.copyOf(table, size);
+        this.distances = new byte[states.size() * width];
+        for (int s = 0; s < states.size(); s++) {
+            System.arraycopy(states.get(s), 0, distances, s * width, width);
+        }
+    }
+
+    /**
+     * Gets the table for an edit distance of 1 or 2.
+     *
+     * @param editDistance the edit distance
+     * @return the shared table
+     */
+    public static ParametricLevenshteinTable forDistance(int editDistance) {
+        switch (editDistance) {
+            case 1:
+                return Distance1.TABLE;
+            case 2:
+                return Distance2.TABLE;
+            default:
+                throw new IllegalArgumentException("edit distance must be 1 or 2: " + editDistance);
+        }
+    }
+
+    public int getEditDistance() {
+        return editDistance;
+    }
+
+    /**
+     * The length of a characteristic vector, {@code 2n+1}.
+     */
+    public int getWidth() {
+        return width;
+    }
+
+    public int getStateCount() {
+        return distances.length / width;
+    }
+
+    public int getStartState() {
+        return 0;
+    }
+
+    /**
+     * Gets the next state, or -1 if the word read so far is more than n edits away from the input.
+     *
+     * @param state the current state
+     * @param bits  the characteristic vector
+     * @return the next state or -1
+     */
+    public int getNextState(int state, int bits) {
+        return transitions[(state << width) + bits];
+    }
+
+    /**
+     * Gets the distance between the word read so far and the whole input.
+     *
+     * @param state     the current state
+     * @param remaining the input length minus the length of the word read so far
+     * @return the distance, or n+1 if it is greater than n
+     */
+    public int getDistance(int state, int remaining) {
+        int k = remaining + editDistance;
+        return k >= 0 && k < width ? distances[state * width + k] : editDistance + 1;
+    }
+
+    private static int code(byte[] row, int limit) {
+        int code = 0;
+        for (byte b : row) {
+            code = code * (limit + 1) + b;
+        }
+        return code;
+    }
+
+    private static class Distance1 {
+        static final ParametricLevenshteinTable TABLE = new ParametricLevenshteinTable(1);
+    }
+
+    private static class Distance2 {
+        static final ParametricLevenshteinTable TABLE = new ParametricLevenshteinTable(2);
+    }
+}
@@ -1,5 +1,6 @@
 package org.xbib.morph.fsa;
 
+import java.nio.ByteBuffer;
 import java.util.EnumSet;
 import java.util.Set;
 
@@ -125,6 +126,11 @@ public final class CFSA2 extends FSA {
      */
     public byte[] arcs;
 
+    /**
+     * The arcs of the automaton, wrapping {@link #arcs} or a slice of a memory-mapped file.
+     */
+    private ByteBuffer buffer;
+
     /**
      * Flags for this automaton version.
      */
@@ -145,6 +151,17 @@ public final class CFSA2 extends FSA {
 
     public CFSA2 setArcs(byte[] arcs) {
         this.arcs = arcs;
+        this.buffer = ByteBuffer.wrap(arcs);
+        return this;
+    }
+
+    /**
+     * Uses the arcs in the buffer without copying them, for example from a memory-mapped
+     * file. The {@link #arcs} array is not set.
+     */
+    public CFSA2 setArcs(ByteBuffer arcs) {
+        this.arcs = null;
+        this.buffer = arcs.slice();
         return this;
     }
 
@@ -209,7 +226,7 @@ public final class CFSA2 extends FSA {
     public int getEndNode(int arc) {
         final int nodeOffset = getDestinationNodeOffset(arc);
         assert nodeOffset != 0 : "can't follow a terminal arc: " + arc;
-        assert nodeOffset < arcs.length : "node out of bounds";
+        assert nodeOffset < buffer.limit() : "node out of bounds";
         return nodeOffset;
     }
 
@@ -218,11 +235,11 @@ public final class CFSA2 extends FSA {
      */
     @Override
     public byte getArcLabel(int arc) {
-        int index = arcs[arc] & LABEL_INDEX_MASK;
+        int index = buffer.get(arc) & LABEL_INDEX_MASK;
         if (index > 0) {
             return this.labelMapping[index];
         } else {
-            return arcs[arc + 1];
+            return buffer.get(arc + 1);
         }
     }
 
@@ -232,7 +249,7 @@ public final class CFSA2 extends FSA {
     @Override
     public int getRightLanguageCount(int node) {
         assert getFlags().contains(FSAFlags.NUMBERS) : "this FSA was not compiled with NUMBERS";
-        return readVInt(arcs, node);
+        return readVInt(buffer, node);
     }
 
     /**
@@ -240,7 +257,7 @@ public final class CFSA2 extends FSA {
      */
     @Override
     public boolean isArcFinal(int arc) {
-        return (arcs[arc] & BIT_FINAL_ARC) != 0;
+        return (buffer.get(arc) & BIT_FINAL_ARC) != 0;
     }
 
     /**
@@ -257,14 +274,14 @@ public final class CFSA2 extends FSA {
      * @see #BIT_LAST_ARC
      */
     public boolean isArcLast(int arc) {
-        return (arcs[arc] & BIT_LAST_ARC) != 0;
+        return (buffer.get(arc) & BIT_LAST_ARC) != 0;
     }
 
     /**
      * @see #BIT_TARGET_NEXT
      */
     public boolean isNextSet(int arc) {
-        return (arcs[arc] & BIT_TARGET_NEXT) != 0;
+        return (buffer.get(arc) & BIT_TARGET_NEXT) != 0;
     }
 
     /**
@@ -290,7 +307,7 @@ public final class CFSA2 extends FSA {
 			 * The destination node address is v-coded. v-code starts either
 			 * at the next byte (label indexed) or after the next byte (label explicit).
 			 */
-            return readVInt(arcs, arc + ((arcs[arc] & LABEL_INDEX_MASK) == 0 ? 2 : 1));
+            return readVInt(buffer, arc + ((buffer.get(arc) & LABEL_INDEX_MASK) == 0 ? 2 : 1));
         }
     }
 
@@ -298,7 +315,7 @@ public final class CFSA2 extends FSA {
      * Read the arc's layout and skip as many bytes, as needed, to skip it.
      */
     private int skipArc(int offset) {
-        int flag = arcs[offset++];
+        int flag = buffer.get(offset++);
         // Explicit label?
         if ((flag & LABEL_INDEX_MASK) == 0) {
             offset++;
@@ -307,7 +324,7 @@ public final class CFSA2 extends FSA {
         if ((flag & BIT_TARGET_NEXT) == 0) {
             offset = skipVInt(offset);
         }
-        assert offset < this.arcs.length;
+        assert offset < this.buffer.limit();
         return offset;
     }
 
@@ -324,6 +341,19 @@ public final class CFSA2 extends FSA {
         return value;
     }
 
+    /**
+     * Read a v-int from a buffer.
+     */
+    public static int readVInt(ByteBuffer buffer, int offset) {
+        byte b = buffer.get(offset);
+        int value = b & 0x7F;
+        for (int shift = 7; b < 0; shift += 7) {
+            b = buffer.get(++offset);
+            value |= (b & 0x7F) << shift;
+        }
+        return value;
+    }
+
     /**
      * Write a v-int to a byte array.
      */
@@ -353,7 +383,7 @@ public final class CFSA2 extends FSA {
      * Skip a v-int.
      */
     private int skipVInt(int offset) {
-        while (arcs[offset++] < 0) {
+        while (buffer.get(offset++) < 0) {
             ;
         }
         return offset;
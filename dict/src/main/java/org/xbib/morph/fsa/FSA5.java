@@ -1,5 +1,6 @@
 package org.xbib.morph.fsa;
 
+import java.nio.ByteBuffer;
 import java.util.Collections;
 import java.util.Set;
 
@@ -105,6 +106,11 @@ public final class FSA5 extends FSA {
      */
     public byte[] arcs;
 
+    /**
+     * The arcs of the automaton, wrapping {@link #arcs} or a slice of a memory-mapped file.
+     */
+    private ByteBuffer buffer;
+
     /**
      * The length of the node header structure (if the automaton was compiled with
      * <code>NUMBERS</code> option). Otherwise zero.
@@ -136,6 +142,17 @@ public final class FSA5 extends FSA {
 
     public FSA5 setArcs(byte[] arcs) {
         this.arcs = arcs;
+        this.buffer = ByteBuffer.wrap(arcs);
+        return this;
+    }
+
+    /**
+     * Uses the arcs in the buffer without copying them, for example from a memory-mapped
+     * file. The {@link #arcs} array is not set.
+     */
+    public FSA5 setArcs(ByteBuffer arcs) {
+        this.arcs = null;
+        this.buffer = arcs.slice();
         return this;
     }
 
@@ -225,7 +242,7 @@ public final class FSA5 extends FSA {
      */
     @Override
     public byte getArcLabel(int arc) {
-        return arcs[arc];
+        return buffer.get(arc);
     }
 
     /**
@@ -233,7 +250,7 @@ public final class FSA5 extends FSA {
      */
     @Override
     public boolean isArcFinal(int arc) {
-        return (arcs[arc + ADDRESS_OFFSET] & BIT_FINAL_ARC) != 0;
+        return (buffer.get(arc + ADDRESS_OFFSET) & BIT_FINAL_ARC) != 0;
     }
 
     /**
@@ -252,7 +269,7 @@ public final class FSA5 extends FSA {
     @Override
     public int getRightLanguageCount(int node) {
         assert getFlags().contains(FSAFlags.NUMBERS) : "This FSA was not compiled with NUMBERS.";
-        return decodeFromBytes(arcs, node, nodeDataLength);
+        return decodeFromBytes(buffer, node, nodeDataLength);
     }
 
     /**
@@ -272,14 +289,14 @@ public final class FSA5 extends FSA {
      * @see #BIT_LAST_ARC
      */
     public boolean isArcLast(int arc) {
-        return (arcs[arc + ADDRESS_OFFSET] & BIT_LAST_ARC) != 0;
+        return (buffer.get(arc + ADDRESS_OFFSET) & BIT_LAST_ARC) != 0;
     }
 
     /**
      * @see #BIT_TARGET_NEXT
      */
     public boolean isNextSet(int arc) {
-        return (arcs[arc + ADDRESS_OFFSET] & BIT_TARGET_NEXT) != 0;
+        return (buffer.get(arc + ADDRESS_OFFSET) & BIT_TARGET_NEXT) != 0;
     }
 
     /**
@@ -293,6 +310,17 @@ public final class FSA5 extends FSA {
         return r;
     }
 
+    /**
+     * Returns an n-byte integer encoded in byte-packed representation.
+     */
+    static int decodeFromBytes(final ByteBuffer arcs, final int start, final int n) {
+        int r = 0;
+        for (int i = n; --i >= 0; ) {
+            r = r << 8 | (arcs.get(start + i) & 0xff);
+        }
+        return r;
+    }
+
     /**
      * Returns the address of the node pointed to by this arc.
      */
@@ -305,7 +333,7 @@ public final class FSA5 extends FSA {
 			 * The destination node address has to be extracted from the arc's
 			 * goto field.
 			 */
-            return decodeFromBytes(arcs, arc + ADDRESS_OFFSET, gtl) >>> 3;
+            return decodeFromBytes(buffer, arc + ADDRESS_OFFSET, gtl) >>> 3;
         }
     }
 
@@ -15,6 +15,8 @@ import org.xbib.util.FileUtils;
 import java.io.IOException;
 import java.io.InputStream;
 import java.io.OutputStream;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
 import java.util.ArrayDeque;
 import java.util.BitSet;
 import java.util.Comparator;
@@ -138,6 +140,38 @@ public final class CFSA2Codec implements FSACodec {
         return cfsa2;
     }
 
+    /**
+     * Wraps an automaton in a buffer without copying the arcs.
+     */
+    @Override
+    public CFSA2 read(ByteBuffer buffer) throws IOException {
+        ByteBuffer in = buffer.duplicate().order(ByteOrder.BIG_ENDIAN);
+        CFSA2 cfsa2 = new CFSA2();
+        if (in.remaining() < 8 || FSAHeader.FSA_MAGIC != in.getInt()) {
+            throw new IOException("Invalid file header magic bytes.");
+        }
+        final int version = in.get();
+        if (version != CFSA2.VERSION) {
+            throw new IOException("This class can only read FSA version: " + CFSA2.VERSION);
+        }
+        short flagBits = in.getShort();
+        EnumSet<FSAFlags> flags = EnumSet.noneOf(FSAFlags.class);
+        for (FSAFlags f : FSAFlags.values()) {
+            if (FSAFlags.isSet(flagBits, f)) {
+                flags.add(f);
+            }
+        }
+        if (flagBits != FSAFlags.asShort(flags)) {
+            throw new IOException("Unrecognized flags remained: 0x" + Integer.toHexString(flagBits));
+        }
+        cfsa2.hasNumbers(flags.contains(FSAFlags.NUMBERS));
+        byte[] labelMapping = new byte[in.get() & 0xff];
+        in.get(labelMapping);
+        cfsa2.setLabelMapping(labelMapping);
+        cfsa2.setArcs(in.slice());
+        return cfsa2;
+    }
+
     /**
      * Serializes any {@link org.xbib.morph.fsa.FSA} to {@link org.xbib.morph.fsa.CFSA2} stream.
      *
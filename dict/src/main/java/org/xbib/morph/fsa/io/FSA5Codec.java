@@ -116,6 +116,30 @@ public final class FSA5Codec implements FSACodec {
         return fsa5;
     }
 
+    /**
+     * Wrap a binary automaton in FSA version 5 without copying the arcs.
+     */
+    @Override
+    public FSA5 read(ByteBuffer buffer) throws IOException {
+        ByteBuffer in = buffer.duplicate();
+        final FSAHeader header = FSAUtils.readHeader(in);
+        if (header.version != FSA5.VERSION) {
+            throw new IOException("This class can read FSA version 5 only: " + header.version);
+        }
+        FSA5 fsa5 = new FSA5();
+        EnumSet<FSAFlags> flags = EnumSet.of(FLEXIBLE, STOPBIT, NEXTBIT);
+        if ((header.gtl & 0xf0) != 0) {
+            flags.add(NUMBERS);
+        }
+        fsa5.setFlags(flags);
+        fsa5.setNodeDataLength((header.gtl >>> 4) & 0x0f);
+        fsa5.setGotoLength(header.gtl & 0x0f);
+        fsa5.setFiller(header.filler);
+        fsa5.setAnnotation(header.annotation);
+        fsa5.setArcs(in.slice());
+        return fsa5;
+    }
+
     /**
      * Serialize the automaton with the number of right-language sequences in
      * each node. This is required to implement perfect hashing. The numbering
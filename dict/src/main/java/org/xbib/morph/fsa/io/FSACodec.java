@@ -6,6 +6,7 @@ import org.xbib.morph.fsa.FSAFlags;
 import java.io.IOException;
 import java.io.InputStream;
 import java.io.OutputStream;
+import java.nio.ByteBuffer;
 import java.util.Set;
 
 /**
@@ -15,6 +16,11 @@ public interface FSACodec {
 
     public <T extends InputStream> FSA read(T in) throws IOException;
 
+    /**
+     * Wraps an automaton in a buffer without copying the arcs, for example a memory-mapped file.
+     */
+    public FSA read(ByteBuffer buffer) throws IOException;
+
     /**
      * Serialize a finite state automaton to an output stream.
      */
@@ -9,10 +9,14 @@ import org.xbib.morph.fsa.StateVisitor;
 import org.xbib.util.FileUtils;
 
 import java.io.BufferedInputStream;
+import java.io.File;
 import java.io.IOException;
 import java.io.InputStream;
+import java.io.RandomAccessFile;
 import java.io.StringWriter;
 import java.io.Writer;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
 import java.util.ArrayList;
 import java.util.Arrays;
 import java.util.BitSet;
@@ -49,6 +53,48 @@ public class FSAUtils {
                 + header.version);
     }
 
+    /**
+     * A factory for wrapping automata in any of the supported versions from a buffer,
+     * the arcs are not copied.
+     */
+    @SuppressWarnings("unchecked")
+    public static <T extends FSA> T read(ByteBuffer buffer) throws IOException {
+        if (buffer.remaining() < FSAHeader.MAX_HEADER_LENGTH) {
+            throw new IOException("Invalid file header magic bytes.");
+        }
+        byte version = buffer.get(buffer.position() + 4);
+        if (version == FSA5.VERSION) {
+            return (T) new FSA5Codec().read(buffer);
+        }
+        if (version == CFSA2.VERSION) {
+            return (T) new CFSA2Codec().read(buffer);
+        }
+        throw new IOException("Unsupported automaton version: " + version);
+    }
+
+    /**
+     * Memory-maps an automaton file read-only. Lookups traverse the mapped file, so
+     * the automaton does not occupy heap space.
+     */
+    public static <T extends FSA> T map(File file) throws IOException {
+        try (RandomAccessFile raf = new RandomAccessFile(file, "r");
+             FileChannel channel = raf.getChannel()) {
+            return read(channel.map(FileChannel.MapMode.READ_ONLY, 0, channel.size()));
+        }
+    }
+
+    public static FSAHeader readHeader(ByteBuffer in) throws IOException {
+        if (in.remaining() < 8 || FSAHeader.FSA_MAGIC != ((in.get() & 0xff) << 24 | (in.get() & 0xff) << 16 | (in.get() & 0xff) << 8 | (in.get() & 0xff))) {
+            throw new IOException("Invalid file header magic bytes.");
+        }
+        final FSAHeader h = new FSAHeader();
+        h.version = in.get();
+        h.filler = in.get();
+        h.annotation = in.get();
+        h.gtl = in.get();
+        return h;
+    }
+
     public static FSAHeader readHeader(InputStream in) throws IOException {
         if (FSAHeader.FSA_MAGIC != FileUtils.readInt(in)) {
             throw new IOException("Invalid file header magic bytes.");
@@ -83,6 +83,17 @@ public class AhoCorasick {
         this.prepared = true;
     }
 
+    /**
+     * Freezes the prepared automaton into a {@link DoubleArrayAhoCorasick}, which searches
+     * on flat arrays and can be written to a file.
+     */
+    public DoubleArrayAhoCorasick compile() {
+        if (!this.prepared) {
+            throw new IllegalStateException("can't compile until prepare()");
+        }
+        return new DoubleArrayAhoCorasick(this.root);
+    }
+
     public Iterator<SearchResult> progressiveSearch(String inputText) {
         return progressiveSearch(inputText.toCharArray());
     }
@@ -143,7 +154,7 @@ public class AhoCorasick {
      * (longest).
      * </ul>
      */
-    void removeOverlapping(List<Result> results) {
+    static void removeOverlapping(List<Result> results) {
         int currentIndex = 0;
         Result current;
         Result next;
@@ -238,7 +249,7 @@ public class AhoCorasick {
                 && currentIndex < inputText.length;
     }
 
-    private void sortOutputResults(List<Result> results) {
+    static void sortOutputResults(List<Result> results) {
         Collections.sort(results, new Comparator<Result>() {
             @Override
             public int compare(Result o1, Result o2) {
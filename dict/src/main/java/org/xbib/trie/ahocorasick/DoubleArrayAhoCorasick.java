@@ -0,0 +1,437 @@
+package org.xbib.trie.ahocorasick;
+
+import java.io.File;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.io.RandomAccessFile;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.nio.CharBuffer;
+import java.nio.IntBuffer;
+import java.nio.channels.Channels;
+import java.nio.channels.FileChannel;
+import java.nio.channels.WritableByteChannel;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.IdentityHashMap;
+import java.util.Iterator;
+import java.util.LinkedList;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+
+/**
+ * <p>
+ * A compiled Aho-Corasick automaton. The states of a prepared {@link AhoCorasick} tree are
+ * frozen into a double array (base/check layout) with fail transitions, the outputs of the
+ * states are lists in a shared int pool. The chars of the keywords are mapped to a dense
+ * alphabet before the transitions are looked up.
+ * </p>
+ * <p>
+ * The automaton can be written to a file and memory-mapped again, the arrays are read
+ * from the mapped buffer and the output strings are decoded on first use.
+ * </p>
+ * <p>
+ * Example usage: <code><pre>
+ * AhoCorasick tree = new AhoCorasick();
+ * tree.add("hello");
+ * tree.add("world");
+ * tree.prepare();
+ * DoubleArrayAhoCorasick automaton = tree.compile();
+ * automaton.write(out);
+ * ...
+ * automaton = DoubleArrayAhoCorasick.map(file);
+ * Iterator searcher = automaton.progressiveSearch("hello world");
+ * </pre></code>
+ * </p>
+ */
+public class DoubleArrayAhoCorasick {
+
+    private final static int MAGIC = 0x41434441;
+
+    private final static int VERSION = 1;
+
+    private final static int HEADER_LENGTH = 24;
+
+    private final static int ALPHABET_SIZE = 65536;
+
+    private final static int FREE = -1;
+
+    private final int size;
+
+    private final CharBuffer code;
+
+    private final IntBuffer base;
+
+    private final IntBuffer check;
+
+    private final IntBuffer fail;
+
+    private final IntBuffer output;
+
+    private final IntBuffer pool;
+
+    private final IntBuffer offsets;
+
+    private final ByteBuffer bytes;
+
+    private final String[] strings;
+
+    DoubleArrayAhoCorasick(State<String> root) {
+        List<State<String>> states = new ArrayList<State<String>>();
+        Map<State<String>, Integer> index = new IdentityHashMap<State<String>, Integer>();
+        LinkedList<State<String>> q = new LinkedList<State<String>>();
+        Set<Character> chars = new HashSet<Character>();
+        q.add(root);
+        index.put(root, 0);
+        while (!q.isEmpty()) {
+            State<String> state = q.removeFirst();
+            states.add(state);
+            for (char key : state.keys()) {
+                State<String> s = state.get(key);
+                chars.add(key);
+                index.put(s, index.size());
+                q.add(s);
+            }
+        }
+        // dense alphabet, codes start at 1
+        char[] alphabet = new char[chars.size()];
+        int n = 0;
+        for (Character c : chars) {
+            alphabet[n++] = c;
+        }
+        Arrays.sort(alphabet);
+        char[] codes = new char[ALPHABET_SIZE];
+        for (int i = 0; i < alphabet.length; i++) {
+            codes[alphabet[i]] = (char) (i + 1);
+        }
+        // place the states in the double array, breadth first
+        int capacity = Math.max(states.size() * 2, alphabet.length + 2);
+        int[] baseArray = new int[capacity];
+        int[] checkArray = new int[capacity];
+        Arrays.fill(checkArray, FREE);
+        int[] position = new int[states.size()];
+        checkArray[0] = 0;
+        int firstFree = 1;
+        int maxPosition = 0;
+        for (int i = 0; i < states.size(); i++) {
+            State<String> state = states.get(i);
+            char[] keys = state.keys();
+            if (keys.length == 0) {
+                continue;
+            }
+            int[] c = new int[keys.length];
+            for (int j = 0; j < keys.length; j++) {
+                c[j] = codes[keys[j]];
+            }
+            Arrays.sort(c);
+            int start = Math.max(firstFree, c[0] + 1);
+            int pos = start - 1;
+            int nonzero = 0;
+            boolean first = true;
+            int begin;
+            while (true) {
+                pos++;
+                if (pos + c[c.length - 1] - c[0] >= checkArray.length) {
+                    int newCapacity = Math.max(checkArray.length * 2, pos + c[c.length - 1] + 1);
+                    baseArray = Arrays.copyOf(baseArray, newCapacity);
+                    int oldCapacity = checkArray.length;
+                    checkArray = Arrays.copyOf(checkArray, newCapacity);
+                    Arrays.fill(checkArray, oldCapacity, newCapacity, FREE);
+                }
+                if (checkArray[pos] != FREE) {
+                    nonzero++;
+                    continue;
+                }
+                if (first) {
+                    firstFree = pos;
+                    first = false;
+                }
+                begin = pos - c[0];
+                boolean fits = true;
+                for (int j = 1; j < c.length; j++) {
+                    if (checkArray[begin + c[j]] != FREE) {
+                        fits = false;
+                        break;
+                    }
+                }
+                if (fits) {
+                    break;
+                }
+            }
+            // skip densely used regions in the next searches
+            if (nonzero >= 0.95 * (pos - start + 1)) {
+                firstFree = pos;
+            }
+            int parent = position[i];
+            baseArray[parent] = begin;
+            for (int j = 0; j < keys.length; j++) {
+                int t = begin + codes[keys[j]];
+                checkArray[t] = parent;
+                position[index.get(state.get(keys[j]))] = t;
+                maxPosition = Math.max(maxPosition, t);
+            }
+            while (firstFree < checkArray.length && checkArray[firstFree] != FREE) {
+                firstFree++;
+            }
+        }
+        this.size = maxPosition + 1;
+        // fail transitions and the output lists
+        int[] failArray = new int[size];
+        int[] outputArray = new int[size];
+        int[] poolArray = new int[16];
+        int poolSize = 1;
+        Map<String, Integer> ids = new HashMap<String, Integer>();
+        List<String> outputs = new ArrayList<String>();
+        for (int i = 0; i < states.size(); i++) {
+            State<String> state = states.get(i);
+            int pos = position[i];
+            State<String> f = state.getFail();
+            failArray[pos] = f != null ? position[index.get(f)] : 0;
+            Set<String> set = state.getOutputs();
+            if (set.isEmpty()) {
+                continue;
+            }
+            if (f != null && set.equals(f.getOutputs())) {
+                // share the list of the fail state
+                outputArray[pos] = outputArray[failArray[pos]];
+                continue;
+            }
+            if (poolSize + set.size() + 1 > poolArray.length) {
+                poolArray = Arrays.copyOf(poolArray, Math.max(poolArray.length * 2, poolSize + set.size() + 1));
+            }
+            outputArray[pos] = poolSize;
+            poolArray[poolSize++] = set.size();
+            for (String s : set) {
+                Integer id = ids.get(s);
+                if (id == null) {
+                    id = outputs.size();
+                    ids.put(s, id);
+                    outputs.add(s);
+                }
+                poolArray[poolSize++] = id;
+            }
+        }
+        int[] offsetArray = new int[outputs.size() + 1];
+        byte[][] encoded = new byte[outputs.size()][];
+        for (int i = 0; i < encoded.length; i++) {
+            encoded[i] = outputs.get(i).getBytes(StandardCharsets.UTF_8);
+            offsetArray[i + 1] = offsetArray[i] + encoded[i].length;
+        }
+        byte[] bytesArray = new byte[offsetArray[encoded.length]];
+        for (int i = 0; i < encoded.length; i++) {
+            System.arraycopy(encoded[i], 0, bytesArray, offsetArray[i], encoded[i].length);
+        }
+        this.code = CharBuffer.wrap(codes);
+        this.base = IntBuffer.wrap(Arrays.copyOf(baseArray, size));
+        this.check = IntBuffer.wrap(Arrays.copyOf(checkArray, size));
+        this.fail = IntBuffer.wrap(failArray);
+        this.output = IntBuffer.wrap(outputArray);
+        this.pool = IntBuffer.wrap(Arrays.copyOf(poolArray, poolSize));
+        this.offsets = IntBuffer.wrap(offsetArray);
+        this.bytes = ByteBuffer.wrap(bytesArray);
+        this.strings = outputs.toArray(new String[outputs.size()]);
+    }
+
+    private DoubleArrayAhoCorasick(ByteBuffer buffer) throws IOException {
+        ByteBuffer b = buffer.duplicate().order(ByteOrder.LITTLE_ENDIAN);
+        if (b.remaining() < HEADER_LENGTH || b.getInt() != MAGIC) {
+            throw new IOException("not a compiled Aho-Corasick automaton");
+        }
+        int version = b.getInt();
+        if (version != VERSION) {
+            throw new IOException("unsupported version " + version);
+        }
+        this.size = b.getInt();
+        int poolSize = b.getInt();
+        int outputCount = b.getInt();
+        int bytesLength = b.getInt();
+        long length = HEADER_LENGTH + 2L * ALPHABET_SIZE + 4L * (4L * size + poolSize + outputCount + 1) + bytesLength;
+        if (buffer.remaining() < length) {
+            throw new IOException("truncated automaton, " + buffer.remaining() + " of " + length + " bytes");
+        }
+        this.code = slice(b, 2 * ALPHABET_SIZE).asCharBuffer();
+        this.base = slice(b, 4 * size).asIntBuffer();
+        this.check = slice(b, 4 * size).asIntBuffer();
+        this.fail = slice(b, 4 * size).asIntBuffer();
+        this.output = slice(b, 4 * size).asIntBuffer();
+        this.pool = slice(b, 4 * poolSize).asIntBuffer();
+        this.offsets = slice(b, 4 * (outputCount + 1)).asIntBuffer();
+        this.bytes = slice(b, bytesLength);
+        this.strings = new String[outputCount];
+    }
+
+    /**
+     * Reads a compiled automaton from a buffer, for example a memory-mapped file. The
+     * buffer is not copied.
+     */
+    public static DoubleArrayAhoCorasick read(ByteBuffer buffer) throws IOException {
+        return new DoubleArrayAhoCorasick(buffer);
+    }
+
+    /**
+     * Memory-maps a file written by {@link #write(OutputStream)}.
+     */
+    public static DoubleArrayAhoCorasick map(File file) throws IOException {
+        try (RandomAccessFile raf = new RandomAccessFile(file, "r");
+             FileChannel channel = raf.getChannel()) {
+            return read(channel.map(FileChannel.MapMode.READ_ONLY, 0, channel.size()));
+        }
+    }
+
+    /**
+     * Writes the automaton in little-endian byte order.
+     */
+    public void write(OutputStream out) throws IOException {
+        WritableByteChannel channel = Channels.newChannel(out);
+        ByteBuffer b = ByteBuffer.allocate(65536).order(ByteOrder.LITTLE_ENDIAN);
+        b.putInt(MAGIC).putInt(VERSION).putInt(size).putInt(pool.limit())
+                .putInt(offsets.limit() - 1).putInt(bytes.limit());
+        for (int i = 0; i < ALPHABET_SIZE; i++) {
+            if (b.remaining() < 2) {
+                flush(b, channel);
+            }
+            b.putChar(code.get(i));
+        }
+        for (IntBuffer ints : new IntBuffer[]{base, check, fail, output, pool, offsets}) {
+            for (int i = 0; i < ints.limit(); i++) {
+                if (b.remaining() < 4) {
+                    flush(b, channel);
+                }
+                b.putInt(ints.get(i));
+            }
+        }
+        for (int i = 0; i < bytes.limit(); i++) {
+            if (!b.hasRemaining()) {
+                flush(b, channel);
+            }
+            b.put(bytes.get(i));
+        }
+        flush(b, channel);
+        out.flush();
+    }
+
+    /**
+     * Returns the length of the double array.
+     */
+    public int size() {
+        return size;
+    }
+
+    public Iterator<SearchResult> progressiveSearch(String inputText) {
+        return progressiveSearch(inputText.toCharArray());
+    }
+
+    /**
+     * Starts a new search, and returns an Iterator of SearchResults.
+     */
+    public Iterator<SearchResult> progressiveSearch(char[] chars) {
+        return new Searcher(this, continueSearch(new SearchResult(this, 0, chars, 0)));
+    }
+
+    public List<Result> completeSearch(String inputText, boolean allowOverlapping) {
+        return completeSearch(inputText.toCharArray(), allowOverlapping);
+    }
+
+    /**
+     * It make a whole new search, and it returns all the OutputResult objects,
+     * ordered by the startIndex attribute. If the parameter allowOverlapping is
+     * false, the overlapped outputs will be removed.
+     */
+    public List<Result> completeSearch(char[] chars, boolean allowOverlapping) {
+        List<Result> result = new ArrayList<Result>();
+        int state = 0;
+        for (int i = 0; i < chars.length; i++) {
+            state = next(state, chars[i]);
+            int offset = output.get(state);
+            int n = pool.get(offset);
+            for (int j = 1; j <= n; j++) {
+                String s = output(pool.get(offset + j));
+                result.add(new Result(s, i + 1 - s.length(), i + 1));
+            }
+        }
+        AhoCorasick.sortOutputResults(result);
+        if (!allowOverlapping) {
+            AhoCorasick.removeOverlapping(result);
+        }
+        return result;
+    }
+
+    /**
+     * Continues the search, given the initial state described by the
+     * lastResult. Package protected.
+     */
+    SearchResult continueSearch(SearchResult lastResult) {
+        char[] chars = lastResult.chars;
+        int state = lastResult.lastMatchedPosition;
+        for (int i = lastResult.lastIndex; i < chars.length; i++) {
+            state = next(state, chars[i]);
+            if (pool.get(output.get(state)) > 0) {
+                return new SearchResult(this, state, chars, i + 1);
+            }
+        }
+        return null;
+    }
+
+    /**
+     * Returns the outputs of the state at the given position.
+     */
+    Set<String> getOutputs(int state) {
+        int offset = output.get(state);
+        int n = pool.get(offset);
+        Set<String> set = new HashSet<String>(n * 2);
+        for (int j = 1; j <= n; j++) {
+            set.add(output(pool.get(offset + j)));
+        }
+        return set;
+    }
+
+    private int next(int state, char ch) {
+        int c = code.get(ch);
+        if (c == 0) {
+            return 0;
+        }
+        while (true) {
+            int t = base.get(state) + c;
+            if (t < size && check.get(t) == state) {
+                return t;
+            }
+            if (state == 0) {
+                return 0;
+            }
+            state = fail.get(state);
+        }
+    }
+
+    private String output(int id) {
+        String s = strings[id];
+        if (s == null) {
+            int start = offsets.get(id);
+            byte[] b = new byte[offsets.get(id + 1) - start];
+            for (int i = 0; i < b.length; i++) {
+                b[i] = bytes.get(start + i);
+            }
+            s = new String(b, StandardCharsets.UTF_8);
+            strings[id] = s;
+        }
+        return s;
+    }
+
+    private static ByteBuffer slice(ByteBuffer b, int length) {
+        ByteBuffer slice = b.slice().order(ByteOrder.LITTLE_ENDIAN);
+        slice.limit(length);
+        b.position(b.position() + length);
+        return slice;
+    }
+
+    private static void flush(ByteBuffer b, WritableByteChannel channel) throws IOException {
+        b.flip();
+        while (b.hasRemaining()) {
+            channel.write(b);
+        }
+        b.clear();
+    }
+}
@@ -17,6 +17,10 @@ public class SearchResult {
 
     State<String> lastMatchedState;
 
+    DoubleArrayAhoCorasick automaton;
+
+    int lastMatchedPosition;
+
     char[] chars;
 
     /**
@@ -31,10 +35,17 @@ public class SearchResult {
         this.lastIndex = i;
     }
 
+    SearchResult(DoubleArrayAhoCorasick automaton, int position, char[] cs, int i) {
+        this.automaton = automaton;
+        this.lastMatchedPosition = position;
+        this.chars = cs;
+        this.lastIndex = i;
+    }
+
     /**
      * Returns a list of the outputs of this match.
      */
     public Set<String> getOutputs() {
-        return lastMatchedState.getOutputs();
+        return automaton != null ? automaton.getOutputs(lastMatchedPosition) : lastMatchedState.getOutputs();
     }
 }
@@ -9,12 +9,18 @@ import java.util.NoSuchElementException;
 class Searcher implements Iterator<SearchResult> {
     private SearchResult currentResult;
     private AhoCorasick tree;
+    private DoubleArrayAhoCorasick automaton;
 
     Searcher(AhoCorasick tree, SearchResult result) {
         this.tree = tree;
         this.currentResult = result;
     }
 
+    Searcher(DoubleArrayAhoCorasick automaton, SearchResult result) {
+        this.automaton = automaton;
+        this.currentResult = result;
+    }
+
     public boolean hasNext() {
         return (this.currentResult != null);
     }
@@ -24,7 +30,7 @@ class Searcher implements Iterator<SearchResult> {
             throw new NoSuchElementException();
         }
         SearchResult result = currentResult;
-        currentResult = tree.continueSearch(currentResult);
+        currentResult = automaton != null ? automaton.continueSearch(currentResult) : tree.continueSearch(currentResult);
         return result;
     }
 
@@ -0,0 +1,135 @@
+package bench;
+
+import com.carrotsearch.junitbenchmarks.AbstractBenchmark;
+import com.carrotsearch.junitbenchmarks.BenchmarkOptions;
+import org.junit.Test;
+import org.xbib.trie.ahocorasick.AhoCorasick;
+import org.xbib.trie.ahocorasick.DoubleArrayAhoCorasick;
+import org.xbib.trie.ahocorasick.SearchResult;
+
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.OutputStream;
+import java.util.Iterator;
+import java.util.Random;
+
+import static org.junit.Assert.assertEquals;
+
+/**
+ * Compares the object graph of the Aho-Corasick tree with the compiled double array, on the
+ * heap and memory-mapped.
+ */
+public class AhoCorasickBenchTest extends AbstractBenchmark {
+
+    private final static int TERMS = 50000;
+
+    private final static int TITLES = 20000;
+
+    private final static AhoCorasick tree = new AhoCorasick();
+
+    private final static char[][] titles = new char[TITLES][];
+
+    private final static DoubleArrayAhoCorasick automaton;
+
+    private final static DoubleArrayAhoCorasick mapped;
+
+    private final static int matches;
+
+    static {
+        Random random = new Random(1L);
+        for (int i = 0; i < TERMS; i++) {
+            tree.add(word(random) + (random.nextBoolean() ? " " + word(random) : ""));
+        }
+        tree.prepare();
+        for (int i = 0; i < TITLES; i++) {
+            StringBuilder sb = new StringBuilder();
+            for (int j = 0; j < 12; j++) {
+                sb.append(word(random)).append(' ');
+            }
+            titles[i] = sb.toString().toCharArray();
+        }
+        automaton = tree.compile();
+        try {
+            File file = new File(System.getProperty("java.io.tmpdir"), "ahocorasick-bench.bin");
+            file.deleteOnExit();
+            try (OutputStream out = new FileOutputStream(file)) {
+                automaton.write(out);
+            }
+            mapped = DoubleArrayAhoCorasick.map(file);
+        } catch (Exception e) {
+            throw new RuntimeException(e);
+        }
+        int n = 0;
+        for (char[] title : titles) {
+            n += count(tree.progressiveSearch(title));
+        }
+        matches = n;
+    }
+
+    @BenchmarkOptions(benchmarkRounds = 10, warmupRounds = 3)
+    @Test
+    public void testObjectGraph() {
+        int n = 0;
+        for (char[] title : titles) {
+            n += count(tree.progressiveSearch(title));
+        }
+        assertEquals(matches, n);
+    }
+
+    @BenchmarkOptions(benchmarkRounds = 10, warmupRounds = 3)
+    @Test
+    public void testDoubleArray() {
+        int n = 0;
+        for (char[] title : titles) {
+            n += count(automaton.progressiveSearch(title));
+        }
+        assertEquals(matches, n);
+    }
+
+    @BenchmarkOptions(benchmarkRounds = 10, warmupRounds = 3)
+    @Test
+    public void testMappedDoubleArray() {
+        int n = 0;
+        for (char[] title : titles) {
+            n += count(mapped.progressiveSearch(title));
+        }
+        assertEquals(matches, n);
+    }
+
+    @BenchmarkOptions(benchmarkRounds = 10, warmupRounds = 3)
+    @Test
+    public void testObjectGraphCompleteSearch() {
+        for (char[] title : titles) {
+            tree.completeSearch(title, false);
+        }
+    }
+
+    @BenchmarkOptions(benchmarkRounds = 10, warmupRounds = 3)
+    @Test
+    public void testDoubleArrayCompleteSearch() {
+        for (char[] title : titles) {
+            automaton.completeSearch(title, false);
+        }
+    }
+
+    private static int count(Iterator<SearchResult> it) {
+        int n = 0;
+        while (it.hasNext()) {
+            it.next();
+            n++;
+        }
+        return n;
+    }
+
+    /**
+     * Short words from a small alphabet, so that many terms share prefixes and occur in the titles.
+     */
+    private static String word(Random random) {
+        int length = 2 + random.nextInt(5);
+        char[] chars = new char[length];
+        for (int i = 0; i < length; i++) {
+            chars[i] = "aeioulnrstkmä".charAt(random.nextInt(13));
+        }
+        return new String(chars);
+    }
+}
@@ -0,0 +1,97 @@
+package bench;
+
+import com.carrotsearch.junitbenchmarks.AbstractBenchmark;
+import com.carrotsearch.junitbenchmarks.BenchmarkOptions;
+import org.junit.Test;
+import org.xbib.fsa.moore.levenshtein.CompiledLevenshteinSuggester;
+import org.xbib.fsa.moore.levenshtein.LevenshteinAutomatonSuggester;
+import org.xbib.fsa.moore.levenshtein.Top50WikiDictionary;
+
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Random;
+
+import static org.junit.Assert.assertEquals;
+
+/**
+ * Compares the Levenshtein automaton over the object graph of the dictionary with the
+ * precomputed table over the compiled dictionary, one by one and in a batch. The Levenshtein
+ * automaton only gets the first {@code SLOW_QUERIES} queries, it needs about 50ms per query.
+ */
+public class LevenshteinSuggesterBenchTest extends AbstractBenchmark {
+
+    private final static int QUERIES = 500;
+
+    private final static int SLOW_QUERIES = 20;
+
+    private final static List<CharSequence> words = new ArrayList<CharSequence>();
+
+    private final static List<String> queries = new ArrayList<String>();
+
+    private final static LevenshteinAutomatonSuggester automaton;
+
+    private final static CompiledLevenshteinSuggester compiled;
+
+    private final static int suggestions;
+
+    static {
+        Iterator<CharSequence> it = new Top50WikiDictionary().getWordsIterator();
+        while (it.hasNext()) {
+            words.add(it.next());
+        }
+        Random random = new Random(1L);
+        for (int i = 0; i < QUERIES; i++) {
+            StringBuilder sb = new StringBuilder(words.get(random.nextInt(words.size())));
+            int pos = random.nextInt(sb.length());
+            switch (random.nextInt(3)) {
+                case 0:
+                    sb.deleteCharAt(pos);
+                    break;
+                case 1:
+                    sb.insert(pos, (char) ('a' + random.nextInt(26)));
+                    break;
+                default:
+                    sb.setCharAt(pos, (char) ('a' + random.nextInt(26)));
+                    break;
+            }
+            queries.add(sb.toString());
+        }
+        automaton = new LevenshteinAutomatonSuggester(words);
+        compiled = new CompiledLevenshteinSuggester(words);
+        int n = 0;
+        for (String query : queries) {
+            n += compiled.getSuggestionsFor(query, false, 2).size();
+        }
+        suggestions = n;
+    }
+
+    @BenchmarkOptions(benchmarkRounds = 10, warmupRounds = 3)
+    @Test
+    public void testLevenshteinAutomaton() {
+        for (String query : queries.subList(0, SLOW_QUERIES)) {
+            automaton.getSuggestionsFor(query, false, 2);
+        }
+    }
+
+    @BenchmarkOptions(benchmarkRounds = 10, warmupRounds = 3)
+    @Test
+    public void testCompiled() {
+        int n = 0;
+        for (String query : queries) {
+            n += compiled.getSuggestionsFor(query, false, 2).size();
+        }
+        assertEquals(suggestions, n);
+    }
+
+    @BenchmarkOptions(benchmarkRounds = 10, warmupRounds = 3)
+    @Test
+    public void testCompiledBatch() {
+        int n = 0;
+        for (Collection<CharSequence> c : compiled.getSuggestionsFor(queries, false, 2)) {
+            n += c.size();
+        }
+        assertEquals(suggestions, n);
+    }
+}
@@ -0,0 +1,170 @@
+package org.xbib.fsa.moore.levenshtein;
+
+import org.testng.annotations.Test;
+import org.xbib.fsa.moore.dictionary.CompiledDictionaryAutomaton;
+import org.xbib.fsa.moore.dictionary.DictionaryAutomaton;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.HashSet;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Random;
+import java.util.Set;
+import java.util.concurrent.ForkJoinPool;
+
+import static org.testng.Assert.assertEquals;
+import static org.testng.Assert.assertFalse;
+import static org.testng.Assert.assertTrue;
+
+public class CompiledLevenshteinSuggesterTest {
+
+    private final String[] terms = new String[]{
+        "hello",
+        "ello",
+        "hbllo",
+        "ehllo",
+        "world",
+        "wrld",
+        "elastic",
+        "elatsic",
+        "elastc",
+        "elstc",
+        "search",
+        "saerch",
+        "srch",
+        "sear",
+        "prais",
+        "joile",
+        "monteruil",
+        "",
+        "x"
+    };
+
+    @Test
+    public void testCompiledDictionary() {
+        DictionaryAutomaton da = new DictionaryAutomaton(Arrays.<CharSequence>asList("Hello", "Help", "World"));
+        CompiledDictionaryAutomaton compiled = new CompiledDictionaryAutomaton(da);
+        assertTrue(compiled.accept("Hello"));
+        assertTrue(compiled.accept("Help"));
+        assertFalse(compiled.accept("Hel"));
+        assertFalse(compiled.accept("foobar"));
+        assertEquals(compiled.getMaxLength(), 5);
+        assertEquals(compiled.getStateCount(), compiled.getArcCount() + 1);
+    }
+
+    @Test
+    public void testTop50Wiki() throws Exception {
+        Top50WikiDictionary top50Wiki = new Top50WikiDictionary();
+        List<CharSequence> words = new ArrayList<CharSequence>();
+        Iterator<CharSequence> it = top50Wiki.getWordsIterator();
+        while (it.hasNext()) {
+            words.add(it.next());
+        }
+        CompiledLevenshteinSuggester suggester = new CompiledLevenshteinSuggester(words);
+        for (String term : terms) {
+            for (int level = 0; level <= 2; level++) {
+                assertEquals(set(suggester.getSuggestionsFor(term, true, level)),
+                        expected(words, term, true, level), term + " " + level);
+                assertEquals(set(suggester.getSuggestionsFor(term, false, level)),
+                        expected(words, term, false, level), term + " " + level);
+            }
+        }
+    }
+
+    @Test
+    public void testRandom() {
+        Random random = new Random(42L);
+        List<CharSequence> words = new ArrayList<CharSequence>();
+        for (int i = 0; i < 3000; i++) {
+            words.add(randomString(random, 1 + random.nextInt(8)));
+        }
+        CompiledLevenshteinSuggester suggester = new CompiledLevenshteinSuggester(words);
+        List<String> inputs = new ArrayList<String>();
+        for (int i = 0; i < 300; i++) {
+            inputs.add(randomString(random, random.nextInt(10)));
+        }
+        List<Collection<CharSequence>> batch = suggester.getSuggestionsFor(inputs, false, 2, new ForkJoinPool(4));
+        assertEquals(batch.size(), inputs.size());
+        for (int i = 0; i < inputs.size(); i++) {
+            String input = inputs.get(i);
+            Set<CharSequence> suggestions = expected(words, input, false, 2);
+            assertEquals(set(suggester.getSuggestionsFor(input, false, 2)), suggestions, input);
+            assertEquals(set(batch.get(i)), suggestions, input);
+        }
+    }
+
+    @Test
+    public void testAdd() {
+        CompiledLevenshteinSuggester suggester = new CompiledLevenshteinSuggester(Arrays.<CharSequence>asList("hello"));
+        assertEquals(set(suggester.getSuggestionsFor("helo", true, 2)), set(Arrays.<CharSequence>asList("hello")));
+        suggester.add("help");
+        assertEquals(set(suggester.getSuggestionsFor("helo", true, 2)), set(Arrays.<CharSequence>asList("hello", "help")));
+        assertEquals(set(suggester.getSuggestionsFor("help", true, 2)), set(Arrays.<CharSequence>asList("help")));
+        assertEquals(set(suggester.getSuggestionsFor("help", false, 2)), set(Arrays.<CharSequence>asList("hello")));
+    }
+
+    @Test
+    public void testTable() {
+        ParametricLevenshteinTable table = ParametricLevenshteinTable.forDistance(1);
+        assertEquals(table.getWidth(), 3);
+        assertEquals(table.getDistance(table.getStartState(), 0), 0);
+        assertEquals(table.getDistance(table.getStartState(), 1), 1);
+        assertEquals(table.getDistance(table.getStartState(), 2), 2);
+        assertTrue(ParametricLevenshteinTable.forDistance(2).getStateCount() > table.getStateCount());
+    }
+
+    /**
+     * The words of the smallest edit distance by dynamic programming.
+     */
+    private static Set<CharSequence> expected(List<CharSequence> words, String input, boolean exact, int maxlevel) {
+        Set<CharSequence> result = new HashSet<CharSequence>();
+        if (exact && words.contains(input)) {
+            result.add(input);
+            return result;
+        }
+        for (int level = 1; level <= Math.min(maxlevel, 2) && result.isEmpty(); level++) {
+            for (CharSequence word : words) {
+                if (distance(word.toString(), input) == level) {
+                    result.add(word.toString());
+                }
+            }
+        }
+        return result;
+    }
+
+    private static int distance(String a, String b) {
+        int[] row = new int[b.length() + 1];
+        for (int j = 0; j <= b.length(); j++) {
+            row[j] = j;
+        }
+        for (int i = 1; i <= a.length(); i++) {
+            int diagonal = row[0];
+            row[0] = i;
+            for (int j = 1; j <= b.length(); j++) {
+                int up = row[j];
+                row[j] = Math.min(Math.min(row[j] + 1, row[j - 1] + 1),
+                        diagonal + (a.charAt(i - 1) == b.charAt(j - 1) ? 0 : 1));
+                diagonal = up;
+            }
+        }
+        return row[b.length()];
+    }
+
+    private static Set<CharSequence> set(Collection<CharSequence> c) {
+        Set<CharSequence> set = new HashSet<CharSequence>();
+        for (CharSequence s : c) {
+            set.add(s.toString());
+        }
+        return set;
+    }
+
+    private static String randomString(Random random, int length) {
+        char[] chars = new char[length];
+        for (int i = 0; i < length; i++) {
+            chars[i] = "abcdeä".charAt(random.nextInt(6));
+        }
+        return new String(chars);
+    }
+}
@@ -3,10 +3,19 @@ package org.xbib.morph.dict;
 import org.testng.Assert;
 import org.testng.annotations.Test;
 import org.xbib.dict.Dictionary;
+import org.xbib.morph.fsa.CFSA2;
+import org.xbib.morph.fsa.FSA5;
+import org.xbib.morph.fsa.io.CFSA2Codec;
+import org.xbib.morph.fsa.io.FSA5Codec;
+import org.xbib.morph.fsa.io.FSACodec;
 
+import java.io.File;
+import java.io.FileOutputStream;
 import java.io.InputStream;
 import java.io.InputStreamReader;
+import java.io.OutputStream;
 import java.io.Reader;
+import java.io.StringReader;
 
 public class DictionaryTest extends Assert {
 
@@ -22,4 +31,29 @@ public class DictionaryTest extends Assert {
         assertEquals("Auto", db.lookup("Autos"));
         assertEquals("Nudel", db.lookup("Nudeln"));
     }
+
+    @Test
+    public void testMappedDictionary() throws Exception {
+        String lines = "die\tder\ndas\tder\nder\tder\nAutos\tAuto\nNudeln\tNudel\n"
+                + "zurückgewonnenen\tzurückgewinnen\n";
+        Dictionary db = new Dictionary().load(new StringReader(lines));
+        FSACodec[] codecs = {new CFSA2Codec(), new FSA5Codec()};
+        Class<?>[] classes = {CFSA2.class, FSA5.class};
+        for (int i = 0; i < codecs.length; i++) {
+            File file = new File(System.getProperty("java.io.tmpdir"), "dictionary-" + i + ".fsa");
+            try (OutputStream out = new FileOutputStream(file)) {
+                db.write(codecs[i], out);
+            }
+            Dictionary mapped = new Dictionary().map(file);
+            assertEquals(mapped.getFSA().getClass(), classes[i]);
+            assertEquals("der", mapped.lookup("die"));
+            assertEquals("der", mapped.lookup("das"));
+            assertEquals("der", mapped.lookup(new StringBuilder("der")));
+            assertEquals("zurückgewinnen", mapped.lookup("zurückgewonnenen"));
+            assertEquals("Auto", mapped.lookup("Autos"));
+            assertEquals("Nudel", mapped.lookup("Nudeln"));
+            assertEquals("Haus", mapped.lookup("Haus"));
+            assertTrue(file.delete());
+        }
+    }
 }
@@ -0,0 +1,162 @@
+package org.xbib.trie.ahocorasick;
+
+import org.testng.annotations.Test;
+
+import java.io.ByteArrayOutputStream;
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.OutputStream;
+import java.nio.ByteBuffer;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashSet;
+import java.util.Iterator;
+import java.util.List;
+import java.util.NoSuchElementException;
+import java.util.Random;
+
+import static org.testng.Assert.assertEquals;
+import static org.testng.Assert.assertFalse;
+import static org.testng.Assert.assertTrue;
+import static org.testng.Assert.fail;
+
+public class DoubleArrayAhoCorasickTest {
+
+    private static AhoCorasick tree(String... keywords) {
+        AhoCorasick tree = new AhoCorasick();
+        for (String keyword : keywords) {
+            tree.add(keyword);
+        }
+        tree.prepare();
+        return tree;
+    }
+
+    @Test
+    public void testIteratorInterface() {
+        DoubleArrayAhoCorasick automaton = tree("moo", "one", "on", "ne").compile();
+        Iterator<SearchResult> iter = automaton.progressiveSearch("one moon ago");
+
+        assertTrue(iter.hasNext());
+        SearchResult r = iter.next();
+        assertEquals(new HashSet<String>(Arrays.asList("on")), r.getOutputs());
+        assertEquals(2, r.lastIndex);
+
+        r = iter.next();
+        assertEquals(new HashSet<String>(Arrays.asList("one", "ne")), r.getOutputs());
+        assertEquals(3, r.lastIndex);
+
+        r = iter.next();
+        assertEquals(new HashSet<String>(Arrays.asList("moo")), r.getOutputs());
+        assertEquals(7, r.lastIndex);
+
+        r = iter.next();
+        assertEquals(new HashSet<String>(Arrays.asList("on")), r.getOutputs());
+        assertEquals(8, r.lastIndex);
+
+        assertFalse(iter.hasNext());
+        try {
+            iter.next();
+            fail();
+        } catch (NoSuchElementException e) {
+            //
+        }
+    }
+
+    @Test
+    public void testMultipleOutputs() {
+        DoubleArrayAhoCorasick automaton = tree("x", "xx", "xxx", "españa").compile();
+        Iterator<SearchResult> iter = automaton.progressiveSearch("xxx es españa");
+        assertEquals(new HashSet<String>(Arrays.asList("x")), iter.next().getOutputs());
+        assertEquals(new HashSet<String>(Arrays.asList("x", "xx")), iter.next().getOutputs());
+        assertEquals(new HashSet<String>(Arrays.asList("x", "xx", "xxx")), iter.next().getOutputs());
+        SearchResult r = iter.next();
+        assertEquals(new HashSet<String>(Arrays.asList("españa")), r.getOutputs());
+        assertEquals(13, r.lastIndex);
+        assertFalse(iter.hasNext());
+        assertFalse(automaton.progressiveSearch("").hasNext());
+    }
+
+    @Test
+    public void testCompleteSearch() {
+        String[] terms = {"Real Madrid", "Madrid", "Barcelona", "Messi", "esp", "o p", "Mes", "Rea"};
+        String inputText = "El Real Madrid no puede fichar a Messi porque es del Barcelona";
+        AhoCorasick tree = tree(terms);
+        DoubleArrayAhoCorasick automaton = tree.compile();
+        assertEquals(automaton.completeSearch(inputText, false).toString(),
+                tree.completeSearch(inputText, false).toString());
+        List<Result> results = automaton.completeSearch(inputText, true);
+        assertEquals(results.size(), tree.completeSearch(inputText, true).size());
+        results = automaton.completeSearch(inputText, false);
+        assertEquals(4, results.size());
+        assertEquals("Real Madrid", results.get(0).getOutput());
+        assertEquals("o p", results.get(1).getOutput());
+        assertEquals("Messi", results.get(2).getOutput());
+        assertEquals("Barcelona", results.get(3).getOutput());
+    }
+
+    @Test
+    public void testRandom() {
+        Random random = new Random(42L);
+        List<String> keywords = new ArrayList<String>();
+        for (int i = 0; i < 2000; i++) {
+            keywords.add(randomString(random, 1 + random.nextInt(6)));
+        }
+        AhoCorasick tree = tree(keywords.toArray(new String[keywords.size()]));
+        DoubleArrayAhoCorasick automaton = tree.compile();
+        for (int i = 0; i < 50; i++) {
+            char[] text = randomString(random, 500).toCharArray();
+            Iterator<SearchResult> expected = tree.progressiveSearch(text);
+            Iterator<SearchResult> actual = automaton.progressiveSearch(text);
+            while (expected.hasNext()) {
+                assertTrue(actual.hasNext());
+                SearchResult e = expected.next();
+                SearchResult a = actual.next();
+                assertEquals(a.lastIndex, e.lastIndex);
+                assertEquals(a.getOutputs(), e.getOutputs());
+            }
+            assertFalse(actual.hasNext());
+        }
+    }
+
+    @Test
+    public void testWriteAndMap() throws Exception {
+        AhoCorasick tree = tree("he", "she", "his", "hers", "españa", "中文");
+        DoubleArrayAhoCorasick automaton = tree.compile();
+        String inputText = "ushers in españa and 中文";
+        File file = new File(System.getProperty("java.io.tmpdir"), "ahocorasick.bin");
+        try (OutputStream out = new FileOutputStream(file)) {
+            automaton.write(out);
+        }
+        DoubleArrayAhoCorasick mapped = DoubleArrayAhoCorasick.map(file);
+        assertEquals(mapped.size(), automaton.size());
+        assertEquals(mapped.completeSearch(inputText, true).toString(),
+                tree.completeSearch(inputText, true).toString());
+        ByteArrayOutputStream out = new ByteArrayOutputStream();
+        mapped.write(out);
+        assertEquals(out.size(), file.length());
+        DoubleArrayAhoCorasick read = DoubleArrayAhoCorasick.read(ByteBuffer.wrap(out.toByteArray()));
+        assertEquals(read.completeSearch(inputText, false).toString(),
+                tree.completeSearch(inputText, false).toString());
+        assertTrue(file.delete());
+    }
+
+    @Test
+    public void testCompileBeforePrepare() {
+        AhoCorasick tree = new AhoCorasick();
+        tree.add("hello");
+        try {
+            tree.compile();
+            fail();
+        } catch (IllegalStateException e) {
+            //
+        }
+    }
+
+    private static String randomString(Random random, int length) {
+        char[] chars = new char[length];
+        for (int i = 0; i < length; i++) {
+            chars[i] = "abcdeä中".charAt(random.nextInt(7));
+        }
+        return new String(chars);
+    }
+}
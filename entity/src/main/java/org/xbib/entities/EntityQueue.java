@@ -38,6 +38,9 @@ import org.xbib.iri.IRI;
 import org.xbib.keyvalue.KeyValue;
 import org.xbib.keyvalue.KeyValueStreamListener;
 import org.xbib.rdf.RdfContentBuilderProvider;
+import org.xbib.rdf.RdfGraph;
+import org.xbib.rdf.RdfGraphParams;
+import org.xbib.rdf.memory.BufferedRdfGraph;
 import org.xbib.rdf.memory.MemoryRdfGraph;
 import org.xbib.util.JobQueue;
 
@@ -61,12 +64,19 @@ public class EntityQueue<S extends EntityBuilderState, E extends Entity, K, V>
 
     private boolean closed;
 
+    private boolean streaming;
+
     public EntityQueue(Specification specification, int workers, String packageName, String... paths) {
         this(specification, workers, new URIClassLoader(), packageName, paths);
     }
 
     public EntityQueue(Specification specification, int workers, ClassLoader cl, String packageName, String... paths) {
-        super(workers);
+        this(specification, workers, 4 * workers, DEFAULT_BATCH_SIZE, cl, packageName, paths);
+    }
+
+    public EntityQueue(Specification specification, int workers, int capacity, int batchSize,
+                       ClassLoader cl, String packageName, String... paths) {
+        super(workers, capacity, batchSize);
         this.specification = specification;
         try {
             this.map = specification.getEntityMap(cl, packageName, paths);
@@ -83,6 +93,23 @@ public class EntityQueue<S extends EntityBuilderState, E extends Entity, K, V>
         return map;
     }
 
+    /**
+     * In streaming mode, each worker keeps one {@link BufferedRdfGraph} for all records. The graph
+     * is cleared for each record, so resources of a record must not be used after the record has
+     * been completed.
+     *
+     * @param streaming true for streaming mode
+     * @return this queue
+     */
+    public EntityQueue<S, E, K, V> setStreaming(boolean streaming) {
+        this.streaming = streaming;
+        return this;
+    }
+
+    public boolean isStreaming() {
+        return streaming;
+    }
+
     @Override
     public EntityQueue<S, E, K, V> begin() {
         keyvalues = new LinkedList<KeyValue<K,V>>();
@@ -128,13 +155,6 @@ public class EntityQueue<S extends EntityBuilderState, E extends Entity, K, V>
         return this;
     }
 
-    private final List<KeyValue<K, V>> poison = new LinkedList<KeyValue<K,V>>();
-
-    @Override
-    protected List<KeyValue<K, V>> poison() {
-        return poison;
-    }
-
     public Map<IRI,RdfContentBuilderProvider> contentBuilderProviders() {
         return new HashMap<IRI,RdfContentBuilderProvider>();
     }
@@ -154,6 +174,8 @@ public class EntityQueue<S extends EntityBuilderState, E extends Entity, K, V>
 
         private S state;
 
+        private BufferedRdfGraph buffer;
+
         @Override
         public void execute(List<KeyValue<K, V>> job) throws IOException {
             this.state = newState();
@@ -180,7 +202,25 @@ public class EntityQueue<S extends EntityBuilderState, E extends Entity, K, V>
 
         @SuppressWarnings("unchecked")
         public S newState() {
-            return (S) new DefaultEntityBuilderState(new MemoryRdfGraph(), contentBuilderProviders());
+            return (S) new DefaultEntityBuilderState(newGraph(), contentBuilderProviders());
+        }
+
+        /**
+         * Create the graph for a new record, a memory graph or, in streaming mode, the cleared
+         * buffered graph of this worker.
+         *
+         * @return the graph
+         */
+        public RdfGraph<RdfGraphParams> newGraph() {
+            if (!streaming) {
+                return new MemoryRdfGraph();
+            }
+            if (buffer == null) {
+                buffer = new BufferedRdfGraph();
+            } else {
+                buffer.clear();
+            }
+            return buffer;
         }
     }
 
@@ -117,13 +117,6 @@ public class KeyValueQueue<K, V>
         return this;
     }
 
-    private final List<KeyValue<K, V>> poison = new LinkedList<KeyValue<K,V>>();
-
-    @Override
-    protected List<KeyValue<K, V>> poison() {
-        return poison;
-    }
-
     public List<RdfContentBuilderProvider> contentBuilderProviders() {
         return new LinkedList<RdfContentBuilderProvider>();
     }
@@ -0,0 +1,385 @@
+/*
+ * Licensed to Jörg Prante and xbib under one or more contributor
+ * license agreements. See the NOTICE.txt file distributed with this work
+ * for additional information regarding copyright ownership.
+ *
+ * Copyright (C) 2012 Jörg Prante and xbib
+ *
+ * This program is free software; you can redistribute it and/or modify
+ * it under the terms of the GNU Affero General Public License as published
+ * by the Free Software Foundation; either version 3 of the License, or
+ * (at your option) any later version.
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the
+ * GNU Affero General Public License for more details.
+ *
+ * You should have received a copy of the GNU Affero General Public License
+ * along with this program; if not, see http://www.gnu.org/licenses
+ * or write to the Free Software Foundation, Inc., 51 Franklin Street,
+ * Fifth Floor, Boston, MA 02110-1301 USA.
+ *
+ * The interactive user interfaces in modified source and object code
+ * versions of this program must display Appropriate Legal Notices,
+ * as required under Section 5 of the GNU Affero General Public License.
+ *
+ * In accordance with Section 7(b) of the GNU Affero General Public
+ * License, these Appropriate Legal Notices must retain the display of the
+ * "Powered by xbib" logo. If the display of the logo is not reasonably
+ * feasible for technical reasons, the Appropriate Legal Notices must display
+ * the words "Powered by xbib".
+ */
+package org.xbib.entities.marc;
+
+import org.xbib.entities.Entity;
+import org.xbib.entities.Specification;
+import org.xbib.marc.Field;
+import org.xbib.marc.FieldList;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.IdentityHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.regex.Pattern;
+
+/**
+ * A dispatch table from MARC fields to entities, compiled from an entity map of a {@link MARCSpecification}.
+ *
+ * The nested key maps are compiled into a tag index, where each tag leads to an entity, or
+ * to an indicator index and a trie of subfield code sets. A field list is resolved by the tag and
+ * indicator of the first field and the sorted subfield codes, so no key string is built and
+ * no tree map is searched. The result is the same as resolving {@link FieldList#toKey()}
+ * with {@link Specification#getEntity(String, Map)} and {@link Specification#getEntityByKey(String, Map)}.
+ *
+ * The settings of each entity are pre-resolved into a {@link Target}.
+ */
+public class MARCEntityDispatch {
+
+    private final static char SEPARATOR = '$';
+
+    private final Specification specification;
+
+    private final Map map;
+
+    private final Node root;
+
+    private final Map<Entity, Target> targets;
+
+    /**
+     * True if there are keys in the entity map which can only be found by the complete key
+     */
+    private final boolean completeKeys;
+
+    @SuppressWarnings("unchecked")
+    public MARCEntityDispatch(Specification specification, Map map) {
+        this.specification = specification;
+        this.map = map;
+        this.targets = new IdentityHashMap<Entity, Target>();
+        this.root = map != null ? compile(map) : new Node(Collections.<String, Object>emptyMap());
+        boolean b = false;
+        if (map != null) {
+            for (Object key : map.keySet()) {
+                b = b || key.toString().indexOf(SEPARATOR) >= 0;
+            }
+        }
+        this.completeKeys = b;
+    }
+
+    /**
+     * Resolve the target of a field list.
+     *
+     * @param fields the field list
+     * @param codes a work array for the subfield codes, at least as long as the field list
+     * @return the target or null if there is no entity for the fields
+     */
+    public Target resolve(FieldList fields, char[] codes) {
+        if (fields.isEmpty()) {
+            return resolve(fields);
+        }
+        Field first = fields.getFirst();
+        String tag = first.tag();
+        String indicator = first.indicator();
+        if (tag == null || tag.isEmpty() || tag.indexOf(SEPARATOR) >= 0
+                || (indicator != null && (indicator.isEmpty() || indicator.indexOf(SEPARATOR) >= 0))) {
+            return resolve(fields);
+        }
+        // sorted subfield codes, same as in FieldList.toKey()
+        int n = 0;
+        for (int i = 0; i < fields.size(); i++) {
+            String s = fields.get(i).subfieldId();
+            if (s != null && s.length() > 0) {
+                char c = s.charAt(0);
+                if (c == SEPARATOR) {
+                    return resolve(fields);
+                }
+                int j = n++;
+                while (j > 0 && codes[j - 1] > c) {
+                    codes[j] = codes[j - 1];
+                    j--;
+                }
+                codes[j] = c;
+            }
+        }
+        Target target;
+        Object o = root.children.get(tag);
+        if (o instanceof Node) {
+            Node node = (Node) o;
+            if (indicator != null) {
+                o = node.children.get(indicator);
+                target = o instanceof Node ? ((Node) o).codes.find(codes, n) : (Target) o;
+            } else {
+                target = node.codes.find(codes, n);
+            }
+        } else {
+            target = (Target) o;
+        }
+        if (target == null && completeKeys) {
+            return target(specification.getEntityByKey(fields.toKey(), map));
+        }
+        return target;
+    }
+
+    /**
+     * Resolve the target of a field list by the key of the field list.
+     *
+     * @param fields the field list
+     * @return the target or null if there is no entity for the fields
+     */
+    public Target resolve(FieldList fields) {
+        String key = fields.toKey();
+        Entity entity = specification.getEntity(key, map);
+        if (entity == null) {
+            entity = specification.getEntityByKey(key, map);
+        }
+        return target(entity);
+    }
+
+    /**
+     * Get the target of an entity.
+     *
+     * @param entity the entity
+     * @return the target, or null if entity is null
+     */
+    public Target target(Entity entity) {
+        if (entity == null) {
+            return null;
+        }
+        Target target = targets.get(entity);
+        return target != null ? target : new Target(entity);
+    }
+
+    @SuppressWarnings("unchecked")
+    private Node compile(Map<String, Object> map) {
+        Node node = new Node(new HashMap<String, Object>());
+        for (Map.Entry<String, Object> me : map.entrySet()) {
+            Object o = me.getValue();
+            if (o instanceof Map) {
+                node.children.put(me.getKey(), compile((Map<String, Object>) o));
+            } else if (o instanceof Entity) {
+                Entity entity = (Entity) o;
+                Target target = targets.get(entity);
+                if (target == null) {
+                    target = new Target(entity);
+                    targets.put(entity, target);
+                }
+                node.children.put(me.getKey(), target);
+                node.codes.add(me.getKey(), target);
+            }
+        }
+        return node;
+    }
+
+    private static class Node {
+
+        final Map<String, Object> children;
+
+        final Codes codes = new Codes();
+
+        Node(Map<String, Object> children) {
+            this.children = children;
+        }
+    }
+
+    /**
+     * A trie over subfield code sets.
+     */
+    private static class Codes {
+
+        char[] labels = new char[0];
+
+        Codes[] next = new Codes[0];
+
+        Target target;
+
+        void add(String key, Target target) {
+            Codes node = this;
+            for (int i = 0; i < key.length(); i++) {
+                char c = key.charAt(i);
+                Codes child = node.child(c);
+                if (child == null) {
+                    child = new Codes();
+                    int n = node.labels.length;
+                    node.labels = Arrays.copyOf(node.labels, n + 1);
+                    node.next = Arrays.copyOf(node.next, n + 1);
+                    node.labels[n] = c;
+                    node.next[n] = child;
+                }
+                node = child;
+            }
+            node.target = target;
+        }
+
+        Target find(char[] codes, int length) {
+            Codes node = this;
+            for (int i = 0; i < length && node != null; i++) {
+                node = node.child(codes[i]);
+            }
+            return node != null ? node.target : null;
+        }
+
+        private Codes child(char c) {
+            for (int i = 0; i < labels.length; i++) {
+                if (labels[i] == c) {
+                    return next[i];
+                }
+            }
+            return null;
+        }
+    }
+
+    /**
+     * An entity with pre-resolved settings.
+     */
+    public static class Target {
+
+        private final Entity entity;
+
+        private final Map<String, Object> settings;
+
+        private final Map<String, Object> subfields;
+
+        private final String predicate;
+
+        private final Map<String, String> tags;
+
+        private final Map<String, Map<String, String>> indicators;
+
+        private final Map<String, Map<String, Object>> maps;
+
+        private final Map<String, List<Relation>> patterns;
+
+        @SuppressWarnings("unchecked")
+        Target(Entity entity) {
+            this.entity = entity;
+            this.settings = entity instanceof MARCEntity ? ((MARCEntity) entity).getSettings() : null;
+            this.maps = new HashMap<String, Map<String, Object>>();
+            this.patterns = new HashMap<String, List<Relation>>();
+            String predicate = entity.getClass().getSimpleName();
+            if (settings != null) {
+                for (Map.Entry<String, Object> me : settings.entrySet()) {
+                    String key = me.getKey();
+                    Object o = me.getValue();
+                    if (o instanceof Map) {
+                        maps.put(key, (Map<String, Object>) o);
+                    } else if (o instanceof List && key.endsWith("pattern")) {
+                        List<Relation> relations = new ArrayList<Relation>();
+                        for (Map<String, String> pattern : (List<Map<String, String>>) o) {
+                            Map.Entry<String, String> entry = pattern.entrySet().iterator().next();
+                            relations.add(new Relation(Pattern.compile(entry.getKey(), Pattern.CASE_INSENSITIVE),
+                                    entry.getValue()));
+                        }
+                        patterns.put(key.substring(0, key.length() - "pattern".length()), relations);
+                    }
+                }
+                if (settings.containsKey("_predicate")) {
+                    predicate = (String) settings.get("_predicate");
+                }
+            }
+            this.predicate = predicate;
+            this.subfields = maps.get("subfields");
+            this.tags = (Map<String, String>) (Map) maps.get("tags");
+            this.indicators = (Map<String, Map<String, String>>) (Map) maps.get("indicators");
+        }
+
+        public Entity getEntity() {
+            return entity;
+        }
+
+        public Map<String, Object> getSettings() {
+            return settings;
+        }
+
+        /**
+         * @return the default subfield map, or null
+         */
+        public Map<String, Object> getSubfields() {
+            return subfields;
+        }
+
+        /**
+         * @param name the name of a subfield map
+         * @return the subfield map of the given name, or the default subfield map
+         */
+        public Map<String, Object> getSubfields(String name) {
+            Map<String, Object> m = maps.get(name);
+            return m != null ? m : subfields;
+        }
+
+        /**
+         * @return the default predicate
+         */
+        public String getPredicate() {
+            return predicate;
+        }
+
+        public Map<String, String> getTags() {
+            return tags;
+        }
+
+        public Map<String, Map<String, String>> getIndicators() {
+            return indicators;
+        }
+
+        /**
+         * @param name the setting name
+         * @return the setting as map, or null if there is no such setting or if it is not a map
+         */
+        public Map<String, Object> getMap(String name) {
+            return maps.get(name);
+        }
+
+        /**
+         * @param name the setting name, without the "pattern" suffix
+         * @return the compiled patterns, or null
+         */
+        public List<Relation> getPatterns(String name) {
+            return patterns.get(name);
+        }
+    }
+
+    /**
+     * A pattern for values with the value to use on match.
+     */
+    public static class Relation {
+
+        private final Pattern pattern;
+
+        private final String value;
+
+        Relation(Pattern pattern, String value) {
+            this.pattern = pattern;
+            this.value = value;
+        }
+
+        public boolean matches(String s) {
+            return pattern.matcher(s).matches();
+        }
+
+        public String getValue() {
+            return value;
+        }
+    }
+}
@@ -39,16 +39,12 @@ import org.xbib.iri.IRI;
 import org.xbib.marc.Field;
 import org.xbib.marc.FieldList;
 import org.xbib.rdf.Resource;
-import org.xbib.rdf.memory.MemoryRdfGraph;
 
 import java.io.Closeable;
 import java.io.IOException;
-import java.util.HashMap;
 import java.util.List;
 import java.util.Map;
 import java.util.concurrent.TimeUnit;
-import java.util.regex.Matcher;
-import java.util.regex.Pattern;
 
 public class MARCEntityQueue extends EntityQueue<MARCEntityBuilderState, MARCEntity, FieldList, String>
         implements Closeable {
@@ -57,14 +53,22 @@ public class MARCEntityQueue extends EntityQueue<MARCEntityBuilderState, MARCEnt
 
     private final static IRI tempPredicate = IRI.create("tmp");
 
+    private final MARCEntityDispatch dispatch;
+
     private UnmappedKeyListener<FieldList> listener;
 
     public MARCEntityQueue(String packageName, int workers, String... paths) {
         super(new MARCSpecification(), workers, packageName, paths);
+        this.dispatch = ((MARCSpecification) specification()).getDispatch(map());
     }
 
     public MARCEntityQueue(String packageName, Map<String, Object> params, int workers,  String... paths) {
         super(new MARCSpecification().addParameters(params), workers, packageName, paths);
+        this.dispatch = ((MARCSpecification) specification()).getDispatch(map());
+    }
+
+    public MARCEntityDispatch dispatch() {
+        return dispatch;
     }
 
     public MARCEntityQueue setUnmappedKeyListener(UnmappedKeyListener<FieldList> listener) {
@@ -98,9 +102,11 @@ public class MARCEntityQueue extends EntityQueue<MARCEntityBuilderState, MARCEnt
 
     public class MARCWorker extends EntityWorker {
 
+        private char[] codes = new char[16];
+
         @Override
         public MARCEntityBuilderState newState() {
-            return new MARCEntityBuilderState(new MemoryRdfGraph(), contentBuilderProviders());
+            return new MARCEntityBuilderState(newGraph(), contentBuilderProviders());
         }
 
         @Override
@@ -108,19 +114,19 @@ public class MARCEntityQueue extends EntityQueue<MARCEntityBuilderState, MARCEnt
             if (fields == null) {
                 return;
             }
-            String key = fields.toKey();
-            MARCEntity entity = (MARCEntity) specification().getEntity(key, map());
-            if (entity == null) {
-                entity = (MARCEntity) specification().getEntityByKey(key, map());
+            if (codes.length < fields.size()) {
+                codes = new char[fields.size()];
             }
-            if (entity != null) {
+            MARCEntityDispatch.Target target = dispatch.resolve(fields, codes);
+            if (target != null) {
                 // entity-based processing
+                MARCEntity entity = (MARCEntity) target.getEntity();
                 boolean done = entity.fields(this, fields, value);
                 if (done) {
                     return;
                 }
                 // add entity to resource
-                addToResource(state().getResource(), fields, entity, value);
+                addToResource(state().getResource(), fields, target, value);
                 // add faceting etc. here
                 //builder().build(state(), entity, fields, value);
             } else {
@@ -130,22 +136,24 @@ public class MARCEntityQueue extends EntityQueue<MARCEntityBuilderState, MARCEnt
             }
         }
 
-        @SuppressWarnings("unchecked")
         public void addToResource(Resource resource, FieldList fields, MARCEntity entity, String value) throws IOException {
+            addToResource(resource, fields, dispatch.target(entity), value);
+        }
+
+        public void addToResource(Resource resource, FieldList fields, MARCEntityDispatch.Target target, String value)
+                throws IOException {
             // setup
-            Map<String, Object> defaultSubfields = (Map<String, Object>) entity.getSettings().get("subfields");
+            Map<String, Object> defaultSubfields = target.getSubfields();
             if (defaultSubfields == null) {
                 return;
             }
-            Map<Field, String> fieldNames = new HashMap<Field, String>();
+            MARCEntity entity = (MARCEntity) target.getEntity();
+            Map<String, String> tags = target.getTags();
+            Map<String, Map<String, String>> indicators = target.getIndicators();
             // create another anoymous resource, will be linked late if predicate is determined
             Resource newResource = resource.newResource(tempPredicate);
-            // default predicate is the name of the class
-            String predicate = entity.getClass().getSimpleName();
-            // the _predicate field allows to select a field to name the resource by a coded value
-            if (entity.getSettings().containsKey("_predicate")) {
-                predicate = (String) entity.getSettings().get("_predicate");
-            }
+            // default predicate is the name of the class, or the _predicate field
+            String predicate = target.getPredicate();
             boolean overridePredicate = false;
             // put all found fields with configured subfield names to this resource
             for (Field field : fields) {
@@ -154,33 +162,28 @@ public class MARCEntityQueue extends EntityQueue<MARCEntityBuilderState, MARCEnt
                     continue;
                 }
                 Map<String, Object> subfields = defaultSubfields;
+                String fieldName = null;
                 // tag predicates defined?
-                if (entity.getSettings().containsKey("tags")) {
-                    Map<String, Object> tags = (Map<String, Object>) entity.getSettings().get("tags");
-                    if (tags.containsKey(field.tag())) {
+                if (tags != null) {
+                    String tagPredicate = tags.get(field.tag());
+                    if (tagPredicate != null) {
                         if (!overridePredicate) {
-                            predicate = (String) tags.get(field.tag());
-                        }
-                        subfields = (Map<String, Object>) entity.getSettings().get(predicate);
-                        if (subfields == null) {
-                            subfields = defaultSubfields;
+                            predicate = tagPredicate;
                         }
+                        subfields = target.getSubfields(predicate);
                     }
                 }
                 // indicator-based predicate defined?
-                if (entity.getSettings().containsKey("indicators")) {
-                    Map<String, Object> indicators = (Map<String, Object>) entity.getSettings().get("indicators");
-                    if (indicators.containsKey(field.tag())) {
-                        Map<String,Object> indicatorMap =  (Map<String,Object>)indicators.get(field.tag());
-                        if (indicatorMap.containsKey(field.indicator())) {
+                if (indicators != null) {
+                    Map<String, String> indicatorMap = indicators.get(field.tag());
+                    if (indicatorMap != null) {
+                        String indicatorPredicate = indicatorMap.get(field.indicator());
+                        if (indicatorPredicate != null) {
                             if (!overridePredicate) {
-                                predicate = (String) indicatorMap.get(field.indicator());
-                                fieldNames.put(field, predicate);
-                            }
-                            subfields = (Map<String, Object>) entity.getSettings().get(predicate);
-                            if (subfields == null) {
-                                subfields = defaultSubfields;
+                                predicate = indicatorPredicate;
+                                fieldName = predicate;
                             }
+                            subfields = target.getSubfields(predicate);
                         }
                     }
                 }
@@ -188,79 +191,23 @@ public class MARCEntityQueue extends EntityQueue<MARCEntityBuilderState, MARCEnt
                 Map.Entry<String, Object> me = SubfieldValueMapper.map(subfields, field);
                 if (me.getKey() != null) {
                     String v = me.getValue().toString();
-                    if (fieldNames.containsKey(field)) {
-                        String fieldName = fieldNames.get(field);
-                        // field-specific subfield map
-                        Map<String, Object> vm = (Map<String, Object>) entity.getSettings().get(fieldName);
-                        if (vm == null) {
-                            // fallback to "subfields"
-                            vm =  (Map<String, Object>) entity.getSettings().get("subfields");
-                        }
-                        // TODO not very exact code here. This tries to guess words.
-                        int pos = v.indexOf(' '); // code must be non-blank word
-                        String vv = pos > 0 ? v.substring(0, pos) : v;
-                        // code table lookup
-                        if (vm.containsKey(v)) {
-                            newResource.add(me.getKey() + "Source", v);
-                            v = (String) vm.get(v);
-                        } else if (vm.containsKey(vv)) {
-                            newResource.add(me.getKey() + "Source", v);
-                            v = (String) vm.get(vv);
-                        } else {
-                            List<Map<String, String>> patterns = (List<Map<String, String>>) entity.getSettings().get(fieldName + "pattern");
-                            if (patterns != null) {
-                                for (Map<String, String> pattern : patterns) {
-                                    Map.Entry<String, String> mme = pattern.entrySet().iterator().next();
-                                    String p = mme.getKey();
-                                    String rel = mme.getValue();
-                                    Matcher m = Pattern.compile(p, Pattern.CASE_INSENSITIVE).matcher(v);
-                                    if (m.matches()) {
-                                        newResource.add(me.getKey() + "Source", v);
-                                        v = rel;
-                                        break;
-                                    }
-                                }
-                            }
-                        }
+                    if (fieldName != null) {
+                        // field-specific subfield map, with fallback to "subfields"
+                        v = codeValue(newResource, me.getKey(), v,
+                                target.getSubfields(fieldName), target.getPatterns(fieldName));
                     } else {
                         // default subfield map
-                        String fieldName = me.getKey();
-                        if (entity.getSettings().containsKey(fieldName)) {
-                            try {
-                                Map<String, Object> vm = (Map<String, Object>) entity.getSettings().get(fieldName);
-                                int pos = v.indexOf(' ');
-                                String vv = pos > 0 ? v.substring(0, pos) : v;
-                                if (vm.containsKey(v)) {
-                                    newResource.add(me.getKey() + "Source", v);
-                                    v = (String) vm.get(v);
-                                } else if (vm.containsKey(vv)) {
-                                    newResource.add(me.getKey() + "Source", v);
-                                    v = (String) vm.get(vv);
-                                } else {
-                                    // relation by pattern?
-                                    List<Map<String, String>> patterns = (List<Map<String, String>>) entity.getSettings().get(fieldName + "pattern");
-                                    if (patterns != null) {
-                                        for (Map<String, String> pattern : patterns) {
-                                            Map.Entry<String, String> mme = pattern.entrySet().iterator().next();
-                                            String p = mme.getKey();
-                                            String rel = mme.getValue();
-                                            Matcher m = Pattern.compile(p, Pattern.CASE_INSENSITIVE).matcher(v);
-                                            if (m.matches()) {
-                                                newResource.add(me.getKey() + "Source", v);
-                                                v = rel;
-                                                break;
-                                            }
-                                        }
-                                    }
-                                }
-                            } catch (ClassCastException e) {
-                                logger.warn("entity {}: found {} of class {} in entity settings {} for key {} but must be a map",
-                                        entity.getClass(),
-                                        entity.getSettings().get(me.getKey()),
-                                        entity.getSettings().get(me.getKey()).getClass(),
-                                        entity.getSettings(),
-                                        me.getKey());
-                            }
+                        String name = me.getKey();
+                        Map<String, Object> vm = target.getMap(name);
+                        if (vm != null) {
+                            v = codeValue(newResource, name, v, vm, target.getPatterns(name));
+                        } else if (target.getSettings().containsKey(name)) {
+                            logger.warn("entity {}: found {} of class {} in entity settings {} for key {} but must be a map",
+                                    entity.getClass(),
+                                    target.getSettings().get(name),
+                                    target.getSettings().get(name).getClass(),
+                                    target.getSettings(),
+                                    name);
                         }
                     }
                     // transform value v
@@ -290,6 +237,32 @@ public class MARCEntityQueue extends EntityQueue<MARCEntityBuilderState, MARCEnt
             // rename, now that we know the predicate
             resource.rename(tempPredicate, IRI.builder().curie(predicate).build());
         }
+
+        /**
+         * Look up a value in a code table, or else find a relation by pattern.
+         */
+        private String codeValue(Resource resource, String key, String v,
+                                 Map<String, Object> vm, List<MARCEntityDispatch.Relation> patterns) throws IOException {
+            // TODO not very exact code here. This tries to guess words.
+            int pos = v.indexOf(' '); // code must be non-blank word
+            String vv = pos > 0 ? v.substring(0, pos) : v;
+            // code table lookup
+            if (vm.containsKey(v)) {
+                resource.add(key + "Source", v);
+                return (String) vm.get(v);
+            } else if (vm.containsKey(vv)) {
+                resource.add(key + "Source", v);
+                return (String) vm.get(vv);
+            } else if (patterns != null) {
+                for (MARCEntityDispatch.Relation relation : patterns) {
+                    if (relation.matches(v)) {
+                        resource.add(key + "Source", v);
+                        return relation.getValue();
+                    }
+                }
+            }
+            return v;
+        }
     }
 
 }
@@ -37,14 +37,50 @@ import org.xbib.entities.DefaultSpecification;
 import org.xbib.entities.Entity;
 
 import java.util.HashMap;
+import java.util.IdentityHashMap;
 import java.util.Map;
 
 public class MARCSpecification extends DefaultSpecification {
 
     private final static Logger logger = LogManager.getLogger(MARCSpecification.class.getName());
 
+    /**
+     * The dispatch tables compiled by this specification, by identity of the entity map.
+     */
+    private final Map<Map, MARCEntityDispatch> dispatches = new IdentityHashMap<Map, MARCEntityDispatch>();
+
     private String value;
 
+    /**
+     * Load the entity map and compile the dispatch table for it.
+     */
+    @Override
+    public Map getEntityMap(ClassLoader cl, String packageName, String... paths) throws Exception {
+        Map map = super.getEntityMap(cl, packageName, paths);
+        if (map != null) {
+            getDispatch(map);
+        }
+        return map;
+    }
+
+    /**
+     * Get the compiled dispatch table for an entity map. The table is compiled once per
+     * specification and entity map, and is released together with the specification.
+     *
+     * @param map the entity map
+     * @return the dispatch table
+     */
+    public MARCEntityDispatch getDispatch(Map map) {
+        synchronized (dispatches) {
+            MARCEntityDispatch dispatch = dispatches.get(map);
+            if (dispatch == null) {
+                dispatch = new MARCEntityDispatch(this, map);
+                dispatches.put(map, dispatch);
+            }
+            return dispatch;
+        }
+    }
+
     @Override
     public Map addKey(String value, Entity entity, Map map) {
         this.value = value;
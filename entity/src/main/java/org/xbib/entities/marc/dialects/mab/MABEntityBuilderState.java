@@ -46,7 +46,6 @@ import org.xbib.rdf.RdfGraph;
 import org.xbib.rdf.RdfGraphParams;
 import org.xbib.rdf.Resource;
 import org.xbib.rdf.memory.MemoryLiteral;
-import org.xbib.rdf.memory.MemoryResource;
 
 import java.io.IOException;
 import java.util.Map;
@@ -81,7 +80,7 @@ public class MABEntityBuilderState extends DefaultEntityBuilderState {
 
     public Resource getResource() throws IOException {
         if (!graph().getResources().hasNext()) {
-            this.root = new MemoryResource().blank();
+            this.root = graph().newResource();
             graph().receive(root);
         }
         return this.root;
@@ -89,7 +88,7 @@ public class MABEntityBuilderState extends DefaultEntityBuilderState {
 
     public Resource getResource(IRI predicate) throws IOException {
         if (!graph().hasResource(predicate)) {
-            MemoryResource resource = new MemoryResource().blank();
+            Resource resource = graph().newResource();
             graph().putResource(predicate, resource);
         }
         return graph().getResource(predicate);
@@ -100,7 +99,7 @@ public class MABEntityBuilderState extends DefaultEntityBuilderState {
             Resource resource = graph().removeResource(ITEM);
             graph().putResource(resource.id(), resource);
         }
-        MemoryResource item = new MemoryResource().blank();
+        Resource item = graph().newResource();
         graph().putResource(ITEM, item);
         return item;
     }
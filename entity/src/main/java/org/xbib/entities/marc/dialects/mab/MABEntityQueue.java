@@ -47,7 +47,6 @@ import org.xbib.marc.Field;
 import org.xbib.marc.FieldList;
 import org.xbib.rdf.RdfContentBuilderProvider;
 import org.xbib.rdf.Resource;
-import org.xbib.rdf.memory.MemoryRdfGraph;
 
 import java.io.Closeable;
 import java.io.IOException;
@@ -193,7 +192,7 @@ public class MABEntityQueue extends EntityQueue<MABEntityBuilderState, MABEntity
 
         @Override
         public MABEntityBuilderState newState() {
-            return new MABEntityBuilderState(new MemoryRdfGraph(), contentBuilderProviders());
+            return new MABEntityBuilderState(newGraph(), contentBuilderProviders());
         }
 
         @Override
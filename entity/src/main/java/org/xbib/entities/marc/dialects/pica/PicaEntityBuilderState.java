@@ -37,7 +37,6 @@ import org.xbib.rdf.RdfContentBuilderProvider;
 import org.xbib.rdf.RdfGraph;
 import org.xbib.rdf.RdfGraphParams;
 import org.xbib.rdf.Resource;
-import org.xbib.rdf.memory.MemoryResource;
 
 import java.io.IOException;
 import java.util.Map;
@@ -59,7 +58,7 @@ public class PicaEntityBuilderState extends DefaultEntityBuilderState {
 
     public Resource getResource() throws IOException {
         if (!graph().getResources().hasNext()) {
-            root = new MemoryResource().blank();
+            root = graph().newResource();
             graph().receive(root);
         }
         return root;
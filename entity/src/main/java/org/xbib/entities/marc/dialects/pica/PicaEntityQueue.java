@@ -37,7 +37,6 @@ import org.xbib.entities.marc.SubfieldValueMapper;
 import org.xbib.marc.Field;
 import org.xbib.marc.FieldList;
 import org.xbib.rdf.Resource;
-import org.xbib.rdf.memory.MemoryRdfGraph;
 
 import java.io.IOException;
 import java.util.Map;
@@ -77,7 +76,7 @@ public class PicaEntityQueue extends EntityQueue<PicaEntityBuilderState, PicaEnt
 
         @Override
         public PicaEntityBuilderState newState() {
-            return new PicaEntityBuilderState(new MemoryRdfGraph(), contentBuilderProviders());
+            return new PicaEntityBuilderState(newGraph(), contentBuilderProviders());
         }
 
         @SuppressWarnings("unchecked")
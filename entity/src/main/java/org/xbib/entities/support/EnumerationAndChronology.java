@@ -31,6 +31,8 @@
  */
 package org.xbib.entities.support;
 
+import com.google.common.cache.Cache;
+import com.google.common.cache.CacheBuilder;
 import org.apache.logging.log4j.LogManager;
 import org.apache.logging.log4j.Logger;
 import org.xbib.iri.IRI;
@@ -38,6 +40,8 @@ import org.xbib.rdf.Node;
 import org.xbib.rdf.memory.MemoryResource;
 import org.xbib.util.DateUtil;
 import org.xbib.rdf.Resource;
+import org.xbib.entities.support.EnumerationAndChronologyScanner.Match;
+import org.xbib.entities.support.EnumerationAndChronologyScanner.Result;
 
 import java.util.Iterator;
 import java.util.List;
@@ -58,156 +62,15 @@ public class EnumerationAndChronology {
 
     private static final Logger logger = LogManager.getLogger(EnumerationAndChronology.class.getName());
 
-    // yyyy
-    private final static Pattern[] p1a = new Pattern[] {
-            // 1921=1339
-            // 1921/22=1339
-            Pattern.compile("(\\d{4})(/?\\d{2})\\s*="),
-            // 1965/70(1971/72)
-            Pattern.compile("(\\d{4})(/?\\d{2})\\((\\d{4})(/?\\d{2})\\)"),
-            // 1965/66
-            // 1968/70
-            // 1961/62(1963)
-            // 1961/62(1962)
-            // WS 1948/49
-            Pattern.compile("(\\d{4})(/?\\d{2})"),
-            // 1961
-            // 1992,14140(12. März)
-            // SS 1922
-            Pattern.compile("(\\d{4})")
-    };
-    // i.yyyy
-    private final static Pattern[] p1b = new Pattern[]{
-            // 1.1970/71
-            // 2.1938/40(1942)
-            // 9.1996/97(1997)
-            Pattern.compile("(\\d+)\\.(\\d{4})(/\\d{0,4})"),
-            // 1.1970
-            // 2.1970,3
-            // 4.1961,Aug.
-            // 3.1971,Jan./Febr.
-            // 1.1970; 3.1972; 7.1973
-            Pattern.compile("(\\d+)\\.(\\d{4})"),
-            // 1.[19]93,1
-            Pattern.compile("(\\d+)\\.(\\[?\\d{2}\\]?\\d{2}/?\\d{0,4})")
-    };
-    // yyyy=yyyy
-    private final static Pattern[] p1c = new Pattern[] {
-            // An V= [1796/97]
-            // 1.5678=[1917/18]
-            Pattern.compile("=\\s*\\[(\\d{4})(/?\\d{0,4})\\]"),
-            // 1.1981=1401
-            Pattern.compile("\\.(\\d{4}/?\\d{0,4})\\s*=")
-    };
-    // yyyy -
-    private final static Pattern[] p2a = new Pattern[] {
-            // 1971 -
-            Pattern.compile("(\\d{4}/?\\d{0,4}).*\\-\\s*$"),
-            // 1963,21(22.Mai) -
-            Pattern.compile("(\\d{4}).*\\-\\s*$"),
-            // [19]51,1 - [19]52,5
-            Pattern.compile("(\\[\\d{2}\\]\\d{2}).*\\-\\s*$")
-    };
-    // i.yyyy -
-    private final static Pattern[] p2b = new Pattern[] {
-            // 1.1971 -
-            // 2.1947,15.Mai -
-            Pattern.compile("(\\d+)\\.(\\d{4}/?\\d{0,4}).*?\\-\\s*$"),
-            // 63.2011,Okt. -
-            Pattern.compile("(\\d{0,4})\\.(\\d{4}).*?\\-\\s*$"),
-            Pattern.compile("(.*?)\\.(\\d{4}/?\\d{0,4}).*\\-\\s*$")
-    };
-    // yyyy,v -
-    private final static Pattern[] p2c = new Pattern[] {
-            Pattern.compile("(\\d{4}/?\\d{0,4}),(.*?)\\s*\\-\\s*$")
-    };
-    // yyyy - yyyy
-    private final static Pattern[] p3a = new Pattern[] {
-            // 1963 - 1972
-            Pattern.compile("(\\d{4}/?\\d{0,4}).*\\-\\s*(\\d{4}/?\\d{0,4})"),
-            // [19]51,1 - [19]52,5
-            Pattern.compile("(\\[\\d{2}\\]\\d{2}/?\\d{0,4}).*\\-\\s*(\\[\\d{2}\\]\\d{2}/?\\d{0,4})")
-    };
-    // i.yyyy - i.yyyy
-    private final static Pattern[] p3b = new Pattern[] {
-            // 6.1961/64 - 31.1970
-            // 1.1963 - 12.1972
-            // 115.1921/22(1923) - 1125.1937
-            // 3.1858,6 - 24.1881,3
-            // 1.1960 - 5.1963; 11.1964; 23.1971 -
-            Pattern.compile("(\\d+)\\.(\\d{4}/?\\d{0,4}).*\\-\\s*(\\d+)\\.(\\d{4}/?\\d{0,4})"),
-            Pattern.compile("(.*?)\\.(\\d{4}/?\\d{0,4}).*\\-\\s*(.*?)\\.(\\d{4}/?\\d{0,4})"),
-            // [19]81/82 - [19]83
-            Pattern.compile("(\\d+)\\.(\\[\\d{2}\\]\\d{2})(/\\d{0,4}).*\\-\\s*(\\d+)\\.(\\[\\d{2}\\]\\d{2})(/\\d{0,4})"),
-            // 1.[19]51,1 - 1.[19]52,5
-            Pattern.compile("(\\d+)\\.(\\[\\d{2}\\]\\d{2}).*\\-\\s*(\\d+)\\.(\\[\\d{2}\\]\\d{2})")
-    };
-    // yyyy,v - yyyy,v
-    private final static Pattern[] p3c = new Pattern[]{
-            Pattern.compile("(\\d{4}),(.*?)\\s*\\-\\s*(\\d{4}),(.*?)")
-    };
-    // yyyy,v - i.yyyy
-    private final static Pattern[] p3d = new Pattern[] {
-            // 1981,31 - 25.1997
-            // 115.1921/22(1923) - 1125.1937
-            Pattern.compile("(\\d{4}),(.*?)\\s*\\-\\s*(\\d+)\\.(\\d{4})")
-    };
-    // i.yyyy - yyyy,v
-    private final static Pattern[] p3e = new Pattern[]{
-            Pattern.compile("(.*?)\\.(\\d{4})\\s*\\-\\s*(\\d{4}),(.*?)")
-    };
-
-    // Erscheinungsjahre in runden Klammern (yyyy), (yyyy/yy), (yyyy/yyyy)
-    private final static Pattern[] p4a = new Pattern[] {
-            // 2.1938/40(1942)
-            // 9.1996/97(1997)
-            // 1961/62(1963)
-            // 1965/70(1971/72)
-            Pattern.compile("\\((\\d{4}/?\\d{0,4})\\)")
-    };
+    private final static int CACHE_SIZE = 8192;
 
     /**
-     * Berichtsjahr/Erscheinungsjahr
-     * report date / publication date
+     * Scan results by value. Holdings statements repeat a lot, so the recently used values are kept.
+     * The cache is segmented, so threads do not contend on a single lock.
      */
-
-    // Jahrgänge, mit zwei Zählungen, jeweils Berichtsjahr/Erscheinungsjahr, geschlossen
-    // 115.1921/22(1923) - 116.1922/23(1924)
-    // 115.1921/22(1923) - 1125.1937
-    // 1 = Zählung
-    // 2 = Berichtsjahr
-    // 3 = Erscheinungsjahr (yyyy), (yyyy/yy), (yyyy/yyyy)
-    // 4 = Zählung
-    // 5 = Berichtsjahr
-    // 6 = Erscheinungsjahr (yyyy), (yyyy/yy), (yyyy/yyyy)
-    private final static Pattern[] g1a = new Pattern[] {
-            Pattern.compile("(.*?)\\.(\\d{4}/?\\d{0,4})\\((\\d{4}/?\\d{0,4})\\)\\s*\\-\\s*(.*?)\\.(\\d{4}/?\\d{0,4})\\((\\d{4}/?\\d{0,4})\\)"),
-    };
-
-    // Jahrgänge, mit Zählung, offen
-    // 115.1921/22(1923) -
-    private final static Pattern[] g1c = new Pattern[] {
-            Pattern.compile("(.*?)\\.(\\d{4}/?\\d{0,4})\\((\\d{4}/?\\d{0,4})\\)\\s*\\-")
-    };
-
-    // einzelner Jahrgang mit Zählung
-    // 2.1938/40(1942)
-    // 9.1996/97(1997)
-    // 1 = Zählung Berichtsjahr
-    // 2 = Berichtsjahr
-    // 3 = Erscheinungsjahr (yyyy), (yyyy/yy), (yyyy/yyyy)
-    private final static Pattern[] g1d = new Pattern[] {
-            Pattern.compile("(.*?)\\.(\\d{4}/?\\d{0,4})\\((\\d{4}/?\\d{0,4})\\)")
-    };
-
-    // einzelner Jahrgang
-    // 1961/62(1963)
-    // 1965/70(1971/72)
-    // 1 = Berichtsjahr
-    // 2 = Erscheinungsjahr
-    private final static Pattern[] g1e = new Pattern[] {
-            Pattern.compile("(\\d{4}/?\\d{0,4})\\((\\d{4}/?\\d{0,4})\\)")
-    };
+    private final static Cache<String, Result> cache = CacheBuilder.newBuilder()
+            .maximumSize(CACHE_SIZE)
+            .build();
 
     final Set<Integer> dates = newTreeSet();
 
@@ -227,42 +90,48 @@ public class EnumerationAndChronology {
             return resource;
         }
         for (String value : values.split(";")) {
-            boolean found;
+            Result result = scan(value);
 
             // Jahrgänge, mit zwei Zählungen, jeweils Berichtsjahr/Erscheinungsjahr, geschlossen
-            for (Pattern p : g1a) {
-                Matcher m = p.matcher(value);
-                found = m.find();
-                if (found) {
-                    List<Integer> l1 = fractionDate(m.group(2));
-                    List<Integer> l2 = fractionDate(m.group(5));
-                    Integer b = sanitizeDate(l1.get(0));
-                    Integer e = sanitizeDate(l2.get(l2.size() - 1));
-                    resource.newResource("group")
-                            .add("begindate", b)
-                            .add("enddate", e)
-                            .add("beginvolume", m.group(1))
-                            .add("endvolume", m.group(4))
-                            .add("beginpubdate", m.group(3))
-                            .add("endpubdate", m.group(6));
-                }
+            Match m = result.counting;
+            if (m != null) {
+                List<Integer> l1 = fractionDate(m.group(2));
+                List<Integer> l2 = fractionDate(m.group(5));
+                Integer b = sanitizeDate(l1.get(0));
+                Integer e = sanitizeDate(l2.get(l2.size() - 1));
+                resource.newResource("group")
+                        .add("begindate", b)
+                        .add("enddate", e)
+                        .add("beginvolume", m.group(1))
+                        .add("endvolume", m.group(4))
+                        .add("beginpubdate", m.group(3))
+                        .add("endpubdate", m.group(6));
             }
 
-            found = false;
-            for (Pattern p : p4a) {
-                Matcher m = p.matcher(value);
-                found = m.find();
-                if (found) {
-                    resource.newResource("group")
-                            .add("begindate", sanitizeDate(m.group(1)));
-                }
+            m = result.publication;
+            if (m != null) {
+                resource.newResource("group")
+                        .add("begindate", sanitizeDate(m.group(1)));
             }
             // always continue here, parentheses dates are optional
-            found = false;
-            for (Pattern p : p3e) {
-                Matcher m = p.matcher(value);
-                found = m.find();
-                if (found) {
+            m = result.period;
+            if (m == null) {
+                if (movingwalls != null) {
+                    for (Pattern p : movingwalls) {
+                        Matcher matcher = p.matcher(value);
+                        if (matcher.find()) {
+                            Integer b = DateUtil.getYear() - Integer.parseInt(matcher.group(1));
+                            resource.newResource("group")
+                                    .add("begindate", b)
+                                    .add("open", "true");
+                            break;
+                        }
+                    }
+                }
+                continue;
+            }
+            switch (m.rule()) {
+                case P3E: {
                     Integer b = sanitizeDate(m.group(2));
                     Integer e = sanitizeDate(m.group(3));
                     resource.newResource("group")
@@ -272,15 +141,7 @@ public class EnumerationAndChronology {
                             .add("enddate", e);
                     break;
                 }
-            }
-            if (found) {
-                continue;
-            }
-            found = false;
-            for (Pattern p : p3d) {
-                Matcher m = p.matcher(value);
-                found = m.find();
-                if (found) {
+                case P3D: {
                     Integer b = sanitizeDate(m.group(1));
                     Integer e = sanitizeDate(m.group(4));
                     resource.newResource("group")
@@ -290,15 +151,7 @@ public class EnumerationAndChronology {
                             .add("enddate", e);
                     break;
                 }
-            }
-            if (found) {
-                continue;
-            }
-            found = false;
-            for (Pattern p : p3c) {
-                Matcher m = p.matcher(value);
-                found = m.find();
-                if (found) {
+                case P3C: {
                     Integer b = sanitizeDate(m.group(1));
                     Integer e = sanitizeDate(m.group(3));
                     resource.newResource("group")
@@ -308,15 +161,7 @@ public class EnumerationAndChronology {
                             .add("enddate", e);
                     break;
                 }
-            }
-            if (found) {
-                continue;
-            }
-            found = false;
-            for (Pattern p : p3b) {
-                Matcher m = p.matcher(value);
-                found = m.find();
-                if (found) {
+                case P3B: {
                     Integer b = sanitizeDate(m.group(2));
                     Integer e = sanitizeDate(m.group(4));
                     resource.newResource("group")
@@ -326,87 +171,37 @@ public class EnumerationAndChronology {
                             .add("enddate", e);
                     break;
                 }
-            }
-            if (found) {
-                continue;
-            }
-            found = false;
-            for (Pattern p : p3a) {
-                Matcher m = p.matcher(value);
-                found = m.find();
-                if (found) {
-                    if (m.groupCount() == 4) {
-                        List<Integer> l1 = fractionDate(m.group(1) + m.group(2));
-                        List<Integer> l2 = fractionDate(m.group(3) + m.group(4));
-                        Integer b = sanitizeDate(l1.get(0));
-                        Integer e = sanitizeDate(l2.get(l2.size()-1));
-                        resource.newResource("group")
-                                .add("begindate", b)
-                                .add("enddate", e);
-                    } else {
-                        List<Integer> l1 = fractionDate(m.group(1));
-                        List<Integer> l2 = fractionDate(m.group(2));
-                        Integer b = sanitizeDate(l1.get(0));
-                        Integer e = sanitizeDate(l2.get(l2.size()-1));
-                        resource.newResource("group")
-                                .add("begindate", b)
-                                .add("enddate", e);
-                    }
+                case P3A: {
+                    List<Integer> l1 = fractionDate(m.group(1));
+                    List<Integer> l2 = fractionDate(m.group(2));
+                    Integer b = sanitizeDate(l1.get(0));
+                    Integer e = sanitizeDate(l2.get(l2.size()-1));
+                    resource.newResource("group")
+                            .add("begindate", b)
+                            .add("enddate", e);
                     break;
                 }
-            }
-            if (found) {
-                continue;
-            }
-            found = false;
-            for (Pattern p : p2c) {
-                Matcher m = p.matcher(value);
-                found = m.find();
-                if (found) {
+                case P2C: {
                     resource.newResource("group")
                             .add("beginvolume", m.group(2))
                             .add("begindate", sanitizeDate(m.group(1)))
                             .add("open", "true");
                     break;
                 }
-            }
-            if (found) {
-                continue;
-            }
-            found = false;
-            for (Pattern p : p2b) {
-                Matcher m = p.matcher(value);
-                found = m.find();
-                if (found) {
+                case P2B: {
                     resource.newResource("group")
                             .add("beginvolume", m.group(1))
                             .add("begindate", sanitizeDate(m.group(2)))
                             .add("open", "true");
                     break;
                 }
-            }
-            if (found) {
-                continue;
-            }
-            found = false;
-            for (Pattern p : p2a) {
-                Matcher m = p.matcher(value);
-                found = m.find();
-                if (found) {
+                case P2A: {
                     resource.newResource("group")
                             .add("begindate", sanitizeDate(m.group(1)))
                             .add("open", "true");
                     break;
                 }
-            }
-            if (found) {
-                continue;
-            }
-            found = false;
-            for (Pattern p : p1c) {
-                Matcher m = p.matcher(value);
-                found = m.find();
-                if (found) {
+                case P1C: {
                     if (m.groupCount() > 1) {
                         List<Integer> l = fractionDate(m.group(1) + m.group(2));
                         Integer b = sanitizeDate(l.get(0));
@@ -423,15 +218,7 @@ public class EnumerationAndChronology {
                     }
                     break;
                 }
-            }
-            if (found) {
-                continue;
-            }
-            found = false;
-            for (Pattern p : p1b) {
-                Matcher m = p.matcher(value);
-                found = m.find();
-                if (found) {
+                case P1B: {
                     if (m.groupCount() == 3) {
                         List<Integer> l = fractionDate(m.group(2) + m.group(3));
                         Integer b = sanitizeDate(l.get(0));
@@ -441,8 +228,8 @@ public class EnumerationAndChronology {
                         if (l.size() > 1) {
                             b = sanitizeDate(l.get(1));
                             resource.newResource("group")
-                                .add("beginvolume", m.group(1))
-                                .add("begindate", b );
+                                    .add("beginvolume", m.group(1))
+                                    .add("begindate", b );
                         }
                     } else {
                         resource.newResource("group")
@@ -451,15 +238,7 @@ public class EnumerationAndChronology {
                     }
                     break;
                 }
-            }
-            if (found) {
-                continue;
-            }
-            found = false;
-            for (Pattern p : p1a) {
-                Matcher m = p.matcher(value);
-                found = m.find();
-                if (found) {
+                case P1A: {
                     if (m.groupCount() == 4) {
                         List<Integer> l1 = fractionDate(m.group(1) + m.group(2));
                         List<Integer> l2 = fractionDate(m.group(3) + m.group(4));
@@ -469,7 +248,7 @@ public class EnumerationAndChronology {
                         if (l1.size() > 1) {
                             b = sanitizeDate(l1.get(1));
                             resource.newResource("group")
-                                .add("begindate", b);
+                                    .add("begindate", b);
                         }
                         b = sanitizeDate(l2.get(0));
                         resource.newResource("group")
@@ -477,7 +256,7 @@ public class EnumerationAndChronology {
                         if (l2.size() > 1) {
                             b = sanitizeDate(l2.get(1));
                             resource.newResource("group")
-                                .add("begindate", b);
+                                    .add("begindate", b);
                         }
                     } else if (m.groupCount() == 2) {
                         List<Integer> l = fractionDate(m.group(1) + m.group(2));
@@ -487,7 +266,7 @@ public class EnumerationAndChronology {
                         if (l.size() > 1) {
                             b = sanitizeDate(l.get(1));
                             resource.newResource("group")
-                                .add("begindate", b);
+                                    .add("begindate", b);
                         }
                     } else {
                         resource.newResource("group")
@@ -496,22 +275,6 @@ public class EnumerationAndChronology {
                     break;
                 }
             }
-            if (found) {
-                continue;
-            }
-            if (movingwalls != null) {
-                for (Pattern p : movingwalls) {
-                    Matcher m = p.matcher(value);
-                    found = m.find();
-                    if (found) {
-                        Integer b = DateUtil.getYear() - Integer.parseInt(m.group(1));
-                        resource.newResource("group")
-                                .add("begindate", b)
-                                .add("open", "true");
-                        break;
-                    }
-                }
-            }
         }
         return resource;
     }
@@ -529,27 +292,23 @@ public class EnumerationAndChronology {
         String[] values = content.split(";");
         int i = 0;
         for (String value : values) {
-            boolean found = false;
+            Result result = scan(value);
             // first, check dates in parentheses
-            for (Pattern p : p4a) {
-                Matcher m = p.matcher(value);
-                found = m.find();
-                if (found) {
-                    begin.add(i, sanitizeDate(m.group(1)));
-                    end.add(i, null);
-                    open.add(i, false);
-                    i++;
-                }
+            Match m = result.publication;
+            if (m != null) {
+                begin.add(i, sanitizeDate(m.group(1)));
+                end.add(i, null);
+                open.add(i, false);
+                i++;
+                // parentheses dates are optional
+                continue;
             }
-            // parentheses dates are optional
-            if (found) {
+            m = result.period;
+            if (m == null) {
                 continue;
             }
-            found = false;
-            for (Pattern p : p3e) {
-                Matcher m = p.matcher(value);
-                found = m.find();
-                if (found) {
+            switch (m.rule()) {
+                case P3E: {
                     Integer b = sanitizeDate(m.group(2));
                     Integer e = sanitizeDate(m.group(3));
                     beginVolume.add(i, m.group(1));
@@ -559,15 +318,7 @@ public class EnumerationAndChronology {
                     i++;
                     break;
                 }
-            }
-            if (found) {
-                continue;
-            }
-            found = false;
-            for (Pattern p : p3d) {
-                Matcher m = p.matcher(value);
-                found = m.find();
-                if (found) {
+                case P3D: {
                     Integer b = sanitizeDate(m.group(1));
                     Integer e = sanitizeDate(m.group(4));
                     beginVolume.add(i, m.group(2));
@@ -577,15 +328,7 @@ public class EnumerationAndChronology {
                     i++;
                     break;
                 }
-            }
-            if (found) {
-                continue;
-            }
-            found = false;
-            for (Pattern p : p3c) {
-                Matcher m = p.matcher(value);
-                found = m.find();
-                if (found) {
+                case P3C: {
                     Integer b = sanitizeDate(m.group(1));
                     Integer e = sanitizeDate(m.group(3));
                     beginVolume.add(i, m.group(2));
@@ -595,15 +338,7 @@ public class EnumerationAndChronology {
                     i++;
                     break;
                 }
-            }
-            if (found) {
-                continue;
-            }
-
-            for (Pattern p : p3b) {
-                Matcher m = p.matcher(value);
-                found = m.find();
-                if (found) {
+                case P3B: {
                     begin.add(i, sanitizeDate(m.group(2)));
                     end.add(i, sanitizeDate(m.group(4)));
                     beginVolume.add(i, m.group(1));
@@ -612,58 +347,25 @@ public class EnumerationAndChronology {
                     i++;
                     break;
                 }
-            }
-            if (found) {
-                continue;
-            }
-            found = false;
-            // simple periods
-            for (Pattern p : p3a) {
-                Matcher m = p.matcher(value);
-                found = m.find();
-                if (found) {
-                    if (m.groupCount() == 4) {
-                        List<Integer> l1 = fractionDate(m.group(1) + m.group(2));
-                        List<Integer> l2 = fractionDate(m.group(3) + m.group(4));
-                        begin.add(i, sanitizeDate(l1.get(0)));
-                        end.add(i, sanitizeDate(l2.get(l2.size() - 1)));
-                        open.add(i, false);
-                        i++;
-                    } else {
-                        List<Integer> l1 = fractionDate(m.group(1));
-                        List<Integer> l2 = fractionDate(m.group(2));
-                        begin.add(i, sanitizeDate(l1.get(0)));
-                        end.add(i, sanitizeDate(l2.get(l2.size() - 1)));
-                        open.add(i, false);
-                        i++;
-                    }
+                // simple periods
+                case P3A: {
+                    List<Integer> l1 = fractionDate(m.group(1));
+                    List<Integer> l2 = fractionDate(m.group(2));
+                    begin.add(i, sanitizeDate(l1.get(0)));
+                    end.add(i, sanitizeDate(l2.get(l2.size() - 1)));
+                    open.add(i, false);
+                    i++;
                     break;
                 }
-            }
-            if (found) {
-                continue;
-            }
-            found = false;
-            for (Pattern p : p2c) {
-                Matcher m = p.matcher(value);
-                found = m.find();
-                if (found) {
+                case P2C: {
                     beginVolume.add(i, m.group(2));
                     begin.add(i, sanitizeDate(m.group(1)) );
                     open.add(i, true);
                     i++;
                     break;
                 }
-            }
-            if (found) {
-                continue;
-            }
-            found = false;
-            // open periods with volume
-            for (Pattern p : p2b) {
-                Matcher m = p.matcher(value);
-                found = m.find();
-                if (found) {
+                // open periods with volume
+                case P2B: {
                     begin.add(i, sanitizeDate(m.group(2)));
                     end.add(i, null);
                     beginVolume.add(i, m.group(1));
@@ -672,32 +374,16 @@ public class EnumerationAndChronology {
                     i++;
                     break;
                 }
-            }
-            if (found) {
-                continue;
-            }
-            found = false;
-            // open periods without volume
-            for (Pattern p : p2a) {
-                Matcher m = p.matcher(value);
-                found = m.find();
-                if (found) {
+                // open periods without volume
+                case P2A: {
                     begin.add(i, sanitizeDate(m.group(1)));
                     end.add(i, null);
                     open.add(i, true);
                     i++;
                     break;
                 }
-            }
-            if (found) {
-                continue;
-            }
-            found = false;
-            // renamed single date
-            for (Pattern p : p1c) {
-                Matcher m = p.matcher(value);
-                found = m.find();
-                if (found) {
+                // renamed single date
+                case P1C: {
                     if (m.groupCount() > 1) {
                         List<Integer> l = fractionDate(m.group(1) + m.group(2));
                         begin.add(i, sanitizeDate(l.get(0)));
@@ -718,16 +404,8 @@ public class EnumerationAndChronology {
                     }
                     break;
                 }
-            }
-            if (found) {
-                continue;
-            }
-            found = false;
-            // single date, with volume
-            for (Pattern p : p1b) {
-                Matcher m = p.matcher(value);
-                found = m.find();
-                if (found) {
+                // single date, with volume
+                case P1B: {
                     if (m.groupCount() == 3) {
                         List<Integer> l = fractionDate(m.group(2) + m.group(3));
                         begin.add(i, sanitizeDate(l.get(0)));
@@ -752,15 +430,8 @@ public class EnumerationAndChronology {
                     }
                     break;
                 }
-            }
-            if (found) {
-                continue;
-            }
-            // single date, without volume
-            for (Pattern p : p1a) {
-                Matcher m = p.matcher(value);
-                found = m.find();
-                if (found) {
+                // single date, without volume
+                case P1A: {
                     if (m.groupCount() == 4) {
                         List<Integer> l1 = fractionDate(m.group(1) + m.group(2));
                         List<Integer> l2 = fractionDate(m.group(3) + m.group(4));
@@ -804,6 +475,15 @@ public class EnumerationAndChronology {
         }
     }
 
+    private static Result scan(String value) {
+        Result result = cache.getIfPresent(value);
+        if (result == null) {
+            result = EnumerationAndChronologyScanner.scan(value);
+            cache.put(value, result);
+        }
+        return result;
+    }
+
     public Integer sanitizeDate(String date) {
         int pos = date.indexOf("/");
         if (pos > 0) {
@@ -0,0 +1,667 @@
+/*
+ * Licensed to Jörg Prante and xbib under one or more contributor
+ * license agreements. See the NOTICE.txt file distributed with this work
+ * for additional information regarding copyright ownership.
+ *
+ * Copyright (C) 2012 Jörg Prante and xbib
+ *
+ * This program is free software; you can redistribute it and/or modify
+ * it under the terms of the GNU Affero General Public License as published
+ * by the Free Software Foundation; either version 3 of the License, or
+ * (at your option) any later version.
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the
+ * GNU Affero General Public License for more details.
+ *
+ * You should have received a copy of the GNU Affero General Public License
+ * along with this program; if not, see http://www.gnu.org/licenses
+ * or write to the Free Software Foundation, Inc., 51 Franklin Street,
+ * Fifth Floor, Boston, MA 02110-1301 USA.
+ *
+ * The interactive user interfaces in modified source and object code
+ * versions of this program must display Appropriate Legal Notices,
+ * as required under Section 5 of the GNU Affero General Public License.
+ *
+ * In accordance with Section 7(b) of the GNU Affero General Public
+ * License, these Appropriate Legal Notices must retain the display of the
+ * "Powered by xbib" logo. If the display of the logo is not reasonably
+ * feasible for technical reasons, the Appropriate Legal Notices must display
+ * the words "Powered by xbib".
+ */
+package org.xbib.entities.support;
+
+/**
+ * Scanner for the enumeration and chronology patterns of {@link EnumerationAndChronology}.
+ *
+ * A value is read once to find the digit runs, whitespace runs and line ends, then each
+ * rule is tried on these runs in the order of the former regular expression cascade:
+ * the double counting with publication dates (g1a), the publication date in parentheses (p4a)
+ * and the first period or date rule from p3e down to p1a. Groups and match positions are the
+ * same as with {@link java.util.regex.Matcher#find()} on the patterns noted at the rules,
+ * where Y stands for {@code \d{4}/?\d{0,4}}.
+ */
+final class EnumerationAndChronologyScanner {
+
+    enum Rule {
+        // i.yyyy - yyyy,v
+        P3E,
+        // yyyy,v - i.yyyy
+        // 1981,31 - 25.1997
+        P3D,
+        // yyyy,v - yyyy,v
+        P3C,
+        // i.yyyy - i.yyyy
+        // 6.1961/64 - 31.1970
+        // 115.1921/22(1923) - 1125.1937
+        // 3.1858,6 - 24.1881,3
+        // 1.[19]51,1 - 1.[19]52,5
+        P3B,
+        // yyyy - yyyy
+        // 1963 - 1972
+        // [19]51,1 - [19]52,5
+        P3A,
+        // yyyy,v -
+        P2C,
+        // i.yyyy -
+        // 1.1971 -
+        // 2.1947,15.Mai -
+        // 63.2011,Okt. -
+        P2B,
+        // yyyy -
+        // 1971 -
+        // 1963,21(22.Mai) -
+        P2A,
+        // yyyy=yyyy
+        // An V= [1796/97]
+        // 1.1981=1401
+        P1C,
+        // i.yyyy
+        // 1.1970/71
+        // 4.1961,Aug.
+        // 1.[19]93,1
+        P1B,
+        // yyyy
+        // 1921/22=1339
+        // 1965/70(1971/72)
+        // WS 1948/49
+        // 1992,14140(12. März)
+        P1A
+    }
+
+    /**
+     * A rule match, with groups numbered like in a regular expression.
+     */
+    static final class Match {
+
+        private final Rule rule;
+
+        private final String[] groups;
+
+        Match(Rule rule, String... groups) {
+            this.rule = rule;
+            this.groups = groups;
+        }
+
+        Rule rule() {
+            return rule;
+        }
+
+        int groupCount() {
+            return groups.length;
+        }
+
+        String group(int i) {
+            return groups[i - 1];
+        }
+    }
+
+    /**
+     * The matches of a value. Each of them may be null.
+     */
+    static final class Result {
+
+        final Match counting;
+
+        final Match publication;
+
+        final Match period;
+
+        Result(Match counting, Match publication, Match period) {
+            this.counting = counting;
+            this.publication = publication;
+            this.period = period;
+        }
+    }
+
+    private final String s;
+
+    private final int n;
+
+    // length of the digit run at a position
+    private final int[] digits;
+
+    // end of the whitespace run at a position
+    private final int[] space;
+
+    // the next line terminator at or after a position, or n
+    private final int[] lineEnd;
+
+    // position of a '-' followed by whitespace only, or -1
+    private final int dash;
+
+    private EnumerationAndChronologyScanner(String s) {
+        this.s = s;
+        this.n = s.length();
+        this.digits = new int[n];
+        this.space = new int[n];
+        this.lineEnd = new int[n];
+        int d = -1;
+        boolean trailing = true;
+        for (int i = n - 1; i >= 0; i--) {
+            char c = s.charAt(i);
+            digits[i] = c >= '0' && c <= '9' ? (i + 1 < n ? digits[i + 1] : 0) + 1 : 0;
+            space[i] = isWhitespace(c) ? (i + 1 < n ? space[i + 1] : n) : i;
+            lineEnd[i] = isLineTerminator(c) ? i : (i + 1 < n ? lineEnd[i + 1] : n);
+            if (trailing && !isWhitespace(c)) {
+                d = c == '-' ? i : -1;
+                trailing = false;
+            }
+        }
+        this.dash = d;
+    }
+
+    static Result scan(String value) {
+        EnumerationAndChronologyScanner scanner = new EnumerationAndChronologyScanner(value);
+        return new Result(scanner.g1a(), scanner.p4a(), scanner.period());
+    }
+
+    private Match period() {
+        Match m = p3e();
+        if (m == null) {
+            m = p3d();
+        }
+        if (m == null) {
+            m = p3c();
+        }
+        if (m == null) {
+            m = p3b();
+        }
+        if (m == null) {
+            m = p3a();
+        }
+        if (m == null) {
+            m = p2c();
+        }
+        if (m == null) {
+            m = p2b();
+        }
+        if (m == null) {
+            m = p2a();
+        }
+        if (m == null) {
+            m = p1c();
+        }
+        if (m == null) {
+            m = p1b();
+        }
+        if (m == null) {
+            m = p1a();
+        }
+        return m;
+    }
+
+    // (.*?)\.(Y)\((Y)\)\s*\-\s*(.*?)\.(Y)\((Y)\)
+    private Match g1a() {
+        for (int ls = 0; ls <= n; ls = eol(ls) + 1) {
+            for (int p = ls; p < eol(ls); p++) {
+                int y1 = at(p) == '.' ? year(p + 1) : -1;
+                int y2 = y1 >= 0 && at(y1) == '(' ? year(y1 + 1) : -1;
+                if (y2 < 0 || at(y2) != ')') {
+                    continue;
+                }
+                int d = ws(y2 + 1);
+                if (at(d) != '-') {
+                    continue;
+                }
+                int e = ws(d + 1);
+                for (int q = e; q < eol(e); q++) {
+                    int y3 = at(q) == '.' ? year(q + 1) : -1;
+                    int y4 = y3 >= 0 && at(y3) == '(' ? year(y3 + 1) : -1;
+                    if (y4 >= 0 && at(y4) == ')') {
+                        return new Match(null, s.substring(ls, p), s.substring(p + 1, y1), s.substring(y1 + 1, y2),
+                                s.substring(e, q), s.substring(q + 1, y3), s.substring(y3 + 1, y4));
+                    }
+                }
+            }
+        }
+        return null;
+    }
+
+    // \((Y)\)
+    private Match p4a() {
+        for (int i = 0; i < n; i++) {
+            int y = at(i) == '(' ? year(i + 1) : -1;
+            if (y >= 0 && at(y) == ')') {
+                return new Match(null, s.substring(i + 1, y));
+            }
+        }
+        return null;
+    }
+
+    // (.*?)\.(\d{4})\s*\-\s*(\d{4}),(.*?)
+    private Match p3e() {
+        for (int ls = 0; ls <= n; ls = eol(ls) + 1) {
+            for (int p = ls; p < eol(ls); p++) {
+                if (at(p) != '.' || run(p + 1) < 4) {
+                    continue;
+                }
+                int d = ws(p + 5);
+                int e = at(d) == '-' ? ws(d + 1) : -1;
+                if (e >= 0 && run(e) >= 4 && at(e + 4) == ',') {
+                    return new Match(Rule.P3E, s.substring(ls, p), s.substring(p + 1, p + 5), s.substring(e, e + 4), "");
+                }
+            }
+        }
+        return null;
+    }
+
+    // (\d{4}),(.*?)\s*\-\s*(\d+)\.(\d{4})
+    private Match p3d() {
+        for (int i = 0; i < n; i++) {
+            if (run(i) < 4 || at(i + 4) != ',') {
+                continue;
+            }
+            int c = i + 5;
+            for (int q = c; q <= eol(c); q++) {
+                int d = ws(q);
+                int e = at(d) == '-' ? ws(d + 1) : -1;
+                int f = e >= 0 && run(e) > 0 ? e + run(e) : -1;
+                if (f >= 0 && at(f) == '.' && run(f + 1) >= 4) {
+                    return new Match(Rule.P3D, s.substring(i, i + 4), s.substring(c, q), s.substring(e, f),
+                            s.substring(f + 1, f + 5));
+                }
+            }
+        }
+        return null;
+    }
+
+    // (\d{4}),(.*?)\s*\-\s*(\d{4}),(.*?)
+    private Match p3c() {
+        for (int i = 0; i < n; i++) {
+            if (run(i) < 4 || at(i + 4) != ',') {
+                continue;
+            }
+            int c = i + 5;
+            for (int q = c; q <= eol(c); q++) {
+                int d = ws(q);
+                int e = at(d) == '-' ? ws(d + 1) : -1;
+                if (e >= 0 && run(e) >= 4 && at(e + 4) == ',') {
+                    return new Match(Rule.P3C, s.substring(i, i + 4), s.substring(c, q), s.substring(e, e + 4), "");
+                }
+            }
+        }
+        return null;
+    }
+
+    private Match p3b() {
+        // (\d+)\.(Y).*\-\s*(\d+)\.(Y)
+        for (int i = 0; i < n; i = next(i)) {
+            int f = volume(i);
+            int y1 = f >= 0 ? year(f + 1) : -1;
+            if (y1 < 0) {
+                continue;
+            }
+            for (int d = eol(y1) - 1; d >= y1; d--) {
+                int e = at(d) == '-' ? ws(d + 1) : -1;
+                int f2 = e >= 0 ? volume(e) : -1;
+                int y2 = f2 >= 0 ? year(f2 + 1) : -1;
+                if (y2 >= 0) {
+                    return new Match(Rule.P3B, s.substring(i, f), s.substring(f + 1, y1), s.substring(e, f2),
+                            s.substring(f2 + 1, y2));
+                }
+            }
+        }
+        // (.*?)\.(Y).*\-\s*(.*?)\.(Y)
+        for (int ls = 0; ls <= n; ls = eol(ls) + 1) {
+            for (int p = ls; p < eol(ls); p++) {
+                int y1 = at(p) == '.' ? year(p + 1) : -1;
+                if (y1 < 0) {
+                    continue;
+                }
+                for (int d = eol(y1) - 1; d >= y1; d--) {
+                    if (at(d) != '-') {
+                        continue;
+                    }
+                    int e = ws(d + 1);
+                    for (int q = e; q < eol(e); q++) {
+                        int y2 = at(q) == '.' ? year(q + 1) : -1;
+                        if (y2 >= 0) {
+                            return new Match(Rule.P3B, s.substring(ls, p), s.substring(p + 1, y1), s.substring(e, q),
+                                    s.substring(q + 1, y2));
+                        }
+                    }
+                }
+            }
+        }
+        // (\d+)\.(\[\d{2}\]\d{2})(/\d{0,4}).*\-\s*(\d+)\.(\[\d{2}\]\d{2})(/\d{0,4})
+        for (int i = 0; i < n; i = next(i)) {
+            int f = volume(i);
+            int b = f >= 0 ? bracket(f + 1) : -1;
+            int y1 = b >= 0 && at(b) == '/' ? b + 1 + Math.min(4, run(b + 1)) : -1;
+            if (y1 < 0) {
+                continue;
+            }
+            for (int d = eol(y1) - 1; d >= y1; d--) {
+                int e = at(d) == '-' ? ws(d + 1) : -1;
+                int f2 = e >= 0 ? volume(e) : -1;
+                int b2 = f2 >= 0 ? bracket(f2 + 1) : -1;
+                if (b2 >= 0 && at(b2) == '/') {
+                    int y2 = b2 + 1 + Math.min(4, run(b2 + 1));
+                    return new Match(Rule.P3B, s.substring(i, f), s.substring(f + 1, b), s.substring(b, y1),
+                            s.substring(e, f2), s.substring(f2 + 1, b2), s.substring(b2, y2));
+                }
+            }
+        }
+        // (\d+)\.(\[\d{2}\]\d{2}).*\-\s*(\d+)\.(\[\d{2}\]\d{2})
+        for (int i = 0; i < n; i = next(i)) {
+            int f = volume(i);
+            int b = f >= 0 ? bracket(f + 1) : -1;
+            if (b < 0) {
+                continue;
+            }
+            for (int d = eol(b) - 1; d >= b; d--) {
+                int e = at(d) == '-' ? ws(d + 1) : -1;
+                int f2 = e >= 0 ? volume(e) : -1;
+                int b2 = f2 >= 0 ? bracket(f2 + 1) : -1;
+                if (b2 >= 0) {
+                    return new Match(Rule.P3B, s.substring(i, f), s.substring(f + 1, b), s.substring(e, f2),
+                            s.substring(f2 + 1, b2));
+                }
+            }
+        }
+        return null;
+    }
+
+    private Match p3a() {
+        // (Y).*\-\s*(Y)
+        for (int i = 0; i < n; i++) {
+            int y1 = year(i);
+            if (y1 < 0) {
+                continue;
+            }
+            for (int d = eol(y1) - 1; d >= y1; d--) {
+                int e = at(d) == '-' ? ws(d + 1) : -1;
+                int y2 = e >= 0 ? year(e) : -1;
+                if (y2 >= 0) {
+                    return new Match(Rule.P3A, s.substring(i, y1), s.substring(e, y2));
+                }
+            }
+        }
+        // (\[\d{2}\]\d{2}/?\d{0,4}).*\-\s*(\[\d{2}\]\d{2}/?\d{0,4})
+        for (int i = 0; i < n; i++) {
+            int y1 = bracketYear(i);
+            if (y1 < 0) {
+                continue;
+            }
+            for (int d = eol(y1) - 1; d >= y1; d--) {
+                int e = at(d) == '-' ? ws(d + 1) : -1;
+                int y2 = e >= 0 ? bracketYear(e) : -1;
+                if (y2 >= 0) {
+                    return new Match(Rule.P3A, s.substring(i, y1), s.substring(e, y2));
+                }
+            }
+        }
+        return null;
+    }
+
+    // (Y),(.*?)\s*\-\s*$
+    private Match p2c() {
+        if (dash < 0) {
+            return null;
+        }
+        for (int i = 0; i < n; i++) {
+            int y = year(i);
+            if (y < 0 || at(y) != ',') {
+                continue;
+            }
+            for (int q = y + 1; q <= eol(y + 1); q++) {
+                if (ws(q) == dash) {
+                    return new Match(Rule.P2C, s.substring(i, y), s.substring(y + 1, q));
+                }
+            }
+        }
+        return null;
+    }
+
+    private Match p2b() {
+        if (dash < 0) {
+            return null;
+        }
+        // (\d+)\.(Y).*?\-\s*$
+        for (int i = 0; i < n; i = next(i)) {
+            int f = volume(i);
+            int y = f >= 0 ? year(f + 1) : -1;
+            if (y >= 0 && open(y)) {
+                return new Match(Rule.P2B, s.substring(i, f), s.substring(f + 1, y));
+            }
+        }
+        // (\d{0,4})\.(\d{4}).*?\-\s*$
+        for (int i = 0; i < n; i++) {
+            int p = i + run(i);
+            if (p - i <= 4 && at(p) == '.' && run(p + 1) >= 4 && open(p + 5)) {
+                return new Match(Rule.P2B, s.substring(i, p), s.substring(p + 1, p + 5));
+            }
+        }
+        // (.*?)\.(Y).*\-\s*$
+        for (int ls = 0; ls <= n; ls = eol(ls) + 1) {
+            for (int p = ls; p < eol(ls); p++) {
+                int y = at(p) == '.' ? year(p + 1) : -1;
+                if (y >= 0 && open(y)) {
+                    return new Match(Rule.P2B, s.substring(ls, p), s.substring(p + 1, y));
+                }
+            }
+        }
+        return null;
+    }
+
+    private Match p2a() {
+        if (dash < 0) {
+            return null;
+        }
+        // (Y).*\-\s*$
+        for (int i = 0; i < n; i++) {
+            int y = year(i);
+            if (y >= 0 && open(y)) {
+                return new Match(Rule.P2A, s.substring(i, y));
+            }
+        }
+        // (\d{4}).*\-\s*$
+        for (int i = 0; i < n; i++) {
+            if (run(i) >= 4 && open(i + 4)) {
+                return new Match(Rule.P2A, s.substring(i, i + 4));
+            }
+        }
+        // (\[\d{2}\]\d{2}).*\-\s*$
+        for (int i = 0; i < n; i++) {
+            int b = bracket(i);
+            if (b >= 0 && open(b)) {
+                return new Match(Rule.P2A, s.substring(i, b));
+            }
+        }
+        return null;
+    }
+
+    private Match p1c() {
+        // =\s*\[(\d{4})(/?\d{0,4})\]
+        for (int i = 0; i < n; i++) {
+            int j = at(i) == '=' ? ws(i + 1) : -1;
+            if (j < 0 || at(j) != '[' || run(j + 1) < 4) {
+                continue;
+            }
+            int y = j + 5;
+            int k = at(y) == '/' ? y + 1 : y;
+            k += Math.min(4, run(k));
+            if (at(k) == ']') {
+                return new Match(Rule.P1C, s.substring(j + 1, y), s.substring(y, k));
+            }
+        }
+        // \.(Y)\s*=
+        for (int i = 0; i < n; i++) {
+            int y = at(i) == '.' ? year(i + 1) : -1;
+            if (y >= 0 && at(ws(y)) == '=') {
+                return new Match(Rule.P1C, s.substring(i + 1, y));
+            }
+        }
+        return null;
+    }
+
+    private Match p1b() {
+        // (\d+)\.(\d{4})(/\d{0,4})
+        for (int i = 0; i < n; i = next(i)) {
+            int f = volume(i);
+            if (f >= 0 && run(f + 1) >= 4 && at(f + 5) == '/') {
+                int k = f + 6 + Math.min(4, run(f + 6));
+                return new Match(Rule.P1B, s.substring(i, f), s.substring(f + 1, f + 5), s.substring(f + 5, k));
+            }
+        }
+        // (\d+)\.(\d{4})
+        for (int i = 0; i < n; i = next(i)) {
+            int f = volume(i);
+            if (f >= 0 && run(f + 1) >= 4) {
+                return new Match(Rule.P1B, s.substring(i, f), s.substring(f + 1, f + 5));
+            }
+        }
+        // (\d+)\.(\[?\d{2}\]?\d{2}/?\d{0,4})
+        for (int i = 0; i < n; i = next(i)) {
+            int f = volume(i);
+            if (f < 0) {
+                continue;
+            }
+            int k = at(f + 1) == '[' ? f + 2 : f + 1;
+            if (run(k) < 2) {
+                continue;
+            }
+            k = at(k + 2) == ']' ? k + 3 : k + 2;
+            if (run(k) < 2) {
+                continue;
+            }
+            k = at(k + 2) == '/' ? k + 3 : k + 2;
+            k += Math.min(4, run(k));
+            return new Match(Rule.P1B, s.substring(i, f), s.substring(f + 1, k));
+        }
+        return null;
+    }
+
+    private Match p1a() {
+        // (\d{4})(/?\d{2})\s*=
+        for (int i = 0; i < n; i++) {
+            int k = fraction(i);
+            if (k >= 0 && at(ws(k)) == '=') {
+                return new Match(Rule.P1A, s.substring(i, i + 4), s.substring(i + 4, k));
+            }
+        }
+        // (\d{4})(/?\d{2})\((\d{4})(/?\d{2})\)
+        for (int i = 0; i < n; i++) {
+            int k = fraction(i);
+            int j = k >= 0 && at(k) == '(' ? fraction(k + 1) : -1;
+            if (j >= 0 && at(j) == ')') {
+                return new Match(Rule.P1A, s.substring(i, i + 4), s.substring(i + 4, k),
+                        s.substring(k + 1, k + 5), s.substring(k + 5, j));
+            }
+        }
+        // (\d{4})(/?\d{2})
+        for (int i = 0; i < n; i++) {
+            int k = fraction(i);
+            if (k >= 0) {
+                return new Match(Rule.P1A, s.substring(i, i + 4), s.substring(i + 4, k));
+            }
+        }
+        // (\d{4})
+        for (int i = 0; i < n; i++) {
+            if (run(i) >= 4) {
+                return new Match(Rule.P1A, s.substring(i, i + 4));
+            }
+        }
+        return null;
+    }
+
+    /**
+     * Y, greedy. The shorter alternatives always leave a digit or '/' for the next element,
+     * which is never accepted there.
+     */
+    private int year(int i) {
+        if (run(i) < 4) {
+            return -1;
+        }
+        int k = at(i + 4) == '/' ? i + 5 : i + 4;
+        return k + Math.min(4, run(k));
+    }
+
+    // \[\d{2}\]\d{2}
+    private int bracket(int i) {
+        return at(i) == '[' && run(i + 1) >= 2 && at(i + 3) == ']' && run(i + 4) >= 2 ? i + 6 : -1;
+    }
+
+    // \[\d{2}\]\d{2}/?\d{0,4}
+    private int bracketYear(int i) {
+        int k = bracket(i);
+        if (k < 0) {
+            return -1;
+        }
+        if (at(k) == '/') {
+            k++;
+        }
+        return k + Math.min(4, run(k));
+    }
+
+    // \d{4}/?\d{2}
+    private int fraction(int i) {
+        if (run(i) < 4) {
+            return -1;
+        }
+        int k = at(i + 4) == '/' ? i + 5 : i + 4;
+        return run(k) >= 2 ? k + 2 : -1;
+    }
+
+    // (\d+)\. returns the position of the dot
+    private int volume(int i) {
+        int f = i + run(i);
+        return f > i && at(f) == '.' ? f : -1;
+    }
+
+    // .*\-\s*$ from a position on
+    private boolean open(int i) {
+        return dash >= i && eol(i) > dash;
+    }
+
+    // the next start of a digit run, or the next position. Matches of (\d+) starting
+    // inside a run are the same as at the start of the run.
+    private int next(int i) {
+        return i + Math.max(1, run(i));
+    }
+
+    private char at(int i) {
+        return i < n ? s.charAt(i) : '\0';
+    }
+
+    private int run(int i) {
+        return i < n ? digits[i] : 0;
+    }
+
+    private int ws(int i) {
+        return i < n ? space[i] : n;
+    }
+
+    private int eol(int i) {
+        return i < n ? lineEnd[i] : n;
+    }
+
+    private static boolean isWhitespace(char c) {
+        return c == ' ' || c == '\t' || c == '\n' || c == '\u000B' || c == '\f' || c == '\r';
+    }
+
+    private static boolean isLineTerminator(char c) {
+        return c == '\n' || c == '\r' || c == '\u0085' || c == '\u2028' || c == '\u2029';
+    }
+}
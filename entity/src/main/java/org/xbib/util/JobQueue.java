@@ -32,37 +32,89 @@
 package org.xbib.util;
 
 import java.io.IOException;
+import java.util.Arrays;
 import java.util.Collection;
-import java.util.HashSet;
+import java.util.Collections;
+import java.util.List;
 import java.util.Set;
+import java.util.concurrent.ArrayBlockingQueue;
 import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.ConcurrentHashMap;
 import java.util.concurrent.ExecutorService;
 import java.util.concurrent.Executors;
-import java.util.concurrent.SynchronousQueue;
 import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
 
+/**
+ * A queue for distributing jobs to a number of workers.
+ *
+ * Jobs are collected into batches, and the batches are handed over to the workers through
+ * a bounded array queue. If the queue is full, submitting blocks until a worker takes a batch,
+ * so jobs are never dropped while a worker is alive. A partial batch is handed over by {@link #flush()}
+ * and by {@link #finish(long, TimeUnit)}. Workers are stopped by a shutdown marker that is compared by identity.
+ *
+ * If a worker fails, the jobs left in its batch are passed to its failure callback. Jobs which can not
+ * be handed over because no worker is left are counted as failed, and reported by an exception.
+ *
+ * The queue counts submitted, completed and failed jobs, and the time spent waiting by submitters and workers.
+ *
+ * @param <J> the job type
+ */
 public abstract class JobQueue<J> {
 
+    public final static int DEFAULT_BATCH_SIZE = 16;
+
+    private final static Object[] SHUTDOWN = new Object[0];
+
     private final int workerCount;
 
-    private final BlockingQueue<J> queue;
+    private final int batchSize;
+
+    private final BlockingQueue<Object[]> queue;
 
     private final ExecutorService service;
 
     private final Set<Worker> workers;
 
+    private final Object lock = new Object();
+
+    private Object[] batch;
+
+    private int batchCount;
+
+    private final AtomicLong submitted = new AtomicLong();
+
+    private final AtomicLong completed = new AtomicLong();
+
+    private final AtomicLong failed = new AtomicLong();
+
+    private final AtomicLong submitWaitNanos = new AtomicLong();
+
+    private final AtomicLong workerWaitNanos = new AtomicLong();
+
+    private volatile long startNanos;
+
     public JobQueue(int workerCount) {
+        this(workerCount, 4 * workerCount, DEFAULT_BATCH_SIZE);
+    }
+
+    /**
+     * @param workerCount the number of workers
+     * @param capacity the maximum number of batches waiting for a worker
+     * @param batchSize the number of jobs in a batch
+     */
+    public JobQueue(int workerCount, int capacity, int batchSize) {
         this.workerCount = workerCount;
-        this.queue = new SynchronousQueue<J>(true);
+        this.batchSize = batchSize;
+        this.queue = new ArrayBlockingQueue<Object[]>(Math.max(1, capacity));
         this.service = Executors.newFixedThreadPool(workerCount);
-        this.workers = new HashSet<Worker>();
+        this.workers = Collections.newSetFromMap(new ConcurrentHashMap<Worker, Boolean>());
     }
 
     protected abstract Worker newWorker();
 
-    protected abstract J poison();
-
     public void execute() {
+        startNanos = System.nanoTime();
         for (int i = 0; i < workerCount; i++) {
             Worker worker = newWorker();
             workers.add(worker);
@@ -74,14 +126,48 @@ public abstract class JobQueue<J> {
         return workers;
     }
 
+    /**
+     * Submit a job. Blocks while the queue is full.
+     *
+     * @param job the job
+     */
     public void submit(J job) {
         if (workers.isEmpty()) {
             throw new RuntimeException("no workers available");
         }
-        try {
-            queue.offer(job, 30, TimeUnit.SECONDS);
-        } catch (InterruptedException e) {
-            Thread.currentThread().interrupt();
+        Object[] full = null;
+        synchronized (lock) {
+            if (batch == null) {
+                batch = new Object[batchSize];
+            }
+            batch[batchCount++] = job;
+            if (batchCount == batchSize) {
+                full = batch;
+                batch = null;
+                batchCount = 0;
+            }
+        }
+        submitted.incrementAndGet();
+        if (full != null && !put(full)) {
+            throw noWorkers(full.length);
+        }
+    }
+
+    /**
+     * Hand over the jobs of the current partial batch to the workers.
+     *
+     * @throws IllegalStateException if no worker is left to take the jobs
+     */
+    public void flush() {
+        Object[] partial = null;
+        synchronized (lock) {
+            if (batchCount > 0) {
+                partial = Arrays.copyOf(batch, batchCount);
+                batchCount = 0;
+            }
+        }
+        if (partial != null && !put(partial)) {
+            throw noWorkers(partial.length);
         }
     }
 
@@ -89,12 +175,118 @@ public abstract class JobQueue<J> {
         service.shutdownNow();
     }
 
+    /**
+     * Hand over the remaining jobs, stop the workers when all jobs are done, and wait for them.
+     *
+     * @param timeout the time to wait for the workers
+     * @param timeUnit the time unit
+     * @throws InterruptedException if interrupted while waiting
+     * @throws IllegalStateException if jobs are left but no worker is left to take them
+     */
     public void finish(long timeout, TimeUnit timeUnit) throws InterruptedException {
+        int pending = 0;
+        Object[] partial = null;
+        synchronized (lock) {
+            if (batchCount > 0) {
+                partial = Arrays.copyOf(batch, batchCount);
+                batchCount = 0;
+            }
+        }
+        if (partial != null && !put(partial)) {
+            pending += partial.length;
+        }
         for (int i = 0; i < workers.size(); i++) {
-            queue.put(poison());
+            if (!put(SHUTDOWN)) {
+                break;
+            }
         }
-        service.shutdownNow();
+        service.shutdown();
         service.awaitTermination(timeout, timeUnit);
+        if (workers.isEmpty()) {
+            // the batches which are left because all workers have failed
+            for (Object[] jobs = queue.poll(); jobs != null; jobs = queue.poll()) {
+                pending += jobs.length;
+            }
+        }
+        if (pending > 0) {
+            throw noWorkers(pending);
+        }
+    }
+
+    /**
+     * @return the number of batches waiting for a worker
+     */
+    public int getQueueDepth() {
+        return queue.size();
+    }
+
+    /**
+     * @return the number of submitted jobs
+     */
+    public long getSubmittedCount() {
+        return submitted.get();
+    }
+
+    /**
+     * @return the number of jobs executed by the workers
+     */
+    public long getCompletedCount() {
+        return completed.get();
+    }
+
+    /**
+     * @return the number of jobs which were not completed because a worker failed or no worker was left
+     */
+    public long getFailedCount() {
+        return failed.get();
+    }
+
+    /**
+     * @return the total time in nanoseconds submitters were blocked by a full queue
+     */
+    public long getSubmitWaitNanos() {
+        return submitWaitNanos.get();
+    }
+
+    /**
+     * @return the total time in nanoseconds workers waited for jobs
+     */
+    public long getWorkerWaitNanos() {
+        return workerWaitNanos.get();
+    }
+
+    /**
+     * @return the completed jobs per second since execution started
+     */
+    public double getThroughput() {
+        long elapsed = System.nanoTime() - startNanos;
+        return startNanos > 0 && elapsed > 0 ? completed.get() * 1e9d / elapsed : 0.0d;
+    }
+
+    /**
+     * @return false if the batch was not handed over because all workers have failed
+     */
+    private boolean put(Object[] b) {
+        long t0 = System.nanoTime();
+        try {
+            // block while full, but give up if all workers have failed
+            while (!queue.offer(b, 1L, TimeUnit.SECONDS)) {
+                if (workers.isEmpty()) {
+                    return false;
+                }
+            }
+            return true;
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new RuntimeException(e);
+        } finally {
+            submitWaitNanos.addAndGet(System.nanoTime() - t0);
+        }
+    }
+
+    private IllegalStateException noWorkers(int jobs) {
+        failed.addAndGet(jobs);
+        return new IllegalStateException("no workers available, " + jobs + " jobs not executed");
     }
 
     public interface Worker<J> extends Runnable {
@@ -102,22 +294,32 @@ public abstract class JobQueue<J> {
     }
 
     public class DefaultWorker extends Thread implements Worker<J> {
+        @SuppressWarnings("unchecked")
         @Override
         public void run() {
             try {
                 while (true) {
-                    J job = queue.take();
-                    if (job.equals(poison())) {
+                    long t0 = System.nanoTime();
+                    Object[] jobs = queue.take();
+                    workerWaitNanos.addAndGet(System.nanoTime() - t0);
+                    if (jobs == SHUTDOWN) {
                         break;
                     }
-                    execute(job);
+                    for (int i = 0; i < jobs.length; i++) {
+                        try {
+                            execute((J) jobs[i]);
+                        } catch (Throwable t) {
+                            workers.remove(this);
+                            List<J> unfinished = (List<J>) Arrays.asList(jobs).subList(i, jobs.length);
+                            failed.addAndGet(unfinished.size());
+                            onFailure(t, unfinished);
+                            throw new RuntimeException(t);
+                        }
+                        completed.incrementAndGet();
+                    }
                 }
             } catch (InterruptedException e) {
                 Thread.currentThread().interrupt();
-            } catch (Throwable t) {
-                workers.remove(this);
-                onFailure(t);
-                throw new RuntimeException(t);
             }
         }
 
@@ -125,6 +327,16 @@ public abstract class JobQueue<J> {
             // empty, do nothing
         }
 
+        /**
+         * Called when a job of this worker fails. The worker stops.
+         *
+         * @param t the failure
+         * @param unfinished the failed job and the jobs after it in the same batch, which are not executed
+         */
+        public void onFailure(Throwable t, List<J> unfinished) {
+            onFailure(t);
+        }
+
         public void onFailure(Throwable t) {
             t.printStackTrace();
         }
@@ -35,19 +35,29 @@ import org.apache.logging.log4j.LogManager;
 import org.apache.logging.log4j.Logger;
 import org.testng.Assert;
 import org.testng.annotations.Test;
+import org.xbib.entities.Entity;
 import org.xbib.iri.IRI;
+import org.xbib.marc.FieldList;
 import org.xbib.marc.Iso2709Reader;
 import org.xbib.marc.keyvalue.MarcXchange2KeyValue;
+import org.xbib.rdf.Triple;
 
 import java.io.File;
 import java.io.FileWriter;
 import java.io.IOException;
 import java.io.InputStream;
 import java.io.Writer;
+import java.util.ArrayList;
 import java.util.Collections;
+import java.util.HashMap;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Map;
 import java.util.Set;
 import java.util.TreeSet;
 import java.util.concurrent.atomic.AtomicInteger;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
 
 
 public class MARCEntityTest extends Assert {
@@ -86,6 +96,102 @@ public class MARCEntityTest extends Assert {
         assertEquals(8676, queue.getCounter());
     }
 
+    @Test
+    public void testDispatch() throws Exception {
+        InputStream in = getClass().getResourceAsStream("stb-bonn.mrc");
+        final AtomicInteger resolved = new AtomicInteger();
+        final AtomicInteger mismatches = new AtomicInteger();
+        MyQueue queue = new MyQueue() {
+            @Override
+            public MARCWorker newWorker() {
+                return new MARCWorker() {
+                    @Override
+                    public void build(FieldList fields, String value) throws IOException {
+                        if (fields != null) {
+                            String key = fields.toKey();
+                            Entity entity = specification().getEntity(key, map());
+                            if (entity == null) {
+                                entity = specification().getEntityByKey(key, map());
+                            }
+                            MARCEntityDispatch.Target target = dispatch().resolve(fields, new char[fields.size()]);
+                            if (target != null) {
+                                resolved.incrementAndGet();
+                            }
+                            if ((target != null ? target.getEntity() : null) != entity) {
+                                logger.error("dispatch mismatch for key {}", key);
+                                mismatches.incrementAndGet();
+                            }
+                        }
+                        super.build(fields, value);
+                    }
+                };
+            }
+        };
+        queue.execute();
+        MarcXchange2KeyValue kv = new MarcXchange2KeyValue().addListener(queue);
+        Iso2709Reader reader = new Iso2709Reader(in, "UTF-8").setMarcXchangeListener(kv);
+        reader.setFormat("MARC21");
+        reader.setType("Bibliographic");
+        reader.parse();
+        queue.close();
+        assertEquals(8676, queue.getCounter());
+        assertTrue(resolved.get() > 0);
+        assertEquals(0, mismatches.get());
+    }
+
+    @Test
+    public void testStreaming() throws Exception {
+        List<String> streamed = triples(true);
+        List<String> buffered = triples(false);
+        assertTrue(streamed.size() > 0);
+        assertEquals(streamed, buffered);
+    }
+
+    private final static Pattern BLANK_NODE = Pattern.compile("_:b\\d+");
+
+    /**
+     * Collect the triples of all records, in sorted order.
+     */
+    private List<String> triples(boolean streaming) throws IOException {
+        InputStream in = getClass().getResourceAsStream("stb-bonn.mrc");
+        final List<String> triples = Collections.synchronizedList(new ArrayList<String>());
+        MyQueue queue = new MyQueue() {
+            @Override
+            public void beforeCompletion(MARCEntityBuilderState context) throws IOException {
+                super.beforeCompletion(context);
+                // blank node labels are numbered globally, so they are relabeled per record
+                Map<String, String> labels = new HashMap<String, String>();
+                Iterator<Triple> it = context.getResource().triples();
+                while (it.hasNext()) {
+                    Matcher m = BLANK_NODE.matcher(it.next().toString());
+                    StringBuffer sb = new StringBuffer();
+                    while (m.find()) {
+                        String label = labels.get(m.group());
+                        if (label == null) {
+                            label = "_:r" + labels.size();
+                            labels.put(m.group(), label);
+                        }
+                        m.appendReplacement(sb, label);
+                    }
+                    m.appendTail(sb);
+                    triples.add(context.getResource().id() + " " + sb);
+                }
+            }
+        };
+        queue.setStreaming(streaming);
+        queue.execute();
+        MarcXchange2KeyValue kv = new MarcXchange2KeyValue().addListener(queue);
+        Iso2709Reader reader = new Iso2709Reader(in, "UTF-8").setMarcXchangeListener(kv);
+        reader.setFormat("MARC21");
+        reader.setType("Bibliographic");
+        reader.parse();
+        queue.close();
+        assertEquals(8676, queue.getCounter());
+        List<String> sorted = new ArrayList<String>(triples);
+        Collections.sort(sorted);
+        return sorted;
+    }
+
     class MyQueue extends MARCEntityQueue {
 
         final AtomicInteger counter = new AtomicInteger();
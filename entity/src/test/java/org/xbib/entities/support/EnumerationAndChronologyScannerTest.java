@@ -0,0 +1,126 @@
+package org.xbib.entities.support;
+
+import org.testng.Assert;
+import org.testng.annotations.Test;
+import org.xbib.rdf.Resource;
+import org.xbib.rdf.Triple;
+
+import java.io.BufferedReader;
+import java.io.InputStreamReader;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.Iterator;
+import java.util.LinkedList;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Compares the scanner with the results of the former regular expressions, recorded in
+ * enumeration-and-chronology.txt as lines of value, resource and lists. The values are the test
+ * specs, holdings statements from the ZDB test records, generated statements and random noise.
+ */
+public class EnumerationAndChronologyScannerTest extends Assert {
+
+    @Test
+    public void testCorpus() throws Exception {
+        List<String> failures = new ArrayList<String>();
+        int count = 0;
+        try (BufferedReader reader = new BufferedReader(new InputStreamReader(
+                getClass().getResourceAsStream("enumeration-and-chronology.txt"), StandardCharsets.UTF_8))) {
+            String line;
+            while ((line = reader.readLine()) != null) {
+                String[] s = line.split("\t", -1);
+                String value = unescape(s[0]);
+                String resource = resource(value);
+                if (!resource.equals(unescape(s[1]))) {
+                    failures.add(s[0] + " => " + resource + " expected " + s[1]);
+                }
+                String lists = lists(value);
+                if (!lists.equals(unescape(s[2]))) {
+                    failures.add(s[0] + " => " + lists + " expected " + s[2]);
+                }
+                count++;
+            }
+        }
+        assertTrue(count > 4000);
+        assertTrue(failures.isEmpty(), failures.size() + " failures, first: "
+                + failures.subList(0, Math.min(10, failures.size())));
+    }
+
+    @Test
+    public void testCachedValues() {
+        EnumerationAndChronology eac = new EnumerationAndChronology();
+        String value = "115.1921/22(1923) - 1125.1937; 1963 - 1972";
+        assertEquals(resource(value), resource(value));
+        List<Integer> begin = new LinkedList<Integer>();
+        List<Integer> end = new LinkedList<Integer>();
+        eac.parse("1963 - 1972", begin, end, new LinkedList<String>(), new LinkedList<String>(),
+                new LinkedList<Boolean>());
+        eac.parse("1963 - 1972", begin, end, new LinkedList<String>(), new LinkedList<String>(),
+                new LinkedList<Boolean>());
+        assertEquals(begin.toString(), "[1963, 1963]");
+        assertEquals(end.toString(), "[1972, 1972]");
+    }
+
+    /**
+     * The triples of the resource, with blank nodes numbered in the order of their appearance.
+     */
+    private static String resource(String value) {
+        try {
+            Resource resource = new EnumerationAndChronology().parse(value);
+            Map<String, String> ids = new HashMap<String, String>();
+            StringBuilder sb = new StringBuilder();
+            Iterator<Triple> it = resource.triples();
+            while (it.hasNext()) {
+                Triple t = it.next();
+                String subject = t.subject().toString();
+                String object = t.object().toString();
+                if (!ids.containsKey(subject)) {
+                    ids.put(subject, "g" + ids.size());
+                }
+                if (object.startsWith("_:")) {
+                    if (!ids.containsKey(object)) {
+                        ids.put(object, "g" + ids.size());
+                    }
+                    object = ids.get(object);
+                }
+                if (sb.length() > 0) {
+                    sb.append(' ');
+                }
+                sb.append(ids.get(subject)).append(' ').append(t.predicate()).append(' ').append(object);
+            }
+            return sb.toString();
+        } catch (Exception e) {
+            return "!" + e.getClass().getSimpleName();
+        }
+    }
+
+    private static String lists(String value) {
+        List<Integer> begin = new LinkedList<Integer>();
+        List<Integer> end = new LinkedList<Integer>();
+        List<String> beginVolume = new LinkedList<String>();
+        List<String> endVolume = new LinkedList<String>();
+        List<Boolean> open = new LinkedList<Boolean>();
+        try {
+            new EnumerationAndChronology().parse(value, begin, end, beginVolume, endVolume, open);
+            return begin + " " + end + " " + beginVolume + " " + endVolume + " " + open;
+        } catch (Exception e) {
+            return "!" + e.getClass().getSimpleName();
+        }
+    }
+
+    private static String unescape(String s) {
+        StringBuilder sb = new StringBuilder();
+        for (int i = 0; i < s.length(); i++) {
+            char c = s.charAt(i);
+            if (c == '\\' && i + 1 < s.length()) {
+                char d = s.charAt(++i);
+                sb.append(d == 'n' ? '\n' : d == 'r' ? '\r' : d == 't' ? '\t' : d);
+            } else {
+                sb.append(c);
+            }
+        }
+        return sb.toString();
+    }
+}
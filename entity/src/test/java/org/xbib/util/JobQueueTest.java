@@ -0,0 +1,118 @@
+package org.xbib.util;
+
+import org.testng.Assert;
+import org.testng.annotations.Test;
+
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Arrays;
+import java.util.List;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+
+public class JobQueueTest extends Assert {
+
+    @Test
+    public void testBackpressure() throws Exception {
+        final AtomicLong sum = new AtomicLong();
+        JobQueue<Integer> queue = new JobQueue<Integer>(2, 1, 4) {
+            @Override
+            protected Worker newWorker() {
+                return new DefaultWorker() {
+                    @Override
+                    public void execute(Integer job) throws IOException {
+                        try {
+                            Thread.sleep(1L);
+                        } catch (InterruptedException e) {
+                            Thread.currentThread().interrupt();
+                        }
+                        sum.addAndGet(job);
+                    }
+                };
+            }
+        };
+        queue.execute();
+        for (int i = 1; i <= 1000; i++) {
+            queue.submit(i);
+        }
+        queue.finish(60L, TimeUnit.SECONDS);
+        assertEquals(sum.get(), 500500L);
+        assertEquals(queue.getSubmittedCount(), 1000L);
+        assertEquals(queue.getCompletedCount(), 1000L);
+        assertTrue(queue.getSubmitWaitNanos() > 0L);
+        assertTrue(queue.getThroughput() > 0.0d);
+    }
+
+    @Test
+    public void testEmptyJobs() throws Exception {
+        final AtomicLong count = new AtomicLong();
+        JobQueue<List<String>> queue = new JobQueue<List<String>>(1) {
+            @Override
+            protected Worker newWorker() {
+                return new DefaultWorker() {
+                    @Override
+                    public void execute(List<String> job) throws IOException {
+                        count.incrementAndGet();
+                    }
+                };
+            }
+        };
+        queue.execute();
+        // empty jobs must not stop the workers
+        for (int i = 0; i < 100; i++) {
+            queue.submit(i % 2 == 0 ? Collections.<String>emptyList() : new ArrayList<String>());
+        }
+        queue.finish(60L, TimeUnit.SECONDS);
+        assertEquals(count.get(), 100L);
+    }
+
+    @Test
+    public void testFailureWithPartialBatch() throws Exception {
+        final CountDownLatch latch = new CountDownLatch(1);
+        final List<Integer> unfinishedJobs = Collections.synchronizedList(new ArrayList<Integer>());
+        JobQueue<Integer> queue = new JobQueue<Integer>(1, 1, 4) {
+            @Override
+            protected Worker newWorker() {
+                return new DefaultWorker() {
+                    @Override
+                    public void execute(Integer job) throws IOException {
+                        if (job == 2) {
+                            try {
+                                latch.await();
+                            } catch (InterruptedException e) {
+                                Thread.currentThread().interrupt();
+                            }
+                            throw new IOException("job " + job);
+                        }
+                    }
+
+                    @Override
+                    public void onFailure(Throwable t, List<Integer> unfinished) {
+                        unfinishedJobs.addAll(unfinished);
+                    }
+                };
+            }
+        };
+        queue.execute();
+        for (int i = 1; i <= 6; i++) {
+            queue.submit(i);
+        }
+        // jobs 5 and 6 are in the partial batch when the only worker fails
+        latch.countDown();
+        while (!queue.workers().isEmpty()) {
+            Thread.sleep(10L);
+        }
+        try {
+            queue.finish(60L, TimeUnit.SECONDS);
+            fail("the jobs of the partial batch were dropped silently");
+        } catch (IllegalStateException e) {
+            assertEquals(e.getMessage(), "no workers available, 2 jobs not executed");
+        }
+        assertEquals(unfinishedJobs, Arrays.asList(2, 3, 4));
+        assertEquals(queue.getSubmittedCount(), 6L);
+        assertEquals(queue.getCompletedCount(), 1L);
+        assertEquals(queue.getFailedCount(), 5L);
+    }
+}
@@ -0,0 +1,257 @@
+/*
+ * Licensed to Jörg Prante and xbib under one or more contributor 
+ * license agreements. See the NOTICE.txt file distributed with this work
+ * for additional information regarding copyright ownership.
+ *
+ * Copyright (C) 2012 Jörg Prante and xbib
+ * 
+ * This program is free software; you can redistribute it and/or modify 
+ * it under the terms of the GNU Affero General Public License as published 
+ * by the Free Software Foundation; either version 3 of the License, or 
+ * (at your option) any later version.
+ * This program is distributed in the hope that it will be useful, 
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of 
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the 
+ * GNU Affero General Public License for more details.
+ *
+ * You should have received a copy of the GNU Affero General Public License 
+ * along with this program; if not, see http://www.gnu.org/licenses 
+ * or write to the Free Software Foundation, Inc., 51 Franklin Street, 
+ * Fifth Floor, Boston, MA 02110-1301 USA.
+ * 
+ * The interactive user interfaces in modified source and object code 
+ * versions of this program must display Appropriate Legal Notices, 
+ * as required under Section 5 of the GNU Affero General Public License.
+ * 
+ * In accordance with Section 7(b) of the GNU Affero General Public 
+ * License, these Appropriate Legal Notices must retain the display of the 
+ * "Powered by xbib" logo. If the display of the logo is not reasonably 
+ * feasible for technical reasons, the Appropriate Legal Notices must display
+ * the words "Powered by xbib".
+ */
+package org.xbib.io.jdbc.operator;
+
+import org.xbib.io.jdbc.SQLSession;
+
+import java.io.IOException;
+import java.sql.PreparedStatement;
+import java.sql.SQLException;
+import java.util.Map;
+
+/**
+ * A batch update operator prepares its statement once and collects the bound
+ * requests with addBatch. The batch is executed when it holds a number of rows,
+ * or when the estimated size of the bound values reaches a limit.
+ *
+ * Each execute adds the current request as a row, so the operator is used like
+ * an Insert or an Update: set the request and execute for each row, then flush to
+ * execute the last batch, and close. Close flushes the rows which are left. With a
+ * commit interval, the connection is committed after that many batches and on flush,
+ * unless it is in auto commit mode.
+ *
+ */
+public class BatchUpdate extends Update {
+
+    private int batchSize = 1000;
+
+    private long maxBatchBytes = 4L * 1024 * 1024;
+
+    private int commitInterval;
+
+    private PreparedStatement stmt;
+
+    private int batchRows;
+
+    private long batchBytes;
+
+    private int uncommittedBatches;
+
+    private long rows;
+
+    private long batches;
+
+    public BatchUpdate(String sql) {
+        super(sql);
+    }
+
+    public BatchUpdate(String sql, String[] params) {
+        super(sql, params, null);
+    }
+
+    /**
+     * Set the number of rows of a batch
+     *
+     * @param batchSize the number of rows
+     * @return this operator
+     */
+    public BatchUpdate setBatchSize(int batchSize) {
+        this.batchSize = batchSize;
+        return this;
+    }
+
+    /**
+     * Set the estimated size of the bound values of a batch
+     *
+     * @param maxBatchBytes the size in bytes
+     * @return this operator
+     */
+    public BatchUpdate setMaxBatchBytes(long maxBatchBytes) {
+        this.maxBatchBytes = maxBatchBytes;
+        return this;
+    }
+
+    /**
+     * Set the number of batches after which the connection is committed,
+     * 0 to leave commits to the caller
+     *
+     * @param commitInterval the number of batches
+     * @return this operator
+     */
+    public BatchUpdate setCommitInterval(int commitInterval) {
+        this.commitInterval = commitInterval;
+        return this;
+    }
+
+    /**
+     * Add the current request to the batch, and execute the batch if it is full
+     *
+     * @param session the session
+     * @throws IOException if the statement can not be prepared or the batch fails
+     */
+    @Override
+    public void execute(SQLSession session) throws IOException {
+        try {
+            if (stmt == null) {
+                this.session = session;
+                this.stmt = prepareStatement(session, getSQL());
+                if (stmt == null) {
+                    throw new SQLException("unable to prepare triple");
+                }
+            }
+            Map request = getRequest();
+            if (getRequestParams() != null) {
+                bind(stmt, request, getRequestParams());
+                batchBytes += estimateSize(request, getRequestParams());
+            } else if (request != null) {
+                Object[] keys = request.keySet().toArray();
+                bind(stmt, request, keys);
+                batchBytes += estimateSize(request, keys);
+            }
+            stmt.addBatch();
+            batchRows++;
+            if (batchRows >= batchSize || batchBytes >= maxBatchBytes) {
+                executeBatch();
+            }
+        } catch (SQLException ex) {
+            throw new IOException(ex.getMessage(), ex);
+        }
+    }
+
+    /**
+     * Execute the collected rows, and commit the executed batches if there is a commit interval
+     *
+     * @throws IOException if the batch or the commit fails
+     */
+    public void flush() throws IOException {
+        if (stmt == null) {
+            return;
+        }
+        try {
+            executeBatch();
+            if (uncommittedBatches > 0) {
+                commit();
+            }
+        } catch (SQLException ex) {
+            throw new IOException(ex.getMessage(), ex);
+        }
+    }
+
+    /**
+     * Flush the rows which are not yet executed, and close the statement.
+     *
+     * @throws IllegalStateException if the rows can not be flushed, the statement is closed anyway
+     */
+    @Override
+    public void close() {
+        IOException flushException = null;
+        int pendingRows = batchRows;
+        try {
+            flush();
+        } catch (IOException e) {
+            flushException = e;
+        }
+        try {
+            if (stmt != null) {
+                stmt.close();
+            }
+        } catch (SQLException e) {
+
+        }
+        stmt = null;
+        batchRows = 0;
+        batchBytes = 0L;
+        super.close();
+        if (flushException != null) {
+            throw new IllegalStateException("unable to flush " + pendingRows + " rows on close", flushException);
+        }
+    }
+
+    /**
+     * The number of rows affected by the executed batches, as far as the driver reports them
+     *
+     * @return the number of rows
+     */
+    public long getRows() {
+        return rows;
+    }
+
+    /**
+     * The number of executed batches
+     *
+     * @return the number of batches
+     */
+    public long getBatches() {
+        return batches;
+    }
+
+    private void executeBatch() throws SQLException {
+        if (batchRows == 0) {
+            return;
+        }
+        int[] counts = stmt.executeBatch();
+        stmt.clearBatch();
+        for (int count : counts) {
+            if (count > 0) {
+                rows += count;
+            }
+        }
+        batches++;
+        batchRows = 0;
+        batchBytes = 0L;
+        if (commitInterval > 0 && ++uncommittedBatches >= commitInterval) {
+            commit();
+        }
+    }
+
+    private void commit() throws SQLException {
+        if (!session.getConnection().getAutoCommit()) {
+            session.getConnection().commit();
+        }
+        uncommittedBatches = 0;
+    }
+
+    private static long estimateSize(Map request, Object[] keys) {
+        long size = 0L;
+        for (Object key : keys) {
+            Object value = request.get(key);
+            if (value instanceof String) {
+                size += 2 * ((String) value).length();
+            } else if (value instanceof byte[]) {
+                size += ((byte[]) value).length;
+            } else {
+                size += 16;
+            }
+        }
+        return size;
+    }
+}
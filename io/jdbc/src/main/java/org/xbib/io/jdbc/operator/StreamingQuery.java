@@ -0,0 +1,154 @@
+/*
+ * Licensed to Jörg Prante and xbib under one or more contributor 
+ * license agreements. See the NOTICE.txt file distributed with this work
+ * for additional information regarding copyright ownership.
+ *
+ * Copyright (C) 2012 Jörg Prante and xbib
+ * 
+ * This program is free software; you can redistribute it and/or modify 
+ * it under the terms of the GNU Affero General Public License as published 
+ * by the Free Software Foundation; either version 3 of the License, or 
+ * (at your option) any later version.
+ * This program is distributed in the hope that it will be useful, 
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of 
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the 
+ * GNU Affero General Public License for more details.
+ *
+ * You should have received a copy of the GNU Affero General Public License 
+ * along with this program; if not, see http://www.gnu.org/licenses 
+ * or write to the Free Software Foundation, Inc., 51 Franklin Street, 
+ * Fifth Floor, Boston, MA 02110-1301 USA.
+ * 
+ * The interactive user interfaces in modified source and object code 
+ * versions of this program must display Appropriate Legal Notices, 
+ * as required under Section 5 of the GNU Affero General Public License.
+ * 
+ * In accordance with Section 7(b) of the GNU Affero General Public 
+ * License, these Appropriate Legal Notices must retain the display of the 
+ * "Powered by xbib" logo. If the display of the logo is not reasonably 
+ * feasible for technical reasons, the Appropriate Legal Notices must display
+ * the words "Powered by xbib".
+ */
+package org.xbib.io.jdbc.operator;
+
+import org.xbib.io.jdbc.ResultSetListener;
+import org.xbib.io.jdbc.SQLSession;
+import org.xbib.keyvalue.KeyValueStreamListener;
+
+import java.io.IOException;
+import java.sql.PreparedStatement;
+import java.sql.ResultSet;
+import java.sql.ResultSetMetaData;
+import java.sql.SQLException;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.LinkedList;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * A streaming query reads the result with a forward-only, read-only cursor
+ * which fetches a number of rows at a time, and pushes each row to key/value
+ * stream listeners: begin, the column labels as keys, the column values, end.
+ *
+ * Some drivers stream only under conditions, PostgreSQL for example only
+ * outside of auto commit mode, MySQL only with a fetch size of Integer.MIN_VALUE.
+ *
+ */
+public class StreamingQuery extends Query {
+
+    private int fetchSize = 1000;
+
+    private long rows;
+
+    private final LinkedList<KeyValueStreamListener<String, Object>> listeners =
+            new LinkedList<KeyValueStreamListener<String, Object>>();
+
+    public StreamingQuery(String sql) {
+        super(sql);
+        addListener(new RowStreamer());
+    }
+
+    public StreamingQuery(String table, Map request, String[] cols) {
+        super(table, request, cols);
+        addListener(new RowStreamer());
+    }
+
+    public StreamingQuery(String sql, String[] requestParams, Map request) {
+        super(sql, requestParams, request);
+        addListener(new RowStreamer());
+    }
+
+    public StreamingQuery setFetchSize(int fetchSize) {
+        this.fetchSize = fetchSize;
+        return this;
+    }
+
+    public int getFetchSize() {
+        return fetchSize;
+    }
+
+    public StreamingQuery addKeyValueStreamListener(KeyValueStreamListener<String, Object> listener) {
+        listeners.add(listener);
+        return this;
+    }
+
+    public StreamingQuery removeKeyValueStreamListener(KeyValueStreamListener<String, Object> listener) {
+        listeners.remove(listener);
+        return this;
+    }
+
+    /**
+     * The number of rows streamed by the last execute
+     *
+     * @return the number of rows
+     */
+    public long getRows() {
+        return rows;
+    }
+
+    @Override
+    protected PreparedStatement prepareStatement(SQLSession session, String sql) throws SQLException {
+        PreparedStatement stmt = session.getConnection().prepareStatement(sql, ResultSet.TYPE_FORWARD_ONLY,
+                ResultSet.CONCUR_READ_ONLY);
+        stmt.setFetchDirection(ResultSet.FETCH_FORWARD);
+        stmt.setFetchSize(fetchSize);
+        return stmt;
+    }
+
+    private class RowStreamer implements ResultSetListener {
+
+        @Override
+        public void received(ResultSet set) throws SQLException, IOException {
+            rows = 0L;
+            set.setFetchSize(fetchSize);
+            ResultSetMetaData metaData = set.getMetaData();
+            int columns = metaData.getColumnCount();
+            List<String> keys = new ArrayList<String>(columns);
+            for (int i = 1; i <= columns; i++) {
+                keys.add(metaData.getColumnLabel(i));
+            }
+            keys = Collections.unmodifiableList(keys);
+            while (set.next()) {
+                List<Object> values = new ArrayList<Object>(columns);
+                for (int i = 1; i <= columns; i++) {
+                    values.add(set.getObject(i));
+                }
+                for (KeyValueStreamListener<String, Object> listener : listeners) {
+                    listener.begin();
+                    listener.keys(keys);
+                    listener.values(values);
+                    listener.end();
+                }
+                rows++;
+            }
+        }
+
+        @Override
+        public void close(ResultSet set) throws SQLException, IOException {
+            if (set != null) {
+                set.close();
+            }
+        }
+    }
+}
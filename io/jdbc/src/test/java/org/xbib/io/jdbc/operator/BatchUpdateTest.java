@@ -0,0 +1,126 @@
+package org.xbib.io.jdbc.operator;
+
+import org.testng.annotations.Test;
+import org.xbib.io.jdbc.SQLSession;
+
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.Map;
+
+import static org.testng.Assert.assertEquals;
+import static org.testng.Assert.assertTrue;
+import static org.testng.Assert.fail;
+
+public class BatchUpdateTest {
+
+    private final static String SQL = "insert into t values (?, ?)";
+
+    @Test
+    public void testRowLimit() throws Exception {
+        StubJDBC jdbc = new StubJDBC();
+        BatchUpdate update = batchUpdate().setBatchSize(3);
+        execute(update, session(jdbc), 8, "x");
+        assertEquals(jdbc.log, Arrays.asList("prepareStatement " + SQL, "executeBatch 3", "executeBatch 3"));
+        update.flush();
+        assertEquals(jdbc.log.get(3), "executeBatch 2");
+        assertEquals(update.getRows(), 8L);
+        assertEquals(update.getBatches(), 3L);
+        update.close();
+    }
+
+    @Test
+    public void testByteLimit() throws Exception {
+        StubJDBC jdbc = new StubJDBC();
+        // a row is estimated as 40 bytes for the string and 16 bytes for the number
+        BatchUpdate update = batchUpdate().setMaxBatchBytes(100L);
+        execute(update, session(jdbc), 5, "01234567890123456789");
+        assertEquals(jdbc.log, Arrays.asList("prepareStatement " + SQL, "executeBatch 2", "executeBatch 2"));
+        update.flush();
+        assertEquals(jdbc.log.get(3), "executeBatch 1");
+        assertEquals(update.getBatches(), 3L);
+        update.close();
+    }
+
+    @Test
+    public void testCommitInterval() throws Exception {
+        StubJDBC jdbc = new StubJDBC();
+        BatchUpdate update = batchUpdate().setBatchSize(2).setCommitInterval(2);
+        execute(update, session(jdbc), 10, "x");
+        update.flush();
+        assertEquals(jdbc.log, Arrays.asList("prepareStatement " + SQL,
+                "executeBatch 2", "executeBatch 2", "commit",
+                "executeBatch 2", "executeBatch 2", "commit",
+                "executeBatch 2", "commit"));
+        update.close();
+    }
+
+    @Test
+    public void testNoCommitInAutoCommit() throws Exception {
+        StubJDBC jdbc = new StubJDBC();
+        jdbc.autoCommit = true;
+        BatchUpdate update = batchUpdate().setBatchSize(2).setCommitInterval(2);
+        execute(update, session(jdbc), 10, "x");
+        update.flush();
+        update.close();
+        assertTrue(!jdbc.log.contains("commit"), jdbc.log.toString());
+        assertEquals(update.getBatches(), 5L);
+    }
+
+    @Test
+    public void testFlushPartialBatch() throws Exception {
+        StubJDBC jdbc = new StubJDBC();
+        BatchUpdate update = batchUpdate();
+        execute(update, session(jdbc), 3, "x");
+        assertEquals(jdbc.log, Arrays.asList("prepareStatement " + SQL));
+        update.flush();
+        update.flush();
+        assertEquals(jdbc.log, Arrays.asList("prepareStatement " + SQL, "executeBatch 3"));
+        assertEquals(update.getRows(), 3L);
+        update.close();
+    }
+
+    @Test
+    public void testCloseFlushes() throws Exception {
+        StubJDBC jdbc = new StubJDBC();
+        BatchUpdate update = batchUpdate().setCommitInterval(1);
+        execute(update, session(jdbc), 3, "x");
+        update.close();
+        assertEquals(jdbc.log, Arrays.asList("prepareStatement " + SQL, "executeBatch 3", "commit", "close"));
+        assertEquals(update.getRows(), 3L);
+    }
+
+    @Test
+    public void testCloseFailsLoudly() throws Exception {
+        StubJDBC jdbc = new StubJDBC();
+        jdbc.failBatch = true;
+        BatchUpdate update = batchUpdate();
+        execute(update, session(jdbc), 2, "x");
+        try {
+            update.close();
+            fail("rows were discarded silently");
+        } catch (IllegalStateException e) {
+            assertEquals(e.getMessage(), "unable to flush 2 rows on close");
+        }
+        assertEquals(jdbc.log, Arrays.asList("prepareStatement " + SQL, "executeBatch 2", "close"));
+    }
+
+    private static BatchUpdate batchUpdate() {
+        return new BatchUpdate(SQL, new String[]{"a", "b"});
+    }
+
+    private static SQLSession session(StubJDBC jdbc) {
+        SQLSession session = new SQLSession();
+        session.setConnection(jdbc.connection());
+        return session;
+    }
+
+    private static void execute(BatchUpdate update, SQLSession session, int rows, String value) throws Exception {
+        for (int i = 0; i < rows; i++) {
+            Map<String, Object> request = new HashMap<String, Object>();
+            request.put("a", value);
+            request.put("b", i);
+            update.setRequest(request);
+            update.execute(session);
+        }
+    }
+}
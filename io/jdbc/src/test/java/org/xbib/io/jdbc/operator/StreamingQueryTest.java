@@ -0,0 +1,105 @@
+package org.xbib.io.jdbc.operator;
+
+import org.testng.annotations.Test;
+import org.xbib.io.jdbc.SQLSession;
+import org.xbib.keyvalue.KeyValueStreamListener;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+
+import static org.testng.Assert.assertEquals;
+
+public class StreamingQueryTest {
+
+    @Test
+    public void testRows() throws Exception {
+        StubJDBC jdbc = new StubJDBC();
+        jdbc.columns = new String[]{"id", "title"};
+        jdbc.rows.add(new Object[]{1, "a"});
+        jdbc.rows.add(new Object[]{2, null});
+        SQLSession session = new SQLSession();
+        session.setConnection(jdbc.connection());
+        final List<String> events = new ArrayList<String>();
+        StreamingQuery query = new StreamingQuery("select id, title from t").setFetchSize(500);
+        query.addKeyValueStreamListener(new KeyValueStreamListener<String, Object>() {
+            @Override
+            public KeyValueStreamListener<String, Object> begin() {
+                events.add("begin");
+                return this;
+            }
+
+            @Override
+            public KeyValueStreamListener<String, Object> keyValue(String key, Object value) {
+                events.add(key + "=" + value);
+                return this;
+            }
+
+            @Override
+            public KeyValueStreamListener<String, Object> keys(List<String> keys) {
+                events.add("keys " + keys);
+                return this;
+            }
+
+            @Override
+            public KeyValueStreamListener<String, Object> values(List<Object> values) {
+                events.add("values " + values);
+                return this;
+            }
+
+            @Override
+            public KeyValueStreamListener<String, Object> end() {
+                events.add("end");
+                return this;
+            }
+        });
+        query.execute(session);
+        query.close();
+        assertEquals(events, Arrays.asList(
+                "begin", "keys [id, title]", "values [1, a]", "end",
+                "begin", "keys [id, title]", "values [2, null]", "end"));
+        assertEquals(query.getRows(), 2L);
+        assertEquals(jdbc.log.subList(0, 2), Arrays.asList("prepareStatement select id, title from t", "setFetchSize 500"));
+    }
+
+    @Test
+    public void testEmptyResult() throws Exception {
+        StubJDBC jdbc = new StubJDBC();
+        jdbc.columns = new String[]{"id"};
+        SQLSession session = new SQLSession();
+        session.setConnection(jdbc.connection());
+        final List<String> events = new ArrayList<String>();
+        StreamingQuery query = new StreamingQuery("select id from t");
+        query.addKeyValueStreamListener(new KeyValueStreamListener<String, Object>() {
+            @Override
+            public KeyValueStreamListener<String, Object> begin() {
+                events.add("begin");
+                return this;
+            }
+
+            @Override
+            public KeyValueStreamListener<String, Object> keyValue(String key, Object value) {
+                return this;
+            }
+
+            @Override
+            public KeyValueStreamListener<String, Object> keys(List<String> keys) {
+                return this;
+            }
+
+            @Override
+            public KeyValueStreamListener<String, Object> values(List<Object> values) {
+                return this;
+            }
+
+            @Override
+            public KeyValueStreamListener<String, Object> end() {
+                return this;
+            }
+        });
+        query.execute(session);
+        query.close();
+        assertEquals(events.size(), 0);
+        assertEquals(query.getRows(), 0L);
+    }
+}
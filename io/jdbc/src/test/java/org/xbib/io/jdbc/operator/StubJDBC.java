@@ -0,0 +1,125 @@
+package org.xbib.io.jdbc.operator;
+
+import java.lang.reflect.InvocationHandler;
+import java.lang.reflect.Method;
+import java.lang.reflect.Proxy;
+import java.sql.Connection;
+import java.sql.PreparedStatement;
+import java.sql.ResultSet;
+import java.sql.ResultSetMetaData;
+import java.sql.SQLException;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+
+/**
+ * A JDBC connection made of proxies, which logs the calls of the operators
+ * and answers queries with fixed rows.
+ */
+class StubJDBC {
+
+    final List<String> log = new ArrayList<String>();
+
+    boolean autoCommit;
+
+    boolean failBatch;
+
+    String[] columns = new String[0];
+
+    List<Object[]> rows = new ArrayList<Object[]>();
+
+    private int pending;
+
+    Connection connection() {
+        final PreparedStatement statement = proxy(PreparedStatement.class, new InvocationHandler() {
+            @Override
+            public Object invoke(Object proxy, Method method, Object[] args) throws Throwable {
+                String name = method.getName();
+                if ("addBatch".equals(name)) {
+                    pending++;
+                    return null;
+                }
+                if ("executeBatch".equals(name)) {
+                    log.add("executeBatch " + pending);
+                    if (failBatch) {
+                        throw new SQLException("batch failed");
+                    }
+                    int[] counts = new int[pending];
+                    Arrays.fill(counts, 1);
+                    pending = 0;
+                    return counts;
+                }
+                if ("executeQuery".equals(name)) {
+                    return resultSet();
+                }
+                if ("setFetchSize".equals(name) || "close".equals(name)) {
+                    log.add(name + (args != null ? " " + args[0] : ""));
+                    return null;
+                }
+                if (name.startsWith("set") || "clearBatch".equals(name)) {
+                    return null;
+                }
+                throw new UnsupportedOperationException(name);
+            }
+        });
+        return proxy(Connection.class, new InvocationHandler() {
+            @Override
+            public Object invoke(Object proxy, Method method, Object[] args) throws Throwable {
+                String name = method.getName();
+                if ("prepareStatement".equals(name)) {
+                    log.add("prepareStatement " + args[0]);
+                    return statement;
+                }
+                if ("getAutoCommit".equals(name)) {
+                    return autoCommit;
+                }
+                if ("commit".equals(name)) {
+                    log.add("commit");
+                    return null;
+                }
+                throw new UnsupportedOperationException(name);
+            }
+        });
+    }
+
+    private ResultSet resultSet() {
+        final ResultSetMetaData metaData = proxy(ResultSetMetaData.class, new InvocationHandler() {
+            @Override
+            public Object invoke(Object proxy, Method method, Object[] args) throws Throwable {
+                String name = method.getName();
+                if ("getColumnCount".equals(name)) {
+                    return columns.length;
+                }
+                if ("getColumnLabel".equals(name)) {
+                    return columns[(Integer) args[0] - 1];
+                }
+                throw new UnsupportedOperationException(name);
+            }
+        });
+        final int[] row = {-1};
+        return proxy(ResultSet.class, new InvocationHandler() {
+            @Override
+            public Object invoke(Object proxy, Method method, Object[] args) throws Throwable {
+                String name = method.getName();
+                if ("next".equals(name)) {
+                    return ++row[0] < rows.size();
+                }
+                if ("getMetaData".equals(name)) {
+                    return metaData;
+                }
+                if ("getObject".equals(name)) {
+                    return rows.get(row[0])[(Integer) args[0] - 1];
+                }
+                if ("setFetchSize".equals(name) || "close".equals(name)) {
+                    return null;
+                }
+                throw new UnsupportedOperationException(name);
+            }
+        });
+    }
+
+    @SuppressWarnings("unchecked")
+    private static <T> T proxy(Class<T> type, InvocationHandler handler) {
+        return (T) Proxy.newProxyInstance(StubJDBC.class.getClassLoader(), new Class[]{type}, handler);
+    }
+}
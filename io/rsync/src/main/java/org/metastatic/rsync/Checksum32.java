@@ -59,7 +59,7 @@ package org.metastatic.rsync;
  * compute the sum for <em>X<sub>k+1</sub>...X<sub>l+1</sub></em>.
  *
  */
-public class Checksum32 implements RollingChecksum {
+public class Checksum32 implements RollingChecksum, Cloneable {
 
     protected final int char_offset;
 
@@ -170,6 +170,23 @@ public class Checksum32 implements RollingChecksum {
         }
     }
 
+    /**
+     * Return a copy of this checksum, with its own internal state.
+     *
+     * @return The copy.
+     */
+    public Checksum32 clone() {
+        try {
+            Checksum32 c = (Checksum32) super.clone();
+            if (block != null) {
+                c.block = block.clone();
+            }
+            return c;
+        } catch (CloneNotSupportedException cnse) {
+            throw new InternalError(cnse.getMessage());
+        }
+    }
+
     public boolean equals(Object o) {
         return ((Checksum32) o).a == a && ((Checksum32) o).b == b;
     }
@@ -0,0 +1,263 @@
+package org.metastatic.rsync;
+
+import java.util.Arrays;
+import java.util.List;
+
+/**
+ * An open addressing hash table from a pair of checksums to an offset,
+ * keyed by the primitive 32-bit weak sum.
+ * <p/>
+ * <p>The entries are kept in parallel arrays: the weak sums in an
+ * <code>int[]</code>, the offsets in a <code>long[]</code>, and the
+ * strong sums, all of the same length, back to back in one
+ * <code>byte[]</code>. The slots of the table hold the weak sum and the
+ * index of an entry, and are probed linearly, so a lookup of a weak sum
+ * that is not in the table, which is the common case in the rolling
+ * search of {@link MatcherStream}, does not create any objects and only
+ * reads two <code>int</code> arrays.</p>
+ * <p/>
+ * <p>Several entries may have the same weak sum. If an entry is put
+ * with the same weak and strong sums as an existing one, the offset
+ * replaces the old offset, as in {@link TwoKeyMap}.</p>
+ * <p/>
+ * <p>The table is not synchronized, but it may be read by many threads
+ * once it is filled.</p>
+ */
+public class ChecksumTable {
+
+    /**
+     * The default number of entries.
+     */
+    private static final int DEFAULT_CAPACITY = 256;
+
+    /**
+     * The length of the strong sums.
+     */
+    private final int strongLength;
+
+    /**
+     * The weak sums of the slots.
+     */
+    private int[] slotWeak;
+
+    /**
+     * The entry index plus one of the slots, 0 for an empty slot.
+     */
+    private int[] slotEntry;
+
+    /**
+     * The weak sums of the entries.
+     */
+    private int[] weak;
+
+    /**
+     * The strong sums of the entries; the strong sum of entry
+     * <i>i</i> starts at <i>i</i> * {@link #strongLength}.
+     */
+    private byte[] strong;
+
+    /**
+     * The offsets of the entries.
+     */
+    private long[] offsets;
+
+    /**
+     * The number of entries.
+     */
+    private int size;
+
+    /**
+     * Create a new table.
+     *
+     * @param strongLength The length of the strong sums.
+     */
+    public ChecksumTable(int strongLength) {
+        this(strongLength, DEFAULT_CAPACITY);
+    }
+
+    /**
+     * Create a new table for an expected number of entries.
+     *
+     * @param strongLength The length of the strong sums.
+     * @param capacity     The expected number of entries.
+     */
+    public ChecksumTable(int strongLength, int capacity) {
+        if (strongLength < 0) {
+            throw new IllegalArgumentException("negative strong sum length");
+        }
+        this.strongLength = strongLength;
+        capacity = Math.max(capacity, 1);
+        weak = new int[capacity];
+        strong = new byte[capacity * strongLength];
+        offsets = new long[capacity];
+        int slots = Integer.highestOneBit(Math.max(capacity * 2 - 1, 1)) << 1;
+        slotWeak = new int[slots];
+        slotEntry = new int[slots];
+    }
+
+    /**
+     * Create a new table from a list of checksums, which all have strong
+     * sums of the given length.
+     *
+     * @param strongLength The length of the strong sums.
+     * @param sums         The checksums.
+     * @return The table.
+     */
+    public static ChecksumTable create(int strongLength, List<ChecksumPair> sums) {
+        ChecksumTable table = new ChecksumTable(strongLength, sums.size());
+        for (ChecksumPair p : sums) {
+            table.put(p);
+        }
+        return table;
+    }
+
+    /**
+     * Return the length of the strong sums in this table.
+     *
+     * @return The strong sum length.
+     */
+    public int getStrongLength() {
+        return strongLength;
+    }
+
+    /**
+     * Return the number of entries in this table.
+     *
+     * @return The number of entries.
+     */
+    public int size() {
+        return size;
+    }
+
+    /**
+     * Remove all entries.
+     */
+    public void clear() {
+        Arrays.fill(slotEntry, 0);
+        size = 0;
+    }
+
+    /**
+     * Map the checksums of a pair to its offset.
+     *
+     * @param pair The checksums and the offset.
+     */
+    public void put(ChecksumPair pair) {
+        byte[] s = pair.getStrong();
+        if (s == null || s.length != strongLength) {
+            throw new IllegalArgumentException("strong sum length is not " + strongLength);
+        }
+        put(pair.getWeak(), s, 0, pair.getOffset());
+    }
+
+    /**
+     * Map a weak sum and a strong sum to an offset.
+     *
+     * @param weakSum   The weak sum.
+     * @param strongSum The array holding the strong sum.
+     * @param off       The index of the strong sum in the array.
+     * @param offset    The offset, which must not be negative.
+     */
+    public void put(int weakSum, byte[] strongSum, int off, long offset) {
+        if (offset < 0) {
+            throw new IllegalArgumentException("negative offset");
+        }
+        int mask = slotEntry.length - 1;
+        int i = slot(weakSum, mask);
+        while (slotEntry[i] != 0) {
+            int e = slotEntry[i] - 1;
+            if (slotWeak[i] == weakSum && strongEquals(e, strongSum, off)) {
+                offsets[e] = offset;
+                return;
+            }
+            i = (i + 1) & mask;
+        }
+        if (size == weak.length) {
+            grow();
+            put(weakSum, strongSum, off, offset);
+            return;
+        }
+        weak[size] = weakSum;
+        System.arraycopy(strongSum, off, strong, size * strongLength, strongLength);
+        offsets[size] = offset;
+        size++;
+        slotWeak[i] = weakSum;
+        slotEntry[i] = size;
+    }
+
+    /**
+     * Test if any entry has the given weak sum. This is cheap compared
+     * to computing a strong sum.
+     *
+     * @param weakSum The weak sum.
+     * @return True if an entry has the weak sum.
+     */
+    public boolean containsWeak(int weakSum) {
+        int mask = slotEntry.length - 1;
+        for (int i = slot(weakSum, mask); slotEntry[i] != 0; i = (i + 1) & mask) {
+            if (slotWeak[i] == weakSum) {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    /**
+     * Return the offset mapped to a weak sum and a strong sum. Only the
+     * first {@link #getStrongLength()} bytes of the strong sum are
+     * compared, so the array may hold an untruncated digest.
+     *
+     * @param weakSum   The weak sum.
+     * @param strongSum The array holding the strong sum.
+     * @param off       The index of the strong sum in the array.
+     * @return The offset, or -1 if there is no such entry.
+     */
+    public long get(int weakSum, byte[] strongSum, int off) {
+        int mask = slotEntry.length - 1;
+        for (int i = slot(weakSum, mask); slotEntry[i] != 0; i = (i + 1) & mask) {
+            int e = slotEntry[i] - 1;
+            if (slotWeak[i] == weakSum && strongEquals(e, strongSum, off)) {
+                return offsets[e];
+            }
+        }
+        return -1L;
+    }
+
+    /**
+     * The first slot to probe. The weak sum of rsync holds two 16-bit
+     * sums, so the bits are mixed before the table index is taken.
+     */
+    private static int slot(int weakSum, int mask) {
+        int h = weakSum * 0x9e3779b9;
+        return (h ^ (h >>> 16)) & mask;
+    }
+
+    private boolean strongEquals(int e, byte[] strongSum, int off) {
+        int base = e * strongLength;
+        for (int j = 0; j < strongLength; j++) {
+            if (strong[base + j] != strongSum[off + j]) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    private void grow() {
+        int capacity = weak.length * 2;
+        weak = Arrays.copyOf(weak, capacity);
+        strong = Arrays.copyOf(strong, capacity * strongLength);
+        offsets = Arrays.copyOf(offsets, capacity);
+        int slots = slotEntry.length * 2;
+        int mask = slots - 1;
+        slotWeak = new int[slots];
+        slotEntry = new int[slots];
+        for (int e = 0; e < size; e++) {
+            int i = slot(weak[e], mask);
+            while (slotEntry[i] != 0) {
+                i = (i + 1) & mask;
+            }
+            slotWeak[i] = weak[e];
+            slotEntry[i] = e + 1;
+        }
+    }
+}
@@ -67,7 +67,7 @@ import java.security.MessageDigest;
  * other fields are optional.</p>
  *
  */
-public class Configuration {
+public class Configuration implements Cloneable {
 
     /**
      * The default block size.
@@ -116,4 +116,25 @@ public class Configuration {
         blockLength = BLOCK_LENGTH;
         chunkSize = CHUNK_SIZE;
     }
+
+    /**
+     * Return a copy of this configuration with its own checksum objects,
+     * for example for another thread. The checksum seed is shared.
+     *
+     * @return The copy.
+     * @throws CloneNotSupportedException If the strong sum or the weak
+     *                                    sum can not be copied.
+     */
+    public Configuration clone() throws CloneNotSupportedException {
+        Configuration c = (Configuration) super.clone();
+        if (strongSum != null) {
+            c.strongSum = (MessageDigest) strongSum.clone();
+        }
+        if (weakSum instanceof Checksum32) {
+            c.weakSum = ((Checksum32) weakSum).clone();
+        } else if (weakSum != null) {
+            throw new CloneNotSupportedException(weakSum.getClass().getName());
+        }
+        return c;
+    }
 }
@@ -0,0 +1,355 @@
+package org.metastatic.rsync;
+
+import java.io.EOFException;
+import java.io.File;
+import java.io.IOException;
+import java.io.InterruptedIOException;
+import java.io.RandomAccessFile;
+import java.nio.ByteBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.util.ArrayDeque;
+import java.util.Arrays;
+import java.util.Deque;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.FutureTask;
+
+/**
+ * A version of {@link org.metastatic.rsync.MatcherStream} that matches
+ * a whole file with several threads, mapping the file to memory using
+ * the NIO API.
+ * <p/>
+ * <p>The file is split into regions of {@link #regionSize} bytes. Each
+ * region is mapped, together with the first <i>blockLength</i> - 1
+ * bytes of the next region so that blocks across the border are found,
+ * and searched by a thread with its own copy of the configuration. The
+ * matches of the regions are then put together in the order of the
+ * file, and the {@link Delta}s are sent to the listeners from the
+ * calling thread, as the regions are done.</p>
+ * <p/>
+ * <p>A region is searched from its first byte on, so a match which
+ * reaches into the next region hides the matches found there before
+ * its end, and the bytes between become data. The deltas rebuild the
+ * same file, but near the borders they may use a block less than
+ * {@link MatcherStream} would.</p>
+ * <p/>
+ * <p>If the checksums of the configuration can not be copied, the
+ * regions are searched one after the other in the calling thread. The
+ * <code>update</code> methods of the superclass still work as usual.</p>
+ */
+public class MappedMatcherStream extends MatcherStream {
+
+    /**
+     * The default size of a region.
+     */
+    public static final long REGION_SIZE = 64L * 1024 * 1024;
+
+    /**
+     * The size of the regions to search in parallel.
+     */
+    protected long regionSize;
+
+    /**
+     * The number of threads.
+     */
+    protected int threads;
+
+    /**
+     * Create a new matcher with a thread for each processor and the
+     * default region size.
+     *
+     * @param config The current configuration.
+     */
+    public MappedMatcherStream(Configuration config) {
+        this(config, Runtime.getRuntime().availableProcessors(), REGION_SIZE);
+    }
+
+    /**
+     * Create a new matcher.
+     *
+     * @param config     The current configuration.
+     * @param threads    The number of threads.
+     * @param regionSize The size of the regions to search in parallel.
+     */
+    public MappedMatcherStream(Configuration config, int threads, long regionSize) {
+        super(config);
+        this.threads = Math.max(threads, 1);
+        this.regionSize = Math.max(Math.min(regionSize, Integer.MAX_VALUE - config.blockLength),
+                config.blockLength);
+    }
+
+    /**
+     * Match a whole file against the checksums, and reset this instance.
+     * The checksums must be set before.
+     *
+     * @param file The file to match.
+     * @throws IOException       If the file can not be read.
+     * @throws ListenerException If a listener throws an exception.
+     */
+    public void match(File file) throws IOException, ListenerException {
+        RandomAccessFile raf = new RandomAccessFile(file, "r");
+        try {
+            match(raf.getChannel());
+        } finally {
+            raf.close();
+        }
+    }
+
+    /**
+     * Match the contents of a file channel against the checksums, and
+     * reset this instance. The checksums must be set before.
+     *
+     * @param channel The channel to match.
+     * @throws IOException       If the channel can not be read.
+     * @throws ListenerException If a listener throws an exception.
+     */
+    public void match(FileChannel channel) throws IOException, ListenerException {
+        long length = channel.size();
+        BlockingQueue<Configuration> configs = configs();
+        ExecutorService executorService = configs.size() > 1 ?
+                Executors.newFixedThreadPool(configs.size()) : null;
+        Deque<FutureTask<Region>> pending = new ArrayDeque<FutureTask<Region>>();
+        byte[] buf = new byte[config.chunkSize];
+        long start = 0L;
+        long pos = 0L;
+        try {
+            while (start < length || !pending.isEmpty()) {
+                // keep the threads busy, but do not search too far ahead
+                while (start < length && pending.size() < 2 * configs.size()) {
+                    long end = Math.min(start + regionSize, length);
+                    FutureTask<Region> task = new FutureTask<Region>(new Region(channel, configs,
+                            start, end, Math.min(end + config.blockLength - 1, length)));
+                    if (executorService != null) {
+                        executorService.execute(task);
+                    } else {
+                        task.run();
+                    }
+                    pending.add(task);
+                    start = end;
+                }
+                pos = emit(channel, pending.poll().get(), pos, buf);
+            }
+            finish(channel, pos, length, buf);
+        } catch (InterruptedException ie) {
+            Thread.currentThread().interrupt();
+            throw new InterruptedIOException("interrupted at offset " + pos);
+        } catch (ExecutionException ee) {
+            Throwable t = ee.getCause();
+            if (t instanceof IOException) {
+                throw (IOException) t;
+            }
+            if (t instanceof RuntimeException) {
+                throw (RuntimeException) t;
+            }
+            if (t instanceof Error) {
+                throw (Error) t;
+            }
+            throw new IOException(t);
+        } finally {
+            if (executorService != null) {
+                executorService.shutdownNow();
+            }
+        }
+        reset();
+    }
+
+    /**
+     * Copies of the configuration, one for each thread, or the
+     * configuration itself if it can not be copied.
+     */
+    private BlockingQueue<Configuration> configs() {
+        BlockingQueue<Configuration> configs = new ArrayBlockingQueue<Configuration>(threads);
+        if (threads > 1) {
+            try {
+                for (int i = 0; i < threads; i++) {
+                    configs.add(config.clone());
+                }
+                return configs;
+            } catch (CloneNotSupportedException cnse) {
+                configs.clear();
+            }
+        }
+        configs.add(config);
+        return configs;
+    }
+
+    /**
+     * Send the matches of a region which start at or after the given
+     * position, and the data before them.
+     *
+     * @return The position after the last match.
+     */
+    private long emit(FileChannel channel, Region region, long pos, byte[] buf)
+            throws IOException, ListenerException {
+        for (int k = 0; k < region.count; k++) {
+            long target = region.targets[k];
+            if (target < pos) {
+                continue;
+            }
+            data(channel, pos, target, buf);
+            fire(new Offsets(region.sources[k], target, config.blockLength));
+            pos = target + config.blockLength;
+        }
+        return pos;
+    }
+
+    /**
+     * Send the end of the file after the last match, which is matched
+     * against the checksum of a short last block if it is shorter than
+     * a block.
+     */
+    private void finish(FileChannel channel, long pos, long length, byte[] buf)
+            throws IOException, ListenerException {
+        int len = (int) Math.min(length - pos, config.blockLength);
+        if (len > 0 && len < config.blockLength) {
+            read(channel, pos, buf, len);
+            config.weakSum.check(buf, 0, len);
+            long offset = search(hashtable, config, buf, 0, len);
+            if (offset >= 0) {
+                fire(new Offsets(offset, pos, len));
+                return;
+            }
+        }
+        data(channel, pos, length, buf);
+    }
+
+    /**
+     * Send the bytes between two positions as data blocks.
+     */
+    private void data(FileChannel channel, long from, long to, byte[] buf)
+            throws IOException, ListenerException {
+        while (from < to) {
+            int len = (int) Math.min(buf.length, to - from);
+            read(channel, from, buf, len);
+            fire(new DataBlock(from, buf, 0, len));
+            from += len;
+        }
+    }
+
+    private static void read(FileChannel channel, long position, byte[] buf, int len)
+            throws IOException {
+        ByteBuffer bb = ByteBuffer.wrap(buf, 0, len);
+        while (bb.hasRemaining()) {
+            if (channel.read(bb, position + bb.position()) < 0) {
+                throw new EOFException("unexpected end of file at " + (position + bb.position()));
+            }
+        }
+    }
+
+    private void fire(Delta delta) throws ListenerException {
+        ListenerException exception = null, current = null;
+        for (MatcherListener l : listeners) {
+            try {
+                l.update(new MatcherEvent(delta));
+            } catch (ListenerException le) {
+                if (exception != null) {
+                    current.setNext(le);
+                    current = le;
+                } else {
+                    exception = le;
+                    current = le;
+                }
+            }
+        }
+        if (exception != null) {
+            throw exception;
+        }
+    }
+
+    /**
+     * The search of a region: the blocks starting from <code>start</code>
+     * to before <code>end</code>, in the bytes up to <code>limit</code>.
+     * The result are the offsets of the matches in the file and in the
+     * basis file.
+     */
+    private class Region implements Callable<Region> {
+
+        private final FileChannel channel;
+
+        private final BlockingQueue<Configuration> configs;
+
+        private final long start;
+
+        private final long end;
+
+        private final long limit;
+
+        long[] targets = new long[16];
+
+        long[] sources = new long[16];
+
+        int count;
+
+        Region(FileChannel channel, BlockingQueue<Configuration> configs,
+               long start, long end, long limit) {
+            this.channel = channel;
+            this.configs = configs;
+            this.start = start;
+            this.end = end;
+            this.limit = limit;
+        }
+
+        public Region call() throws IOException, InterruptedException {
+            Configuration c = configs.take();
+            try {
+                search(c);
+            } finally {
+                configs.add(c);
+            }
+            return this;
+        }
+
+        private void search(Configuration c) throws IOException {
+            int blockLength = c.blockLength;
+            int n = (int) (end - start);
+            int w = (int) (limit - start);
+            if (w < blockLength) {
+                return;
+            }
+            MappedByteBuffer map = channel.map(FileChannel.MapMode.READ_ONLY, start, w);
+            byte[] block = new byte[blockLength];
+            map.get(block, 0, blockLength);
+            c.weakSum.check(block, 0, blockLength);
+            int p = 0;
+            while (true) {
+                long offset = -1L;
+                if (hashtable.containsWeak(c.weakSum.getValue())) {
+                    map.position(p);
+                    map.get(block, 0, blockLength);
+                    offset = MatcherStream.search(hashtable, c, block, 0, blockLength);
+                }
+                if (offset >= 0) {
+                    add(start + p, offset);
+                    p += blockLength;
+                    if (p >= n || p + blockLength > w) {
+                        break;
+                    }
+                    map.position(p);
+                    map.get(block, 0, blockLength);
+                    c.weakSum.check(block, 0, blockLength);
+                } else {
+                    if (p + 1 >= n || p + blockLength >= w) {
+                        break;
+                    }
+                    c.weakSum.roll(map.get(p + blockLength));
+                    p++;
+                }
+            }
+        }
+
+        private void add(long target, long source) {
+            if (count == targets.length) {
+                targets = Arrays.copyOf(targets, count * 2);
+                sources = Arrays.copyOf(sources, count * 2);
+            }
+            targets[count] = target;
+            sources[count] = source;
+            count++;
+        }
+    }
+}
@@ -35,7 +35,7 @@ public class MatcherStream {
     /**
      * The current hashtable.
      */
-    protected final TwoKeyMap<Long> hashtable;
+    protected ChecksumTable hashtable;
 
     /**
      * The intermediate byte buffer.
@@ -60,7 +60,7 @@ public class MatcherStream {
     public MatcherStream(Configuration config) {
         this.config = config;
         this.listeners = new LinkedList<MatcherListener>();
-        this.hashtable = new TwoKeyMap<Long>();
+        this.hashtable = new ChecksumTable(config.strongSumLength);
         buffer = new byte[config.chunkSize];
         reset();
     }
@@ -95,13 +95,11 @@ public class MatcherStream {
      * @param sums The checksums.
      */
     public void setChecksums(List<ChecksumPair> sums) {
-        hashtable.clear();
         if (sums != null) {
-            for (ChecksumPair p : sums) {
-                hashtable.put(p, p.getOffset());
-            }
+            hashtable = ChecksumTable.create(config.strongSumLength, sums);
+        } else {
+            hashtable = new ChecksumTable(config.strongSumLength);
         }
-
     }
 
     /**
@@ -385,22 +383,33 @@ public class MatcherStream {
      *         the map. null if it was not found.
      */
     protected Long hashSearch(byte[] block, int off, int len) {
-        Integer weakSum = new Integer(config.weakSum.getValue());
-        if (hashtable.containsKey(weakSum.intValue())) {
-            if (hashtable.containsKey(weakSum)) {
-                config.strongSum.reset();
-                config.strongSum.update(block, off, len);
-                if (config.checksumSeed != null) {
-                    config.strongSum.update(config.checksumSeed);
-                }
-                byte[] digest = new byte[config.strongSumLength];
-                System.arraycopy(config.strongSum.digest(), 0, digest, 0,
-                        digest.length);
-                ChecksumPair pair = new ChecksumPair(weakSum, digest);
-                Long offset = hashtable.get(pair);
-                return offset;
-            }
+        long offset = search(hashtable, config, block, off, len);
+        return offset < 0 ? null : offset;
+    }
+
+    /**
+     * Search a block in a table, with the weak sum currently computed by
+     * the configuration. The strong sum is only computed if the weak sum
+     * is in the table.
+     *
+     * @param table  The table to search.
+     * @param config The configuration with the checksums to use.
+     * @param block  The block of bytes to search for.
+     * @param off    The offset in the block to begin.
+     * @param len    The number of bytes to read from the block.
+     * @return The original offset of the block, or -1 if it was not
+     *         found.
+     */
+    static long search(ChecksumTable table, Configuration config, byte[] block, int off, int len) {
+        int weakSum = config.weakSum.getValue();
+        if (!table.containsWeak(weakSum)) {
+            return -1L;
+        }
+        config.strongSum.reset();
+        config.strongSum.update(block, off, len);
+        if (config.checksumSeed != null) {
+            config.strongSum.update(config.checksumSeed);
         }
-        return null;
+        return table.get(weakSum, config.strongSum.digest(), 0);
     }
 }
@@ -0,0 +1,87 @@
+package org.metastatic.rsync;
+
+import org.testng.annotations.Test;
+
+import java.util.Arrays;
+
+import static org.testng.Assert.assertEquals;
+import static org.testng.Assert.assertFalse;
+import static org.testng.Assert.assertTrue;
+
+public class ChecksumTableTest {
+
+    @Test
+    public void testSameWeakSum() {
+        ChecksumTable table = new ChecksumTable(4);
+        table.put(new ChecksumPair(42, strong(1), 0L));
+        table.put(new ChecksumPair(42, strong(2), 700L));
+        table.put(new ChecksumPair(42, strong(3), 1400L));
+        assertEquals(table.size(), 3);
+        assertTrue(table.containsWeak(42));
+        assertEquals(table.get(42, strong(1), 0), 0L);
+        assertEquals(table.get(42, strong(2), 0), 700L);
+        assertEquals(table.get(42, strong(3), 0), 1400L);
+        assertEquals(table.get(42, strong(4), 0), -1L);
+    }
+
+    @Test
+    public void testOverwrite() {
+        ChecksumTable table = new ChecksumTable(4);
+        table.put(new ChecksumPair(42, strong(1), 0L));
+        table.put(new ChecksumPair(42, strong(1), 2100L));
+        assertEquals(table.size(), 1);
+        assertEquals(table.get(42, strong(1), 0), 2100L);
+    }
+
+    @Test
+    public void testGrow() {
+        ChecksumTable table = new ChecksumTable(4, 1);
+        for (int i = 0; i < 10000; i++) {
+            // every weak sum is shared by many entries, and the low bits by all
+            table.put((i % 7) << 16, strong(i), 0, i * 700L);
+        }
+        assertEquals(table.size(), 10000);
+        for (int i = 0; i < 10000; i++) {
+            assertEquals(table.get((i % 7) << 16, strong(i), 0), i * 700L, "entry " + i);
+        }
+        assertEquals(table.get(1 << 16, strong(0), 0), -1L);
+    }
+
+    @Test
+    public void testMiss() {
+        ChecksumTable table = new ChecksumTable(4);
+        assertFalse(table.containsWeak(0));
+        assertEquals(table.get(0, strong(0), 0), -1L);
+        table.put(new ChecksumPair(42, strong(1), 0L));
+        assertFalse(table.containsWeak(43));
+        assertEquals(table.get(43, strong(1), 0), -1L);
+        assertEquals(table.get(42, strong(2), 0), -1L);
+        table.clear();
+        assertEquals(table.size(), 0);
+        assertFalse(table.containsWeak(42));
+        assertEquals(table.get(42, strong(1), 0), -1L);
+    }
+
+    @Test
+    public void testStrongSumInArray() {
+        ChecksumTable table = new ChecksumTable(2);
+        table.put(7, new byte[]{9, 1, 2, 9}, 1, 700L);
+        // only the first two bytes of an untruncated digest are compared
+        assertEquals(table.get(7, new byte[]{0, 0, 1, 2, 3, 4}, 2), 700L);
+        assertEquals(table.get(7, new byte[]{1, 3}, 0), -1L);
+    }
+
+    @Test(expectedExceptions = IllegalArgumentException.class)
+    public void testStrongLength() {
+        new ChecksumTable(4).put(new ChecksumPair(42, Arrays.copyOf(strong(1), 3), 0L));
+    }
+
+    @Test(expectedExceptions = IllegalArgumentException.class)
+    public void testNegativeOffset() {
+        new ChecksumTable(4).put(42, strong(1), 0, -1L);
+    }
+
+    private static byte[] strong(int i) {
+        return new byte[]{(byte) (i >>> 24), (byte) (i >>> 16), (byte) (i >>> 8), (byte) i};
+    }
+}
@@ -0,0 +1,147 @@
+package org.metastatic.rsync;
+
+import org.testng.annotations.Test;
+
+import java.io.ByteArrayOutputStream;
+import java.io.File;
+import java.io.FileOutputStream;
+import java.security.MessageDigest;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Random;
+
+import static org.testng.Assert.assertEquals;
+import static org.testng.Assert.assertTrue;
+
+public class MappedMatcherStreamTest {
+
+    private final static int BLOCK_LENGTH = 700;
+
+    @Test
+    public void testRebuild() throws Exception {
+        Random random = new Random(1L);
+        byte[] basis = new byte[300000];
+        random.nextBytes(basis);
+        byte[] target = edit(basis, random);
+        File file = File.createTempFile("target.", ".bin");
+        file.deleteOnExit();
+        FileOutputStream out = new FileOutputStream(file);
+        out.write(target);
+        out.close();
+        final List<ChecksumPair> sums = new ArrayList<ChecksumPair>();
+        GeneratorStream generator = new GeneratorStream(configuration());
+        generator.addListener(new GeneratorListener() {
+            @Override
+            public void update(GeneratorEvent event) {
+                sums.add(event.getChecksumPair());
+            }
+        });
+        generator.update(basis);
+        generator.doFinal();
+        for (int threads : new int[]{1, 2, 4}) {
+            for (long regionSize : new long[]{BLOCK_LENGTH, 5000L, 100000L, MappedMatcherStream.REGION_SIZE}) {
+                Deltas deltas = new Deltas();
+                MappedMatcherStream matcher = new MappedMatcherStream(configuration(), threads, regionSize);
+                matcher.addListener(deltas);
+                matcher.setChecksums(sums);
+                matcher.match(file);
+                String message = "threads " + threads + " region size " + regionSize;
+                long copied = rebuild(deltas.deltas, basis, target, message);
+                assertTrue(copied > target.length / 2, message + " copied " + copied);
+            }
+        }
+    }
+
+    @Test
+    public void testEmptyFile() throws Exception {
+        File file = File.createTempFile("empty.", ".bin");
+        file.deleteOnExit();
+        Deltas deltas = new Deltas();
+        MappedMatcherStream matcher = new MappedMatcherStream(configuration(), 2, 5000L);
+        matcher.addListener(deltas);
+        matcher.setChecksums(new ArrayList<ChecksumPair>());
+        matcher.match(file);
+        assertEquals(deltas.deltas.size(), 0);
+    }
+
+    private static Configuration configuration() throws Exception {
+        Configuration config = new Configuration();
+        config.strongSum = MessageDigest.getInstance("MD5");
+        config.weakSum = new Checksum32();
+        config.strongSumLength = 16;
+        config.blockLength = BLOCK_LENGTH;
+        return config;
+    }
+
+    /**
+     * Copy the basis with insertions, deletions and replacements.
+     */
+    private static byte[] edit(byte[] basis, Random random) {
+        ByteArrayOutputStream out = new ByteArrayOutputStream();
+        int pos = 0;
+        while (pos < basis.length) {
+            int length = Math.min(basis.length - pos, random.nextInt(20000));
+            out.write(basis, pos, length);
+            pos += length;
+            byte[] data = new byte[random.nextInt(300)];
+            random.nextBytes(data);
+            switch (random.nextInt(3)) {
+                case 0:
+                    out.write(data, 0, data.length);
+                    break;
+                case 1:
+                    pos += data.length;
+                    break;
+                default:
+                    out.write(data, 0, data.length);
+                    pos += data.length;
+                    break;
+            }
+        }
+        return out.toByteArray();
+    }
+
+    /**
+     * Apply the deltas to the basis, check that every byte of the target is written
+     * exactly as in the target, and return the number of bytes copied from the basis.
+     */
+    private static long rebuild(List<Delta> deltas, byte[] basis, byte[] target, String message) {
+        byte[] result = new byte[target.length];
+        boolean[] written = new boolean[target.length];
+        long copied = 0L;
+        for (Delta delta : deltas) {
+            int offset = (int) delta.getWriteOffset();
+            int length;
+            if (delta instanceof DataBlock) {
+                byte[] data = ((DataBlock) delta).getData();
+                length = data.length;
+                System.arraycopy(data, 0, result, offset, length);
+            } else {
+                Offsets offsets = (Offsets) delta;
+                length = offsets.getBlockLength();
+                System.arraycopy(basis, (int) offsets.getOldOffset(), result, offset, length);
+                copied += length;
+            }
+            for (int i = offset; i < offset + length; i++) {
+                assertTrue(!written[i], message + " writes twice at " + i);
+                written[i] = true;
+            }
+        }
+        for (int i = 0; i < written.length; i++) {
+            assertTrue(written[i], message + " does not write at " + i);
+        }
+        assertTrue(Arrays.equals(result, target), message);
+        return copied;
+    }
+
+    private static class Deltas implements MatcherListener {
+
+        final List<Delta> deltas = new ArrayList<Delta>();
+
+        @Override
+        public void update(MatcherEvent event) {
+            deltas.add(event.getDelta());
+        }
+    }
+}
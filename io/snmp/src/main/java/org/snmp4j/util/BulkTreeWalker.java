@@ -0,0 +1,485 @@
+package org.snmp4j.util;
+
+import org.apache.logging.log4j.LogManager;
+import org.apache.logging.log4j.Logger;
+import org.snmp4j.PDU;
+import org.snmp4j.Session;
+import org.snmp4j.Target;
+import org.snmp4j.event.ResponseEvent;
+import org.snmp4j.event.ResponseListener;
+import org.snmp4j.mp.SnmpConstants;
+import org.snmp4j.smi.Null;
+import org.snmp4j.smi.OID;
+import org.snmp4j.smi.VariableBinding;
+
+import java.io.IOException;
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.Deque;
+import java.util.Iterator;
+import java.util.List;
+import java.util.concurrent.CountDownLatch;
+
+/**
+ * The <code>BulkTreeWalker</code> walks subtrees of many targets at the same time
+ * with GETBULK (SNMPv2c, SNMPv3) or GETNEXT (SNMPv1) operations over one session,
+ * for example a {@link org.snmp4j.Snmp} instance on a single
+ * {@link org.snmp4j.transport.DefaultUdpTransportMapping}.
+ * <p>
+ * Unlike {@link TreeUtils}, which has one request outstanding per walk, the walk of a
+ * target is split into ranges of OIDs which are retrieved in parallel. A range starts
+ * as the whole subtree of a root OID. When a response shows that a child of the range
+ * prefix has a subtree of its own, the range continues in the subtree of that child
+ * and a new range is started for the following children. Walking a table entry for
+ * example retrieves the columns in parallel. Splitting stops
+ * {@link #setSplitDepth(int) splitDepth} levels below the root OID, and each split may
+ * cost one request which only finds the end of its range.
+ * <p>
+ * The number of requests in flight is limited per target and over all targets of this
+ * instance. Requests which exceed a limit wait in a queue and are sent, in the order in
+ * which they were queued, when responses arrive, so no thread blocks on the limits.
+ * <p>
+ * The walk of a target ends when all its ranges are done, or at the first timeout or
+ * error, and is reported with a {@link BulkWalkEvent} which also carries the number of
+ * requests and timeouts and the response latencies of the target.
+ */
+public class BulkTreeWalker extends AbstractSnmpUtility {
+
+    private static final Logger logger = LogManager.getLogger(BulkTreeWalker.class);
+
+    private int maxRepetitions = 10;
+    private int maxInFlight = 64;
+    private int maxInFlightPerTarget = 4;
+    private int splitDepth = 2;
+    private boolean ignoreLexicographicOrder;
+
+    /**
+     * The ranges waiting for a request. The queue is also the lock for the state of
+     * all walks of this instance.
+     */
+    private final Deque<Range> ready = new ArrayDeque<Range>();
+    private int inFlight;
+
+    /**
+     * Creates a <code>BulkTreeWalker</code> instance. The created instance is thread
+     * safe as long as the supplied <code>Session</code> and
+     * <code>PDUFactory</code> are thread safe.
+     *
+     * @param snmpSession a SNMP <code>Session</code> instance.
+     * @param pduFactory  a <code>PDUFactory</code> instance that creates the PDU that are used
+     *                    by this instance to retrieve MIB tree data using GETBULK/GETNEXT
+     *                    operations.
+     */
+    public BulkTreeWalker(Session snmpSession, PDUFactory pduFactory) {
+        super(snmpSession, pduFactory);
+    }
+
+    /**
+     * Walks subtrees of several targets synchronously.
+     *
+     * @param targets  the targets to walk.
+     * @param rootOIDs the OIDs which specify the subtrees to walk on each target.
+     * @return the results of the targets in the order of the targets. If the calling
+     * thread is interrupted, only the results of the targets finished so far.
+     */
+    public List<BulkWalkEvent> walk(List<? extends Target> targets, OID[] rootOIDs) {
+        final BulkWalkEvent[] events = new BulkWalkEvent[targets.size()];
+        final CountDownLatch latch = new CountDownLatch(targets.size());
+        for (int i = 0; i < targets.size(); i++) {
+            final int index = i;
+            walk(targets.get(i), rootOIDs, null, new BulkWalkListener() {
+                public void finished(BulkWalkEvent event) {
+                    synchronized (events) {
+                        events[index] = event;
+                    }
+                    latch.countDown();
+                }
+            });
+        }
+        try {
+            latch.await();
+        } catch (InterruptedException ex) {
+            Thread.currentThread().interrupt();
+            logger.warn("Bulk tree retrieval interrupted: " + ex.getMessage());
+        }
+        List<BulkWalkEvent> l = new ArrayList<BulkWalkEvent>(events.length);
+        synchronized (events) {
+            for (BulkWalkEvent event : events) {
+                if (event != null) {
+                    l.add(event);
+                }
+            }
+        }
+        return l;
+    }
+
+    /**
+     * Walks subtrees of several targets asynchronously.
+     *
+     * @param targets    the targets to walk.
+     * @param rootOIDs   the OIDs which specify the subtrees to walk on each target.
+     * @param userObject an optional user object that will be transparently handed over to the
+     *                   supplied <code>BulkWalkListener</code>.
+     * @param listener   the <code>BulkWalkListener</code> that receives the result of each target.
+     */
+    public void walk(List<? extends Target> targets, OID[] rootOIDs,
+                     Object userObject, BulkWalkListener listener) {
+        for (Target target : targets) {
+            walk(target, rootOIDs, userObject, listener);
+        }
+    }
+
+    /**
+     * Walks subtrees of a target asynchronously, in parallel with the other walks of
+     * this instance.
+     *
+     * @param target     a <code>Target</code> that specifies the target command responder
+     *                   including its network transport address.
+     * @param rootOIDs   the OIDs which specify the subtrees to walk (not included).
+     * @param userObject an optional user object that will be transparently handed over to the
+     *                   supplied <code>BulkWalkListener</code>.
+     * @param listener   the <code>BulkWalkListener</code> that receives the result of the target.
+     */
+    public void walk(Target target, OID[] rootOIDs, Object userObject, BulkWalkListener listener) {
+        TargetWalk walk = new TargetWalk(target, rootOIDs, userObject, listener);
+        BulkWalkEvent finished = null;
+        synchronized (ready) {
+            for (int i = 0; i < rootOIDs.length; i++) {
+                walk.add(new Range(walk, i, rootOIDs[i], rootOIDs[i]));
+            }
+            if (walk.active == 0) {
+                finished = walk.event();
+            }
+        }
+        if (finished != null) {
+            listener.finished(finished);
+        }
+        dispatch();
+    }
+
+    /**
+     * Gets the maximum repetitions of the GETBULK requests.
+     *
+     * @return the maximum repetitions used for GETBULK requests. For SNMPv1 this
+     * values has no effect (it is then implicitly one).
+     */
+    public int getMaxRepetitions() {
+        return maxRepetitions;
+    }
+
+    /**
+     * Sets the maximum repetitions of the GETBULK requests.
+     *
+     * @param maxRepetitions the maximum repetitions used for GETBULK requests. For SNMPv1 this
+     *                       values has no effect (it is then implicitly one).
+     */
+    public void setMaxRepetitions(int maxRepetitions) {
+        this.maxRepetitions = maxRepetitions;
+    }
+
+    /**
+     * Gets the maximum number of requests in flight over all targets.
+     *
+     * @return the global limit of requests in flight.
+     */
+    public int getMaxInFlight() {
+        return maxInFlight;
+    }
+
+    /**
+     * Sets the maximum number of requests in flight over all targets. Further requests
+     * wait until responses arrive or requests time out.
+     *
+     * @param maxInFlight the global limit of requests in flight, default 64.
+     */
+    public void setMaxInFlight(int maxInFlight) {
+        this.maxInFlight = Math.max(maxInFlight, 1);
+    }
+
+    /**
+     * Gets the maximum number of requests in flight to one target.
+     *
+     * @return the limit of requests in flight per target.
+     */
+    public int getMaxInFlightPerTarget() {
+        return maxInFlightPerTarget;
+    }
+
+    /**
+     * Sets the maximum number of requests in flight to one target.
+     *
+     * @param maxInFlightPerTarget the limit of requests in flight per target, default 4.
+     */
+    public void setMaxInFlightPerTarget(int maxInFlightPerTarget) {
+        this.maxInFlightPerTarget = Math.max(maxInFlightPerTarget, 1);
+    }
+
+    /**
+     * Gets the number of levels below a root OID at which ranges are split.
+     *
+     * @return the split depth.
+     */
+    public int getSplitDepth() {
+        return splitDepth;
+    }
+
+    /**
+     * Sets the number of levels below a root OID at which ranges are split. With
+     * zero, each root OID is walked with one request at a time.
+     *
+     * @param splitDepth the split depth, default 2.
+     */
+    public void setSplitDepth(int splitDepth) {
+        this.splitDepth = splitDepth;
+    }
+
+    /**
+     * Return the ignore lexicographic order errors flage value.
+     *
+     * @return <code>true</code> if lexicographic order errors are ignored,
+     * <code>false</code> otherwise (default).
+     */
+    public boolean isIgnoreLexicographicOrder() {
+        return ignoreLexicographicOrder;
+    }
+
+    /**
+     * Set the ignore lexicographic order errors flage value.
+     *
+     * @param ignoreLexicographicOrder <code>true</code> to ignore lexicographic order errors,
+     *                                 <code>false</code> otherwise (default).
+     */
+    public void setIgnoreLexicographicOrder(boolean ignoreLexicographicOrder) {
+        this.ignoreLexicographicOrder = ignoreLexicographicOrder;
+    }
+
+    /**
+     * Sends the requests of the waiting ranges which fit into the limits.
+     */
+    private void dispatch() {
+        List<Range> requests = new ArrayList<Range>();
+        synchronized (ready) {
+            for (int n = ready.size(); n > 0 && inFlight < maxInFlight; n--) {
+                Range range = ready.poll();
+                if (range.walk.inFlight < maxInFlightPerTarget) {
+                    inFlight++;
+                    range.walk.inFlight++;
+                    range.walk.requests++;
+                    requests.add(range);
+                } else {
+                    ready.add(range);
+                }
+            }
+        }
+        for (Range range : requests) {
+            send(range);
+        }
+    }
+
+    private void send(Range range) {
+        Target target = range.walk.target;
+        PDU request = pduFactory.createPDU(target);
+        request.add(new VariableBinding(range.last));
+        if (target.getVersion() == SnmpConstants.version1) {
+            request.setType(PDU.GETNEXT);
+        } else if (request.getType() != PDU.GETNEXT) {
+            request.setType(PDU.GETBULK);
+            request.setMaxRepetitions(maxRepetitions);
+        }
+        range.sent = System.nanoTime();
+        try {
+            session.send(request, target, range, range.walk);
+        } catch (IOException iox) {
+            completed(range, null, iox);
+        }
+    }
+
+    /**
+     * Processes the response, timeout or error of the request of a range, and sends
+     * the next requests.
+     */
+    private void completed(Range range, PDU response, Exception exception) {
+        long latency = System.nanoTime() - range.sent;
+        TargetWalk walk = range.walk;
+        BulkWalkEvent finished = null;
+        synchronized (ready) {
+            inFlight--;
+            walk.inFlight--;
+            boolean more = false;
+            if (exception != null) {
+                walk.fail(RetrievalEvent.STATUS_EXCEPTION, exception);
+            } else if (response == null) {
+                walk.timeouts++;
+                walk.fail(RetrievalEvent.STATUS_TIMEOUT, null);
+            } else {
+                walk.totalLatency += latency;
+                walk.maxLatency = Math.max(walk.maxLatency, latency);
+                if (response.getErrorStatus() != 0) {
+                    if (walk.target.getVersion() != SnmpConstants.version1 ||
+                            response.getErrorStatus() != PDU.noSuchName) {
+                        walk.fail(response.getErrorStatus(), null);
+                    }
+                } else if (response.getType() == PDU.REPORT) {
+                    walk.report = response;
+                    walk.fail(RetrievalEvent.STATUS_REPORT, null);
+                } else {
+                    more = next(range, response);
+                }
+            }
+            if (more && walk.status == RetrievalEvent.STATUS_OK) {
+                ready.add(range);
+            } else {
+                walk.active--;
+            }
+            if (walk.active == 0) {
+                finished = walk.event();
+            }
+        }
+        if (finished != null) {
+            if (logger.isDebugEnabled()) {
+                logger.debug("Walk finished: " + finished);
+            }
+            walk.listener.finished(finished);
+        }
+        dispatch();
+    }
+
+    /**
+     * Adds the variable bindings of a response to a range.
+     *
+     * @return <code>true</code> if the range continues.
+     */
+    private boolean next(Range range, PDU response) {
+        if (response.size() == 0) {
+            return false;
+        }
+        for (int i = 0; i < response.size(); i++) {
+            VariableBinding vb = response.get(i);
+            OID oid = vb.getOid();
+            if ((oid == null) || !oid.startsWith(range.prefix) ||
+                    Null.isExceptionSyntax(vb.getVariable().getSyntax())) {
+                return false;
+            }
+            if (!ignoreLexicographicOrder && (oid.compareTo(range.last) <= 0)) {
+                range.walk.fail(RetrievalEvent.STATUS_WRONG_ORDER, null);
+                return false;
+            }
+            range.vbs.add(vb);
+            range.last = oid;
+        }
+        split(range);
+        return true;
+    }
+
+    /**
+     * Splits a range if its last OID is in the subtree of a child of the range prefix:
+     * the range continues in the subtree of the child, and a new range starts after it.
+     */
+    private void split(Range range) {
+        OID prefix = range.prefix;
+        OID last = range.last;
+        if ((last.size() <= prefix.size() + 1) ||
+                (prefix.size() - range.walk.rootOIDs[range.root].size() >= splitDepth) ||
+                (last.getUnsigned(prefix.size()) == 0xFFFFFFFFL)) {
+            return;
+        }
+        OID child = new OID(last.getValue(), 0, prefix.size() + 1);
+        range.prefix = child;
+        range.walk.add(new Range(range.walk, range.root, prefix, child.nextPeer()));
+    }
+
+    /**
+     * The walk of one target. Receives the responses of all its requests.
+     */
+    class TargetWalk implements ResponseListener {
+
+        private final Target target;
+        private final OID[] rootOIDs;
+        private final Object userObject;
+        private final BulkWalkListener listener;
+        private final List<Range> ranges = new ArrayList<Range>();
+        private int active;
+        private int inFlight;
+        private int status = RetrievalEvent.STATUS_OK;
+        private Exception exception;
+        private PDU report;
+        private int requests;
+        private int timeouts;
+        private long totalLatency;
+        private long maxLatency;
+
+        TargetWalk(Target target, OID[] rootOIDs, Object userObject, BulkWalkListener listener) {
+            this.target = target;
+            this.rootOIDs = rootOIDs;
+            this.userObject = userObject;
+            this.listener = listener;
+        }
+
+        public void onResponse(ResponseEvent event) {
+            session.cancel(event.getRequest(), this);
+            completed((Range) event.getUserObject(), event.getResponse(), event.getError());
+        }
+
+        void add(Range range) {
+            ranges.add(range);
+            active++;
+            ready.add(range);
+        }
+
+        /**
+         * Records the first failure and drops the waiting ranges of this walk.
+         */
+        void fail(int status, Exception exception) {
+            if (this.status == RetrievalEvent.STATUS_OK) {
+                this.status = status;
+                this.exception = exception;
+            }
+            for (Iterator<Range> it = ready.iterator(); it.hasNext(); ) {
+                if (it.next().walk == this) {
+                    it.remove();
+                    active--;
+                }
+            }
+        }
+
+        BulkWalkEvent event() {
+            Collections.sort(ranges, new Comparator<Range>() {
+                public int compare(Range r1, Range r2) {
+                    return (r1.root != r2.root) ? r1.root - r2.root : r1.start.compareTo(r2.start);
+                }
+            });
+            List<VariableBinding> l = new ArrayList<VariableBinding>();
+            for (Range range : ranges) {
+                l.addAll(range.vbs);
+            }
+            ranges.clear();
+            return new BulkWalkEvent(this, userObject, target, l.toArray(new VariableBinding[l.size()]),
+                    status, exception, report, requests, timeouts, totalLatency, maxLatency);
+        }
+    }
+
+    /**
+     * A range of the subtree of a root OID: the OIDs after <code>start</code> which
+     * begin with <code>prefix</code>.
+     */
+    static class Range {
+
+        private final TargetWalk walk;
+        private final int root;
+        private final OID start;
+        private OID prefix;
+        private OID last;
+        private long sent;
+        private final List<VariableBinding> vbs = new ArrayList<VariableBinding>();
+
+        Range(TargetWalk walk, int root, OID prefix, OID start) {
+            this.walk = walk;
+            this.root = root;
+            this.prefix = prefix;
+            this.start = start;
+            this.last = start;
+        }
+    }
+}
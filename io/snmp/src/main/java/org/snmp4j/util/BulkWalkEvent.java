@@ -0,0 +1,104 @@
+package org.snmp4j.util;
+
+import org.snmp4j.PDU;
+import org.snmp4j.Target;
+import org.snmp4j.smi.VariableBinding;
+
+import java.util.EventListener;
+
+/**
+ * The <code>BulkWalkEvent</code> class reports the result of the walk of one
+ * target by a {@link BulkTreeWalker}, together with the latency and timeout
+ * metrics of the requests sent to the target.
+ */
+public class BulkWalkEvent extends RetrievalEvent {
+
+    private final Target target;
+    private final int requests;
+    private final int timeouts;
+    private final long totalLatency;
+    private final long maxLatency;
+
+    protected BulkWalkEvent(EventListener source, Object userObject, Target target,
+                            VariableBinding[] vbs, int status, Exception exception, PDU report,
+                            int requests, int timeouts, long totalLatency, long maxLatency) {
+        super(source, userObject);
+        this.target = target;
+        this.vbs = vbs;
+        this.status = status;
+        this.exception = exception;
+        this.reportPDU = report;
+        this.requests = requests;
+        this.timeouts = timeouts;
+        this.totalLatency = totalLatency;
+        this.maxLatency = maxLatency;
+    }
+
+    /**
+     * Gets the walked target.
+     *
+     * @return the target.
+     */
+    public Target getTarget() {
+        return target;
+    }
+
+    /**
+     * Gets the variable bindings retrieved from the target, in the order of the
+     * root OIDs and in lexicographic order below each root. If the walk failed,
+     * these are the variable bindings retrieved before the failure.
+     *
+     * @return VariableBinding[]
+     * a possibly empty array of <code>VariableBindings</code>.
+     */
+    public VariableBinding[] getVariableBindings() {
+        return vbs;
+    }
+
+    /**
+     * Gets the number of requests sent to the target, not counting the retries
+     * of the session.
+     *
+     * @return the number of requests.
+     */
+    public int getRequests() {
+        return requests;
+    }
+
+    /**
+     * Gets the number of requests which timed out after all retries.
+     *
+     * @return the number of timeouts.
+     */
+    public int getTimeouts() {
+        return timeouts;
+    }
+
+    /**
+     * Gets the average time from sending a request to receiving its response,
+     * over the requests which got a response.
+     *
+     * @return the average latency in nanoseconds, or zero if there was no response.
+     */
+    public long getAverageLatency() {
+        int responses = requests - timeouts;
+        return responses > 0 ? totalLatency / responses : 0L;
+    }
+
+    /**
+     * Gets the longest time from sending a request to receiving its response.
+     *
+     * @return the maximum latency in nanoseconds.
+     */
+    public long getMaxLatency() {
+        return maxLatency;
+    }
+
+    public String toString() {
+        return getClass().getName() + "[target=" + target +
+                ",vbs=" + ((vbs == null) ? "null" : "" + vbs.length) +
+                ",status=" + status + ",exception=" + exception +
+                ",requests=" + requests + ",timeouts=" + timeouts +
+                ",averageLatency=" + getAverageLatency() + ",maxLatency=" + maxLatency + "]";
+    }
+}
@@ -0,0 +1,20 @@
+package org.snmp4j.util;
+
+import java.util.EventListener;
+
+/**
+ * The <code>BulkWalkListener</code> interface is implemented by objects
+ * listening for the results of the target walks of a {@link BulkTreeWalker}.
+ */
+public interface BulkWalkListener extends EventListener {
+
+    /**
+     * Consumes the result of the walk of one target. The method is called
+     * once per target, from the thread which received the last response of
+     * the target, and must not block.
+     *
+     * @param event a <code>BulkWalkEvent</code> instance with the variable bindings
+     *              of the target, or an error condition.
+     */
+    void finished(BulkWalkEvent event);
+}
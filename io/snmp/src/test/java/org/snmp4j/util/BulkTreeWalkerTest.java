@@ -0,0 +1,244 @@
+package org.snmp4j.util;
+
+import org.snmp4j.CommandResponder;
+import org.snmp4j.CommandResponderEvent;
+import org.snmp4j.CommunityTarget;
+import org.snmp4j.MessageException;
+import org.snmp4j.PDU;
+import org.snmp4j.Snmp;
+import org.snmp4j.Target;
+import org.snmp4j.mp.SnmpConstants;
+import org.snmp4j.mp.StatusInformation;
+import org.snmp4j.smi.GenericAddress;
+import org.snmp4j.smi.Integer32;
+import org.snmp4j.smi.Null;
+import org.snmp4j.smi.OID;
+import org.snmp4j.smi.OctetString;
+import org.snmp4j.smi.UdpAddress;
+import org.snmp4j.smi.Variable;
+import org.snmp4j.smi.VariableBinding;
+import org.snmp4j.transport.DummyTransport;
+import org.testng.Assert;
+import org.testng.annotations.AfterMethod;
+import org.testng.annotations.BeforeMethod;
+import org.testng.annotations.Test;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.SortedMap;
+import java.util.TreeMap;
+
+public class BulkTreeWalkerTest {
+
+    private static final OID TABLE = new OID("1.3.6.1.4.1.4976.1.1");
+
+    private static final OID SCALARS = new OID("1.3.6.1.4.1.4976.2");
+
+    private static final OID[] ROOTS = new OID[]{TABLE, SCALARS};
+
+    private Snmp snmpCommandGenerator;
+
+    private Snmp snmpCommandResponder;
+
+    private TreeResponder responder;
+
+    @BeforeMethod
+    public void setUp() throws Exception {
+        DummyTransport<UdpAddress> transportMappingCG = new DummyTransport<UdpAddress>(new UdpAddress("127.0.0.1/4967"));
+        snmpCommandGenerator = new Snmp(transportMappingCG);
+        snmpCommandResponder = new Snmp(transportMappingCG.getResponder(new UdpAddress("127.0.0.1/161")));
+        responder = new TreeResponder();
+        snmpCommandResponder.addCommandResponder(responder);
+        snmpCommandGenerator.listen();
+        snmpCommandResponder.listen();
+    }
+
+    @AfterMethod
+    public void tearDown() throws Exception {
+        snmpCommandGenerator.close();
+        snmpCommandResponder.close();
+    }
+
+    @Test
+    public void testWalkTargets() throws Exception {
+        List<Target> targets = new ArrayList<Target>();
+        for (int i = 0; i < 6; i++) {
+            String community = "device" + i;
+            responder.trees.put(community, tree(i));
+            targets.add(target(community, i % 3 == 0 ? SnmpConstants.version1 : SnmpConstants.version2c));
+        }
+        BulkTreeWalker walker = new BulkTreeWalker(snmpCommandGenerator, new DefaultPDUFactory());
+        walker.setMaxInFlight(8);
+        List<BulkWalkEvent> events = walker.walk(targets, ROOTS);
+        Assert.assertEquals(events.size(), targets.size());
+        for (int i = 0; i < targets.size(); i++) {
+            BulkWalkEvent event = events.get(i);
+            Assert.assertSame(event.getTarget(), targets.get(i));
+            Assert.assertFalse(event.isError(), event.getErrorMessage());
+            Assert.assertEquals(Arrays.asList(event.getVariableBindings()), expected(tree(i)));
+            Assert.assertEquals(event.getTimeouts(), 0);
+            Assert.assertTrue(event.getRequests() > 0);
+            Assert.assertTrue(event.getAverageLatency() > 0);
+            Assert.assertTrue(event.getMaxLatency() >= event.getAverageLatency());
+        }
+        // the columns of the bulk targets were walked in parallel
+        Assert.assertTrue(responder.maxInFlight > 1);
+        Assert.assertTrue(responder.maxInFlight <= 8);
+    }
+
+    @Test
+    public void testLimits() throws Exception {
+        List<Target> targets = new ArrayList<Target>();
+        for (int i = 0; i < 3; i++) {
+            String community = "device" + i;
+            responder.trees.put(community, tree(i));
+            targets.add(target(community, SnmpConstants.version2c));
+        }
+        BulkTreeWalker walker = new BulkTreeWalker(snmpCommandGenerator, new DefaultPDUFactory());
+        walker.setMaxInFlight(1);
+        walker.setMaxRepetitions(7);
+        List<BulkWalkEvent> events = walker.walk(targets, ROOTS);
+        for (int i = 0; i < targets.size(); i++) {
+            Assert.assertEquals(Arrays.asList(events.get(i).getVariableBindings()), expected(tree(i)));
+        }
+        Assert.assertEquals(responder.maxInFlight, 1);
+    }
+
+    @Test
+    public void testTimeout() throws Exception {
+        responder.trees.put("device0", tree(0));
+        Target silent = target("silent", SnmpConstants.version2c);
+        silent.setTimeout(200);
+        List<Target> targets = new ArrayList<Target>();
+        targets.add(target("device0", SnmpConstants.version2c));
+        targets.add(silent);
+        List<BulkWalkEvent> events =
+                new BulkTreeWalker(snmpCommandGenerator, new DefaultPDUFactory()).walk(targets, ROOTS);
+        Assert.assertFalse(events.get(0).isError());
+        Assert.assertEquals(Arrays.asList(events.get(0).getVariableBindings()), expected(tree(0)));
+        Assert.assertEquals(events.get(1).getStatus(), RetrievalEvent.STATUS_TIMEOUT);
+        Assert.assertEquals(events.get(1).getVariableBindings().length, 0);
+        Assert.assertEquals(events.get(1).getTimeouts(), events.get(1).getRequests());
+        Assert.assertTrue(events.get(1).getTimeouts() > 0);
+    }
+
+    private static CommunityTarget target(String community, int version) {
+        CommunityTarget target =
+                new CommunityTarget(GenericAddress.parse("udp:127.0.0.1/161"), new OctetString(community));
+        target.setVersion(version);
+        target.setTimeout(10000);
+        target.setRetries(0);
+        return target;
+    }
+
+    /**
+     * A table with four columns and rows with two sub-identifier indexes, and some scalars
+     * around it, which depend on the device number.
+     */
+    private static SortedMap<OID, Variable> tree(int device) {
+        SortedMap<OID, Variable> tree = new TreeMap<OID, Variable>();
+        tree.put(new OID("1.3.6.1.4.1.4976.1.0"), new Integer32(-1));
+        for (int column = 1; column <= 4; column++) {
+            for (int row = 1; row <= 10 + 5 * device; row++) {
+                for (int sub = 1; sub <= 2; sub++) {
+                    OID oid = new OID(TABLE).append(1).append(column).append(row).append(sub);
+                    tree.put(oid, new Integer32(device * 10000 + column * 1000 + row * 10 + sub));
+                }
+            }
+        }
+        for (int i = 1; i <= 25; i++) {
+            tree.put(new OID(SCALARS).append(i).append(0), new Integer32(i));
+        }
+        tree.put(new OID("1.3.6.1.4.1.4976.3.0"), new Integer32(-2));
+        return tree;
+    }
+
+    private static List<VariableBinding> expected(SortedMap<OID, Variable> tree) {
+        List<VariableBinding> expected = new ArrayList<VariableBinding>();
+        for (OID root : ROOTS) {
+            for (Map.Entry<OID, Variable> e : tree.entrySet()) {
+                if (e.getKey().startsWith(root) && e.getKey().size() > root.size()) {
+                    expected.add(new VariableBinding(e.getKey(), e.getValue()));
+                }
+            }
+        }
+        return expected;
+    }
+
+    /**
+     * Answers GETNEXT and GETBULK requests from the tree of the community of the request.
+     * The responses are sent after a short delay on a thread of their own, to keep several
+     * requests outstanding.
+     */
+    private class TreeResponder implements CommandResponder {
+
+        final Map<String, SortedMap<OID, Variable>> trees =
+                Collections.synchronizedMap(new HashMap<String, SortedMap<OID, Variable>>());
+
+        int inFlight;
+
+        int maxInFlight;
+
+        public void processPdu(final CommandResponderEvent event) {
+            final SortedMap<OID, Variable> tree = trees.get(new String(event.getSecurityName()));
+            if (tree == null) {
+                return;
+            }
+            event.setProcessed(true);
+            synchronized (this) {
+                inFlight++;
+                maxInFlight = Math.max(maxInFlight, inFlight);
+            }
+            new Thread() {
+                public void run() {
+                    try {
+                        Thread.sleep(20);
+                    } catch (InterruptedException e) {
+                        return;
+                    }
+                    PDU response = response(event.getPDU(), tree);
+                    synchronized (TreeResponder.this) {
+                        inFlight--;
+                    }
+                    try {
+                        snmpCommandResponder.getMessageDispatcher().returnResponsePdu(
+                                event.getMessageProcessingModel(), event.getSecurityModel(),
+                                event.getSecurityName(), event.getSecurityLevel(),
+                                response, event.getMaxSizeResponsePDU(),
+                                event.getStateReference(), new StatusInformation());
+                    } catch (MessageException e) {
+                        Assert.fail(e.getMessage());
+                    }
+                }
+            }.start();
+        }
+
+        private PDU response(PDU request, SortedMap<OID, Variable> tree) {
+            PDU response = (PDU) request.clone();
+            response.setType(PDU.RESPONSE);
+            response.getVariableBindings().clear();
+            int repetitions = request.getType() == PDU.GETBULK ? request.getMaxRepetitions() : 1;
+            OID oid = request.get(0).getOid();
+            for (int i = 0; i < repetitions; i++) {
+                SortedMap<OID, Variable> tail = tree.tailMap(oid.successor());
+                if (tail.isEmpty()) {
+                    if (request.getType() == PDU.GETNEXT) {
+                        response.setErrorStatus(PDU.noSuchName);
+                        response.setErrorIndex(1);
+                        response.add(request.get(0));
+                    } else {
+                        response.add(new VariableBinding(oid, Null.endOfMibView));
+                    }
+                    break;
+                }
+                oid = tail.firstKey();
+                response.add(new VariableBinding(oid, tail.get(oid)));
+            }
+            return response;
+        }
+    }
+}
@@ -333,6 +333,7 @@ public class Field implements Comparable<Field> {
      * @return the sortable data
      */
     public String dataSortable() {
+        String data = data();
         this.sortable = data != null && data.indexOf(FieldSortable.NON_SORTABLE_BEGIN) >= 0 ?
                 data.replaceAll(FieldSortable.NON_SORTABLE_BEGIN + ".*?" + FieldSortable.NON_SORTABLE_END, "") : null;
         return sortable;
@@ -350,6 +351,7 @@ public class Field implements Comparable<Field> {
 
     @Override
     public String toString() {
+        String data = data();
         return getDesignator() + (data != null ? "=" + data : "");
     }
 
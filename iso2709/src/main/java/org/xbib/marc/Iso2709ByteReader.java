@@ -0,0 +1,257 @@
+/*
+ * Licensed to Jörg Prante and xbib under one or more contributor
+ * license agreements. See the NOTICE.txt file distributed with this work
+ * for additional information regarding copyright ownership.
+ *
+ * Copyright (C) 2012 Jörg Prante and xbib
+ *
+ * This program is free software; you can redistribute it and/or modify
+ * it under the terms of the GNU Affero General Public License as published
+ * by the Free Software Foundation; either version 3 of the License, or
+ * (at your option) any later version.
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the
+ * GNU Affero General Public License for more details.
+ *
+ * You should have received a copy of the GNU Affero General Public License
+ * along with this program; if not, see http://www.gnu.org/licenses
+ * or write to the Free Software Foundation, Inc., 51 Franklin Street,
+ * Fifth Floor, Boston, MA 02110-1301 USA.
+ *
+ * The interactive user interfaces in modified source and object code
+ * versions of this program must display Appropriate Legal Notices,
+ * as required under Section 5 of the GNU Affero General Public License.
+ *
+ * In accordance with Section 7(b) of the GNU Affero General Public
+ * License, these Appropriate Legal Notices must retain the display of the
+ * "Powered by xbib" logo. If the display of the logo is not reasonably
+ * feasible for technical reasons, the Appropriate Legal Notices must display
+ * the words "Powered by xbib".
+ */
+package org.xbib.marc;
+
+import org.xbib.io.field.FieldSeparator;
+import org.xbib.marc.event.EventListener;
+import org.xbib.marc.event.FieldEvent;
+import org.xbib.marc.xml.MarcXchangeSaxAdapter;
+import org.xml.sax.ContentHandler;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.charset.Charset;
+import java.util.Arrays;
+
+/**
+ * ISO 2709 reader working on bytes.
+ *
+ * In contrast to {@link Iso2709Reader}, the input stream is not decoded into a character stream.
+ * Records are cut from the byte stream by the record length in the label (with the record
+ * terminator as fallback), the directory is used to jump to the field boundaries, and
+ * only field data requested by a listener is decoded.
+ *
+ * Events are delivered through a {@link MarcXchangeSaxAdapter}, so listeners and content handlers
+ * receive the same events as with {@link Iso2709Reader}. Field mapping, string transformers and
+ * custom subfield delimiters are not supported by this reader, use {@link Iso2709Reader} for those.
+ */
+public class Iso2709ByteReader implements FieldReader, MarcXchangeConstants {
+
+    private final InputStream in;
+
+    private final Iso2709RecordParser parser;
+
+    private final MarcXchangeSaxAdapter adapter;
+
+    private byte[] buf;
+
+    private int pos;
+
+    private int limit;
+
+    private boolean eof;
+
+    public Iso2709ByteReader(InputStream in, String encoding) {
+        this(in, Charset.forName(encoding));
+    }
+
+    public Iso2709ByteReader(InputStream in, Charset charset) {
+        this(in, charset, 65536);
+    }
+
+    public Iso2709ByteReader(InputStream in, Charset charset, int bufferSize) {
+        this.in = in;
+        this.parser = new Iso2709RecordParser(charset);
+        this.adapter = new MarcXchangeSaxAdapter();
+        this.buf = new byte[bufferSize];
+    }
+
+    /**
+     * Get the MarcXchange Sax service.
+     * @return the MarcXchange Sax service
+     */
+    public MarcXchangeSaxAdapter getAdapter() {
+        return adapter;
+    }
+
+    @Override
+    public Iso2709ByteReader setMarcXchangeListener(MarcXchangeListener listener) {
+        this.adapter.setMarcXchangeListener(listener);
+        return this;
+    }
+
+    public Iso2709ByteReader setMarcXchangeListener(String type, MarcXchangeListener listener) {
+        this.adapter.setMarcXchangeListener(type, listener);
+        return this;
+    }
+
+    public Iso2709ByteReader setContentHandler(ContentHandler handler) {
+        this.adapter.setContentHandler(handler);
+        return this;
+    }
+
+    public Iso2709ByteReader setSchema(String schema) {
+        this.adapter.setSchema(schema);
+        return this;
+    }
+
+    public Iso2709ByteReader setFieldEventListener(EventListener<FieldEvent> eventListener) {
+        this.adapter.setFieldEventListener(eventListener);
+        this.parser.setFieldEventListener(eventListener);
+        return this;
+    }
+
+    public Iso2709ByteReader setFormat(String format) {
+        this.parser.setFormat(format);
+        return this;
+    }
+
+    public String getFormat() {
+        return parser.getFormat();
+    }
+
+    public Iso2709ByteReader setType(String type) {
+        this.parser.setType(type);
+        return this;
+    }
+
+    public String getType() {
+        return parser.getType();
+    }
+
+    public Iso2709ByteReader setSubfieldCodeLength(Integer subfieldCodeLength) {
+        this.parser.setSubfieldIdLength(subfieldCodeLength);
+        return this;
+    }
+
+    public Iso2709ByteReader setCleanTags(Boolean cleanTags) {
+        this.parser.setCleanTags(cleanTags);
+        return this;
+    }
+
+    public Iso2709ByteReader setScrubData(Boolean scrubData) {
+        this.parser.setScrubData(scrubData);
+        return this;
+    }
+
+    public Iso2709ByteReader setFatalErrors(Boolean fatalErrors) {
+        this.parser.setFatalErrors(fatalErrors);
+        this.adapter.setFatalErrors(fatalErrors);
+        return this;
+    }
+
+    @Override
+    public void parse() throws IOException {
+        adapter.beginCollection();
+        byte[] record;
+        while ((record = nextRecord()) != null) {
+            parser.parse(record, 0, record.length, adapter);
+        }
+        in.close();
+        adapter.endCollection();
+    }
+
+    /**
+     * Read the next record from the stream. Each record gets its own byte array,
+     * because fields decode their data lazily from it.
+     *
+     * @return the record bytes, or null at end of stream
+     * @throws IOException if reading fails
+     */
+    public byte[] nextRecord() throws IOException {
+        // skip line-feeds and empty records
+        while (true) {
+            if (pos >= limit && !fill(1)) {
+                return null;
+            }
+            byte c = buf[pos];
+            if (c != '\n' && c != '\r' && c != FieldSeparator.GS) {
+                break;
+            }
+            pos++;
+        }
+        // record length from label
+        if (fill(5)) {
+            int length = 0;
+            for (int i = 0; i < 5 && length >= 0; i++) {
+                int d = buf[pos + i] - '0';
+                length = d >= 0 && d <= 9 ? length * 10 + d : -1;
+            }
+            if (length >= 24 && fill(length) && buf[pos + length - 1] == FieldSeparator.GS) {
+                byte[] record = Arrays.copyOfRange(buf, pos, pos + length);
+                pos += length;
+                return record;
+            }
+        }
+        // label is not reliable, scan for record terminator
+        int i = pos;
+        while (true) {
+            while (i < limit) {
+                if (buf[i] == FieldSeparator.GS) {
+                    byte[] record = Arrays.copyOfRange(buf, pos, i + 1);
+                    pos = i + 1;
+                    return record;
+                }
+                i++;
+            }
+            int scanned = i - pos;
+            if (!fill(scanned + 1)) {
+                byte[] record = Arrays.copyOfRange(buf, pos, limit);
+                pos = limit;
+                return record.length > 0 ? record : null;
+            }
+            i = pos + scanned;
+        }
+    }
+
+    /**
+     * Make sure at least n bytes are available in the buffer, starting at the current position.
+     * @param n number of bytes
+     * @return true if the bytes are available, false if the stream ended before
+     * @throws IOException if reading fails
+     */
+    private boolean fill(int n) throws IOException {
+        if (limit - pos >= n) {
+            return true;
+        }
+        if (eof) {
+            return false;
+        }
+        if (pos > 0) {
+            System.arraycopy(buf, pos, buf, 0, limit - pos);
+            limit -= pos;
+            pos = 0;
+        }
+        if (n > buf.length) {
+            buf = Arrays.copyOf(buf, Math.max(n, buf.length * 2));
+        }
+        while (limit < n) {
+            int len = in.read(buf, limit, buf.length - limit);
+            if (len < 0) {
+                eof = true;
+                return false;
+            }
+            limit += len;
+        }
+        return true;
+    }
+}
@@ -0,0 +1,325 @@
+/*
+ * Licensed to Jörg Prante and xbib under one or more contributor
+ * license agreements. See the NOTICE.txt file distributed with this work
+ * for additional information regarding copyright ownership.
+ *
+ * Copyright (C) 2012 Jörg Prante and xbib
+ *
+ * This program is free software; you can redistribute it and/or modify
+ * it under the terms of the GNU Affero General Public License as published
+ * by the Free Software Foundation; either version 3 of the License, or
+ * (at your option) any later version.
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the
+ * GNU Affero General Public License for more details.
+ *
+ * You should have received a copy of the GNU Affero General Public License
+ * along with this program; if not, see http://www.gnu.org/licenses
+ * or write to the Free Software Foundation, Inc., 51 Franklin Street,
+ * Fifth Floor, Boston, MA 02110-1301 USA.
+ *
+ * The interactive user interfaces in modified source and object code
+ * versions of this program must display Appropriate Legal Notices,
+ * as required under Section 5 of the GNU Affero General Public License.
+ *
+ * In accordance with Section 7(b) of the GNU Affero General Public
+ * License, these Appropriate Legal Notices must retain the display of the
+ * "Powered by xbib" logo. If the display of the logo is not reasonably
+ * feasible for technical reasons, the Appropriate Legal Notices must display
+ * the words "Powered by xbib".
+ */
+package org.xbib.marc;
+
+import org.xbib.io.field.FieldSeparator;
+import org.xbib.marc.event.EventListener;
+import org.xbib.marc.event.FieldEvent;
+import org.xbib.marc.xml.MarcXchangeSaxAdapter;
+import org.xml.sax.ContentHandler;
+
+import java.io.IOException;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.Charset;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.LinkedList;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.Callable;
+import java.util.concurrent.CompletionService;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorCompletionService;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.LinkedBlockingQueue;
+
+/**
+ * Parallel ISO 2709 reader for files.
+ *
+ * The file is memory-mapped and cut into slices at record terminators. The slices are parsed
+ * by a pool of workers, each with its own {@link Iso2709RecordParser}, into event buffers.
+ * The buffered events are delivered on the calling thread through a {@link MarcXchangeSaxAdapter},
+ * in the original record order, or in order of completion if ordering is switched off.
+ * The number of slices in flight is bounded by twice the number of workers.
+ */
+public class Iso2709MappedReader implements FieldReader, MarcXchangeConstants {
+
+    private final Path path;
+
+    private final Iso2709RecordParser parser;
+
+    private final MarcXchangeSaxAdapter adapter;
+
+    private int threads = Runtime.getRuntime().availableProcessors();
+
+    private int sliceSize = 8 * 1024 * 1024;
+
+    private boolean ordered = true;
+
+    public Iso2709MappedReader(Path path, String encoding) {
+        this(path, Charset.forName(encoding));
+    }
+
+    public Iso2709MappedReader(Path path, Charset charset) {
+        this.path = path;
+        this.parser = new Iso2709RecordParser(charset);
+        this.adapter = new MarcXchangeSaxAdapter();
+    }
+
+    public MarcXchangeSaxAdapter getAdapter() {
+        return adapter;
+    }
+
+    @Override
+    public Iso2709MappedReader setMarcXchangeListener(MarcXchangeListener listener) {
+        this.adapter.setMarcXchangeListener(listener);
+        return this;
+    }
+
+    public Iso2709MappedReader setMarcXchangeListener(String type, MarcXchangeListener listener) {
+        this.adapter.setMarcXchangeListener(type, listener);
+        return this;
+    }
+
+    public Iso2709MappedReader setContentHandler(ContentHandler handler) {
+        this.adapter.setContentHandler(handler);
+        return this;
+    }
+
+    public Iso2709MappedReader setSchema(String schema) {
+        this.adapter.setSchema(schema);
+        return this;
+    }
+
+    public Iso2709MappedReader setFieldEventListener(EventListener<FieldEvent> eventListener) {
+        this.adapter.setFieldEventListener(eventListener);
+        this.parser.setFieldEventListener(eventListener);
+        return this;
+    }
+
+    public Iso2709MappedReader setFormat(String format) {
+        this.parser.setFormat(format);
+        return this;
+    }
+
+    public Iso2709MappedReader setType(String type) {
+        this.parser.setType(type);
+        return this;
+    }
+
+    public Iso2709MappedReader setSubfieldCodeLength(Integer subfieldCodeLength) {
+        this.parser.setSubfieldIdLength(subfieldCodeLength);
+        return this;
+    }
+
+    public Iso2709MappedReader setCleanTags(Boolean cleanTags) {
+        this.parser.setCleanTags(cleanTags);
+        return this;
+    }
+
+    public Iso2709MappedReader setScrubData(Boolean scrubData) {
+        this.parser.setScrubData(scrubData);
+        return this;
+    }
+
+    public Iso2709MappedReader setFatalErrors(Boolean fatalErrors) {
+        this.parser.setFatalErrors(fatalErrors);
+        this.adapter.setFatalErrors(fatalErrors);
+        return this;
+    }
+
+    /**
+     * Set the number of parser threads.
+     * @param threads the number of threads
+     * @return this reader
+     */
+    public Iso2709MappedReader setThreads(int threads) {
+        this.threads = threads;
+        return this;
+    }
+
+    /**
+     * Set the approximate slice size in bytes. A slice always ends at a record terminator.
+     * @param sliceSize the slice size
+     * @return this reader
+     */
+    public Iso2709MappedReader setSliceSize(int sliceSize) {
+        this.sliceSize = sliceSize;
+        return this;
+    }
+
+    /**
+     * Should records be delivered in the order of the file? Default is true.
+     * @param ordered true if ordered, false if records may be delivered in order of completion
+     * @return this reader
+     */
+    public Iso2709MappedReader setOrdered(boolean ordered) {
+        this.ordered = ordered;
+        return this;
+    }
+
+    @Override
+    public void parse() throws IOException {
+        ExecutorService executorService = Executors.newFixedThreadPool(threads);
+        SliceQueue<MarcXchangeEventBuffer> queue = new SliceQueue<MarcXchangeEventBuffer>(executorService, ordered);
+        int window = threads * 2;
+        try (FileChannel channel = FileChannel.open(path, StandardOpenOption.READ)) {
+            adapter.beginCollection();
+            long size = channel.size();
+            long position = 0L;
+            while (position < size) {
+                MappedByteBuffer slice = slice(channel, position, size);
+                position += slice.limit();
+                queue.submit(new SliceParser(slice));
+                if (queue.size() >= window) {
+                    deliver(queue);
+                }
+            }
+            while (queue.size() > 0) {
+                deliver(queue);
+            }
+            adapter.endCollection();
+        } finally {
+            executorService.shutdownNow();
+        }
+    }
+
+    private void deliver(SliceQueue<MarcXchangeEventBuffer> queue) throws IOException {
+        try {
+            queue.take().replay(adapter);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new IOException(e);
+        } catch (ExecutionException e) {
+            if (e.getCause() instanceof MarcException) {
+                throw (MarcException) e.getCause();
+            }
+            throw new IOException(e.getCause());
+        }
+    }
+
+    /**
+     * Map the next slice, ending after the last record terminator within the slice size.
+     * If a record is larger than the slice size, the slice is extended.
+     */
+    private MappedByteBuffer slice(FileChannel channel, long position, long size) throws IOException {
+        long length = Math.min(sliceSize, size - position);
+        while (true) {
+            MappedByteBuffer buffer = channel.map(FileChannel.MapMode.READ_ONLY, position, length);
+            if (position + length == size) {
+                return buffer;
+            }
+            for (int i = (int) length - 1; i >= 0; i--) {
+                if (buffer.get(i) == FieldSeparator.GS) {
+                    buffer.limit(i + 1);
+                    return buffer;
+                }
+            }
+            length = Math.min(Math.min(length * 2, Integer.MAX_VALUE), size - position);
+        }
+    }
+
+    private final ThreadLocal<Iso2709RecordParser> parsers = new ThreadLocal<Iso2709RecordParser>() {
+        @Override
+        protected Iso2709RecordParser initialValue() {
+            return new Iso2709RecordParser(parser);
+        }
+    };
+
+    private class SliceParser implements Callable<MarcXchangeEventBuffer> {
+
+        private final MappedByteBuffer slice;
+
+        SliceParser(MappedByteBuffer slice) {
+            this.slice = slice;
+        }
+
+        @Override
+        public MarcXchangeEventBuffer call() throws Exception {
+            // fields decode from this array, so it is not reused
+            byte[] b = new byte[slice.limit()];
+            slice.get(b);
+            MarcXchangeEventBuffer buffer = new MarcXchangeEventBuffer();
+            parsers.get().parseRecords(b, 0, b.length, buffer);
+            return buffer;
+        }
+    }
+
+    /**
+     * The slices in flight. In ordered mode, the futures are taken in the order of submission,
+     * and no completion queue is kept. In unordered mode, the futures are taken from a
+     * completion queue as they complete.
+     */
+    static class SliceQueue<V> {
+
+        private final ExecutorService executorService;
+
+        private final LinkedList<Future<V>> pending;
+
+        private final BlockingQueue<Future<V>> completed;
+
+        private final CompletionService<V> completionService;
+
+        private int size;
+
+        SliceQueue(ExecutorService executorService, boolean ordered) {
+            this.executorService = executorService;
+            if (ordered) {
+                this.pending = new LinkedList<Future<V>>();
+                this.completed = null;
+                this.completionService = null;
+            } else {
+                this.pending = null;
+                this.completed = new LinkedBlockingQueue<Future<V>>();
+                this.completionService = new ExecutorCompletionService<V>(executorService, completed);
+            }
+        }
+
+        void submit(Callable<V> callable) {
+            if (completionService != null) {
+                completionService.submit(callable);
+            } else {
+                pending.add(executorService.submit(callable));
+            }
+            size++;
+        }
+
+        V take() throws InterruptedException, ExecutionException {
+            Future<V> future = completionService != null ? completionService.take() : pending.removeFirst();
+            size--;
+            return future.get();
+        }
+
+        int size() {
+            return size;
+        }
+
+        /**
+         * @return the number of completed futures which are held by the completion queue
+         */
+        int completed() {
+            return completed != null ? completed.size() : 0;
+        }
+    }
+}
@@ -0,0 +1,562 @@
+/*
+ * Licensed to Jörg Prante and xbib under one or more contributor
+ * license agreements. See the NOTICE.txt file distributed with this work
+ * for additional information regarding copyright ownership.
+ *
+ * Copyright (C) 2012 Jörg Prante and xbib
+ *
+ * This program is free software; you can redistribute it and/or modify
+ * it under the terms of the GNU Affero General Public License as published
+ * by the Free Software Foundation; either version 3 of the License, or
+ * (at your option) any later version.
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the
+ * GNU Affero General Public License for more details.
+ *
+ * You should have received a copy of the GNU Affero General Public License
+ * along with this program; if not, see http://www.gnu.org/licenses
+ * or write to the Free Software Foundation, Inc., 51 Franklin Street,
+ * Fifth Floor, Boston, MA 02110-1301 USA.
+ *
+ * The interactive user interfaces in modified source and object code
+ * versions of this program must display Appropriate Legal Notices,
+ * as required under Section 5 of the GNU Affero General Public License.
+ *
+ * In accordance with Section 7(b) of the GNU Affero General Public
+ * License, these Appropriate Legal Notices must retain the display of the
+ * "Powered by xbib" logo. If the display of the logo is not reasonably
+ * feasible for technical reasons, the Appropriate Legal Notices must display
+ * the words "Powered by xbib".
+ */
+package org.xbib.marc;
+
+import org.xbib.io.field.FieldSeparator;
+import org.xbib.marc.event.EventListener;
+import org.xbib.marc.event.FieldEvent;
+import org.xbib.marc.label.RecordLabel;
+import org.xbib.xml.XMLUtil;
+
+import java.nio.charset.Charset;
+import java.util.HashMap;
+import java.util.Map;
+
+/**
+ * Parses a single ISO 2709 record from raw bytes and emits MarcXchange events.
+ *
+ * The record label and the directory are evaluated on byte level, so field boundaries are
+ * found by directory offsets without decoding the record into characters first. Tags,
+ * indicators and subfield codes are taken from the bytes, the field data is decoded
+ * lazily, that is, only when a listener asks for it by calling {@link Field#data()}.
+ *
+ * Records without a usable directory are split at the separator characters and decoded
+ * eagerly, in the same way as {@link org.xbib.marc.xml.MarcXchangeSaxAdapter} does.
+ *
+ * A parser instance is not thread safe.
+ */
+public class Iso2709RecordParser implements MarcXchangeConstants {
+
+    private static final String[] ASCII = new String[128];
+
+    static {
+        for (int i = 0; i < ASCII.length; i++) {
+            ASCII[i] = Character.toString((char) i);
+        }
+    }
+
+    private final Map<Integer, String> tags = new HashMap<Integer, String>();
+
+    private final Charset charset;
+
+    private String format = MARC21;
+
+    private String type = BIBLIOGRAPHIC;
+
+    private Integer subfieldIdLength;
+
+    private boolean cleanTags = true;
+
+    private boolean scrub = true;
+
+    private boolean fatalErrors = false;
+
+    private EventListener<FieldEvent> fieldEventListener;
+
+    public Iso2709RecordParser(Charset charset) {
+        this.charset = charset;
+    }
+
+    /**
+     * Create a parser with the settings of another parser, e.g. for another thread.
+     *
+     * @param parser the parser to copy the settings from
+     */
+    public Iso2709RecordParser(Iso2709RecordParser parser) {
+        this.charset = parser.charset;
+        this.format = parser.format;
+        this.type = parser.type;
+        this.subfieldIdLength = parser.subfieldIdLength;
+        this.cleanTags = parser.cleanTags;
+        this.scrub = parser.scrub;
+        this.fatalErrors = parser.fatalErrors;
+        this.fieldEventListener = parser.fieldEventListener;
+    }
+
+    public Iso2709RecordParser setFormat(String format) {
+        this.format = format;
+        return this;
+    }
+
+    public String getFormat() {
+        return format;
+    }
+
+    public Iso2709RecordParser setType(String type) {
+        this.type = type;
+        return this;
+    }
+
+    public String getType() {
+        return type;
+    }
+
+    public Iso2709RecordParser setSubfieldIdLength(Integer subfieldIdLength) {
+        this.subfieldIdLength = subfieldIdLength;
+        return this;
+    }
+
+    public Iso2709RecordParser setCleanTags(boolean cleanTags) {
+        this.cleanTags = cleanTags;
+        return this;
+    }
+
+    public Iso2709RecordParser setScrubData(boolean scrub) {
+        this.scrub = scrub;
+        return this;
+    }
+
+    public Iso2709RecordParser setFatalErrors(boolean fatalErrors) {
+        this.fatalErrors = fatalErrors;
+        return this;
+    }
+
+    public Iso2709RecordParser setFieldEventListener(EventListener<FieldEvent> fieldEventListener) {
+        this.fieldEventListener = fieldEventListener;
+        return this;
+    }
+
+    /**
+     * Parse a record. The byte array must not be modified afterwards, because
+     * field data is decoded from it on demand.
+     *
+     * @param b the bytes
+     * @param offset the offset of the record in the byte array
+     * @param length the length of the record, including an optional record terminator
+     * @param listener the listener for the record events
+     */
+    public void parse(byte[] b, int offset, int length, MarcXchangeListener listener) {
+        int end = offset + length;
+        // skip line-feed (OCLC PICA quirk)
+        while (offset < end && (b[offset] == '\n' || b[offset] == '\r')) {
+            offset++;
+        }
+        // strip record terminator
+        while (end > offset && (b[end - 1] == FieldSeparator.GS || b[end - 1] == '\n' || b[end - 1] == '\r')) {
+            end--;
+        }
+        if (end - offset < RecordLabel.LENGTH) {
+            if (fatalErrors) {
+                throw new MarcException("record too short: " + (end - offset));
+            }
+            return;
+        }
+        char[] chars = new char[RecordLabel.LENGTH];
+        for (int i = 0; i < RecordLabel.LENGTH; i++) {
+            chars[i] = (char) (b[offset + i] & 0xff);
+        }
+        RecordLabel label = new RecordLabel(chars);
+        if (subfieldIdLength != null) {
+            label.setSubfieldIdentifierLength(subfieldIdLength);
+        }
+        listener.beginRecord(format, type);
+        listener.leader(label.getRecordLabel());
+        int[] directory = directory(label, b, offset, end);
+        if (directory != null) {
+            parseFields(label, directory, b, offset, end, listener);
+        } else {
+            parseSeparated(label, b, offset, end, listener);
+        }
+        listener.endRecord();
+    }
+
+    /**
+     * Parse all records in a byte array region that is aligned at record boundaries.
+     *
+     * @param b the bytes
+     * @param offset the offset of the first record
+     * @param length the length of the region
+     * @param listener the listener for the record events
+     * @return the number of records
+     */
+    public int parseRecords(byte[] b, int offset, int length, MarcXchangeListener listener) {
+        int end = offset + length;
+        int count = 0;
+        int start = offset;
+        while (start < end) {
+            int stop = recordEnd(b, start, end);
+            if (stop - start >= RecordLabel.LENGTH) {
+                parse(b, start, stop - start, listener);
+                count++;
+            }
+            start = stop;
+        }
+        return count;
+    }
+
+    /**
+     * Find the end of the record that starts at the given position. The record length in the
+     * label is used if it points to a record terminator, otherwise the record terminator is searched.
+     *
+     * @param b the bytes
+     * @param start the start position of the record
+     * @param end the end position of the region
+     * @return the position after the record terminator, or the end of the region
+     */
+    public static int recordEnd(byte[] b, int start, int end) {
+        int p = start;
+        while (p < end && (b[p] == '\n' || b[p] == '\r')) {
+            p++;
+        }
+        if (end - p >= 5) {
+            int length = digits(b, p, 5);
+            if (length >= RecordLabel.LENGTH && p + length <= end && b[p + length - 1] == FieldSeparator.GS) {
+                return p + length;
+            }
+        }
+        int gs = indexOf(b, p, end, (byte) FieldSeparator.GS);
+        return gs < 0 ? end : gs + 1;
+    }
+
+    /**
+     * Evaluate the record directory.
+     *
+     * @return triples of tag offset, field start and field end, sorted by field start,
+     * or null if there is no usable directory
+     */
+    private int[] directory(RecordLabel label, byte[] b, int offset, int end) {
+        int base = label.getBaseAddressOfData();
+        int directoryLength = base - (RecordLabel.LENGTH + 1);
+        if (directoryLength <= 0
+                || offset + base > end
+                || label.getDataFieldLength() <= 0
+                || label.getStartingCharacterPositionLength() <= 0
+                || label.getSegmentIdentifierLength() < 0) {
+            return null;
+        }
+        int lengthLength = label.getDataFieldLength();
+        int startLength = label.getStartingCharacterPositionLength();
+        int entrysize = 3 + lengthLength + startLength + label.getSegmentIdentifierLength();
+        if (directoryLength % entrysize != 0) {
+            if (fatalErrors) {
+                throw new MarcException("invalid ISO 2709 directory length: " + directoryLength);
+            }
+            return null;
+        }
+        int n = directoryLength / entrysize;
+        int[] entries = new int[n * 3];
+        boolean sorted = true;
+        for (int i = 0; i < n; i++) {
+            int p = offset + RecordLabel.LENGTH + i * entrysize;
+            int fieldLength = digits(b, p + 3, lengthLength);
+            int fieldStart = digits(b, p + 3 + lengthLength, startLength);
+            if (fieldLength < 0 || fieldStart < 0) {
+                if (fatalErrors) {
+                    throw new MarcException("directory corrupt at entry " + i);
+                }
+                return null;
+            }
+            int start = offset + base + fieldStart;
+            int stop = Math.min(start + fieldLength, end);
+            if (start > end) {
+                if (fatalErrors) {
+                    throw new MarcException("field position out of record: " + fieldStart);
+                }
+                return null;
+            }
+            // trust the separators over the directory lengths
+            if (stop < end && stop > start && b[stop - 1] != FieldSeparator.RS) {
+                stop = indexOf(b, start, end, (byte) FieldSeparator.RS);
+                stop = stop < 0 ? end : stop + 1;
+            }
+            entries[i * 3] = p;
+            entries[i * 3 + 1] = start;
+            entries[i * 3 + 2] = stop;
+            if (i > 0 && entries[i * 3 - 2] > start) {
+                sorted = false;
+            }
+        }
+        if (!sorted) {
+            sort(entries, n);
+        }
+        return entries;
+    }
+
+    private void parseFields(RecordLabel label, int[] directory, byte[] b, int offset, int end,
+                             MarcXchangeListener listener) {
+        int indicatorLength = label.getIndicatorLength();
+        int subfieldIdLength = label.getSubfieldIdentifierLength();
+        for (int i = 0; i < directory.length; i += 3) {
+            String tag = tag(b, directory[i]);
+            int start = directory[i + 1];
+            int stop = directory[i + 2];
+            if (stop > start && b[stop - 1] == FieldSeparator.RS) {
+                stop--;
+            }
+            int position = start - offset;
+            int length = directory[i + 2] - start;
+            if (tag.charAt(0) == '0' && tag.charAt(1) == '0') {
+                LazyField field = new LazyField(tag, position, length, b, start, stop);
+                if (cleanTags) {
+                    cleanTag(field, b, directory[i]);
+                }
+                listener.beginControlField(field);
+                listener.endControlField(field);
+                continue;
+            }
+            int us = indexOf(b, start, stop, (byte) FieldSeparator.US);
+            int headEnd = us < 0 ? stop : us;
+            LazyField designator = new LazyField(tag, position, length, b,
+                    Math.min(start + indicatorLength, headEnd), headEnd);
+            if (indicatorLength <= headEnd - start) {
+                designator.indicator(ascii(b, start, indicatorLength));
+            } else {
+                designator.indicator(ascii(b, start, headEnd - start));
+                designator.data(null);
+            }
+            if (cleanTags) {
+                cleanTag(designator, b, directory[i]);
+            }
+            listener.beginDataField(designator);
+            while (us >= 0) {
+                int next = indexOf(b, us + 1, stop, (byte) FieldSeparator.US);
+                int subStart = us + 1;
+                int subStop = next < 0 ? stop : next;
+                int codeLength = subfieldIdLength - 1;
+                LazyField subfield;
+                if (subfieldIdLength > 1 && subStop - subStart > codeLength) {
+                    subfield = new LazyField(designator.tag(), position, length, b, subStart + codeLength, subStop);
+                    subfield.subfieldId(ascii(b, subStart, codeLength));
+                } else {
+                    subfield = new LazyField(designator.tag(), position, length, b, subStart, subStop);
+                    subfield.subfieldId("a");
+                }
+                subfield.indicator(designator.indicator());
+                listener.beginSubField(subfield);
+                listener.endSubField(subfield);
+                us = next;
+            }
+            listener.endDataField(designator);
+        }
+    }
+
+    /**
+     * Fallback for records without directory, e.g. "Aleph MAB" exports.
+     */
+    private void parseSeparated(RecordLabel label, byte[] b, int offset, int end, MarcXchangeListener listener) {
+        Field designator = null;
+        boolean datafieldOpen = false;
+        int start = offset + RecordLabel.LENGTH;
+        byte mark = 0;
+        while (start <= end) {
+            int stop = start;
+            while (stop < end && b[stop] != FieldSeparator.RS && b[stop] != FieldSeparator.US) {
+                stop++;
+            }
+            String content = new String(b, start, stop - start, charset);
+            if (mark == 0 || mark == FieldSeparator.RS) {
+                if (datafieldOpen) {
+                    listener.endDataField(designator);
+                    datafieldOpen = false;
+                }
+                if (!content.isEmpty()) {
+                    designator = new Field(format, label, content);
+                    if (designator.tag() != null && !Field.ERROR_TAG.equals(designator.tag())) {
+                        if (cleanTags) {
+                            cleanTag(designator);
+                        }
+                        if (designator.isControlField()) {
+                            listener.beginControlField(designator);
+                            listener.endControlField(designator);
+                        } else {
+                            listener.beginDataField(designator);
+                            datafieldOpen = true;
+                        }
+                    }
+                }
+            } else if (designator != null) {
+                if (!datafieldOpen) {
+                    listener.beginDataField(designator);
+                    datafieldOpen = true;
+                }
+                Field subfield = new Field(label, designator, content, true);
+                if (subfield.subfieldId() == null) {
+                    subfield.subfieldId("a");
+                }
+                if (scrub) {
+                    subfield.data(XMLUtil.sanitizeXml10(subfield.data()));
+                }
+                listener.beginSubField(subfield);
+                listener.endSubField(subfield);
+            }
+            if (stop >= end) {
+                break;
+            }
+            mark = b[stop];
+            start = stop + 1;
+        }
+        if (datafieldOpen) {
+            listener.endDataField(designator);
+        }
+    }
+
+    private void cleanTag(Field field, byte[] b, int p) {
+        if (!isValidTag(b[p], b[p + 1], b[p + 2])) {
+            invalidTag(field);
+        }
+    }
+
+    private void cleanTag(Field field) {
+        String tag = field.tag();
+        if (tag.length() != 3 || !isValidTag(tag.charAt(0), tag.charAt(1), tag.charAt(2))) {
+            invalidTag(field);
+        }
+    }
+
+    private void invalidTag(Field field) {
+        if (fieldEventListener != null) {
+            fieldEventListener.receive(FieldEvent.TAG_CLEANED.setField(field));
+        }
+        field.tag(Field.ERROR_TAG);
+    }
+
+    /**
+     * Same check as {@link MarcXchangeConstants#TAG_PATTERN}: three alphanumeric characters, but not "000".
+     */
+    private static boolean isValidTag(int c0, int c1, int c2) {
+        return isAlphanumeric(c0) && isAlphanumeric(c1) && isAlphanumeric(c2)
+                && !(c0 == '0' && c1 == '0' && c2 == '0');
+    }
+
+    private static boolean isAlphanumeric(int c) {
+        return (c >= '0' && c <= '9') || (c >= 'A' && c <= 'Z') || (c >= 'a' && c <= 'z');
+    }
+
+    private String tag(byte[] b, int p) {
+        int key = ((b[p] & 0xff) << 16) | ((b[p + 1] & 0xff) << 8) | (b[p + 2] & 0xff);
+        String tag = tags.get(key);
+        if (tag == null) {
+            tag = new String(new char[]{(char) (b[p] & 0xff), (char) (b[p + 1] & 0xff), (char) (b[p + 2] & 0xff)});
+            tags.put(key, tag);
+        }
+        return tag;
+    }
+
+    private String ascii(byte[] b, int offset, int length) {
+        if (length <= 0) {
+            return "";
+        }
+        if (length == 1 && b[offset] >= 0) {
+            return ASCII[b[offset]];
+        }
+        return new String(b, offset, length, charset);
+    }
+
+    private static int digits(byte[] b, int offset, int length) {
+        int n = 0;
+        for (int i = offset; i < offset + length; i++) {
+            int d = b[i] - '0';
+            if (d < 0 || d > 9) {
+                return -1;
+            }
+            n = n * 10 + d;
+        }
+        return n;
+    }
+
+    private static int indexOf(byte[] b, int from, int to, byte value) {
+        for (int i = from; i < to; i++) {
+            if (b[i] == value) {
+                return i;
+            }
+        }
+        return -1;
+    }
+
+    /**
+     * Insertion sort of directory triples by field start. Directories are nearly always
+     * in order, so this is cheap.
+     */
+    private static void sort(int[] entries, int n) {
+        for (int i = 1; i < n; i++) {
+            int t0 = entries[i * 3];
+            int t1 = entries[i * 3 + 1];
+            int t2 = entries[i * 3 + 2];
+            int j = i - 1;
+            while (j >= 0 && entries[j * 3 + 1] > t1) {
+                entries[(j + 1) * 3] = entries[j * 3];
+                entries[(j + 1) * 3 + 1] = entries[j * 3 + 1];
+                entries[(j + 1) * 3 + 2] = entries[j * 3 + 2];
+                j--;
+            }
+            entries[(j + 1) * 3] = t0;
+            entries[(j + 1) * 3 + 1] = t1;
+            entries[(j + 1) * 3 + 2] = t2;
+        }
+    }
+
+    /**
+     * A field that decodes its data from the record bytes on first access.
+     */
+    private class LazyField extends Field {
+
+        private final byte[] b;
+
+        private final int offset;
+
+        private final int length;
+
+        private boolean decoded;
+
+        LazyField(String tag, int position, int fieldLength, byte[] b, int start, int stop) {
+            super(tag, position, fieldLength);
+            this.b = b;
+            this.offset = start;
+            this.length = Math.max(0, stop - start);
+        }
+
+        @Override
+        public Field data(String data) {
+            this.decoded = true;
+            return super.data(data);
+        }
+
+        @Override
+        public Field clear() {
+            this.decoded = true;
+            return super.clear();
+        }
+
+        @Override
+        public String data() {
+            if (!decoded) {
+                decoded = true;
+                String s = length == 0 ? "" : new String(b, offset, length, charset);
+                if (scrub && isSubField()) {
+                    s = XMLUtil.sanitizeXml10(s);
+                }
+                super.data(s);
+            }
+            return super.data();
+        }
+    }
+}
@@ -0,0 +1,210 @@
+/*
+ * Licensed to Jörg Prante and xbib under one or more contributor
+ * license agreements. See the NOTICE.txt file distributed with this work
+ * for additional information regarding copyright ownership.
+ *
+ * Copyright (C) 2012 Jörg Prante and xbib
+ *
+ * This program is free software; you can redistribute it and/or modify
+ * it under the terms of the GNU Affero General Public License as published
+ * by the Free Software Foundation; either version 3 of the License, or
+ * (at your option) any later version.
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the
+ * GNU Affero General Public License for more details.
+ *
+ * You should have received a copy of the GNU Affero General Public License
+ * along with this program; if not, see http://www.gnu.org/licenses
+ * or write to the Free Software Foundation, Inc., 51 Franklin Street,
+ * Fifth Floor, Boston, MA 02110-1301 USA.
+ *
+ * The interactive user interfaces in modified source and object code
+ * versions of this program must display Appropriate Legal Notices,
+ * as required under Section 5 of the GNU Affero General Public License.
+ *
+ * In accordance with Section 7(b) of the GNU Affero General Public
+ * License, these Appropriate Legal Notices must retain the display of the
+ * "Powered by xbib" logo. If the display of the logo is not reasonably
+ * feasible for technical reasons, the Appropriate Legal Notices must display
+ * the words "Powered by xbib".
+ */
+package org.xbib.marc;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+
+/**
+ * A MarcXchange listener that buffers events, for replaying them later to another listener,
+ * maybe on another thread. Field data is resolved while buffering, so decoding takes place
+ * on the thread that fills the buffer.
+ */
+public class MarcXchangeEventBuffer implements MarcXchangeListener {
+
+    private final static byte BEGIN_COLLECTION = 0;
+    private final static byte END_COLLECTION = 1;
+    private final static byte BEGIN_RECORD = 2;
+    private final static byte END_RECORD = 3;
+    private final static byte LEADER = 4;
+    private final static byte BEGIN_CONTROLFIELD = 5;
+    private final static byte END_CONTROLFIELD = 6;
+    private final static byte BEGIN_DATAFIELD = 7;
+    private final static byte END_DATAFIELD = 8;
+    private final static byte BEGIN_SUBFIELD = 9;
+    private final static byte END_SUBFIELD = 10;
+
+    private final List<Object> args = new ArrayList<Object>();
+
+    private byte[] events = new byte[1024];
+
+    private int size;
+
+    private int records;
+
+    /**
+     * The number of buffered records.
+     * @return the number of records
+     */
+    public int getRecords() {
+        return records;
+    }
+
+    /**
+     * The number of buffered events.
+     * @return the number of events
+     */
+    public int size() {
+        return size;
+    }
+
+    public void clear() {
+        args.clear();
+        size = 0;
+        records = 0;
+    }
+
+    /**
+     * Replay the buffered events to a listener.
+     * @param listener the listener
+     */
+    public void replay(MarcXchangeListener listener) {
+        int arg = 0;
+        for (int i = 0; i < size; i++) {
+            switch (events[i]) {
+                case BEGIN_COLLECTION:
+                    listener.beginCollection();
+                    break;
+                case END_COLLECTION:
+                    listener.endCollection();
+                    break;
+                case BEGIN_RECORD:
+                    listener.beginRecord((String) args.get(arg++), (String) args.get(arg++));
+                    break;
+                case END_RECORD:
+                    listener.endRecord();
+                    break;
+                case LEADER:
+                    listener.leader((String) args.get(arg++));
+                    break;
+                case BEGIN_CONTROLFIELD:
+                    listener.beginControlField((Field) args.get(arg++));
+                    break;
+                case END_CONTROLFIELD:
+                    listener.endControlField((Field) args.get(arg++));
+                    break;
+                case BEGIN_DATAFIELD:
+                    listener.beginDataField((Field) args.get(arg++));
+                    break;
+                case END_DATAFIELD:
+                    listener.endDataField((Field) args.get(arg++));
+                    break;
+                case BEGIN_SUBFIELD:
+                    listener.beginSubField((Field) args.get(arg++));
+                    break;
+                case END_SUBFIELD:
+                    listener.endSubField((Field) args.get(arg++));
+                    break;
+            }
+        }
+    }
+
+    @Override
+    public void beginCollection() {
+        add(BEGIN_COLLECTION);
+    }
+
+    @Override
+    public void endCollection() {
+        add(END_COLLECTION);
+    }
+
+    @Override
+    public void beginRecord(String format, String type) {
+        add(BEGIN_RECORD);
+        args.add(format);
+        args.add(type);
+        records++;
+    }
+
+    @Override
+    public void endRecord() {
+        add(END_RECORD);
+    }
+
+    @Override
+    public void leader(String label) {
+        add(LEADER);
+        args.add(label);
+    }
+
+    @Override
+    public void beginControlField(Field field) {
+        add(BEGIN_CONTROLFIELD);
+        args.add(resolve(field));
+    }
+
+    @Override
+    public void endControlField(Field field) {
+        add(END_CONTROLFIELD);
+        args.add(resolve(field));
+    }
+
+    @Override
+    public void beginDataField(Field field) {
+        add(BEGIN_DATAFIELD);
+        args.add(resolve(field));
+    }
+
+    @Override
+    public void endDataField(Field field) {
+        add(END_DATAFIELD);
+        args.add(resolve(field));
+    }
+
+    @Override
+    public void beginSubField(Field field) {
+        add(BEGIN_SUBFIELD);
+        args.add(resolve(field));
+    }
+
+    @Override
+    public void endSubField(Field field) {
+        add(END_SUBFIELD);
+        args.add(resolve(field));
+    }
+
+    private void add(byte event) {
+        if (size == events.length) {
+            events = Arrays.copyOf(events, size * 2);
+        }
+        events[size++] = event;
+    }
+
+    private static Field resolve(Field field) {
+        if (field != null) {
+            field.data();
+        }
+        return field;
+    }
+}
@@ -0,0 +1,82 @@
+package bench;
+
+import com.carrotsearch.junitbenchmarks.AbstractBenchmark;
+import com.carrotsearch.junitbenchmarks.BenchmarkOptions;
+import org.junit.Test;
+import org.xbib.marc.Field;
+import org.xbib.marc.Iso2709ByteReader;
+import org.xbib.marc.Iso2709MappedReader;
+import org.xbib.marc.Iso2709Reader;
+import org.xbib.marc.MarcXchangeListenerAdapter;
+import org.xbib.marc.dialects.mab.MABTest;
+
+import java.io.InputStream;
+import java.io.InputStreamReader;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+
+import static org.junit.Assert.assertEquals;
+
+/**
+ * Compares the character stream path with the byte level path on the ZDB MAB dump.
+ */
+public class Iso2709ReaderBenchTest extends AbstractBenchmark {
+
+    private final static String RESOURCE = "1217zdbtit.dat";
+
+    @BenchmarkOptions(benchmarkRounds = 5, warmupRounds = 2)
+    @Test
+    public void testCharReader() throws Exception {
+        InputStream in = MABTest.class.getResource(RESOURCE).openStream();
+        Iso2709Reader reader = new Iso2709Reader(new InputStreamReader(in, "x-MAB"));
+        reader.setFormat("MAB");
+        reader.setType("Titel");
+        CountingListener listener = new CountingListener();
+        reader.setMarcXchangeListener("Titel", listener);
+        reader.parse();
+    }
+
+    @BenchmarkOptions(benchmarkRounds = 5, warmupRounds = 2)
+    @Test
+    public void testByteReader() throws Exception {
+        InputStream in = MABTest.class.getResource(RESOURCE).openStream();
+        Iso2709ByteReader reader = new Iso2709ByteReader(in, "x-MAB");
+        reader.setFormat("MAB");
+        reader.setType("Titel");
+        CountingListener listener = new CountingListener();
+        reader.setMarcXchangeListener("Titel", listener);
+        reader.parse();
+        assertEquals(4338, listener.records);
+    }
+
+    @BenchmarkOptions(benchmarkRounds = 5, warmupRounds = 2)
+    @Test
+    public void testMappedReader() throws Exception {
+        Path path = Paths.get(MABTest.class.getResource(RESOURCE).toURI());
+        Iso2709MappedReader reader = new Iso2709MappedReader(path, "x-MAB").setSliceSize(256 * 1024);
+        reader.setFormat("MAB");
+        reader.setType("Titel");
+        CountingListener listener = new CountingListener();
+        reader.setMarcXchangeListener("Titel", listener);
+        reader.parse();
+        assertEquals(4338, listener.records);
+    }
+
+    class CountingListener extends MarcXchangeListenerAdapter {
+
+        int records;
+
+        long length;
+
+        @Override
+        public void beginRecord(String format, String type) {
+            records++;
+        }
+
+        @Override
+        public void endSubField(Field field) {
+            // ask for the data, as most listeners do
+            length += field.data().length();
+        }
+    }
+}
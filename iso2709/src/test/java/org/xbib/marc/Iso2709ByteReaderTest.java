@@ -0,0 +1,204 @@
+/*
+ * Licensed to Jörg Prante and xbib under one or more contributor 
+ * license agreements. See the NOTICE.txt file distributed with this work
+ * for additional information regarding copyright ownership.
+ *
+ * Copyright (C) 2012 Jörg Prante and xbib
+ * 
+ * This program is free software; you can redistribute it and/or modify 
+ * it under the terms of the GNU Affero General Public License as published 
+ * by the Free Software Foundation; either version 3 of the License, or 
+ * (at your option) any later version.
+ * This program is distributed in the hope that it will be useful, 
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of 
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the 
+ * GNU Affero General Public License for more details.
+ *
+ * You should have received a copy of the GNU Affero General Public License 
+ * along with this program; if not, see http://www.gnu.org/licenses 
+ * or write to the Free Software Foundation, Inc., 51 Franklin Street, 
+ * Fifth Floor, Boston, MA 02110-1301 USA.
+ * 
+ * The interactive user interfaces in modified source and object code 
+ * versions of this program must display Appropriate Legal Notices, 
+ * as required under Section 5 of the GNU Affero General Public License.
+ * 
+ * In accordance with Section 7(b) of the GNU Affero General Public 
+ * License, these Appropriate Legal Notices must retain the display of the 
+ * "Powered by xbib" logo. If the display of the logo is not reasonably 
+ * feasible for technical reasons, the Appropriate Legal Notices must display
+ * the words "Powered by xbib".
+ */
+package org.xbib.marc;
+
+import org.testng.annotations.Test;
+import org.xbib.helper.StreamTester;
+import org.xbib.marc.dialects.mab.MABTest;
+import org.xbib.marc.xml.stream.MarcXchangeWriter;
+
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStreamWriter;
+import java.io.Writer;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static org.testng.Assert.assertEquals;
+import static org.testng.Assert.assertNull;
+import static org.testng.Assert.assertTrue;
+
+public class Iso2709ByteReaderTest extends StreamTester {
+
+    @Test
+    public void testProperMarc() throws IOException {
+        for (String s : new String[]{
+                "brkrtest.mrc",
+                "makrtest.mrc",
+                "chabon-loc.mrc",
+                "chabon.mrc",
+                "diacritic4.mrc",
+                "summerland.mrc",
+                "amstransactions.mrc"
+        }) {
+            InputStream in = getClass().getResource(s).openStream();
+            File file = File.createTempFile(s + ".", ".xml");
+            FileOutputStream out = new FileOutputStream(file);
+            Iso2709ByteReader reader = new Iso2709ByteReader(in, "ANSEL");
+            reader.setFormat(MarcXchangeConstants.MARC21);
+            MarcXchangeWriter writer = new MarcXchangeWriter(out);
+            reader.setMarcXchangeListener(writer);
+            writer.startDocument();
+            writer.beginCollection();
+            reader.parse();
+            writer.endCollection();
+            writer.endDocument();
+            assertNull(writer.getException());
+            out.close();
+            assertStream(getClass().getResource(s + ".xml").openStream(),
+                    new FileInputStream(file));
+        }
+    }
+
+    /**
+     * The directory positions count octets. In UTF-8 records, the character reader loses track of them
+     * after the first multibyte character, but the byte reader does not.
+     *
+     * @throws IOException if test fails
+     */
+    @Test
+    public void testZDBLok() throws IOException {
+        InputStream in = getClass().getResource("zdblokutf8.mrc").openStream();
+        final AtomicInteger records = new AtomicInteger();
+        final List<String> tags = new ArrayList<String>();
+        Iso2709ByteReader reader = new Iso2709ByteReader(in, "UTF-8");
+        reader.setFormat(MarcXchangeConstants.MARC21);
+        reader.setMarcXchangeListener(new MarcXchangeListenerAdapter() {
+            @Override
+            public void beginRecord(String format, String type) {
+                records.incrementAndGet();
+            }
+
+            @Override
+            public void endSubField(Field field) {
+                if ("1.1\\x".equals(field.data())) {
+                    tags.add(field.tag());
+                }
+            }
+        });
+        reader.parse();
+        assertEquals(records.get(), 293);
+        assertTrue(tags.contains("859"));
+    }
+
+    @Test
+    public void testZDBMAB() throws IOException {
+        InputStream in = MABTest.class.getResource("1217zdbtit.dat").openStream();
+        File file = File.createTempFile("zdb.", ".xml");
+        FileOutputStream out = new FileOutputStream(file);
+        try (Writer w = new OutputStreamWriter(out, "UTF-8")) {
+            Iso2709ByteReader reader = new Iso2709ByteReader(in, "x-MAB");
+            reader.setFormat("MAB");
+            reader.setType("Titel");
+            MarcXchangeWriter writer = new MarcXchangeWriter(w);
+            reader.setMarcXchangeListener(writer);
+            writer.startDocument();
+            writer.beginCollection();
+            reader.parse();
+            writer.endCollection();
+            writer.endDocument();
+        }
+        assertStream(MABTest.class.getResource("1217zdbtit.dat-out.xml").openStream(),
+                new FileInputStream(file));
+    }
+
+    /**
+     * The byte reader decodes the field data on first access, the character reader decodes it
+     * right away. The fields must not differ in printing, sorting and clearing.
+     *
+     * @throws IOException if test fails
+     */
+    @Test
+    public void testLazyFields() throws IOException {
+        FieldCollector lazy = new FieldCollector();
+        Iso2709ByteReader byteReader = new Iso2709ByteReader(getClass().getResource("summerland.mrc").openStream(), "ANSEL");
+        byteReader.setFormat(MarcXchangeConstants.MARC21);
+        byteReader.setMarcXchangeListener(lazy);
+        byteReader.parse();
+        FieldCollector eager = new FieldCollector();
+        Iso2709Reader reader = new Iso2709Reader(getClass().getResource("summerland.mrc").openStream(), "ANSEL");
+        reader.setFormat(MarcXchangeConstants.MARC21);
+        reader.setMarcXchangeListener(eager);
+        reader.parse();
+        assertTrue(lazy.fields.size() > 10);
+        assertEquals(lazy.strings(), eager.strings());
+        assertEquals(lazy.sortables(), eager.sortables());
+        for (Field field : lazy.fields) {
+            field.clear();
+            assertNull(field.data(), field.toString());
+        }
+        for (Field field : eager.fields) {
+            field.clear();
+        }
+        assertEquals(lazy.strings(), eager.strings());
+    }
+
+    private static class FieldCollector extends MarcXchangeListenerAdapter {
+
+        final List<Field> fields = new ArrayList<Field>();
+
+        @Override
+        public void beginControlField(Field field) {
+            fields.add(field);
+        }
+
+        @Override
+        public void beginDataField(Field field) {
+            fields.add(field);
+        }
+
+        @Override
+        public void beginSubField(Field field) {
+            fields.add(field);
+        }
+
+        List<String> strings() {
+            List<String> list = new ArrayList<String>();
+            for (Field field : fields) {
+                list.add(field.toString());
+            }
+            return list;
+        }
+
+        List<String> sortables() {
+            List<String> list = new ArrayList<String>();
+            for (Field field : fields) {
+                list.add(field.dataSortable());
+            }
+            return list;
+        }
+    }
+}
@@ -0,0 +1,160 @@
+/*
+ * Licensed to Jörg Prante and xbib under one or more contributor 
+ * license agreements. See the NOTICE.txt file distributed with this work
+ * for additional information regarding copyright ownership.
+ *
+ * Copyright (C) 2012 Jörg Prante and xbib
+ * 
+ * This program is free software; you can redistribute it and/or modify 
+ * it under the terms of the GNU Affero General Public License as published 
+ * by the Free Software Foundation; either version 3 of the License, or 
+ * (at your option) any later version.
+ * This program is distributed in the hope that it will be useful, 
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of 
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the 
+ * GNU Affero General Public License for more details.
+ *
+ * You should have received a copy of the GNU Affero General Public License 
+ * along with this program; if not, see http://www.gnu.org/licenses 
+ * or write to the Free Software Foundation, Inc., 51 Franklin Street, 
+ * Fifth Floor, Boston, MA 02110-1301 USA.
+ * 
+ * The interactive user interfaces in modified source and object code 
+ * versions of this program must display Appropriate Legal Notices, 
+ * as required under Section 5 of the GNU Affero General Public License.
+ * 
+ * In accordance with Section 7(b) of the GNU Affero General Public 
+ * License, these Appropriate Legal Notices must retain the display of the 
+ * "Powered by xbib" logo. If the display of the logo is not reasonably 
+ * feasible for technical reasons, the Appropriate Legal Notices must display
+ * the words "Powered by xbib".
+ */
+package org.xbib.marc;
+
+import org.testng.annotations.Test;
+import org.xbib.helper.StreamTester;
+import org.xbib.marc.xml.stream.MarcXchangeWriter;
+
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileOutputStream;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.util.HashSet;
+import java.util.Set;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+
+import static org.testng.Assert.assertEquals;
+import static org.testng.Assert.assertNull;
+import static org.testng.Assert.assertTrue;
+
+public class Iso2709MappedReaderTest extends StreamTester {
+
+    @Test
+    public void testOrdered() throws Exception {
+        for (String s : new String[]{
+                "brkrtest.mrc",
+                "makrtest.mrc",
+                "chabon-loc.mrc"
+        }) {
+            Path path = Paths.get(getClass().getResource(s).toURI());
+            File file = File.createTempFile(s + ".", ".xml");
+            FileOutputStream out = new FileOutputStream(file);
+            Iso2709MappedReader reader = new Iso2709MappedReader(path, "ANSEL")
+                    .setThreads(4)
+                    .setSliceSize(1024);
+            reader.setFormat(MarcXchangeConstants.MARC21);
+            MarcXchangeWriter writer = new MarcXchangeWriter(out);
+            reader.setMarcXchangeListener(writer);
+            writer.startDocument();
+            writer.beginCollection();
+            reader.parse();
+            writer.endCollection();
+            writer.endDocument();
+            assertNull(writer.getException());
+            out.close();
+            assertStream(getClass().getResource(s + ".xml").openStream(),
+                    new FileInputStream(file));
+        }
+    }
+
+    @Test
+    public void testUnordered() throws Exception {
+        Path path = Paths.get(getClass().getResource("zdblokutf8.mrc").toURI());
+        final Set<String> ids = new HashSet<String>();
+        Iso2709MappedReader reader = new Iso2709MappedReader(path, "UTF-8")
+                .setThreads(4)
+                .setSliceSize(4096)
+                .setOrdered(false);
+        reader.setFormat(MarcXchangeConstants.MARC21);
+        reader.setMarcXchangeListener(new MarcXchangeListenerAdapter() {
+            @Override
+            public void endControlField(Field field) {
+                if ("001".equals(field.tag())) {
+                    ids.add(field.data());
+                }
+            }
+        });
+        reader.parse();
+        assertEquals(ids.size(), 293);
+    }
+
+    @Test
+    public void testOrderedQueueRetainsNothing() throws Exception {
+        ExecutorService executorService = Executors.newFixedThreadPool(4);
+        try {
+            Iso2709MappedReader.SliceQueue<Integer> queue =
+                    new Iso2709MappedReader.SliceQueue<Integer>(executorService, true);
+            int next = 0;
+            for (int i = 0; i < 1000; i++) {
+                queue.submit(constant(i));
+                if (queue.size() >= 8) {
+                    assertEquals(queue.take().intValue(), next++);
+                }
+                assertEquals(queue.completed(), 0);
+            }
+            while (queue.size() > 0) {
+                assertEquals(queue.take().intValue(), next++);
+            }
+            assertEquals(next, 1000);
+            assertEquals(queue.completed(), 0);
+        } finally {
+            executorService.shutdownNow();
+        }
+    }
+
+    @Test
+    public void testUnorderedQueueIsDrained() throws Exception {
+        ExecutorService executorService = Executors.newFixedThreadPool(4);
+        try {
+            Iso2709MappedReader.SliceQueue<Integer> queue =
+                    new Iso2709MappedReader.SliceQueue<Integer>(executorService, false);
+            Set<Integer> taken = new HashSet<Integer>();
+            for (int i = 0; i < 1000; i++) {
+                queue.submit(constant(i));
+                if (queue.size() >= 8) {
+                    taken.add(queue.take());
+                }
+                assertTrue(queue.completed() <= queue.size());
+            }
+            while (queue.size() > 0) {
+                taken.add(queue.take());
+            }
+            assertEquals(taken.size(), 1000);
+            assertEquals(queue.completed(), 0);
+        } finally {
+            executorService.shutdownNow();
+        }
+    }
+
+    private static Callable<Integer> constant(final int i) {
+        return new Callable<Integer>() {
+            @Override
+            public Integer call() {
+                return i;
+            }
+        };
+    }
+}
@@ -0,0 +1,362 @@
+/*
+ * Licensed to Jörg Prante and xbib under one or more contributor 
+ * license agreements. See the NOTICE.txt file distributed with this work
+ * for additional information regarding copyright ownership.
+ *
+ * Copyright (C) 2012 Jörg Prante and xbib
+ * 
+ * This program is free software; you can redistribute it and/or modify 
+ * it under the terms of the GNU Affero General Public License as published 
+ * by the Free Software Foundation; either version 3 of the License, or 
+ * (at your option) any later version.
+ * This program is distributed in the hope that it will be useful, 
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of 
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the 
+ * GNU Affero General Public License for more details.
+ *
+ * You should have received a copy of the GNU Affero General Public License 
+ * along with this program; if not, see http://www.gnu.org/licenses 
+ * or write to the Free Software Foundation, Inc., 51 Franklin Street, 
+ * Fifth Floor, Boston, MA 02110-1301 USA.
+ * 
+ * The interactive user interfaces in modified source and object code 
+ * versions of this program must display Appropriate Legal Notices, 
+ * as required under Section 5 of the GNU Affero General Public License.
+ * 
+ * In accordance with Section 7(b) of the GNU Affero General Public 
+ * License, these Appropriate Legal Notices must retain the display of the 
+ * "Powered by xbib" logo. If the display of the logo is not reasonably 
+ * feasible for technical reasons, the Appropriate Legal Notices must display
+ * the words "Powered by xbib".
+ */
+package org.xbib.oai.client.listrecords;
+
+import org.apache.logging.log4j.LogManager;
+import org.apache.logging.log4j.Logger;
+import org.xbib.io.Request;
+import org.xbib.io.http.HttpFuture;
+import org.xbib.io.http.HttpResponse;
+import org.xbib.oai.OAIDateResolution;
+import org.xbib.oai.client.OAIClient;
+import org.xbib.oai.exceptions.NoRecordsMatchException;
+import org.xbib.oai.util.ResumptionToken;
+import org.xbib.oai.xml.MetadataHandler;
+
+import java.io.IOException;
+import java.io.Writer;
+import java.util.Date;
+import java.util.List;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+
+import static com.google.common.collect.Lists.newLinkedList;
+
+/**
+ * Pipelined ListRecords harvesting.
+ *
+ * Each resumption chain runs in a thread of its own. The next page is requested as soon as
+ * the resumption token of the current page has been received, while the current page is
+ * still being parsed. The time range from/until can be split into date windows which are
+ * harvested in parallel, each with its own resumption chain.
+ *
+ * All pages are handed over to the thread calling {@link #harvest(Writer)} in a bounded queue,
+ * and only this thread runs the metadata handlers. So handlers need not be thread safe, and
+ * a slow handler, for example one writing to an archive, holds back the chains instead of
+ * being overrun.
+ */
+public class ListRecordsHarvester {
+
+    private final static Logger logger = LogManager.getLogger(ListRecordsHarvester.class.getName());
+
+    private final OAIClient client;
+
+    private final List<MetadataHandler> handlers = newLinkedList();
+
+    private String metadataPrefix;
+
+    private String set;
+
+    private Date from;
+
+    private Date until;
+
+    private OAIDateResolution resolution = OAIDateResolution.DAY;
+
+    private int windows = 1;
+
+    private int queueSize = 4;
+
+    private boolean scrubCharacters;
+
+    public ListRecordsHarvester(OAIClient client) {
+        this.client = client;
+    }
+
+    public ListRecordsHarvester setMetadataPrefix(String metadataPrefix) {
+        this.metadataPrefix = metadataPrefix;
+        return this;
+    }
+
+    public ListRecordsHarvester setSet(String set) {
+        this.set = set;
+        return this;
+    }
+
+    public ListRecordsHarvester setFrom(Date from, OAIDateResolution resolution) {
+        this.from = from;
+        this.resolution = resolution;
+        return this;
+    }
+
+    public ListRecordsHarvester setUntil(Date until, OAIDateResolution resolution) {
+        this.until = until;
+        this.resolution = resolution;
+        return this;
+    }
+
+    /**
+     * The number of date windows harvested in parallel. The time range is only split if
+     * from and until are given. Each window may use two connections of the client.
+     */
+    public ListRecordsHarvester setWindows(int windows) {
+        this.windows = Math.max(1, windows);
+        return this;
+    }
+
+    /**
+     * The number of received pages waiting for the metadata handlers. If the queue is full,
+     * the chains stop requesting pages.
+     */
+    public ListRecordsHarvester setQueueSize(int queueSize) {
+        this.queueSize = Math.max(1, queueSize);
+        return this;
+    }
+
+    public ListRecordsHarvester setScrubCharacters(boolean scrubCharacters) {
+        this.scrubCharacters = scrubCharacters;
+        return this;
+    }
+
+    public ListRecordsHarvester addHandler(MetadataHandler handler) {
+        handlers.add(handler);
+        return this;
+    }
+
+    /**
+     * Harvests all windows and parses the pages in the current thread.
+     *
+     * @param writer the writer for the transformed responses
+     * @return the number of pages
+     * @throws IOException if a request or a response failed
+     */
+    public int harvest(Writer writer) throws IOException {
+        List<ListRecordsRequest> requests = newRequests();
+        BlockingQueue<Page> pages = new ArrayBlockingQueue<Page>(queueSize);
+        ExecutorService executor = Executors.newFixedThreadPool(requests.size());
+        for (ListRecordsRequest request : requests) {
+            executor.execute(new Chain(request, pages));
+        }
+        executor.shutdown();
+        int running = requests.size();
+        int count = 0;
+        IOException failure = null;
+        try {
+            while (running > 0) {
+                Page page = pages.take();
+                if (page.listener == null) {
+                    running--;
+                    if (page.failure != null && failure == null) {
+                        failure = page.failure instanceof IOException ?
+                                (IOException) page.failure : new IOException(page.failure);
+                        executor.shutdownNow();
+                    }
+                    continue;
+                }
+                if (failure != null) {
+                    // drain the queue until all chains have stopped
+                    continue;
+                }
+                try {
+                    page.future.waitFor();
+                    page.listener.getResponse().to(writer);
+                    count++;
+                } catch (NoRecordsMatchException e) {
+                    logger.info("no records in window: {}", e.getMessage());
+                } catch (ExecutionException e) {
+                    failure = new IOException(e.getCause());
+                    executor.shutdownNow();
+                } catch (Exception e) {
+                    failure = e instanceof IOException ? (IOException) e : new IOException(e);
+                    executor.shutdownNow();
+                }
+            }
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            executor.shutdownNow();
+            throw new IOException("interrupted");
+        }
+        if (failure != null) {
+            throw failure;
+        }
+        return count;
+    }
+
+    private List<ListRecordsRequest> newRequests() {
+        List<ListRecordsRequest> requests = newLinkedList();
+        if (from == null || until == null || windows == 1) {
+            requests.add(newRequest(from, until));
+            return requests;
+        }
+        long unit = resolution == OAIDateResolution.DAY ? 86400000L : 1000L;
+        long units = (until.getTime() - from.getTime()) / unit + 1;
+        int n = (int) Math.max(1, Math.min(windows, units));
+        for (int i = 0; i < n; i++) {
+            Date start = new Date(from.getTime() + (i * units / n) * unit);
+            Date end = i + 1 < n ? new Date(from.getTime() + ((i + 1) * units / n - 1) * unit) : until;
+            requests.add(newRequest(start, end));
+        }
+        return requests;
+    }
+
+    private ListRecordsRequest newRequest(Date from, Date until) {
+        ListRecordsRequest request = client.newListRecordsRequest()
+                .setMetadataPrefix(metadataPrefix)
+                .setSet(set);
+        if (from != null) {
+            request.setFrom(from, resolution);
+        }
+        if (until != null) {
+            request.setUntil(until, resolution);
+        }
+        for (MetadataHandler handler : handlers) {
+            request.addHandler(handler);
+        }
+        return request;
+    }
+
+    private static class Page {
+
+        final PageListener listener;
+
+        final HttpFuture future;
+
+        final Throwable failure;
+
+        Page(PageListener listener, HttpFuture future) {
+            this.listener = listener;
+            this.future = future;
+            this.failure = null;
+        }
+
+        Page(Throwable failure) {
+            this.listener = null;
+            this.future = null;
+            this.failure = failure;
+        }
+    }
+
+    /**
+     * Follows the resumption tokens of a request.
+     */
+    private class Chain implements Runnable {
+
+        private final ListRecordsRequest first;
+
+        private final BlockingQueue<Page> pages;
+
+        Chain(ListRecordsRequest first, BlockingQueue<Page> pages) {
+            this.first = first;
+            this.pages = pages;
+        }
+
+        @Override
+        public void run() {
+            Throwable failure = null;
+            try {
+                ListRecordsRequest request = first;
+                while (request != null) {
+                    PageListener listener = new PageListener(request);
+                    listener.setScrubCharacters(scrubCharacters);
+                    HttpFuture future = request.prepare().execute(listener);
+                    listener.awaitResumptionToken();
+                    if (request.isRetry()) {
+                        long expire = listener.getResponse().getExpire();
+                        logger.info("waiting for {} seconds (retry-after)", expire);
+                        Thread.sleep(1000L * expire);
+                        request.setRetry(false);
+                        continue;
+                    }
+                    pages.put(new Page(listener, future));
+                    ResumptionToken token = listener.getStreamedResumptionToken();
+                    request = token != null && token.getValue() != null ? resume(request, token) : null;
+                }
+            } catch (Throwable t) {
+                failure = t;
+            } finally {
+                boolean interrupted = Thread.interrupted();
+                try {
+                    pages.put(new Page(failure));
+                } catch (InterruptedException e) {
+                    interrupted = true;
+                }
+                if (interrupted) {
+                    Thread.currentThread().interrupt();
+                }
+            }
+        }
+
+        private ListRecordsRequest resume(ListRecordsRequest request, ResumptionToken token) {
+            request = client.resume(request, token);
+            for (MetadataHandler handler : handlers) {
+                request.addHandler(handler);
+            }
+            return request;
+        }
+    }
+
+    /**
+     * Signals when the resumption token has been received or the response is complete.
+     */
+    private static class PageListener extends ListRecordsListener {
+
+        private final CountDownLatch latch = new CountDownLatch(1);
+
+        PageListener(ListRecordsRequest request) {
+            super(request);
+        }
+
+        void awaitResumptionToken() throws InterruptedException {
+            latch.await();
+        }
+
+        @Override
+        public void onReceive(Request request, CharSequence message) throws IOException {
+            super.onReceive(request, message);
+            if (isResumptionTokenStreamed()) {
+                latch.countDown();
+            }
+        }
+
+        @Override
+        public void receivedResponse(HttpResponse result) throws IOException {
+            try {
+                super.receivedResponse(result);
+            } finally {
+                latch.countDown();
+            }
+        }
+
+        @Override
+        public void onError(Request request, CharSequence errorMessage) throws IOException {
+            try {
+                super.onError(request, errorMessage);
+            } finally {
+                latch.countDown();
+            }
+        }
+    }
+}
@@ -64,6 +64,12 @@ public class ListRecordsListener extends NettyHttpResponseListener
 
     private boolean scrubCharacters;
 
+    private int tokenSearchPosition;
+
+    private boolean tokenStreamed;
+
+    private ResumptionToken streamedToken;
+
     public ListRecordsListener(ListRecordsRequest request) {
         this.request = request;
         this.response = new ListRecordsResponse(request);
@@ -105,6 +111,8 @@ public class ListRecordsListener extends NettyHttpResponseListener
         }
     }
 
+    private final static String RESUMPTION_TOKEN = "resumptionToken";
+
     private final static String[] RETRY_AFTER = new String[] {
       "retry-after", "Retry-after", "Retry-After"
     };
@@ -121,22 +129,38 @@ public class ListRecordsListener extends NettyHttpResponseListener
             if (retryAfterValues.size() < 1) {
                 continue;
             }
-            String retryAfter = retryAfterValues.get(0);
-            if (isDigits(retryAfter)) {
-                // retry-after is given in seconds
-                response.setExpire(Long.parseLong(retryAfter));
+            long seconds = retryAfterSeconds(retryAfterValues.get(0), System.currentTimeMillis());
+            if (seconds >= 0L) {
+                response.setExpire(seconds);
                 request.setRetry(true);
-            } else {
-                Date d = DateUtil.parseDateRFC(retryAfter);
-                if (d != null) {
-                    response.setExpire(d.getTime() - new Date().getTime());
-                    request.setRetry(true);
-                }
             }
         }
     }
 
-    private boolean isDigits(String str) {
+    /**
+     * The delay of a Retry-After value, which is given in seconds or as an HTTP date.
+     *
+     * @param retryAfter the header value
+     * @param now the current time in milliseconds
+     * @return the delay in seconds, rounded up, or -1 if the value can not be parsed
+     */
+    static long retryAfterSeconds(String retryAfter, long now) {
+        if (retryAfter.length() > 0 && isDigits(retryAfter)) {
+            try {
+                return Long.parseLong(retryAfter);
+            } catch (NumberFormatException e) {
+                return -1L;
+            }
+        }
+        Date d = DateUtil.parseDateRFC(retryAfter);
+        if (d == null) {
+            return -1L;
+        }
+        long millis = d.getTime() - now;
+        return millis > 0L ? (millis + 999L) / 1000L : 0L;
+    }
+
+    private static boolean isDigits(String str) {
         for (int i = 0; i < str.length(); i++) {
             if (!Character.isDigit(str.charAt(i))) {
                 return false;
@@ -157,6 +181,9 @@ public class ListRecordsListener extends NettyHttpResponseListener
     @Override
     public void onReceive(Request request, CharSequence message) throws IOException {
         body.append(message);
+        if (!tokenStreamed) {
+            scanResumptionToken();
+        }
     }
 
     @Override
@@ -168,4 +195,75 @@ public class ListRecordsListener extends NettyHttpResponseListener
         return filterreader != null ? filterreader.getResumptionToken() : null;
     }
 
+    /**
+     * True if the resumption token element has been received, while the rest of the body
+     * may still be on its way and before the response is parsed.
+     */
+    public boolean isResumptionTokenStreamed() {
+        return tokenStreamed;
+    }
+
+    /**
+     * The resumption token found in the body received so far. The value of the token is null
+     * for the empty token of the last page.
+     *
+     * @return the token or null if no resumption token element has been received
+     */
+    public ResumptionToken getStreamedResumptionToken() {
+        return streamedToken;
+    }
+
+    /**
+     * Looks for a complete resumption token element in the body, starting where the last
+     * search ended. The request element may also carry a resumptionToken attribute,
+     * so only element names, with or without prefix, are accepted.
+     */
+    private void scanResumptionToken() {
+        while (true) {
+            int i = body.indexOf(RESUMPTION_TOKEN, tokenSearchPosition);
+            if (i < 0) {
+                tokenSearchPosition = Math.max(tokenSearchPosition, body.length() - RESUMPTION_TOKEN.length());
+                return;
+            }
+            int lt = body.lastIndexOf("<", i);
+            if (lt < 0 || !isElementName(lt + 1, i)) {
+                tokenSearchPosition = i + RESUMPTION_TOKEN.length();
+                continue;
+            }
+            int next = i + RESUMPTION_TOKEN.length();
+            if (next < body.length() && !Character.isWhitespace(body.charAt(next))
+                    && body.charAt(next) != '>' && body.charAt(next) != '/') {
+                tokenSearchPosition = next;
+                continue;
+            }
+            int gt = body.indexOf(">", next);
+            if (gt < 0) {
+                tokenSearchPosition = i;
+                return;
+            }
+            String value = null;
+            if (body.charAt(gt - 1) != '/') {
+                int end = body.indexOf("<", gt);
+                if (end < 0) {
+                    tokenSearchPosition = i;
+                    return;
+                }
+                value = XMLUtil.unescape(body.substring(gt + 1, end).trim());
+            }
+            streamedToken = ResumptionToken.newToken(value != null && !value.isEmpty() ? value : null);
+            tokenStreamed = true;
+            return;
+        }
+    }
+
+    private boolean isElementName(int from, int to) {
+        for (int i = from; i < to; i++) {
+            char c = body.charAt(i);
+            if (!Character.isLetterOrDigit(c) && c != ':' && c != '_' && c != '-' && c != '.') {
+                return false;
+            }
+        }
+        return from == to || body.charAt(to - 1) == ':';
+    }
+
 }
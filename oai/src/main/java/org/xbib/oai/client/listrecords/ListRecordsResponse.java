@@ -81,10 +81,19 @@ public class ListRecordsResponse extends ClientOAIResponse {
         return date;
     }
 
+    /**
+     * Set the time to wait before the request is retried.
+     *
+     * @param expire the time in seconds
+     */
     public void setExpire(long expire) {
         this.expire = expire;
     }
 
+    public long getExpire() {
+        return expire;
+    }
+
     public void setTransformer(StylesheetTransformer transformer) {
         this.transformer = transformer;
     }
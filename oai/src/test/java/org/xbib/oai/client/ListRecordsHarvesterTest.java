@@ -0,0 +1,252 @@
+/*
+ * Licensed to Jörg Prante and xbib under one or more contributor
+ * license agreements. See the NOTICE.txt file distributed with this work
+ * for additional information regarding copyright ownership.
+ *
+ * Copyright (C) 2012 Jörg Prante and xbib
+ *
+ * This program is free software; you can redistribute it and/or modify
+ * it under the terms of the GNU Affero General Public License as published
+ * by the Free Software Foundation; either version 3 of the License, or
+ * (at your option) any later version.
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the
+ * GNU Affero General Public License for more details.
+ *
+ * You should have received a copy of the GNU Affero General Public License
+ * along with this program; if not, see http://www.gnu.org/licenses
+ * or write to the Free Software Foundation, Inc., 51 Franklin Street,
+ * Fifth Floor, Boston, MA 02110-1301 USA.
+ *
+ * The interactive user interfaces in modified source and object code
+ * versions of this program must display Appropriate Legal Notices,
+ * as required under Section 5 of the GNU Affero General Public License.
+ *
+ * In accordance with Section 7(b) of the GNU Affero General Public
+ * License, these Appropriate Legal Notices must retain the display of the
+ * "Powered by xbib" logo. If the display of the logo is not reasonably
+ * feasible for technical reasons, the Appropriate Legal Notices must display
+ * the words "Powered by xbib".
+ */
+package org.xbib.oai.client;
+
+import com.sun.net.httpserver.HttpExchange;
+import com.sun.net.httpserver.HttpHandler;
+import com.sun.net.httpserver.HttpServer;
+import org.testng.Assert;
+import org.testng.annotations.AfterClass;
+import org.testng.annotations.BeforeClass;
+import org.testng.annotations.Test;
+import org.xbib.oai.OAIDateResolution;
+import org.xbib.oai.client.listrecords.ListRecordsHarvester;
+import org.xbib.oai.client.listrecords.ListRecordsListener;
+import org.xbib.oai.client.listrecords.ListRecordsRequest;
+import org.xbib.oai.xml.SimpleMetadataHandler;
+import org.xbib.util.DateUtil;
+import org.xml.sax.SAXException;
+
+import java.io.IOException;
+import java.io.OutputStream;
+import java.io.StringWriter;
+import java.net.InetSocketAddress;
+import java.net.URLDecoder;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+
+/**
+ * Pipelined harvesting against a local stub OAI server. The stub holds back the end of each
+ * page after the resumption token, like a slow server.
+ */
+public class ListRecordsHarvesterTest extends Assert {
+
+    private final static int DAYS = 10;
+
+    private final static int RECORDS_PER_DAY = 3;
+
+    private final static int PAGE_SIZE = 4;
+
+    private final static long DELAY = 100L;
+
+    private final List<String> events = Collections.synchronizedList(new ArrayList<String>());
+
+    private HttpServer server;
+
+    private ExecutorService executor;
+
+    private String url;
+
+    @BeforeClass
+    public void startServer() throws IOException {
+        server = HttpServer.create(new InetSocketAddress("localhost", 0), 0);
+        server.createContext("/oai", new StubHandler());
+        executor = Executors.newCachedThreadPool();
+        server.setExecutor(executor);
+        server.start();
+        url = "http://localhost:" + server.getAddress().getPort() + "/oai";
+    }
+
+    @AfterClass
+    public void stopServer() {
+        server.stop(0);
+        executor.shutdownNow();
+    }
+
+    @Test
+    public void testStreamedResumptionToken() throws IOException {
+        ListRecordsRequest request = OAIClientFactory.newClient(url).newListRecordsRequest();
+        ListRecordsListener listener = new ListRecordsListener(request);
+        listener.onReceive(null, "<OAI-PMH><request verb=\"ListRecords\" resumptionToken=\"old\">x</request>");
+        listener.onReceive(null, "<ListRecords><record/><oai:resump");
+        assertFalse(listener.isResumptionTokenStreamed());
+        listener.onReceive(null, "tionToken cursor=\"4\">abc&amp;");
+        assertFalse(listener.isResumptionTokenStreamed());
+        listener.onReceive(null, "def</oai:resumptionToken></ListRecords>");
+        assertTrue(listener.isResumptionTokenStreamed());
+        assertEquals(listener.getStreamedResumptionToken().getValue(), "abc&def");
+
+        listener = new ListRecordsListener(request);
+        listener.onReceive(null, "<ListRecords><record/><resumptionToken completeListSize=\"8\" cursor=\"4\"/>");
+        assertTrue(listener.isResumptionTokenStreamed());
+        assertNull(listener.getStreamedResumptionToken().getValue());
+    }
+
+    @Test
+    public void testPipeline() throws IOException {
+        events.clear();
+        IdentifierHandler handler = new IdentifierHandler();
+        OAIClient client = OAIClientFactory.newClient(url);
+        int pages = new ListRecordsHarvester(client)
+                .setMetadataPrefix("oai_dc")
+                .setFrom(DateUtil.parseDateISO("2014-01-01"), OAIDateResolution.DAY)
+                .setUntil(DateUtil.parseDateISO("2014-01-10"), OAIDateResolution.DAY)
+                .addHandler(handler)
+                .harvest(new StringWriter());
+        client.close();
+        assertEquals(pages, (DAYS * RECORDS_PER_DAY + PAGE_SIZE - 1) / PAGE_SIZE);
+        assertEquals(handler.identifiers.size(), DAYS * RECORDS_PER_DAY);
+        assertEquals(new HashSet<String>(handler.identifiers).size(), DAYS * RECORDS_PER_DAY);
+        // the second page was requested before the first page was complete
+        assertTrue(events.indexOf("request 4") < events.indexOf("done 0"), events.toString());
+    }
+
+    @Test
+    public void testDateWindows() throws IOException {
+        events.clear();
+        IdentifierHandler handler = new IdentifierHandler();
+        OAIClient client = OAIClientFactory.newClient(url);
+        new ListRecordsHarvester(client)
+                .setMetadataPrefix("oai_dc")
+                .setFrom(DateUtil.parseDateISO("2014-01-01"), OAIDateResolution.DAY)
+                .setUntil(DateUtil.parseDateISO("2014-01-20"), OAIDateResolution.DAY)
+                .setWindows(4)
+                .setQueueSize(2)
+                .addHandler(handler)
+                .harvest(new StringWriter());
+        client.close();
+        assertEquals(handler.identifiers.size(), DAYS * RECORDS_PER_DAY);
+        assertEquals(new HashSet<String>(handler.identifiers).size(), DAYS * RECORDS_PER_DAY);
+        assertTrue(events.contains("window 2014-01-01 2014-01-05"), events.toString());
+        assertTrue(events.contains("window 2014-01-16 2014-01-20"), events.toString());
+    }
+
+    /**
+     * Collects record identifiers, and checks that it is only called from the harvesting thread.
+     */
+    private static class IdentifierHandler extends SimpleMetadataHandler {
+
+        private final Thread thread = Thread.currentThread();
+
+        private final List<String> identifiers = new ArrayList<String>();
+
+        @Override
+        public void endDocument() throws SAXException {
+            assertSame(Thread.currentThread(), thread);
+            identifiers.add(getHeader().getIdentifier());
+        }
+    }
+
+    /**
+     * Serves records from 2014-01-01 to 2014-01-10, with tokens of the form from.until.offset.
+     */
+    private class StubHandler implements HttpHandler {
+
+        @Override
+        public void handle(HttpExchange exchange) throws IOException {
+            Map<String, String> params = new HashMap<String, String>();
+            String query = exchange.getRequestURI().getRawQuery();
+            for (String param : query.split("&")) {
+                String[] kv = param.split("=", 2);
+                params.put(kv[0], URLDecoder.decode(kv[1], "UTF-8"));
+            }
+            String from;
+            String until;
+            int offset;
+            if (params.containsKey("resumptionToken")) {
+                String[] token = params.get("resumptionToken").split("\\.");
+                from = token[0];
+                until = token[1];
+                offset = Integer.parseInt(token[2]);
+            } else {
+                from = params.get("from");
+                until = params.get("until");
+                offset = 0;
+                events.add("window " + from + " " + until);
+            }
+            events.add("request " + offset);
+            List<String> records = new ArrayList<String>();
+            for (int day = 1; day <= DAYS; day++) {
+                String date = String.format("2014-01-%02d", day);
+                if (date.compareTo(from) >= 0 && date.compareTo(until) <= 0) {
+                    for (int i = 0; i < RECORDS_PER_DAY; i++) {
+                        records.add(date + "-" + i);
+                    }
+                }
+            }
+            StringBuilder sb = new StringBuilder()
+                    .append("<?xml version=\"1.0\" encoding=\"UTF-8\"?>")
+                    .append("<OAI-PMH xmlns=\"http://www.openarchives.org/OAI/2.0/\">")
+                    .append("<responseDate>2014-02-01T00:00:00Z</responseDate>")
+                    .append("<request verb=\"ListRecords\">").append(url).append("</request>");
+            if (records.isEmpty()) {
+                sb.append("<error code=\"noRecordsMatch\">no records</error>");
+            } else {
+                sb.append("<ListRecords>");
+                for (int i = offset; i < Math.min(offset + PAGE_SIZE, records.size()); i++) {
+                    String id = records.get(i);
+                    sb.append("<record><header><identifier>oai:test:").append(id).append("</identifier>")
+                            .append("<datestamp>").append(id, 0, 10).append("</datestamp></header>")
+                            .append("<metadata><oai_dc:dc xmlns:oai_dc=\"http://www.openarchives.org/OAI/2.0/oai_dc/\"")
+                            .append(" xmlns:dc=\"http://purl.org/dc/elements/1.1/\">")
+                            .append("<dc:title>Record ").append(id).append("</dc:title></oai_dc:dc></metadata></record>");
+                }
+                sb.append("<resumptionToken completeListSize=\"").append(records.size())
+                        .append("\" cursor=\"").append(offset).append("\">");
+                if (offset + PAGE_SIZE < records.size()) {
+                    sb.append(from).append('.').append(until).append('.').append(offset + PAGE_SIZE);
+                }
+                sb.append("</resumptionToken>");
+            }
+            exchange.getResponseHeaders().add("Content-Type", "text/xml; charset=UTF-8");
+            exchange.sendResponseHeaders(200, 0);
+            try (OutputStream out = exchange.getResponseBody()) {
+                out.write(sb.toString().getBytes(StandardCharsets.UTF_8));
+                out.flush();
+                try {
+                    Thread.sleep(DELAY);
+                } catch (InterruptedException e) {
+                    Thread.currentThread().interrupt();
+                }
+                out.write((records.isEmpty() ? "</OAI-PMH>" : "</ListRecords></OAI-PMH>").getBytes(StandardCharsets.UTF_8));
+            }
+            events.add("done " + offset);
+        }
+    }
+}
@@ -0,0 +1,33 @@
+package org.xbib.oai.client.listrecords;
+
+import org.testng.Assert;
+import org.testng.annotations.Test;
+import org.xbib.util.DateUtil;
+
+import java.util.Date;
+
+public class ListRecordsListenerTest extends Assert {
+
+    @Test
+    public void testRetryAfterSeconds() {
+        assertEquals(ListRecordsListener.retryAfterSeconds("120", 0L), 120L);
+        assertEquals(ListRecordsListener.retryAfterSeconds("0", 0L), 0L);
+    }
+
+    @Test
+    public void testRetryAfterDate() {
+        long now = 1445162400000L;
+        String date = DateUtil.formatDateRFC(new Date(now + 120000L));
+        assertEquals(ListRecordsListener.retryAfterSeconds(date, now), 120L);
+        assertEquals(ListRecordsListener.retryAfterSeconds(date, now + 500L), 120L);
+        // a date in the past means no wait
+        assertEquals(ListRecordsListener.retryAfterSeconds(date, now + 300000L), 0L);
+    }
+
+    @Test
+    public void testRetryAfterInvalid() {
+        assertEquals(ListRecordsListener.retryAfterSeconds("soon", 0L), -1L);
+        assertEquals(ListRecordsListener.retryAfterSeconds("", 0L), -1L);
+        assertEquals(ListRecordsListener.retryAfterSeconds("99999999999999999999", 0L), -1L);
+    }
+}
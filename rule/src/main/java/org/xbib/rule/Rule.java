@@ -31,6 +31,14 @@ public class Rule {
         this.dispatcher = dispatcher;
     }
 
+    public List<Expression> getExpressions() {
+        return expressions;
+    }
+
+    public Dispatcher getDispatcher() {
+        return dispatcher;
+    }
+
     public boolean apply(RuleContext ruleContext, Binding binding) {
         boolean eval = false;
         for (Expression expression : expressions) {
@@ -0,0 +1,427 @@
+package org.xbib.rule;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.BitSet;
+import java.util.Collection;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * A set of rules compiled for evaluating many rules against a binding at once.
+ *
+ * The {@link Equals} tests of all rules are shared as conditions and indexed by variable
+ * name and value, so the satisfied conditions of a binding are found with one hash lookup
+ * per variable of the binding. The expressions are compiled into postfix programs of
+ * {@link And}, {@link Or} and {@link Not} over the bit set of satisfied conditions.
+ *
+ * An expression can only change its value if one of its conditions is satisfied, so only
+ * the expressions of the satisfied conditions are evaluated. The others keep the value
+ * they have when no condition is satisfied, which is computed once. Expressions which
+ * contain other kinds of expressions are interpreted for every binding.
+ *
+ * The rules are applied like {@link RuleSet#apply}: in the order of the compiled collection,
+ * each rule fires its true expressions like {@link Rule#apply}, and no rule is applied after
+ * the first rule whose last expression is true. A network is immutable and may be applied
+ * by many threads.
+ */
+public class RuleNetwork {
+
+    private static final int OP_AND = -1;
+
+    private static final int OP_OR = -2;
+
+    private static final int OP_NOT = -3;
+
+    private static final int OP_TRUE = -4;
+
+    private static final int OP_FALSE = -5;
+
+    /**
+     * Variable name to value to the conditions testing the value with different types.
+     */
+    private final Map<String, Map<Object, int[]>> index;
+
+    /**
+     * The type of each condition.
+     */
+    private final Class<?>[] types;
+
+    /**
+     * The expressions which contain each condition.
+     */
+    private final int[][] conditionExpressions;
+
+    private final Expression[] expressions;
+
+    private final Dispatcher[] dispatchers;
+
+    /**
+     * For each expression, true if it is the last expression of its rule.
+     */
+    private final boolean[] last;
+
+    /**
+     * The postfix program of each expression, null for interpreted expressions.
+     */
+    private final int[][] programs;
+
+    /**
+     * The compiled expressions which are true when no condition is satisfied.
+     */
+    private final int[] defaultTrue;
+
+    private final int[] interpreted;
+
+    private final int maxDepth;
+
+    private final ThreadLocal<Scratch> scratch = new ThreadLocal<Scratch>() {
+        @Override
+        protected Scratch initialValue() {
+            return new Scratch();
+        }
+    };
+
+    private RuleNetwork(Builder builder) {
+        this.index = new HashMap<>();
+        for (Map.Entry<String, Map<Object, List<Integer>>> e : builder.index.entrySet()) {
+            Map<Object, int[]> values = new HashMap<>();
+            for (Map.Entry<Object, List<Integer>> v : e.getValue().entrySet()) {
+                values.put(v.getKey(), toArray(v.getValue()));
+            }
+            index.put(e.getKey(), values);
+        }
+        this.types = builder.types.toArray(new Class<?>[builder.types.size()]);
+        this.conditionExpressions = new int[types.length][];
+        for (int c = 0; c < types.length; c++) {
+            conditionExpressions[c] = toArray(builder.conditionExpressions.get(c));
+        }
+        this.expressions = builder.expressions.toArray(new Expression[builder.expressions.size()]);
+        this.dispatchers = builder.dispatchers.toArray(new Dispatcher[builder.dispatchers.size()]);
+        this.last = new boolean[expressions.length];
+        for (int x : builder.last) {
+            last[x] = true;
+        }
+        this.programs = builder.programs.toArray(new int[builder.programs.size()][]);
+        List<Integer> defaultTrue = new ArrayList<>();
+        List<Integer> interpreted = new ArrayList<>();
+        BitSet none = new BitSet();
+        boolean[] stack = new boolean[depth(programs)];
+        for (int x = 0; x < programs.length; x++) {
+            if (programs[x] == null) {
+                interpreted.add(x);
+            } else if (eval(programs[x], none, stack)) {
+                defaultTrue.add(x);
+            }
+        }
+        this.defaultTrue = toArray(defaultTrue);
+        this.interpreted = toArray(interpreted);
+        this.maxDepth = stack.length;
+    }
+
+    /**
+     * Compile rules into a network.
+     *
+     * @param rules the rules, in the order in which they fire
+     * @return the network
+     */
+    public static RuleNetwork compile(Collection<Rule> rules) {
+        Builder builder = new Builder();
+        for (Rule rule : rules) {
+            builder.add(rule);
+        }
+        return new RuleNetwork(builder);
+    }
+
+    public int getConditionCount() {
+        return types.length;
+    }
+
+    public int getExpressionCount() {
+        return expressions.length;
+    }
+
+    /**
+     * Apply the rules to a binding and fire the true expressions, up to and including
+     * the first rule whose last expression is true.
+     *
+     * @param ruleContext the rule context
+     * @param binding the binding
+     * @return true if the last expression of a rule is true
+     */
+    public boolean apply(RuleContext ruleContext, Binding binding) {
+        Scratch s = scratch.get();
+        s.prepare(maxDepth);
+        try {
+            // discrimination: one lookup per variable of the binding
+            for (Map.Entry<String, Object> e : binding.entrySet()) {
+                Object value = e.getValue();
+                if (value == null) {
+                    continue;
+                }
+                Map<Object, int[]> values = index.get(e.getKey());
+                if (values == null) {
+                    continue;
+                }
+                int[] conditions = values.get(value);
+                if (conditions == null) {
+                    continue;
+                }
+                for (int c : conditions) {
+                    if (types[c].equals(value.getClass()) && !s.satisfied.get(c)) {
+                        s.satisfied.set(c);
+                        s.satisfiedList.add(c);
+                        for (int x : conditionExpressions[c]) {
+                            if (!s.touched.get(x)) {
+                                s.touched.set(x);
+                                s.touchedList.add(x);
+                            }
+                        }
+                    }
+                }
+            }
+            for (int i = 0; i < s.touchedList.size; i++) {
+                int x = s.touchedList.values[i];
+                if (eval(programs[x], s.satisfied, s.stack)) {
+                    s.fired.add(x);
+                }
+            }
+            for (int x : defaultTrue) {
+                if (!s.touched.get(x)) {
+                    s.fired.add(x);
+                }
+            }
+            for (int x : interpreted) {
+                if (expressions[x].interpret(binding)) {
+                    s.fired.add(x);
+                }
+            }
+            Arrays.sort(s.fired.values, 0, s.fired.size);
+            int[] fired = Arrays.copyOf(s.fired.values, s.fired.size);
+            s.clear();
+            for (int x : fired) {
+                dispatchers[x].fire(expressions[x], binding);
+                if (last[x]) {
+                    return true;
+                }
+            }
+            return false;
+        } finally {
+            s.clear();
+        }
+    }
+
+    private static boolean eval(int[] program, BitSet satisfied, boolean[] stack) {
+        int sp = 0;
+        for (int op : program) {
+            switch (op) {
+                case OP_AND:
+                    sp--;
+                    stack[sp - 1] = stack[sp - 1] && stack[sp];
+                    break;
+                case OP_OR:
+                    sp--;
+                    stack[sp - 1] = stack[sp - 1] || stack[sp];
+                    break;
+                case OP_NOT:
+                    stack[sp - 1] = !stack[sp - 1];
+                    break;
+                case OP_TRUE:
+                    stack[sp++] = true;
+                    break;
+                case OP_FALSE:
+                    stack[sp++] = false;
+                    break;
+                default:
+                    stack[sp++] = satisfied.get(op);
+                    break;
+            }
+        }
+        return stack[0];
+    }
+
+    private static int depth(int[][] programs) {
+        int max = 1;
+        for (int[] program : programs) {
+            if (program == null) {
+                continue;
+            }
+            int sp = 0;
+            for (int op : program) {
+                if (op == OP_AND || op == OP_OR) {
+                    sp--;
+                } else if (op != OP_NOT) {
+                    sp++;
+                    max = Math.max(max, sp);
+                }
+            }
+        }
+        return max;
+    }
+
+    private static int[] toArray(List<Integer> list) {
+        int[] a = new int[list.size()];
+        for (int i = 0; i < a.length; i++) {
+            a[i] = list.get(i);
+        }
+        return a;
+    }
+
+    /**
+     * Collects the conditions and compiles the expressions.
+     */
+    private static class Builder {
+
+        final Map<String, Map<Object, List<Integer>>> index = new LinkedHashMap<>();
+
+        final List<Class<?>> types = new ArrayList<>();
+
+        final List<List<Integer>> conditionExpressions = new ArrayList<>();
+
+        final List<Expression> expressions = new ArrayList<>();
+
+        final List<Dispatcher> dispatchers = new ArrayList<>();
+
+        final List<Integer> last = new ArrayList<>();
+
+        final List<int[]> programs = new ArrayList<>();
+
+        void add(Rule rule) {
+            for (Expression expression : rule.getExpressions()) {
+                int x = expressions.size();
+                expressions.add(expression);
+                dispatchers.add(rule.getDispatcher());
+                IntList program = new IntList();
+                programs.add(compile(expression, program) ? program.toArray() : null);
+                if (programs.get(x) != null) {
+                    for (int op : programs.get(x)) {
+                        if (op >= 0) {
+                            List<Integer> l = conditionExpressions.get(op);
+                            if (l.isEmpty() || l.get(l.size() - 1) != x) {
+                                l.add(x);
+                            }
+                        }
+                    }
+                }
+            }
+            if (!rule.getExpressions().isEmpty()) {
+                last.add(expressions.size() - 1);
+            }
+        }
+
+        /**
+         * @return false if the expression can not be compiled
+         */
+        boolean compile(Expression expression, IntList program) {
+            if (expression instanceof Equals) {
+                Equals equals = (Equals) expression;
+                if (!(equals.leftOperand instanceof Variable) || !(equals.rightOperand instanceof BaseType)) {
+                    return false;
+                }
+                BaseType<?> type = (BaseType<?>) equals.rightOperand;
+                if (type.getValue() == null) {
+                    program.add(OP_FALSE);
+                } else {
+                    program.add(condition(((Variable) equals.leftOperand).getName(), type));
+                }
+                return true;
+            } else if (expression instanceof And || expression instanceof Or) {
+                AbstractOperator operator = (AbstractOperator) expression;
+                if (!compile(operator.leftOperand, program) || !compile(operator.rightOperand, program)) {
+                    return false;
+                }
+                program.add(expression instanceof And ? OP_AND : OP_OR);
+                return true;
+            } else if (expression instanceof Not) {
+                if (!compile(((Not) expression).rightOperand, program)) {
+                    return false;
+                }
+                program.add(OP_NOT);
+                return true;
+            } else if (expression instanceof Variable || expression instanceof BaseType) {
+                program.add(OP_TRUE);
+                return true;
+            }
+            return false;
+        }
+
+        int condition(String name, BaseType<?> type) {
+            Map<Object, List<Integer>> values = index.get(name);
+            if (values == null) {
+                values = new HashMap<>();
+                index.put(name, values);
+            }
+            List<Integer> conditions = values.get(type.getValue());
+            if (conditions == null) {
+                conditions = new ArrayList<>(1);
+                values.put(type.getValue(), conditions);
+            }
+            for (int c : conditions) {
+                if (types.get(c).equals(type.getType())) {
+                    return c;
+                }
+            }
+            int c = types.size();
+            types.add(type.getType());
+            conditionExpressions.add(new ArrayList<Integer>());
+            conditions.add(c);
+            return c;
+        }
+    }
+
+    private static class IntList {
+
+        int[] values = new int[16];
+
+        int size;
+
+        void add(int value) {
+            if (size == values.length) {
+                values = Arrays.copyOf(values, size * 2);
+            }
+            values[size++] = value;
+        }
+
+        int[] toArray() {
+            return Arrays.copyOf(values, size);
+        }
+    }
+
+    /**
+     * The state of one evaluation, kept per thread and cleared after use.
+     */
+    private static class Scratch {
+
+        BitSet satisfied = new BitSet();
+
+        BitSet touched = new BitSet();
+
+        IntList satisfiedList = new IntList();
+
+        IntList touchedList = new IntList();
+
+        IntList fired = new IntList();
+
+        boolean[] stack = new boolean[1];
+
+        void prepare(int depth) {
+            if (stack.length < depth) {
+                stack = new boolean[depth];
+            }
+        }
+
+        void clear() {
+            for (int i = 0; i < satisfiedList.size; i++) {
+                satisfied.clear(satisfiedList.values[i]);
+            }
+            for (int i = 0; i < touchedList.size; i++) {
+                touched.clear(touchedList.values[i]);
+            }
+            satisfiedList.size = 0;
+            touchedList.size = 0;
+            fired.size = 0;
+        }
+    }
+}
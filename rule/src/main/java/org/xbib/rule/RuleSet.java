@@ -12,4 +12,14 @@ public class RuleSet extends HashSet<Rule> {
         return eval;
     }
 
+    /**
+     * Compile the rules into a network which fires the same expressions as {@link #apply},
+     * in the same order, and stops after the same rule.
+     *
+     * @return the network
+     */
+    public RuleNetwork compile() {
+        return RuleNetwork.compile(this);
+    }
+
 }
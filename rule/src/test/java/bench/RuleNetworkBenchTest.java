@@ -0,0 +1,114 @@
+package bench;
+
+import com.carrotsearch.junitbenchmarks.AbstractBenchmark;
+import com.carrotsearch.junitbenchmarks.BenchmarkOptions;
+import org.junit.Test;
+import org.xbib.rule.And;
+import org.xbib.rule.Binding;
+import org.xbib.rule.Equals;
+import org.xbib.rule.ExpressionParser;
+import org.xbib.rule.Not;
+import org.xbib.rule.Operations;
+import org.xbib.rule.Or;
+import org.xbib.rule.Rule;
+import org.xbib.rule.RuleNetwork;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Random;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static org.junit.Assert.assertEquals;
+
+/**
+ * Compares the interpretation of 10000 rules, one after the other, with the compiled rule network.
+ */
+public class RuleNetworkBenchTest extends AbstractBenchmark {
+
+    private final static int RULES = 10000;
+
+    private final static int BINDINGS = 1000;
+
+    private final static int VARIABLES = 30;
+
+    private final static AtomicInteger fired = new AtomicInteger();
+
+    private final static List<Rule> rules = new ArrayList<>();
+
+    private final static List<Binding> bindings = new ArrayList<>();
+
+    private final static RuleNetwork network;
+
+    private final static int matches;
+
+    static {
+        Operations operations = Operations.INSTANCE;
+        operations.registerOperation(new And());
+        operations.registerOperation(new Or());
+        operations.registerOperation(new Equals());
+        operations.registerOperation(new Not());
+        Random random = new Random(1L);
+        for (int i = 0; i < RULES; i++) {
+            StringBuilder sb = new StringBuilder();
+            sb.append(condition(random)).append(" AND ").append(condition(random));
+            if (random.nextBoolean()) {
+                sb.append(random.nextBoolean() ? " OR " : " AND NOT ").append(condition(random));
+            }
+            rules.add(new Rule.Builder()
+                    .with(ExpressionParser.parse(sb.toString()))
+                    .then((expr, binding) -> fired.incrementAndGet())
+                    .build());
+        }
+        for (int i = 0; i < BINDINGS; i++) {
+            Binding binding = new Binding();
+            for (int v = 0; v < VARIABLES; v++) {
+                if (random.nextInt(3) == 0) {
+                    binding.put("V" + v, "'" + random.nextInt(10) + "'");
+                }
+            }
+            bindings.add(binding);
+        }
+        network = RuleNetwork.compile(rules);
+        fired.set(0);
+        for (Binding binding : bindings) {
+            interpret(binding);
+        }
+        matches = fired.get();
+    }
+
+    @BenchmarkOptions(benchmarkRounds = 10, warmupRounds = 3)
+    @Test
+    public void testInterpreted() {
+        fired.set(0);
+        for (Binding binding : bindings) {
+            interpret(binding);
+        }
+        assertEquals(matches, fired.get());
+    }
+
+    @BenchmarkOptions(benchmarkRounds = 10, warmupRounds = 3)
+    @Test
+    public void testNetwork() {
+        fired.set(0);
+        for (Binding binding : bindings) {
+            network.apply(null, binding);
+        }
+        assertEquals(matches, fired.get());
+    }
+
+    /**
+     * Apply the rules one after the other, like {@link org.xbib.rule.RuleSet#apply}.
+     */
+    private static boolean interpret(Binding binding) {
+        for (Rule rule : rules) {
+            if (rule.apply(null, binding)) {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    private static String condition(Random random) {
+        return "V" + random.nextInt(VARIABLES) + " = '" + random.nextInt(10) + "'";
+    }
+}
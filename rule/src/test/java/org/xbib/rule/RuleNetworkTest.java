@@ -0,0 +1,143 @@
+package org.xbib.rule;
+
+import org.testng.Assert;
+import org.testng.annotations.BeforeClass;
+import org.testng.annotations.Test;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Random;
+
+public class RuleNetworkTest {
+
+    @BeforeClass
+    public void registerOperations() {
+        Operations operations = Operations.INSTANCE;
+        operations.registerOperation(new And());
+        operations.registerOperation(new Or());
+        operations.registerOperation(new Equals());
+        operations.registerOperation(new Not());
+    }
+
+    @Test
+    public void testRuleEngine() {
+        final List<String> fired = new ArrayList<>();
+        Rule rule1 = new Rule.Builder()
+                .with(ExpressionParser.parse("PATIENT_TYPE = 'A' AND ADMISSION_TYPE = 'O'"))
+                .then((expr, binding) -> fired.add("patient out"))
+                .build();
+        Rule rule2 = new Rule.Builder()
+                .with(ExpressionParser.parse("PATIENT_TYPE = 'B'"))
+                .with(ExpressionParser.parse("PATIENT_TYPE = 'A' AND NOT ADMISSION_TYPE = 'O'"))
+                .then((expr, binding) -> fired.add("patient in"))
+                .build();
+        RuleSet ruleSet = new RuleSet();
+        ruleSet.add(rule1);
+        ruleSet.add(rule2);
+        RuleNetwork network = ruleSet.compile();
+        Assert.assertEquals(network.getConditionCount(), 3);
+        Assert.assertEquals(network.getExpressionCount(), 3);
+        Binding binding = new Binding();
+        binding.put("PATIENT_TYPE", "'A'");
+        binding.put("ADMISSION_TYPE", "'O'");
+        Assert.assertTrue(network.apply(null, binding));
+        Assert.assertEquals(fired.toString(), "[patient out]");
+        fired.clear();
+        binding.put("ADMISSION_TYPE", "'I'");
+        Assert.assertTrue(network.apply(null, binding));
+        Assert.assertEquals(fired.toString(), "[patient in]");
+        fired.clear();
+        binding.put("PATIENT_TYPE", 1);
+        Assert.assertFalse(network.apply(null, binding));
+        Assert.assertTrue(fired.isEmpty());
+    }
+
+    @Test
+    public void testStopsAtFirstTrueRule() {
+        final List<String> fired = new ArrayList<>();
+        RuleSet ruleSet = new RuleSet();
+        // a rule which fires its first expression but returns false
+        ruleSet.add(new Rule.Builder()
+                .with(ExpressionParser.parse("PATIENT_TYPE = 'A'"))
+                .with(ExpressionParser.parse("ADMISSION_TYPE = 'I'"))
+                .then((expr, binding) -> fired.add("partial " + expr))
+                .build());
+        ruleSet.add(new Rule.Builder()
+                .with(ExpressionParser.parse("PATIENT_TYPE = 'A'"))
+                .then((expr, binding) -> fired.add("first"))
+                .build());
+        ruleSet.add(new Rule.Builder()
+                .with(ExpressionParser.parse("ADMISSION_TYPE = 'O'"))
+                .then((expr, binding) -> fired.add("second"))
+                .build());
+        Binding binding = new Binding();
+        binding.put("PATIENT_TYPE", "'A'");
+        binding.put("ADMISSION_TYPE", "'O'");
+        Assert.assertTrue(ruleSet.apply(null, binding));
+        List<String> expected = new ArrayList<>(fired);
+        fired.clear();
+        Assert.assertTrue(ruleSet.compile().apply(null, binding));
+        Assert.assertEquals(fired, expected);
+        // only one of the two matching rules fires
+        Assert.assertTrue(fired.contains("first") ^ fired.contains("second"), fired.toString());
+    }
+
+    @Test
+    public void testRandomRules() {
+        Random random = new Random(42L);
+        final List<String> expected = new ArrayList<>();
+        final List<String> actual = new ArrayList<>();
+        List<Rule> interpreted = new ArrayList<>();
+        List<Rule> compiled = new ArrayList<>();
+        for (int r = 0; r < 500; r++) {
+            final String name = "rule" + r;
+            List<Expression> expressions = new ArrayList<>();
+            for (int e = random.nextInt(3); e >= 0; e--) {
+                expressions.add(random.nextInt(20) == 0 ?
+                        (Expression) binding -> binding.containsKey("V0") :
+                        ExpressionParser.parse(expression(random)));
+            }
+            Rule.Builder a = new Rule.Builder().then((expr, binding) -> expected.add(name + " " + expr));
+            Rule.Builder b = new Rule.Builder().then((expr, binding) -> actual.add(name + " " + expr));
+            for (Expression expression : expressions) {
+                a.with(expression);
+                b.with(expression);
+            }
+            interpreted.add(a.build());
+            compiled.add(b.build());
+        }
+        RuleNetwork network = RuleNetwork.compile(compiled);
+        for (int i = 0; i < 2000; i++) {
+            Binding binding = new Binding();
+            for (int v = 0; v < 8; v++) {
+                if (random.nextBoolean()) {
+                    binding.put("V" + v, random.nextInt(10) == 0 ? "'" + random.nextInt(4) + "'" : random.nextInt(4));
+                }
+            }
+            // like RuleSet.apply, in the order of the list
+            boolean eval = false;
+            for (Rule rule : interpreted) {
+                eval = eval || rule.apply(null, binding);
+            }
+            Assert.assertEquals(network.apply(null, binding), eval, binding.toString());
+            Assert.assertEquals(actual, expected, binding.toString());
+            expected.clear();
+            actual.clear();
+        }
+    }
+
+    private static String expression(Random random) {
+        StringBuilder sb = new StringBuilder();
+        for (int t = random.nextInt(4); t >= 0; t--) {
+            if (random.nextInt(4) == 0) {
+                sb.append("NOT ");
+            }
+            sb.append('V').append(random.nextInt(8)).append(" = ");
+            sb.append(random.nextInt(10) == 0 ? "'" + random.nextInt(4) + "'" : random.nextInt(4));
+            if (t > 0) {
+                sb.append(random.nextBoolean() ? " AND " : " OR ");
+            }
+        }
+        return sb.toString();
+    }
+}
@@ -1,17 +1,6 @@
 
 package org.xbib.standardnumber;
 
-import javax.xml.stream.XMLEventReader;
-import javax.xml.stream.XMLInputFactory;
-import javax.xml.stream.XMLStreamException;
-import javax.xml.stream.events.Characters;
-import javax.xml.stream.events.EndElement;
-import javax.xml.stream.events.StartElement;
-import javax.xml.stream.events.XMLEvent;
-import java.io.InputStream;
-import java.util.ArrayList;
-import java.util.List;
-import java.util.Stack;
 import java.util.regex.Matcher;
 import java.util.regex.Pattern;
 
@@ -44,7 +33,7 @@ public class ISBN implements Comparable<ISBN>, StandardNumber {
 
     private static final Pattern PATTERN = Pattern.compile("[\\p{Digit}xX\\-]{10,17}");
 
-    private static final List<String> ranges = new ISBNRangeMessageConfigurator().getRanges();
+    private static final ISBNRangeIndex ranges = ISBNRangeIndex.getInstance();
 
     private String value;
 
@@ -142,41 +131,7 @@ public class ISBN implements Comparable<ISBN>, StandardNumber {
      */
     public String getCountryAndPublisherCode()  {
         // we don't care about the wrong checksum when we fix the value
-        String code = eanvalue != null ? fix(eanvalue) : fix("978" + value);
-        String s = code.substring(4);
-        int pos1 = s.indexOf('-');
-        if (pos1 <= 0) {
-            return null;
-        }
-        String pubCode = s.substring(pos1 + 1);
-        int pos2 = pubCode.indexOf('-');
-        if (pos2 <= 0) {
-            return null;
-        }
-        return code.substring(0, pos1 + pos2 + 5);
-    }
-
-    private String hyphenate(String prefix, String isbn) {
-        StringBuilder sb = new StringBuilder(prefix.substring(0, 4)); // '978-', '979-'
-        prefix = prefix.substring(4);
-        isbn = isbn.substring(3); // 978, 979
-        int i = 0;
-        int j = 0;
-        while (i < prefix.length()) {
-            char ch = prefix.charAt(i++);
-            if (ch == '-') {
-                sb.append('-'); // set first hyphen
-            } else {
-                sb.append(isbn.charAt(j++));
-            }
-        }
-        sb.append('-'); // set second hyphen
-        while (j < (isbn.length() - 1)) {
-            sb.append(isbn.charAt(j++));
-        }
-        sb.append('-'); // set third hyphen
-        sb.append(isbn.charAt(isbn.length() - 1));
-        return sb.toString();
+        return ranges.getCountryAndPublisherCode(eanvalue != null ? eanvalue : "978" + value);
     }
 
     private void check() throws NumberFormatException {
@@ -333,40 +288,7 @@ public class ISBN implements Comparable<ISBN>, StandardNumber {
     }
 
     private String fix(String isbn) {
-        if (isbn == null) {
-            return null;
-        }
-        for (int i = 0; i < ranges.size(); i += 2) {
-            if (isInRange(isbn, ranges.get(i), ranges.get(i + 1)) == 0) {
-                return hyphenate(ranges.get(i), isbn);
-            }
-        }
-        return isbn;
-    }
-
-    /**
-     * Check if ISBN is within a given value range
-     * @param isbn ISBN to check
-     * @param begin lower ISBN
-     * @param end  higher ISBN
-     * @return -1 if too low, 1 if too high, 0 if range matches
-     */
-    private int isInRange(String isbn, String begin, String end) {
-        String b = dehyphenate(begin);
-        int blen = b.length();
-        int c = blen <= isbn.length() ?
-                isbn.substring(0, blen).compareTo(b) :
-                isbn.compareTo(b);
-        if (c < 0) {
-            return -1;
-        }
-        String e = dehyphenate(end);
-        int elen = e.length();
-        c = e.compareTo(isbn.substring(0, elen));
-        if (c < 0) {
-            return 1;
-        }
-        return 0;
+        return isbn != null ? ranges.hyphenate(isbn) : null;
     }
 
     private String dehyphenate(String isbn) {
@@ -378,94 +300,4 @@ public class ISBN implements Comparable<ISBN>, StandardNumber {
         }
         return sb.toString();
     }
-
-    private final static class ISBNRangeMessageConfigurator {
-
-        private final Stack<StringBuilder> content;
-
-        private final List<String> ranges;
-
-        private String prefix;
-
-        private String rangeBegin;
-
-        private String rangeEnd;
-
-        private int length;
-
-        private boolean valid;
-
-        public ISBNRangeMessageConfigurator() {
-            content = new Stack<StringBuilder>();
-            ranges = new ArrayList<String>();
-            length = 0;
-            try {
-                InputStream in = getClass().getResourceAsStream("/org/xbib/standardnumber/RangeMessage.xml");
-                XMLInputFactory xmlInputFactory = XMLInputFactory.newInstance();
-                XMLEventReader xmlReader = xmlInputFactory.createXMLEventReader(in);
-                while (xmlReader.hasNext()) {
-                    processEvent(xmlReader.peek());
-                    xmlReader.nextEvent();
-                }
-            } catch (XMLStreamException e) {
-                throw new RuntimeException(e.getMessage());
-            }
-        }
-
-        private void processEvent(XMLEvent e) {
-            switch (e.getEventType()) {
-                case XMLEvent.START_ELEMENT: {
-                    StartElement element = e.asStartElement();
-                    String name = element.getName().getLocalPart();
-                    if ("RegistrationGroups".equals(name)) {
-                        valid = true;
-                    }
-                    content.push(new StringBuilder());
-                    break;
-                }
-                case XMLEvent.END_ELEMENT: {
-                    EndElement element = e.asEndElement();
-                    String name = element.getName().getLocalPart();
-                    String v = content.pop().toString();
-                    if ("Prefix".equals(name)) {
-                        prefix = v;
-                    }
-                    if ("Range".equals(name)) {
-                        int pos = v.indexOf('-');
-                        if (pos > 0) {
-                            rangeBegin = v.substring(0, pos);
-                            rangeEnd = v.substring(pos + 1);
-                        }
-                    }
-                    if ("Length".equals(name)) {
-                        length = Integer.parseInt(v);
-                    }
-                    if ("Rule".equals(name)) {
-                        if (valid && rangeBegin != null && rangeEnd != null) {
-                            if (length > 0) {
-                                ranges.add(prefix + "-" + rangeBegin.substring(0, length));
-                                ranges.add(prefix + "-" + rangeEnd.substring(0, length));
-                            }
-                        }
-                    }
-                    break;
-                }
-                case XMLEvent.CHARACTERS: {
-                    Characters c = (Characters) e;
-                    if (!c.isIgnorableWhiteSpace()) {
-                        String text = c.getData().trim();
-                        if (text.length() > 0 && !content.empty()) {
-                            content.peek().append(text);
-                        }
-                    }
-                    break;
-                }
-            }
-        }
-
-        public List<String> getRanges() {
-            return ranges;
-        }
-    }
-
 }
@@ -0,0 +1,387 @@
+package org.xbib.standardnumber;
+
+import javax.xml.stream.XMLEventReader;
+import javax.xml.stream.XMLInputFactory;
+import javax.xml.stream.XMLStreamException;
+import javax.xml.stream.events.Characters;
+import javax.xml.stream.events.EndElement;
+import javax.xml.stream.events.StartElement;
+import javax.xml.stream.events.XMLEvent;
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.FileInputStream;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Stack;
+
+/**
+ * The ISBN ranges of the registration groups in the ISBN range message, as a sorted
+ * interval index.
+ *
+ * Every rule of the range message is an interval of the first 12 digits of an ISBN-13,
+ * together with the length of the registration group and of the registrant (publisher)
+ * element. The intervals do not overlap, so the rule of an ISBN is found by a binary
+ * search over the 12 digits taken as a long number, without allocating strings.
+ *
+ * The index is read from the precompiled resource {@code RangeMessage.bin} if it exists,
+ * or else from {@code RangeMessage.xml}. After updating the range message, the binary
+ * resource is written again with
+ * <pre>
+ *     java org.xbib.standardnumber.ISBNRangeIndex RangeMessage.xml RangeMessage.bin
+ * </pre>
+ */
+public final class ISBNRangeIndex {
+
+    private static final int MAGIC = 0x49534252;
+
+    private static final int VERSION = 1;
+
+    private static final long[] POWERS = new long[13];
+
+    static {
+        POWERS[0] = 1L;
+        for (int i = 1; i < POWERS.length; i++) {
+            POWERS[i] = POWERS[i - 1] * 10L;
+        }
+    }
+
+    private final long[] low;
+
+    private final long[] high;
+
+    private final byte[] groupLength;
+
+    private final byte[] publisherLength;
+
+    private ISBNRangeIndex(long[] low, long[] high, byte[] groupLength, byte[] publisherLength) {
+        this.low = low;
+        this.high = high;
+        this.groupLength = groupLength;
+        this.publisherLength = publisherLength;
+    }
+
+    /**
+     * Gets the index of the range message in the class path.
+     *
+     * @return the shared index
+     */
+    public static ISBNRangeIndex getInstance() {
+        return Holder.INSTANCE;
+    }
+
+    /**
+     * Builds the index from a range message.
+     *
+     * @param in the range message XML
+     * @return the index
+     * @throws IOException if the range message can not be parsed
+     */
+    public static ISBNRangeIndex parse(InputStream in) throws IOException {
+        List<String> ranges = new ISBNRangeMessageConfigurator(in).getRanges();
+        int n = ranges.size() / 2;
+        long[][] entries = new long[n][];
+        for (int i = 0; i < n; i++) {
+            String begin = ranges.get(2 * i);
+            String end = ranges.get(2 * i + 1);
+            int group = begin.indexOf('-', 4) - 4;
+            String b = dehyphenate(begin);
+            String e = dehyphenate(end);
+            long scale = POWERS[12 - b.length()];
+            entries[i] = new long[]{
+                    Long.parseLong(b) * scale,
+                    (Long.parseLong(e) + 1) * scale - 1,
+                    group,
+                    b.length() - 3 - group
+            };
+        }
+        Arrays.sort(entries, (a, b) -> Long.compare(a[0], b[0]));
+        long[] low = new long[n];
+        long[] high = new long[n];
+        byte[] groupLength = new byte[n];
+        byte[] publisherLength = new byte[n];
+        for (int i = 0; i < n; i++) {
+            low[i] = entries[i][0];
+            high[i] = entries[i][1];
+            groupLength[i] = (byte) entries[i][2];
+            publisherLength[i] = (byte) entries[i][3];
+            if (i > 0 && low[i] <= high[i - 1]) {
+                throw new IOException("overlapping ISBN ranges at " + low[i]);
+            }
+        }
+        return new ISBNRangeIndex(low, high, groupLength, publisherLength);
+    }
+
+    /**
+     * Reads the index written by {@link #write(OutputStream)}.
+     *
+     * @param in the input stream
+     * @return the index
+     * @throws IOException if the stream is not an ISBN range index
+     */
+    public static ISBNRangeIndex read(InputStream in) throws IOException {
+        DataInputStream input = new DataInputStream(new BufferedInputStream(in));
+        if (input.readInt() != MAGIC || input.readInt() != VERSION) {
+            throw new IOException("not an ISBN range index");
+        }
+        int n = input.readInt();
+        long[] low = new long[n];
+        long[] high = new long[n];
+        byte[] groupLength = new byte[n];
+        byte[] publisherLength = new byte[n];
+        for (int i = 0; i < n; i++) {
+            low[i] = input.readLong();
+            high[i] = input.readLong();
+            groupLength[i] = input.readByte();
+            publisherLength[i] = input.readByte();
+        }
+        return new ISBNRangeIndex(low, high, groupLength, publisherLength);
+    }
+
+    public void write(OutputStream out) throws IOException {
+        DataOutputStream output = new DataOutputStream(new BufferedOutputStream(out));
+        output.writeInt(MAGIC);
+        output.writeInt(VERSION);
+        output.writeInt(low.length);
+        for (int i = 0; i < low.length; i++) {
+            output.writeLong(low[i]);
+            output.writeLong(high[i]);
+            output.writeByte(groupLength[i]);
+            output.writeByte(publisherLength[i]);
+        }
+        output.flush();
+    }
+
+    public int size() {
+        return low.length;
+    }
+
+    /**
+     * Finds the range of an ISBN-13.
+     *
+     * @param isbn the ISBN-13 without hyphens
+     * @return the range, or -1 if no range matches
+     */
+    public int find(CharSequence isbn) {
+        if (isbn.length() < 12) {
+            return -1;
+        }
+        long value = 0L;
+        for (int i = 0; i < 12; i++) {
+            char ch = isbn.charAt(i);
+            if (ch < '0' || ch > '9') {
+                return -1;
+            }
+            value = value * 10L + (ch - '0');
+        }
+        int pos = Arrays.binarySearch(low, value);
+        if (pos < 0) {
+            pos = -pos - 2;
+        }
+        return pos >= 0 && value <= high[pos] ? pos : -1;
+    }
+
+    public int getGroupLength(int range) {
+        return groupLength[range];
+    }
+
+    public int getPublisherLength(int range) {
+        return publisherLength[range];
+    }
+
+    /**
+     * Hyphenates an ISBN-13 into prefix, registration group, registrant, publication and check digit.
+     *
+     * @param isbn the ISBN-13 without hyphens
+     * @return the hyphenated ISBN, or the ISBN if no range matches
+     */
+    public String hyphenate(String isbn) {
+        int range = isbn.length() == 13 ? find(isbn) : -1;
+        if (range < 0) {
+            return isbn;
+        }
+        int group = 3 + groupLength[range];
+        int publisher = group + publisherLength[range];
+        char[] chars = new char[17];
+        isbn.getChars(0, 3, chars, 0);
+        chars[3] = '-';
+        isbn.getChars(3, group, chars, 4);
+        chars[group + 1] = '-';
+        isbn.getChars(group, publisher, chars, group + 2);
+        chars[publisher + 2] = '-';
+        isbn.getChars(publisher, 12, chars, publisher + 3);
+        chars[15] = '-';
+        chars[16] = isbn.charAt(12);
+        return new String(chars);
+    }
+
+    /**
+     * Gets the prefix, registration group and registrant of an ISBN-13, separated by hyphens.
+     *
+     * @param isbn the ISBN-13 without hyphens
+     * @return the country and publisher code, or null if no range matches
+     */
+    public String getCountryAndPublisherCode(String isbn) {
+        int range = isbn.length() == 13 ? find(isbn) : -1;
+        if (range < 0) {
+            return null;
+        }
+        int group = 3 + groupLength[range];
+        int publisher = group + publisherLength[range];
+        return new StringBuilder(publisher + 2)
+                .append(isbn, 0, 3).append('-')
+                .append(isbn, 3, group).append('-')
+                .append(isbn, group, publisher)
+                .toString();
+    }
+
+    /**
+     * Compiles a range message into the binary form.
+     *
+     * @param args the range message XML file and the binary file
+     * @throws IOException if the files can not be read or written
+     */
+    public static void main(String[] args) throws IOException {
+        if (args.length < 2) {
+            System.err.println("usage: ISBNRangeIndex RangeMessage.xml RangeMessage.bin");
+            return;
+        }
+        ISBNRangeIndex index;
+        try (InputStream in = new FileInputStream(args[0])) {
+            index = parse(in);
+        }
+        try (OutputStream out = new FileOutputStream(args[1])) {
+            index.write(out);
+        }
+    }
+
+    private static String dehyphenate(String isbn) {
+        StringBuilder sb = new StringBuilder(isbn);
+        int i = sb.indexOf("-");
+        while (i >= 0) {
+            sb.deleteCharAt(i);
+            i = sb.indexOf("-");
+        }
+        return sb.toString();
+    }
+
+    private static class Holder {
+
+        static final ISBNRangeIndex INSTANCE = load();
+
+        private static ISBNRangeIndex load() {
+            try {
+                InputStream in = ISBNRangeIndex.class.getResourceAsStream("/org/xbib/standardnumber/RangeMessage.bin");
+                if (in != null) {
+                    try {
+                        return read(in);
+                    } finally {
+                        in.close();
+                    }
+                }
+                in = ISBNRangeIndex.class.getResourceAsStream("/org/xbib/standardnumber/RangeMessage.xml");
+                try {
+                    return parse(in);
+                } finally {
+                    in.close();
+                }
+            } catch (IOException e) {
+                throw new RuntimeException(e.getMessage());
+            }
+        }
+    }
+
+    private final static class ISBNRangeMessageConfigurator {
+
+        private final Stack<StringBuilder> content;
+
+        private final List<String> ranges;
+
+        private String prefix;
+
+        private String rangeBegin;
+
+        private String rangeEnd;
+
+        private int length;
+
+        private boolean valid;
+
+        public ISBNRangeMessageConfigurator(InputStream in) throws IOException {
+            content = new Stack<StringBuilder>();
+            ranges = new ArrayList<String>();
+            length = 0;
+            try {
+                XMLInputFactory xmlInputFactory = XMLInputFactory.newInstance();
+                XMLEventReader xmlReader = xmlInputFactory.createXMLEventReader(in);
+                while (xmlReader.hasNext()) {
+                    processEvent(xmlReader.peek());
+                    xmlReader.nextEvent();
+                }
+            } catch (XMLStreamException e) {
+                throw new IOException(e.getMessage());
+            }
+        }
+
+        private void processEvent(XMLEvent e) {
+            switch (e.getEventType()) {
+                case XMLEvent.START_ELEMENT: {
+                    StartElement element = e.asStartElement();
+                    String name = element.getName().getLocalPart();
+                    if ("RegistrationGroups".equals(name)) {
+                        valid = true;
+                    }
+                    content.push(new StringBuilder());
+                    break;
+                }
+                case XMLEvent.END_ELEMENT: {
+                    EndElement element = e.asEndElement();
+                    String name = element.getName().getLocalPart();
+                    String v = content.pop().toString();
+                    if ("Prefix".equals(name)) {
+                        prefix = v;
+                    }
+                    if ("Range".equals(name)) {
+                        int pos = v.indexOf('-');
+                        if (pos > 0) {
+                            rangeBegin = v.substring(0, pos);
+                            rangeEnd = v.substring(pos + 1);
+                        }
+                    }
+                    if ("Length".equals(name)) {
+                        length = Integer.parseInt(v);
+                    }
+                    if ("Rule".equals(name)) {
+                        if (valid && rangeBegin != null && rangeEnd != null) {
+                            if (length > 0) {
+                                ranges.add(prefix + "-" + rangeBegin.substring(0, length));
+                                ranges.add(prefix + "-" + rangeEnd.substring(0, length));
+                            }
+                        }
+                    }
+                    break;
+                }
+                case XMLEvent.CHARACTERS: {
+                    Characters c = (Characters) e;
+                    if (!c.isIgnorableWhiteSpace()) {
+                        String text = c.getData().trim();
+                        if (text.length() > 0 && !content.empty()) {
+                            content.peek().append(text);
+                        }
+                    }
+                    break;
+                }
+            }
+        }
+
+        public List<String> getRanges() {
+            return ranges;
+        }
+    }
+}
@@ -0,0 +1,49 @@
+package org.xbib.standardnumber;
+
+import org.testng.Assert;
+import org.testng.annotations.Test;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.InputStream;
+import java.util.Arrays;
+
+public class ISBNRangeIndexTest extends Assert {
+
+    @Test
+    public void testHyphenate() {
+        ISBNRangeIndex index = ISBNRangeIndex.getInstance();
+        assertEquals(index.hyphenate("9783551752130"), "978-3-551-75213-0");
+        assertEquals(index.hyphenate("9784540489044"), "978-4-540-48904-4");
+        assertEquals(index.hyphenate("9782815218795"), "978-2-8152-1879-5");
+        assertEquals(index.getCountryAndPublisherCode("9783551752130"), "978-3-551");
+        assertEquals(index.getCountryAndPublisherCode("9782815218795"), "978-2-8152");
+    }
+
+    @Test
+    public void testNoRange() {
+        ISBNRangeIndex index = ISBNRangeIndex.getInstance();
+        assertEquals(index.find("97869"), -1);
+        assertEquals(index.find("978699999999"), -1);
+        assertEquals(index.hyphenate("9786999999990"), "9786999999990");
+        assertNull(index.getCountryAndPublisherCode("9786999999990"));
+        assertEquals(index.hyphenate("978355175213"), "978355175213");
+    }
+
+    @Test
+    public void testBinaryResource() throws Exception {
+        ISBNRangeIndex parsed;
+        try (InputStream in = getClass().getResourceAsStream("/org/xbib/standardnumber/RangeMessage.xml")) {
+            parsed = ISBNRangeIndex.parse(in);
+        }
+        ByteArrayOutputStream expected = new ByteArrayOutputStream();
+        parsed.write(expected);
+        ByteArrayOutputStream actual = new ByteArrayOutputStream();
+        ISBNRangeIndex.getInstance().write(actual);
+        assertTrue(Arrays.equals(actual.toByteArray(), expected.toByteArray()),
+                "RangeMessage.bin is not compiled from RangeMessage.xml");
+        ISBNRangeIndex read = ISBNRangeIndex.read(new ByteArrayInputStream(expected.toByteArray()));
+        assertEquals(read.size(), parsed.size());
+        assertEquals(read.hyphenate("9783551752130"), "978-3-551-75213-0");
+    }
+}
@@ -59,6 +59,15 @@ public interface SyslogConstants {
     public static final int TCP_MAX_ACTIVE_SOCKETS_DEFAULT = 0;
     public static final byte TCP_MAX_ACTIVE_SOCKETS_BEHAVIOR_DEFAULT = 0;
 
+    public static final boolean NIO_USE_TCP_DEFAULT = true;
+    public static final boolean NIO_USE_UDP_DEFAULT = true;
+    public static final int NIO_SELECTOR_THREADS_DEFAULT = 2;
+    public static final int NIO_RECEIVE_BUFFER_SIZE_DEFAULT = 65536;
+    public static final int NIO_MAX_FRAME_LENGTH_DEFAULT = 65536;
+    public static final int NIO_QUEUE_SIZE_DEFAULT = 65536;
+    public static final int NIO_BATCH_SIZE_DEFAULT = 256;
+    public static final byte NIO_QUEUE_FULL_BEHAVIOR_DEFAULT = 0;
+
     public static final int FACILITY_KERN = 0;
     public static final int FACILITY_USER = 1 << 3;
     public static final int FACILITY_MAIL = 2 << 3;
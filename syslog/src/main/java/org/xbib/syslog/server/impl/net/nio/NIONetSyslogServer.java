@@ -0,0 +1,705 @@
+package org.xbib.syslog.server.impl.net.nio;
+
+import org.xbib.syslog.SyslogConstants;
+import org.xbib.syslog.SyslogRuntimeException;
+import org.xbib.syslog.server.SyslogServerEventIF;
+import org.xbib.syslog.server.impl.AbstractSyslogServer;
+
+import java.io.IOException;
+import java.net.InetAddress;
+import java.net.InetSocketAddress;
+import java.net.Socket;
+import java.net.SocketAddress;
+import java.nio.ByteBuffer;
+import java.nio.channels.ClosedChannelException;
+import java.nio.channels.DatagramChannel;
+import java.nio.channels.SelectionKey;
+import java.nio.channels.Selector;
+import java.nio.channels.ServerSocketChannel;
+import java.nio.channels.SocketChannel;
+import java.util.ArrayList;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Queue;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * NIONetSyslogServer provides a non-blocking TCP/IP and UDP server implementation.
+ *
+ * The server thread accepts connections and receives datagrams, the accepted connections are
+ * distributed over a few selector threads which split the received bytes into frames. The frames
+ * are passed through a bounded queue to a dispatcher thread, which creates the events and calls
+ * the event handlers in batches. If the queue is full, the selector threads either wait, so
+ * the senders are slowed down by TCP flow control, or drop the frames, as configured by the
+ * queue full behavior.
+ */
+public class NIONetSyslogServer extends AbstractSyslogServer {
+
+    protected final static byte OPEN = 0;
+    protected final static byte EVENT = 1;
+    protected final static byte CLOSE = 2;
+    protected final static byte EXCEPTION = 3;
+
+    /**
+     * An entry of the event queue.
+     */
+    protected static class Entry {
+        protected final byte type;
+        protected final Socket socket;
+        protected final SocketAddress socketAddress;
+        protected final InetAddress inetAddress;
+        protected final byte[] frame;
+        protected final boolean timeout;
+        protected final Exception exception;
+
+        protected Entry(byte type, Socket socket, SocketAddress socketAddress, InetAddress inetAddress,
+                        byte[] frame, boolean timeout, Exception exception) {
+            this.type = type;
+            this.socket = socket;
+            this.socketAddress = socketAddress;
+            this.inetAddress = inetAddress;
+            this.frame = frame;
+            this.timeout = timeout;
+            this.exception = exception;
+        }
+    }
+
+    /**
+     * The state of a TCP connection.
+     */
+    protected static class Connection {
+        protected final SocketChannel channel;
+        protected final Socket socket;
+        protected final SocketAddress socketAddress;
+        protected final InetAddress inetAddress;
+        protected final SyslogFrameDecoder decoder;
+        protected long lastRead;
+
+        protected Connection(SocketChannel channel, int maxFrameLength) {
+            this.channel = channel;
+            this.socket = channel.socket();
+            this.socketAddress = this.socket.getRemoteSocketAddress();
+            this.inetAddress = this.socket.getInetAddress();
+            this.decoder = new SyslogFrameDecoder(maxFrameLength);
+            this.lastRead = System.currentTimeMillis();
+        }
+    }
+
+    /**
+     * Reads the connections registered with its selector.
+     */
+    protected class SelectorThread implements Runnable {
+        protected final Selector selector;
+        protected final Queue<Connection> pending = new ConcurrentLinkedQueue<Connection>();
+        protected final ByteBuffer buffer;
+        protected final List<byte[]> frames = new ArrayList<byte[]>();
+        protected long lastIdleCheck = System.currentTimeMillis();
+
+        protected SelectorThread() throws IOException {
+            this.selector = Selector.open();
+            this.buffer = ByteBuffer.allocateDirect(nioNetSyslogServerConfig.getReceiveBufferSize());
+        }
+
+        protected void register(Connection connection) {
+            this.pending.add(connection);
+            this.selector.wakeup();
+        }
+
+        public void run() {
+            while (!shutdown) {
+                try {
+                    this.selector.select(SyslogConstants.THREAD_LOOP_INTERVAL_DEFAULT);
+
+                    Connection connection;
+                    while ((connection = this.pending.poll()) != null) {
+                        try {
+                            connection.channel.register(this.selector, SelectionKey.OP_READ, connection);
+
+                        } catch (ClosedChannelException cce) {
+                            close(connection, false);
+                        }
+                    }
+
+                    Iterator<SelectionKey> i = this.selector.selectedKeys().iterator();
+                    while (i.hasNext()) {
+                        SelectionKey key = i.next();
+                        i.remove();
+                        if (key.isValid() && key.isReadable()) {
+                            read(key);
+                        }
+                    }
+
+                    if (nioNetSyslogServerConfig.getTimeout() > 0) {
+                        closeIdleConnections();
+                    }
+
+                } catch (IOException ioe) {
+                    //
+                }
+            }
+
+            for (SelectionKey key : this.selector.keys()) {
+                close((Connection) key.attachment(), false);
+            }
+            Connection connection;
+            while ((connection = this.pending.poll()) != null) {
+                close(connection, false);
+            }
+            try {
+                this.selector.close();
+
+            } catch (IOException ioe) {
+                //
+            }
+        }
+
+        protected void read(SelectionKey key) {
+            Connection connection = (Connection) key.attachment();
+            try {
+                // read a limited number of times to be fair to the other connections
+                for (int reads = 0; reads < 16; reads++) {
+                    this.buffer.clear();
+                    int n = connection.channel.read(this.buffer);
+                    if (n == -1) {
+                        connection.decoder.flush(this.frames);
+                        offerFrames(connection);
+                        close(connection, false);
+                        return;
+                    }
+                    if (n == 0) {
+                        break;
+                    }
+                    this.buffer.flip();
+                    connection.decoder.decode(this.buffer, this.frames);
+                    offerFrames(connection);
+                }
+                connection.lastRead = System.currentTimeMillis();
+
+            } catch (IOException ioe) {
+                this.frames.clear();
+                offer(new Entry(EXCEPTION, connection.socket, connection.socketAddress, connection.inetAddress, null, false, ioe));
+                close(connection, false);
+            }
+        }
+
+        protected void offerFrames(Connection connection) {
+            for (int i = 0; i < this.frames.size(); i++) {
+                offerEvent(new Entry(EVENT, connection.socket, connection.socketAddress, connection.inetAddress, this.frames.get(i), false, null));
+            }
+            this.frames.clear();
+        }
+
+        protected void closeIdleConnections() {
+            long now = System.currentTimeMillis();
+            if (now - this.lastIdleCheck < SyslogConstants.THREAD_LOOP_INTERVAL_DEFAULT) {
+                return;
+            }
+            this.lastIdleCheck = now;
+            for (SelectionKey key : this.selector.keys()) {
+                Connection connection = (Connection) key.attachment();
+                if (now - connection.lastRead > nioNetSyslogServerConfig.getTimeout()) {
+                    close(connection, true);
+                }
+            }
+        }
+
+        protected void close(Connection connection, boolean timeout) {
+            if (!connection.channel.isOpen()) {
+                return;
+            }
+            try {
+                connection.channel.close();
+
+            } catch (IOException ioe) {
+                //
+            }
+            activeConnections.decrementAndGet();
+            offer(new Entry(CLOSE, connection.socket, connection.socketAddress, connection.inetAddress, null, timeout, null));
+        }
+    }
+
+    /**
+     * Takes the entries from the queue and calls the event handlers.
+     */
+    protected class Dispatcher implements Runnable {
+        protected final List<Entry> batch = new ArrayList<Entry>();
+
+        protected long lastSample = System.currentTimeMillis();
+
+        protected long lastHandled;
+
+        public void run() {
+            int batchSize = Math.max(1, nioNetSyslogServerConfig.getBatchSize());
+            while (dispatching || !queue.isEmpty()) {
+                try {
+                    Entry entry = queue.poll(SyslogConstants.THREAD_LOOP_INTERVAL_DEFAULT, TimeUnit.MILLISECONDS);
+                    if (entry != null) {
+                        this.batch.add(entry);
+                        queue.drainTo(this.batch, batchSize - 1);
+                        for (int i = 0; i < this.batch.size(); i++) {
+                            dispatch(this.batch.get(i));
+                        }
+                        this.batch.clear();
+                    }
+
+                } catch (InterruptedException ie) {
+                    Thread.currentThread().interrupt();
+                    break;
+                }
+                sample();
+            }
+        }
+
+        protected void sample() {
+            long now = System.currentTimeMillis();
+            if (now - this.lastSample >= 1000) {
+                long count = handled.get();
+                eventsPerSecond = (count - this.lastHandled) * 1000.0 / (now - this.lastSample);
+                this.lastHandled = count;
+                this.lastSample = now;
+            }
+        }
+    }
+
+    protected NIONetSyslogServerConfigIF nioNetSyslogServerConfig = null;
+
+    protected final Sessions sessions = new Sessions();
+
+    protected Selector selector = null;
+
+    protected ServerSocketChannel serverSocketChannel = null;
+
+    protected DatagramChannel datagramChannel = null;
+
+    protected SelectorThread[] selectorThreads = null;
+
+    protected BlockingQueue<Entry> queue = null;
+
+    protected volatile boolean dispatching = false;
+
+    protected final AtomicInteger activeConnections = new AtomicInteger();
+
+    protected final AtomicLong received = new AtomicLong();
+
+    protected final AtomicLong handled = new AtomicLong();
+
+    protected final AtomicLong dropped = new AtomicLong();
+
+    protected volatile double eventsPerSecond = 0.0;
+
+    public void initialize() throws SyslogRuntimeException {
+        this.nioNetSyslogServerConfig = null;
+
+        try {
+            this.nioNetSyslogServerConfig = (NIONetSyslogServerConfigIF) this.syslogServerConfig;
+
+        } catch (ClassCastException cce) {
+            throw new SyslogRuntimeException("config must be of type NIONetSyslogServerConfig");
+        }
+
+        if (this.syslogServerConfig == null) {
+            throw new SyslogRuntimeException("config cannot be null");
+        }
+
+        if (this.nioNetSyslogServerConfig.getBacklog() < 1) {
+            this.nioNetSyslogServerConfig.setBacklog(SyslogConstants.SERVER_SOCKET_BACKLOG_DEFAULT);
+        }
+
+        if (this.nioNetSyslogServerConfig.getSelectorThreads() < 1) {
+            this.nioNetSyslogServerConfig.setSelectorThreads(SyslogConstants.NIO_SELECTOR_THREADS_DEFAULT);
+        }
+
+        if (this.nioNetSyslogServerConfig.getQueueSize() < 1) {
+            this.nioNetSyslogServerConfig.setQueueSize(SyslogConstants.NIO_QUEUE_SIZE_DEFAULT);
+        }
+    }
+
+    public Sessions getSessions() {
+        return this.sessions;
+    }
+
+    /**
+     * @return the number of open TCP connections
+     */
+    public int getActiveConnections() {
+        return this.activeConnections.get();
+    }
+
+    /**
+     * @return the number of entries waiting in the event queue
+     */
+    public int getQueueDepth() {
+        BlockingQueue<Entry> q = this.queue;
+        return q != null ? q.size() : 0;
+    }
+
+    /**
+     * @return the number of frames received
+     */
+    public long getReceivedEvents() {
+        return this.received.get();
+    }
+
+    /**
+     * @return the number of events passed to the event handlers
+     */
+    public long getHandledEvents() {
+        return this.handled.get();
+    }
+
+    /**
+     * @return the number of frames dropped because the event queue was full
+     */
+    public long getDroppedEvents() {
+        return this.dropped.get();
+    }
+
+    /**
+     * @return the number of events passed to the event handlers per second, sampled every second
+     */
+    public double getEventsPerSecond() {
+        return this.eventsPerSecond;
+    }
+
+    public synchronized void shutdown() {
+        super.shutdown();
+
+        if (this.syslogServerConfig.getShutdownWait() > 0) {
+            try {
+                Thread.sleep(this.syslogServerConfig.getShutdownWait());
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+            }
+        }
+
+        Selector s = this.selector;
+        if (s != null) {
+            s.wakeup();
+        }
+
+        this.thread = null;
+    }
+
+    protected SocketAddress getBindAddress() throws IOException {
+        if (this.syslogServerConfig.getHost() != null) {
+            InetAddress inetAddress = InetAddress.getByName(this.syslogServerConfig.getHost());
+
+            return new InetSocketAddress(inetAddress, this.syslogServerConfig.getPort());
+
+        } else {
+            return new InetSocketAddress(this.syslogServerConfig.getPort());
+        }
+    }
+
+    protected ServerSocketChannel createServerSocketChannel() throws IOException {
+        ServerSocketChannel channel = ServerSocketChannel.open();
+
+        channel.socket().setReuseAddress(SyslogConstants.TCP_REUSE_ADDRESS_DEFAULT);
+        channel.socket().bind(getBindAddress(), this.nioNetSyslogServerConfig.getBacklog());
+        channel.configureBlocking(false);
+
+        return channel;
+    }
+
+    protected DatagramChannel createDatagramChannel() throws IOException {
+        DatagramChannel channel = DatagramChannel.open();
+
+        channel.socket().bind(getBindAddress());
+        channel.configureBlocking(false);
+
+        return channel;
+    }
+
+    public void run() {
+        SelectionKey acceptKey = null;
+
+        try {
+            this.shutdown = false;
+            this.selector = Selector.open();
+
+            if (this.nioNetSyslogServerConfig.isUseTCP()) {
+                this.serverSocketChannel = createServerSocketChannel();
+                acceptKey = this.serverSocketChannel.register(this.selector, SelectionKey.OP_ACCEPT);
+            }
+
+            if (this.nioNetSyslogServerConfig.isUseUDP()) {
+                this.datagramChannel = createDatagramChannel();
+                this.datagramChannel.register(this.selector, SelectionKey.OP_READ);
+            }
+
+            this.selectorThreads = new SelectorThread[this.nioNetSyslogServerConfig.getSelectorThreads()];
+            for (int i = 0; i < this.selectorThreads.length; i++) {
+                this.selectorThreads[i] = new SelectorThread();
+            }
+
+        } catch (IOException ioe) {
+            closeChannels();
+            throw new SyslogRuntimeException(ioe);
+        }
+
+        this.queue = new ArrayBlockingQueue<Entry>(this.nioNetSyslogServerConfig.getQueueSize());
+        this.dispatching = true;
+
+        handleInitialize(this);
+
+        Thread dispatcherThread = startThread(new Dispatcher(), "dispatcher");
+        Thread[] threads = new Thread[this.selectorThreads.length];
+        for (int i = 0; i < threads.length; i++) {
+            threads[i] = startThread(this.selectorThreads[i], "selector " + i);
+        }
+
+        ByteBuffer buffer = ByteBuffer.allocateDirect(this.nioNetSyslogServerConfig.getReceiveBufferSize());
+        int next = 0;
+
+        while (!this.shutdown) {
+            try {
+                this.selector.select(SyslogConstants.THREAD_LOOP_INTERVAL_DEFAULT);
+
+                Iterator<SelectionKey> i = this.selector.selectedKeys().iterator();
+                while (i.hasNext()) {
+                    SelectionKey key = i.next();
+                    i.remove();
+
+                    if (!key.isValid()) {
+                        continue;
+                    }
+
+                    if (key.isAcceptable()) {
+                        if (accept(acceptKey, this.selectorThreads[next])) {
+                            next = (next + 1) % this.selectorThreads.length;
+                        }
+
+                    } else if (key.isReadable()) {
+                        receive(buffer);
+                    }
+                }
+
+                if (acceptKey != null && acceptKey.interestOps() == 0 && !isMaxActiveConnections()) {
+                    acceptKey.interestOps(SelectionKey.OP_ACCEPT);
+                }
+
+            } catch (IOException ioe) {
+                //
+            }
+        }
+
+        closeChannels();
+
+        for (int i = 0; i < this.selectorThreads.length; i++) {
+            this.selectorThreads[i].selector.wakeup();
+            join(threads[i]);
+        }
+
+        this.dispatching = false;
+        join(dispatcherThread);
+
+        handleDestroy(this);
+    }
+
+    protected boolean isMaxActiveConnections() {
+        int max = this.nioNetSyslogServerConfig.getMaxActiveSockets();
+
+        return max > 0 && this.activeConnections.get() >= max;
+    }
+
+    protected boolean accept(SelectionKey acceptKey, SelectorThread selectorThread) throws IOException {
+        if (isMaxActiveConnections() && this.nioNetSyslogServerConfig.getMaxActiveSocketsBehavior() == NIONetSyslogServerConfigIF.MAX_ACTIVE_SOCKETS_BEHAVIOR_BLOCK) {
+            // stop accepting until a connection is closed
+            acceptKey.interestOps(0);
+            return false;
+        }
+
+        SocketChannel channel = this.serverSocketChannel.accept();
+
+        if (channel == null) {
+            return false;
+        }
+
+        if (isMaxActiveConnections()) {
+            try {
+                channel.close();
+
+            } catch (IOException e) {
+                //
+            }
+
+            return false;
+        }
+
+        channel.configureBlocking(false);
+
+        Connection connection = new Connection(channel, this.nioNetSyslogServerConfig.getMaxFrameLength());
+
+        this.activeConnections.incrementAndGet();
+
+        // the session is opened before the selector thread can queue events of the connection
+        offer(new Entry(OPEN, connection.socket, connection.socketAddress, connection.inetAddress, null, false, null));
+
+        selectorThread.register(connection);
+
+        return true;
+    }
+
+    protected void receive(ByteBuffer buffer) {
+        // read a limited number of datagrams to be fair to the connections to accept
+        for (int n = 0; n < 64; n++) {
+            SocketAddress socketAddress = null;
+
+            try {
+                buffer.clear();
+
+                socketAddress = this.datagramChannel.receive(buffer);
+
+                if (socketAddress == null) {
+                    return;
+                }
+
+                buffer.flip();
+
+                int length = buffer.remaining();
+                while (length > 0) {
+                    byte b = buffer.get(length - 1);
+                    if (b != '\n' && b != '\r' && b != 0) {
+                        break;
+                    }
+                    length--;
+                }
+
+                if (length > 0) {
+                    byte[] frame = new byte[Math.min(length, this.nioNetSyslogServerConfig.getMaxFrameLength())];
+                    buffer.get(frame);
+
+                    InetAddress inetAddress = ((InetSocketAddress) socketAddress).getAddress();
+
+                    offerEvent(new Entry(EVENT, null, socketAddress, inetAddress, frame, false, null));
+                }
+
+            } catch (IOException ioe) {
+                offer(new Entry(EXCEPTION, null, socketAddress, null, null, false, ioe));
+                return;
+            }
+        }
+    }
+
+    /**
+     * Queues an event entry according to the queue full behavior.
+     *
+     * @param entry the entry
+     */
+    protected void offerEvent(Entry entry) {
+        this.received.incrementAndGet();
+
+        if (this.nioNetSyslogServerConfig.getQueueFullBehavior() == NIONetSyslogServerConfigIF.QUEUE_FULL_BEHAVIOR_DROP) {
+            if (!this.queue.offer(entry)) {
+                this.dropped.incrementAndGet();
+            }
+
+        } else {
+            offer(entry);
+        }
+    }
+
+    /**
+     * Queues an entry, waits while the queue is full, so session and exception entries are not
+     * dropped for a full queue. An entry is only dropped if the dispatcher has stopped and will
+     * not take it any more; dropped events are counted.
+     *
+     * @param entry the entry
+     */
+    protected void offer(Entry entry) {
+        try {
+            while (!this.queue.offer(entry, SyslogConstants.THREAD_LOOP_INTERVAL_DEFAULT, TimeUnit.MILLISECONDS)) {
+                if (!this.dispatching) {
+                    if (entry.type == EVENT) {
+                        this.dropped.incrementAndGet();
+                    }
+                    return;
+                }
+            }
+
+        } catch (InterruptedException ie) {
+            Thread.currentThread().interrupt();
+        }
+    }
+
+    protected void dispatch(Entry entry) {
+        switch (entry.type) {
+            case OPEN:
+                this.sessions.addSocket(entry.socket);
+                handleSessionOpen(this.sessions, this, entry.socket);
+                break;
+
+            case EVENT:
+                SyslogServerEventIF event;
+
+                try {
+                    event = createEvent(getConfig(), entry.frame, entry.frame.length, entry.inetAddress);
+
+                } catch (RuntimeException re) {
+                    handleException(null, this, entry.socketAddress, re);
+                    break;
+                }
+
+                handleEvent(entry.socket != null ? this.sessions : null, this, entry.socket, entry.socketAddress, event);
+                this.handled.incrementAndGet();
+                break;
+
+            case CLOSE:
+                handleSessionClosed(this.sessions, this, entry.socket, entry.timeout);
+                this.sessions.removeSocket(entry.socket);
+                synchronized (Sessions.syncObject) {
+                    this.sessions.remove(entry.socket);
+                }
+                break;
+
+            case EXCEPTION:
+                handleException(null, this, entry.socketAddress, entry.exception);
+                break;
+
+            default:
+                break;
+        }
+    }
+
+    protected Thread startThread(Runnable runnable, String name) {
+        Thread t = new Thread(runnable);
+        t.setName("SyslogServer: " + getProtocol() + " " + name);
+        t.setDaemon(this.syslogServerConfig.isUseDaemonThread());
+        t.start();
+
+        return t;
+    }
+
+    protected void join(Thread t) {
+        try {
+            t.join();
+
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+    }
+
+    protected void closeChannels() {
+        try {
+            if (this.serverSocketChannel != null) {
+                this.serverSocketChannel.close();
+            }
+
+            if (this.datagramChannel != null) {
+                this.datagramChannel.close();
+            }
+
+            if (this.selector != null) {
+                this.selector.close();
+            }
+
+        } catch (IOException ioe) {
+            //
+        }
+    }
+}
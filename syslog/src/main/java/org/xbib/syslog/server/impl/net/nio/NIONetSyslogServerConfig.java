@@ -0,0 +1,103 @@
+package org.xbib.syslog.server.impl.net.nio;
+
+import org.xbib.syslog.server.impl.net.tcp.TCPNetSyslogServerConfig;
+
+/**
+ * NIONetSyslogServerConfig provides configuration for NIONetSyslogServer.
+ */
+public class NIONetSyslogServerConfig extends TCPNetSyslogServerConfig implements NIONetSyslogServerConfigIF {
+
+    protected boolean useTCP = NIO_USE_TCP_DEFAULT;
+    protected boolean useUDP = NIO_USE_UDP_DEFAULT;
+    protected int selectorThreads = NIO_SELECTOR_THREADS_DEFAULT;
+    protected int receiveBufferSize = NIO_RECEIVE_BUFFER_SIZE_DEFAULT;
+    protected int maxFrameLength = NIO_MAX_FRAME_LENGTH_DEFAULT;
+    protected int queueSize = NIO_QUEUE_SIZE_DEFAULT;
+    protected int batchSize = NIO_BATCH_SIZE_DEFAULT;
+    protected byte queueFullBehavior = NIO_QUEUE_FULL_BEHAVIOR_DEFAULT;
+
+    public NIONetSyslogServerConfig() {
+        //
+    }
+
+    public NIONetSyslogServerConfig(int port) {
+        this.port = port;
+    }
+
+    public NIONetSyslogServerConfig(String host) {
+        this.host = host;
+    }
+
+    public NIONetSyslogServerConfig(String host, int port) {
+        this.host = host;
+        this.port = port;
+    }
+
+    public Class getSyslogServerClass() {
+        return NIONetSyslogServer.class;
+    }
+
+    public boolean isUseTCP() {
+        return useTCP;
+    }
+
+    public void setUseTCP(boolean useTCP) {
+        this.useTCP = useTCP;
+    }
+
+    public boolean isUseUDP() {
+        return useUDP;
+    }
+
+    public void setUseUDP(boolean useUDP) {
+        this.useUDP = useUDP;
+    }
+
+    public int getSelectorThreads() {
+        return selectorThreads;
+    }
+
+    public void setSelectorThreads(int selectorThreads) {
+        this.selectorThreads = selectorThreads;
+    }
+
+    public int getReceiveBufferSize() {
+        return receiveBufferSize;
+    }
+
+    public void setReceiveBufferSize(int receiveBufferSize) {
+        this.receiveBufferSize = receiveBufferSize;
+    }
+
+    public int getMaxFrameLength() {
+        return maxFrameLength;
+    }
+
+    public void setMaxFrameLength(int maxFrameLength) {
+        this.maxFrameLength = maxFrameLength;
+    }
+
+    public int getQueueSize() {
+        return queueSize;
+    }
+
+    public void setQueueSize(int queueSize) {
+        this.queueSize = queueSize;
+    }
+
+    public int getBatchSize() {
+        return batchSize;
+    }
+
+    public void setBatchSize(int batchSize) {
+        this.batchSize = batchSize;
+    }
+
+    public byte getQueueFullBehavior() {
+        return queueFullBehavior;
+    }
+
+    public void setQueueFullBehavior(byte queueFullBehavior) {
+        this.queueFullBehavior = queueFullBehavior;
+    }
+}
@@ -0,0 +1,45 @@
+package org.xbib.syslog.server.impl.net.nio;
+
+import org.xbib.syslog.server.impl.net.tcp.TCPNetSyslogServerConfigIF;
+
+/**
+ * NIONetSyslogServerConfigIF provides configuration for NIONetSyslogServer.
+ */
+public interface NIONetSyslogServerConfigIF extends TCPNetSyslogServerConfigIF {
+
+    public final static byte QUEUE_FULL_BEHAVIOR_BLOCK = 0;
+
+    public final static byte QUEUE_FULL_BEHAVIOR_DROP = 1;
+
+    public boolean isUseTCP();
+
+    public void setUseTCP(boolean useTCP);
+
+    public boolean isUseUDP();
+
+    public void setUseUDP(boolean useUDP);
+
+    public int getSelectorThreads();
+
+    public void setSelectorThreads(int selectorThreads);
+
+    public int getReceiveBufferSize();
+
+    public void setReceiveBufferSize(int receiveBufferSize);
+
+    public int getMaxFrameLength();
+
+    public void setMaxFrameLength(int maxFrameLength);
+
+    public int getQueueSize();
+
+    public void setQueueSize(int queueSize);
+
+    public int getBatchSize();
+
+    public void setBatchSize(int batchSize);
+
+    public byte getQueueFullBehavior();
+
+    public void setQueueFullBehavior(byte queueFullBehavior);
+}
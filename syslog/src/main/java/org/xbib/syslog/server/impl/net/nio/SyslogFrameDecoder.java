@@ -0,0 +1,204 @@
+package org.xbib.syslog.server.impl.net.nio;
+
+import java.nio.ByteBuffer;
+import java.util.Arrays;
+import java.util.List;
+
+/**
+ * SyslogFrameDecoder splits a syslog TCP stream into frames as described in RFC 6587.
+ *
+ * A frame starting with a non-zero digit uses octet counting ("LENGTH SP MSG"), any other
+ * frame is terminated by LF or NUL (non-transparent framing), a trailing CR is removed.
+ * The decoder reads from the ByteBuffer and copies only the bytes of a frame, so one
+ * receive buffer can be shared by all connections of a selector thread. Frames longer
+ * than the maximum frame length are truncated.
+ */
+public class SyslogFrameDecoder {
+
+    private final static int START = 0;
+    private final static int COUNT = 1;
+    private final static int OCTETS = 2;
+    private final static int LINE = 3;
+    private final static int DISCARD = 4;
+
+    private final int maxFrameLength;
+
+    private int state = START;
+
+    private int count;
+
+    private int digits;
+
+    private byte[] frame;
+
+    private int frameLength;
+
+    private int discard;
+
+    public SyslogFrameDecoder(int maxFrameLength) {
+        this.maxFrameLength = maxFrameLength;
+    }
+
+    /**
+     * Decodes all remaining bytes of the buffer and adds the completed frames to the list.
+     * Incomplete frames are kept until the next call.
+     *
+     * @param in     the buffer, ready for reading
+     * @param frames the list of frames
+     */
+    public void decode(ByteBuffer in, List<byte[]> frames) {
+        while (in.hasRemaining()) {
+            switch (state) {
+                case START: {
+                    byte b = in.get(in.position());
+                    if (b == '\n' || b == '\r' || b == 0) {
+                        in.get();
+                    } else if (b >= '1' && b <= '9') {
+                        state = COUNT;
+                        count = 0;
+                        digits = 0;
+                    } else {
+                        state = LINE;
+                    }
+                    break;
+                }
+                case COUNT: {
+                    byte b = in.get();
+                    if (b >= '0' && b <= '9' && digits < 9) {
+                        count = count * 10 + (b - '0');
+                        digits++;
+                    } else if (b == ' ') {
+                        frame = new byte[Math.min(count, maxFrameLength)];
+                        frameLength = 0;
+                        discard = count - frame.length;
+                        state = OCTETS;
+                    } else {
+                        // not octet counting, the digits are the start of a line
+                        byte[] b10 = Integer.toString(count).getBytes();
+                        frame = null;
+                        frameLength = 0;
+                        append(b10, 0, b10.length);
+                        if (b == '\n' || b == 0) {
+                            emitLine(frames);
+                            state = START;
+                        } else {
+                            append(new byte[]{b}, 0, 1);
+                            state = LINE;
+                        }
+                    }
+                    break;
+                }
+                case OCTETS: {
+                    int n = Math.min(frame.length - frameLength, in.remaining());
+                    in.get(frame, frameLength, n);
+                    frameLength += n;
+                    if (frameLength == frame.length) {
+                        if (frameLength > 0) {
+                            frames.add(frame);
+                        }
+                        frame = null;
+                        frameLength = 0;
+                        state = discard > 0 ? DISCARD : START;
+                    }
+                    break;
+                }
+                case LINE: {
+                    int start = in.position();
+                    int limit = in.limit();
+                    int i = start;
+                    while (i < limit) {
+                        byte b = in.get(i);
+                        if (b == '\n' || b == 0) {
+                            break;
+                        }
+                        i++;
+                    }
+                    if (frameLength == 0 && i < limit) {
+                        // the whole line is in the buffer
+                        int len = Math.min(i - start, maxFrameLength);
+                        if (len == i - start && len > 0 && in.get(start + len - 1) == '\r') {
+                            len--;
+                        }
+                        if (len > 0) {
+                            byte[] b = new byte[len];
+                            in.get(b);
+                            frames.add(b);
+                        }
+                    } else {
+                        int len = Math.min(i - start, maxFrameLength - frameLength);
+                        ensureCapacity(frameLength + len);
+                        in.get(frame, frameLength, len);
+                        frameLength += len;
+                        if (i < limit) {
+                            emitLine(frames);
+                        }
+                    }
+                    if (i < limit) {
+                        state = START;
+                        in.position(i + 1);
+                    } else {
+                        in.position(limit);
+                    }
+                    break;
+                }
+                case DISCARD: {
+                    int n = Math.min(discard, in.remaining());
+                    in.position(in.position() + n);
+                    discard -= n;
+                    if (discard == 0) {
+                        state = START;
+                    }
+                    break;
+                }
+                default:
+                    throw new IllegalStateException();
+            }
+        }
+    }
+
+    /**
+     * Adds a pending line to the list at the end of the stream. An incomplete octet counted
+     * frame is dropped.
+     *
+     * @param frames the list of frames
+     */
+    public void flush(List<byte[]> frames) {
+        if (state == LINE) {
+            emitLine(frames);
+        } else if (state == COUNT && digits > 0) {
+            byte[] b10 = Integer.toString(count).getBytes();
+            frames.add(b10);
+        }
+        frame = null;
+        frameLength = 0;
+        state = START;
+    }
+
+    private void append(byte[] b, int off, int len) {
+        len = Math.min(len, maxFrameLength - frameLength);
+        ensureCapacity(frameLength + len);
+        System.arraycopy(b, off, frame, frameLength, len);
+        frameLength += len;
+    }
+
+    private void ensureCapacity(int size) {
+        if (frame == null) {
+            frame = new byte[Math.min(Math.max(256, size), maxFrameLength)];
+        } else if (frame.length < size) {
+            frame = Arrays.copyOf(frame, Math.min(Math.max(frame.length * 2, size), maxFrameLength));
+        }
+    }
+
+    private void emitLine(List<byte[]> frames) {
+        int len = frameLength;
+        if (len > 0 && frame[len - 1] == '\r') {
+            len--;
+        }
+        if (len > 0) {
+            frames.add(Arrays.copyOf(frame, len));
+        }
+        // do not keep the buffer of an idle connection
+        frame = null;
+        frameLength = 0;
+    }
+}
@@ -0,0 +1,100 @@
+package org.xbib.syslog.server.impl.net.nio;
+
+import org.testng.Assert;
+import org.testng.annotations.Test;
+import org.xbib.syslog.server.SyslogServerIF;
+import org.xbib.syslog.server.SyslogServerEventIF;
+import org.xbib.syslog.server.SyslogServerSessionlessEventHandlerIF;
+
+import java.io.OutputStream;
+import java.net.DatagramPacket;
+import java.net.DatagramSocket;
+import java.net.InetAddress;
+import java.net.ServerSocket;
+import java.net.Socket;
+import java.net.SocketAddress;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+
+public class NIONetSyslogServerTest extends Assert {
+
+    @Test
+    public void testLoopback() throws Exception {
+        int port;
+        ServerSocket serverSocket = new ServerSocket(0);
+        try {
+            port = serverSocket.getLocalPort();
+        } finally {
+            serverSocket.close();
+        }
+        NIONetSyslogServerConfig config = new NIONetSyslogServerConfig("127.0.0.1", port);
+        config.setShutdownWait(0);
+        config.setSelectorThreads(2);
+        final CountDownLatch started = new CountDownLatch(1);
+        final CountDownLatch received = new CountDownLatch(4);
+        final List<String> messages = Collections.synchronizedList(new ArrayList<String>());
+        config.addEventHandler(new SyslogServerSessionlessEventHandlerIF() {
+            public void initialize(SyslogServerIF syslogServer) {
+                started.countDown();
+            }
+
+            public void event(SyslogServerIF syslogServer, SocketAddress socketAddress, SyslogServerEventIF event) {
+                messages.add(event.getMessage());
+                received.countDown();
+            }
+
+            public void exception(SyslogServerIF syslogServer, SocketAddress socketAddress, Exception exception) {
+            }
+
+            public void destroy(SyslogServerIF syslogServer) {
+            }
+        });
+        NIONetSyslogServer server = new NIONetSyslogServer();
+        server.initialize("nio", config);
+        Thread thread = new Thread(server);
+        server.setThread(thread);
+        thread.start();
+        try {
+            assertTrue(started.await(10, TimeUnit.SECONDS));
+            Socket socket = new Socket("127.0.0.1", port);
+            try {
+                OutputStream out = socket.getOutputStream();
+                out.write("<13>Oct 18 12:00:00 host tcp line\n".getBytes());
+                byte[] counted = "<13>Oct 18 12:00:01 host tcp counted".getBytes();
+                out.write((counted.length + " ").getBytes());
+                out.write(counted);
+                out.write("<13>Oct 18 12:00:02 host tcp ".getBytes());
+                out.flush();
+                out.write("split\r\n".getBytes());
+                out.flush();
+            } finally {
+                socket.close();
+            }
+            DatagramSocket datagramSocket = new DatagramSocket();
+            try {
+                byte[] b = "<13>Oct 18 12:00:03 host udp datagram".getBytes();
+                datagramSocket.send(new DatagramPacket(b, b.length, InetAddress.getByName("127.0.0.1"), port));
+            } finally {
+                datagramSocket.close();
+            }
+            assertTrue(received.await(10, TimeUnit.SECONDS), messages.toString());
+            List<String> sorted = new ArrayList<String>(messages);
+            Collections.sort(sorted);
+            assertEquals(sorted.size(), 4);
+            assertTrue(sorted.get(0).endsWith("tcp counted"), sorted.toString());
+            assertTrue(sorted.get(1).endsWith("tcp line"), sorted.toString());
+            assertTrue(sorted.get(2).endsWith("tcp split"), sorted.toString());
+            assertTrue(sorted.get(3).endsWith("udp datagram"), sorted.toString());
+            assertEquals(server.getReceivedEvents(), 4L);
+            assertEquals(server.getDroppedEvents(), 0L);
+        } finally {
+            server.shutdown();
+            thread.join(10000);
+        }
+        assertFalse(thread.isAlive());
+        assertEquals(server.getHandledEvents(), 4L);
+    }
+}
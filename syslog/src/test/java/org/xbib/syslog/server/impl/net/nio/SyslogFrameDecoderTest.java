@@ -0,0 +1,80 @@
+package org.xbib.syslog.server.impl.net.nio;
+
+import org.testng.Assert;
+import org.testng.annotations.Test;
+
+import java.nio.ByteBuffer;
+import java.util.ArrayList;
+import java.util.List;
+
+public class SyslogFrameDecoderTest extends Assert {
+
+    @Test
+    public void testOctetCountingSplit() {
+        SyslogFrameDecoder decoder = new SyslogFrameDecoder(1024);
+        List<byte[]> frames = new ArrayList<byte[]>();
+        byte[] b = "11 hello\nworld5 again".getBytes();
+        // split inside the count, between count and message, and inside the message
+        int[] cuts = {0, 1, 3, 7, 14, 15, b.length};
+        for (int i = 1; i < cuts.length; i++) {
+            decoder.decode(ByteBuffer.wrap(b, cuts[i - 1], cuts[i] - cuts[i - 1]), frames);
+        }
+        assertEquals(strings(frames), new String[]{"hello\nworld", "again"});
+    }
+
+    @Test
+    public void testLineFraming() {
+        SyslogFrameDecoder decoder = new SyslogFrameDecoder(1024);
+        List<byte[]> frames = new ArrayList<byte[]>();
+        decoder.decode(ByteBuffer.wrap("<13>one\n<13>two\u0000<13>th".getBytes()), frames);
+        decoder.decode(ByteBuffer.wrap("ree\n\n<13>four".getBytes()), frames);
+        assertEquals(strings(frames), new String[]{"<13>one", "<13>two", "<13>three"});
+        decoder.flush(frames);
+        assertEquals(strings(frames), new String[]{"<13>one", "<13>two", "<13>three", "<13>four"});
+    }
+
+    @Test
+    public void testCarriageReturn() {
+        SyslogFrameDecoder decoder = new SyslogFrameDecoder(1024);
+        List<byte[]> frames = new ArrayList<byte[]>();
+        decoder.decode(ByteBuffer.wrap("<13>one\r\n<13>t".getBytes()), frames);
+        decoder.decode(ByteBuffer.wrap("wo\r".getBytes()), frames);
+        decoder.decode(ByteBuffer.wrap("\n\r\n<13>a\rb\n".getBytes()), frames);
+        assertEquals(strings(frames), new String[]{"<13>one", "<13>two", "<13>a\rb"});
+    }
+
+    @Test
+    public void testDigitsStartingALine() {
+        SyslogFrameDecoder decoder = new SyslogFrameDecoder(1024);
+        List<byte[]> frames = new ArrayList<byte[]>();
+        decoder.decode(ByteBuffer.wrap("2015-01-01 message\n42\n".getBytes()), frames);
+        assertEquals(strings(frames), new String[]{"2015-01-01 message", "42"});
+    }
+
+    @Test
+    public void testTruncation() {
+        SyslogFrameDecoder decoder = new SyslogFrameDecoder(8);
+        List<byte[]> frames = new ArrayList<byte[]>();
+        // a line in one buffer, a line over two buffers, an octet counted frame
+        decoder.decode(ByteBuffer.wrap("abcdefghijkl\nabcdef".getBytes()), frames);
+        decoder.decode(ByteBuffer.wrap("ghijkl\n12 abcdefghijklnext\n".getBytes()), frames);
+        assertEquals(strings(frames), new String[]{"abcdefgh", "abcdefgh", "abcdefgh", "next"});
+    }
+
+    @Test
+    public void testIncompleteOctetCountedFrameIsDropped() {
+        SyslogFrameDecoder decoder = new SyslogFrameDecoder(1024);
+        List<byte[]> frames = new ArrayList<byte[]>();
+        decoder.decode(ByteBuffer.wrap("10 short".getBytes()), frames);
+        decoder.flush(frames);
+        assertTrue(frames.isEmpty());
+    }
+
+    private static String[] strings(List<byte[]> frames) {
+        String[] s = new String[frames.size()];
+        for (int i = 0; i < s.length; i++) {
+            s[i] = new String(frames.get(i));
+        }
+        return s;
+    }
+}
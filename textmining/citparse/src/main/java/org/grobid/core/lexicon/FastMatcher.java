@@ -4,6 +4,8 @@ import org.grobid.core.exceptions.GrobidException;
 import org.grobid.core.exceptions.GrobidResourceException;
 import org.grobid.core.utilities.TextUtilities;
 import org.grobid.core.utilities.OffsetPosition;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
 
 import java.util.*;
 import java.io.*;
@@ -11,10 +13,22 @@ import java.io.*;
 /**
  * Class for fast matching of word sequences over text stream.
  *
+ * The terms are compiled into a trie over token IDs: every distinct token of the lexicon
+ * gets an int, and the children of a node are kept as sorted int arrays. Matching a text
+ * looks up each token once and follows the open matches with a binary search.
+ *
+ * The compiled trie is written next to the lexicon file with the suffix ".trie", together
+ * with the length and the modification time of the lexicon file it was compiled from. It is
+ * read instead of the lexicon only as long as both still match the lexicon file.
+ *
  * @author Patrice Lopez
  */
 public final class FastMatcher {
-    private Map terms = null;
+    private static final Logger LOGGER = LoggerFactory.getLogger(FastMatcher.class);
+
+    public static final String COMPILED_SUFFIX = ".trie";
+
+    private Trie trie = null;
 
     public FastMatcher(File file) {
         if (!file.exists()) {
@@ -25,11 +39,28 @@ public final class FastMatcher {
             throw new GrobidResourceException("Cannot add terms to matcher, because cannot read file '" +
                     file.getAbsolutePath() + "'.");
         }
+        File compiled = new File(file.getPath() + COMPILED_SUFFIX);
+        if (compiled.exists()) {
+            try {
+                trie = Trie.read(compiled, file.length(), file.lastModified());
+                if (trie != null) {
+                    return;
+                }
+                LOGGER.debug("Compiled lexicon '" + compiled.getAbsolutePath() + "' is out of date, reading the terms");
+            } catch (Exception e) {
+                LOGGER.warn("Cannot read compiled lexicon '" + compiled.getAbsolutePath() + "', reading the terms", e);
+            }
+        }
         try {
             loadTerms(file);
         } catch (Exception e) {
             throw new GrobidException("An exception occured while running Grobid.", e);
         }
+        try {
+            save(compiled, file);
+        } catch (IOException e) {
+            LOGGER.debug("Cannot write compiled lexicon '" + compiled.getAbsolutePath() + "'", e);
+        }
     }
 
     public int loadTerms(File file) throws IOException, ClassNotFoundException,
@@ -38,47 +69,83 @@ public final class FastMatcher {
         InputStreamReader reader = new InputStreamReader(fileIn, "UTF-8");
         BufferedReader bufReader = new BufferedReader(reader);
         String line;
-        if (terms == null) {
-            terms = new HashMap();
-        }
-        Map t = terms;
+        TrieBuilder builder = new TrieBuilder(trie);
         int nbTerms = 0;
 		String token = null;
         while ((line = bufReader.readLine()) != null) {
             if (line.length() == 0) continue;
 			line = line.toLowerCase();
             StringTokenizer st = new StringTokenizer(line, " \n\t" + TextUtilities.fullPunctuations, false);
+            int node = 0;
             while (st.hasMoreTokens()) {
 				token = st.nextToken();
                 if (token.length() == 0) {
                     continue;
                 }
-                Map t2 = (Map) t.get(token);
-                if (t2 == null) {
-                    t2 = new HashMap();
-                    t.put(token, t2);
-                }
-                t = t2;
+                node = builder.child(node, token);
             }
             // end of the term
-            if (t != terms) {
-                Map t2 = (Map) t.get("#");
-                if (t2 == null) {
-                    t2 = new HashMap();
-                    t.put("#", t2);
-                }
+            if (node != 0) {
+                builder.terminal.set(node);
                 nbTerms++;
-                t = terms;
             }
         }
         bufReader.close();
         reader.close();
+        trie = builder.compile();
 
         return nbTerms;
     }
 
+    /**
+     * Write the compiled terms, to be read back by the constructor instead of the lexicon file
+     * as long as the lexicon file keeps its length and modification time. The terms are written
+     * to a temporary file first, so a concurrent reader never sees a partial file.
+     *
+     * @param file: the file to write to
+     * @param lexicon: the lexicon file the terms were loaded from
+     */
+    public void save(File file, File lexicon) throws IOException {
+        if (trie == null) {
+            return;
+        }
+        File tmp = File.createTempFile(file.getName(), ".tmp", file.getAbsoluteFile().getParentFile());
+        try {
+            ObjectOutputStream out = new ObjectOutputStream(new BufferedOutputStream(new FileOutputStream(tmp)));
+            try {
+                out.writeLong(lexicon.length());
+                out.writeLong(lexicon.lastModified());
+                out.writeObject(trie);
+            } finally {
+                out.close();
+            }
+            if (!tmp.renameTo(file) && !(file.delete() && tmp.renameTo(file))) {
+                throw new IOException("Cannot rename '" + tmp.getAbsolutePath() + "' to '" + file.getAbsolutePath() + "'");
+            }
+        } finally {
+            tmp.delete();
+        }
+    }
+
     private static String delimiters = " \n\t" + TextUtilities.fullPunctuations;
 
+    private static final boolean[] isDelimiter;
+
+    static {
+        char max = 0;
+        for (int i = 0; i < delimiters.length(); i++) {
+            max = (char) Math.max(max, delimiters.charAt(i));
+        }
+        isDelimiter = new boolean[max + 1];
+        for (int i = 0; i < delimiters.length(); i++) {
+            isDelimiter[delimiters.charAt(i)] = true;
+        }
+    }
+
+    private static boolean isDelimiter(char c) {
+        return c < isDelimiter.length && isDelimiter[c];
+    }
+
     /**
      * Identify terms in a piece of text and gives corresponding token positions.
      * All the matches are returned.
@@ -88,86 +155,74 @@ public final class FastMatcher {
      */
     public List<OffsetPosition> matcher(String text) {
         List<OffsetPosition> results = new ArrayList<OffsetPosition>();
-        List<Integer> startPos = new ArrayList<Integer>();
-        List<Integer> lastNonSeparatorPos = new ArrayList<Integer>();
-        List<Map> t = new ArrayList<Map>();
+        if (trie == null) {
+            return results;
+        }
+        // the open matches: trie node, position of the first and of the last token
+        Matches t = new Matches();
+        Matches new_t = new Matches();
         int currentPos = 0;
-        StringTokenizer st = new StringTokenizer(text, delimiters, true);
-        while (st.hasMoreTokens()) {
-            String token = st.nextToken();
-            if (token.equals(" ")) {
-                continue;
-            }
-            if (delimiters.indexOf(token) != -1) {
-                currentPos++;
-                continue;
-            }
-            if ((token.charAt(0) == '<') && (token.charAt(token.length() - 1) == '>')) {
-                currentPos++;
+        int tokenStart = -1;
+        for (int i = 0; i <= text.length(); i++) {
+            boolean endOfToken = i == text.length() || isDelimiter(text.charAt(i));
+            if (!endOfToken) {
+                if (tokenStart < 0) {
+                    tokenStart = i;
+                }
                 continue;
             }
-            token = token.toLowerCase();
-
-            // we try to complete opened matching
-            int i = 0;
-            List<Map> new_t = new ArrayList<Map>();
-            List<Integer> new_startPos = new ArrayList<Integer>();
-            List<Integer> new_lastNonSeparatorPos = new ArrayList<Integer>();
-            // continuation of current opened matching
-            for (Map tt : t) {
-                Map t2 = (Map) tt.get(token);
-                if (t2 != null) {
-                    new_t.add(t2);
-                    new_startPos.add(startPos.get(i));
-                    new_lastNonSeparatorPos.add(currentPos);
-                }
-                //else
-                {
-                    t2 = (Map) tt.get("#");
-                    if (t2 != null) {
-                        // end of the current term, matching sucesssful
-                        OffsetPosition ofp = new OffsetPosition();
-                        ofp.start = startPos.get(i).intValue();
-                        ofp.end = lastNonSeparatorPos.get(i).intValue();
-                        results.add(ofp);
+            if (tokenStart >= 0) {
+                if ((text.charAt(tokenStart) == '<') && (text.charAt(i - 1) == '>')) {
+                    currentPos++;
+                } else {
+                    int token = trie.tokenId(text.substring(tokenStart, i).toLowerCase());
+                    new_t.clear();
+                    // continuation of current opened matching
+                    for (int k = 0; k < t.size; k++) {
+                        int node = token < 0 ? -1 : trie.child(t.nodes[k], token);
+                        if (node >= 0) {
+                            new_t.add(node, t.startPos[k], currentPos);
+                        }
+                        if (trie.isTerminal(t.nodes[k])) {
+                            // end of the current term, matching sucesssful
+                            results.add(offsetPosition(t.startPos[k], t.lastNonSeparatorPos[k]));
+                        }
                     }
+                    // we start new matching starting at the current token
+                    int node = token < 0 ? -1 : trie.child(0, token);
+                    if (node >= 0) {
+                        new_t.add(node, currentPos, currentPos);
+                    }
+                    Matches swap = t;
+                    t = new_t;
+                    new_t = swap;
+                    currentPos++;
                 }
-                i++;
+                tokenStart = -1;
             }
-
-            // we start new matching starting at the current token
-            Map t2 = (Map) terms.get(token);
-            if (t2 != null) {
-                new_t.add(t2);
-                new_startPos.add(new Integer(currentPos));
-                new_lastNonSeparatorPos.add(currentPos);
+            if (i < text.length() && text.charAt(i) != ' ') {
+                currentPos++;
             }
-
-            t = new_t;
-            startPos = new_startPos;
-            lastNonSeparatorPos = new_lastNonSeparatorPos;
-            currentPos++;
         }
 
         // test if the end of the string correspond to the end of a term
-        int i = 0;
-        if (t != null) {
-            for (Map tt : t) {
-                Map t2 = (Map) tt.get("#");
-                if (t2 != null) {
-                    // end of the current term, matching sucesssful
-                    OffsetPosition ofp = new OffsetPosition();
-                    ofp.start = startPos.get(i).intValue();
-                    ofp.end = lastNonSeparatorPos.get(i).intValue();
-                    results.add(ofp);
-                }
-                i++;
+        for (int k = 0; k < t.size; k++) {
+            if (trie.isTerminal(t.nodes[k])) {
+                // end of the current term, matching sucesssful
+                results.add(offsetPosition(t.startPos[k], t.lastNonSeparatorPos[k]));
             }
         }
 
         return results;
     }
 
+    private static OffsetPosition offsetPosition(int start, int end) {
+        OffsetPosition ofp = new OffsetPosition();
+        ofp.start = start;
+        ofp.end = end;
+        return ofp;
+    }
+
     /**
      * Identify terms in a piece of text and gives corresponding token positions.
      * All the matches are returned.
@@ -176,13 +231,180 @@ public final class FastMatcher {
      * @return the list of offset positions of the matches, an empty list if no match have been found
      */
     public List<OffsetPosition> matcher(List<String> tokens) {
-        String text = "";
+        StringBuilder text = new StringBuilder();
         for (String token : tokens) {
             if (!token.trim().equals("@newline")) {
-                text += " " + token;
+                text.append(' ').append(token);
             }
         }
-        return matcher(text);
+        return matcher(text.toString());
     }
-}
 
+    /**
+     * The open matches while scanning a text, in parallel int arrays which grow as needed.
+     */
+    private static final class Matches {
+        int[] nodes = new int[8];
+        int[] startPos = new int[8];
+        int[] lastNonSeparatorPos = new int[8];
+        int size = 0;
+
+        void clear() {
+            size = 0;
+        }
+
+        void add(int node, int start, int last) {
+            if (size == nodes.length) {
+                nodes = Arrays.copyOf(nodes, size * 2);
+                startPos = Arrays.copyOf(startPos, size * 2);
+                lastNonSeparatorPos = Arrays.copyOf(lastNonSeparatorPos, size * 2);
+            }
+            nodes[size] = node;
+            startPos[size] = start;
+            lastNonSeparatorPos[size] = last;
+            size++;
+        }
+    }
+
+    /**
+     * The compiled terms. Node 0 is the root, the children of node n are at the indexes
+     * offsets[n] to offsets[n + 1] - 1 of labels, sorted by token ID, and of targets.
+     */
+    private static final class Trie implements Serializable {
+        private static final long serialVersionUID = 1L;
+
+        private final String[] tokens;
+        private final int[] offsets;
+        private final int[] labels;
+        private final int[] targets;
+        private final BitSet terminal;
+        private transient Map<String, Integer> tokenIds;
+
+        Trie(String[] tokens, int[] offsets, int[] labels, int[] targets, BitSet terminal) {
+            this.tokens = tokens;
+            this.offsets = offsets;
+            this.labels = labels;
+            this.targets = targets;
+            this.terminal = terminal;
+            index();
+        }
+
+        /**
+         * @return the trie, or null if it was compiled from a lexicon file with another length or modification time
+         */
+        static Trie read(File file, long length, long lastModified) throws IOException, ClassNotFoundException {
+            ObjectInputStream in = new ObjectInputStream(new BufferedInputStream(new FileInputStream(file)));
+            try {
+                if (in.readLong() != length || in.readLong() != lastModified) {
+                    return null;
+                }
+                return (Trie) in.readObject();
+            } finally {
+                in.close();
+            }
+        }
+
+        private void readObject(ObjectInputStream in) throws IOException, ClassNotFoundException {
+            in.defaultReadObject();
+            index();
+        }
+
+        private void index() {
+            tokenIds = new HashMap<String, Integer>(tokens.length * 2);
+            for (int i = 0; i < tokens.length; i++) {
+                tokenIds.put(tokens[i], i);
+            }
+        }
+
+        int size() {
+            return offsets.length - 1;
+        }
+
+        /**
+         * @return the ID of the token, -1 if no term contains the token
+         */
+        int tokenId(String token) {
+            Integer id = tokenIds.get(token);
+            return id == null ? -1 : id;
+        }
+
+        /**
+         * @return the child of the node for the token ID, -1 if there is none
+         */
+        int child(int node, int token) {
+            int i = Arrays.binarySearch(labels, offsets[node], offsets[node + 1], token);
+            return i < 0 ? -1 : targets[i];
+        }
+
+        boolean isTerminal(int node) {
+            return terminal.get(node);
+        }
+    }
+
+    /**
+     * Collects terms into a trie with maps as children, to be compiled into a {@link Trie}.
+     */
+    private static final class TrieBuilder {
+        final List<String> tokens = new ArrayList<String>();
+        final Map<String, Integer> tokenIds = new HashMap<String, Integer>();
+        final List<Map<Integer, Integer>> children = new ArrayList<Map<Integer, Integer>>();
+        final BitSet terminal = new BitSet();
+
+        TrieBuilder(Trie trie) {
+            children.add(new HashMap<Integer, Integer>());
+            if (trie == null) {
+                return;
+            }
+            for (String token : trie.tokens) {
+                tokenIds.put(token, tokens.size());
+                tokens.add(token);
+            }
+            for (int node = 1; node < trie.size(); node++) {
+                children.add(new HashMap<Integer, Integer>());
+            }
+            for (int node = 0; node < trie.size(); node++) {
+                for (int i = trie.offsets[node]; i < trie.offsets[node + 1]; i++) {
+                    children.get(node).put(trie.labels[i], trie.targets[i]);
+                }
+            }
+            terminal.or(trie.terminal);
+        }
+
+        int child(int node, String token) {
+            Integer id = tokenIds.get(token);
+            if (id == null) {
+                id = tokens.size();
+                tokenIds.put(token, id);
+                tokens.add(token);
+            }
+            Integer child = children.get(node).get(id);
+            if (child == null) {
+                child = children.size();
+                children.add(new HashMap<Integer, Integer>());
+                children.get(node).put(id, child);
+            }
+            return child;
+        }
+
+        Trie compile() {
+            int[] offsets = new int[children.size() + 1];
+            for (int node = 0; node < children.size(); node++) {
+                offsets[node + 1] = offsets[node] + children.get(node).size();
+            }
+            int[] labels = new int[offsets[children.size()]];
+            int[] targets = new int[labels.length];
+            for (int node = 0; node < children.size(); node++) {
+                Map<Integer, Integer> map = children.get(node);
+                int i = offsets[node];
+                for (Integer label : map.keySet()) {
+                    labels[i++] = label;
+                }
+                Arrays.sort(labels, offsets[node], i);
+                for (i = offsets[node]; i < offsets[node + 1]; i++) {
+                    targets[i] = map.get(labels[i]);
+                }
+            }
+            return new Trie(tokens.toArray(new String[tokens.size()]), offsets, labels, targets, terminal);
+        }
+    }
+}
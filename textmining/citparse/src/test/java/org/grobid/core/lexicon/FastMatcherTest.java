@@ -1,6 +1,12 @@
 package org.grobid.core.lexicon;
 
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
 import java.io.File;
+import java.io.FileOutputStream;
+import java.io.OutputStreamWriter;
+import java.io.Writer;
 import java.util.List;
 
 import org.grobid.core.mock.MockContext;
@@ -38,6 +44,54 @@ public class FastMatcherTest {
 		List<OffsetPosition> inJournalNames = lexicon.inJournalNames("abc <p> Economics </p>");
 		System.out.println(inJournalNames);
 	}
-	
 
+	@Test
+	public void testMatchPositions() throws Exception {
+		File file = lexiconFile("Nature\nNature Genetics\nJ. Biol. Chem.\n");
+		FastMatcher matcher = new FastMatcher(file);
+		List<OffsetPosition> positions = matcher.matcher("in nature genetics, <i> J Biol Chem 12");
+		assertEquals("[1\t1, 1\t2, 5\t7]", positions.toString());
+	}
+
+	@Test
+	public void testCompiledLexicon() throws Exception {
+		File file = lexiconFile("Nature\nNature Genetics\nJ. Biol. Chem.\n");
+		List<OffsetPosition> expected = new FastMatcher(file).matcher("in Nature Genetics, J. Biol. Chem.");
+		File compiled = new File(file.getPath() + FastMatcher.COMPILED_SUFFIX);
+		assertTrue(compiled.exists());
+		List<OffsetPosition> positions = new FastMatcher(file).matcher("in Nature Genetics, J. Biol. Chem.");
+		assertEquals(expected.toString(), positions.toString());
+		assertEquals(3, positions.size());
+	}
+
+	@Test
+	public void testStaleCompiledLexicon() throws Exception {
+		File file = lexiconFile("Nature\n");
+		assertEquals(1, new FastMatcher(file).matcher("in Nature").size());
+		long lastModified = file.lastModified();
+		// another length, same modification time
+		writeTerms(file, "Science\n");
+		file.setLastModified(lastModified);
+		assertEquals(1, new FastMatcher(file).matcher("in Science").size());
+		assertEquals(0, new FastMatcher(file).matcher("in Nature").size());
+		// same length, another modification time
+		writeTerms(file, "Scienza\n");
+		file.setLastModified(lastModified - 10000);
+		assertEquals(1, new FastMatcher(file).matcher("in Scienza").size());
+		assertEquals(0, new FastMatcher(file).matcher("in Science").size());
+	}
+
+	private static File lexiconFile(String terms) throws Exception {
+		File file = File.createTempFile("lexicon", ".txt");
+		file.deleteOnExit();
+		new File(file.getPath() + FastMatcher.COMPILED_SUFFIX).deleteOnExit();
+		writeTerms(file, terms);
+		return file;
+	}
+
+	private static void writeTerms(File file, String terms) throws Exception {
+		Writer writer = new OutputStreamWriter(new FileOutputStream(file), "UTF-8");
+		writer.write(terms);
+		writer.close();
+	}
 }
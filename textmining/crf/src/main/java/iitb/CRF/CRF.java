@@ -121,6 +121,9 @@ public class CRF implements Serializable {
         if (params.trainerType.startsWith("Piecewise")) {
             return new PiecewiseTrainer(params);
         }
+        if (params.numThreads > 1) {
+            return new ParallelTrainer(params);
+        }
 
         return new Trainer(params);
     }
@@ -54,6 +54,11 @@ public class CrfParams extends Properties implements Serializable {
 
     public boolean reuseM = false;
 
+    /**
+     * The number of threads computing the gradient during training, see {@link ParallelTrainer}
+     */
+    public int numThreads = 1;
+
     /**
      * This when set to true will only allow transitions
      * for which there is a corresponding edge feature
@@ -138,6 +143,9 @@ public class CrfParams extends Properties implements Serializable {
             } catch (NumberFormatException nfe) {
             }
         }
+        if (opts.getProperty("numThreads") != null) {
+            numThreads = Integer.parseInt(opts.getProperty("numThreads"));
+        }
         reuseM = Boolean.valueOf(opts.getProperty("reuseM", "false")).booleanValue();
         onlyFeatureBasedTransitions = Boolean.valueOf(opts.getProperty("onlyFeatureTransitions", "false")).booleanValue();
     }
@@ -0,0 +1,205 @@
+package iitb.CRF;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.ObjectInputStream;
+import java.io.ObjectOutputStream;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+
+/**
+ * A Trainer which computes the log likelihood and its gradient with several threads.
+ *
+ * The training sequences of an iteration are split into as many contiguous parts as there
+ * are threads. Each worker runs the forward-backward pass of the {@link Trainer} on its part
+ * with its own matrices, its own copy of the feature generator and a private gradient. The
+ * gradients are added up in the order of the parts before the LBFGS step, so the result
+ * differs from the serial trainer only by the order of the floating point additions.
+ *
+ * The feature generator is copied by serialization. If it can not be copied, or if the feature
+ * cache is used, which depends on the order of the data scan, the gradient is computed serially.
+ *
+ * Selected with the option "numThreads", for example "numThreads 8".
+ */
+public class ParallelTrainer extends Trainer {
+
+    protected int numThreads;
+
+    private Worker workers[];
+
+    private ExecutorService executorService;
+
+    public ParallelTrainer(CrfParams p) {
+        super(p);
+        numThreads = p.numThreads;
+    }
+
+    @Override
+    protected void init(CRF model, DataIter data, double[] l) {
+        super.init(model, data, l);
+        workers = null;
+        if (numThreads < 2) {
+            return;
+        }
+        if (featureGenCache != null) {
+            System.err.println("CRF: the feature cache can not be shared by threads, computing the gradient serially");
+            return;
+        }
+        try {
+            byte[] fgen = serialize(featureGenerator);
+            Worker w[] = new Worker[numThreads];
+            for (int i = 0; i < w.length; i++) {
+                w[i] = new Worker(deserialize(fgen));
+            }
+            workers = w;
+        } catch (Exception e) {
+            System.err.println("CRF: can not copy the feature generator, computing the gradient serially.\n" + e);
+        }
+    }
+
+    @Override
+    protected void doTrain() {
+        if (workers == null) {
+            super.doTrain();
+            return;
+        }
+        executorService = Executors.newFixedThreadPool(workers.length);
+        try {
+            super.doTrain();
+        } finally {
+            executorService.shutdownNow();
+            executorService = null;
+        }
+    }
+
+    @Override
+    protected double computeFunctionGradient(double lambda[], double grad[], double expFVals[],
+                                             FeatureGenerator fgenForExpValCompute) {
+        if ((executorService == null) || (fgenForExpValCompute != featureGenerator)) {
+            return super.computeFunctionGradient(lambda, grad, expFVals, fgenForExpValCompute);
+        }
+        try {
+            double logli = 0;
+            if (grad != null) {
+                logli = addPrior(lambda, grad, logli);
+            }
+            List<DataSequence> sequences = new ArrayList<DataSequence>();
+            for (diter.startScan(); diter.hasNext(); ) {
+                sequences.add(diter.next());
+            }
+            int numRecord = sequences.size();
+            int chunk = (numRecord + workers.length - 1) / workers.length;
+            List<Future<Double>> futures = new ArrayList<Future<Double>>();
+            for (int w = 0; (w < workers.length) && (w * chunk < numRecord); w++) {
+                futures.add(executorService.submit(workers[w].part(sequences, w * chunk,
+                        Math.min((w + 1) * chunk, numRecord), lambda, grad != null, expFVals != null)));
+            }
+            // reduce in the order of the parts
+            for (int w = 0; w < futures.size(); w++) {
+                logli += futures.get(w).get();
+                if (grad != null) {
+                    double workerGrad[] = workers[w].gradLogli;
+                    for (int f = 0; f < grad.length; f++) {
+                        grad[f] += workerGrad[f];
+                    }
+                }
+                if (expFVals != null) {
+                    double workerExpFVals[] = workers[w].expFVals;
+                    for (int f = 0; f < expFVals.length; f++) {
+                        expFVals[f] += workerExpFVals[f];
+                    }
+                }
+            }
+            logli = finishGradCompute(grad, lambda, logli);
+            if (params.debugLvl > 0) {
+                if (icall == 0) {
+                    Util.printDbg("Number of training records " + numRecord + " in " + futures.size() + " parts");
+                }
+                if (grad != null) {
+                    Util.printDbg("Iter " + icall + " loglikelihood " + logli + " gnorm " + norm(grad) + " xnorm " + norm(lambda));
+                }
+            }
+            return logli;
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            e.printStackTrace();
+        } catch (Exception e) {
+            e.printStackTrace();
+        }
+        return 0;
+    }
+
+    private static byte[] serialize(FeatureGenerator fgen) throws IOException {
+        ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+        ObjectOutputStream out = new ObjectOutputStream(bytes);
+        out.writeObject(fgen);
+        out.close();
+        return bytes.toByteArray();
+    }
+
+    private static FeatureGenerator deserialize(byte[] fgen) throws IOException, ClassNotFoundException {
+        ObjectInputStream in = new ObjectInputStream(new ByteArrayInputStream(fgen));
+        try {
+            return (FeatureGenerator) in.readObject();
+        } finally {
+            in.close();
+        }
+    }
+
+    /**
+     * The forward-backward state of one thread: the matrices, the feature generator,
+     * and the gradient and the expected feature values of its part of the data.
+     */
+    private class Worker extends Trainer {
+
+        double expFVals[];
+
+        Worker(FeatureGenerator fgen) {
+            super(ParallelTrainer.this.params);
+            edgeGen = ParallelTrainer.this.edgeGen;
+            numY = ParallelTrainer.this.numY;
+            numF = ParallelTrainer.this.numF;
+            featureGenerator = fgen;
+            reuseM = ParallelTrainer.this.reuseM;
+            logProcessing = ParallelTrainer.this.logProcessing;
+            gradLogli = new double[numF];
+            expFVals = new double[numF];
+            ExpF = new double[ParallelTrainer.this.ExpF.length];
+            initMatrices();
+        }
+
+        Callable<Double> part(final List<DataSequence> sequences, final int from, final int to,
+                              final double lambda[], final boolean withGrad, final boolean withExpFVals) {
+            return new Callable<Double>() {
+                @Override
+                public Double call() {
+                    instanceWts = ParallelTrainer.this.instanceWts;
+                    icall = ParallelTrainer.this.icall;
+                    initMDone = false;
+                    double grad[] = null;
+                    if (withGrad) {
+                        grad = gradLogli;
+                        Arrays.fill(grad, 0);
+                    }
+                    double exp[] = null;
+                    if (withExpFVals) {
+                        exp = expFVals;
+                        Arrays.fill(exp, 0);
+                    }
+                    double logli = 0;
+                    for (int numRecord = from; numRecord < to; numRecord++) {
+                        logli += sumProduct(sequences.get(numRecord), featureGenerator, lambda, grad, exp,
+                                false, numRecord, featureGenerator);
+                    }
+                    return logli;
+                }
+            };
+        }
+    }
+}
@@ -0,0 +1,48 @@
+package bench;
+
+import com.carrotsearch.junitbenchmarks.AbstractBenchmark;
+import com.carrotsearch.junitbenchmarks.BenchmarkOptions;
+import iitb.CRF.CRF;
+import iitb.CRF.SyntheticData;
+import org.junit.Test;
+
+import java.util.Random;
+
+/**
+ * Compares the training time of the serial trainer with the {@link iitb.CRF.ParallelTrainer}
+ * on 2, 4 and 8 threads, each trained for the same number of iterations.
+ */
+public class ParallelTrainerBenchTest extends AbstractBenchmark {
+
+    private final static SyntheticData data = new SyntheticData(500, new Random(42L));
+
+    @BenchmarkOptions(benchmarkRounds = 3, warmupRounds = 1)
+    @Test
+    public void serial() {
+        train(1);
+    }
+
+    @BenchmarkOptions(benchmarkRounds = 3, warmupRounds = 1)
+    @Test
+    public void parallel2() {
+        train(2);
+    }
+
+    @BenchmarkOptions(benchmarkRounds = 3, warmupRounds = 1)
+    @Test
+    public void parallel4() {
+        train(4);
+    }
+
+    @BenchmarkOptions(benchmarkRounds = 3, warmupRounds = 1)
+    @Test
+    public void parallel8() {
+        train(8);
+    }
+
+    private static void train(int numThreads) {
+        CRF crf = new CRF(SyntheticData.NUM_LABELS, new SyntheticData.Features(),
+                "debugLvl 0 maxIters 10 epsForConvergence 1e-12 numThreads " + numThreads);
+        crf.train(data);
+    }
+}
@@ -0,0 +1,97 @@
+package iitb.CRF;
+
+import org.testng.annotations.Test;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Random;
+
+import static org.testng.Assert.assertEquals;
+import static org.testng.Assert.assertTrue;
+
+public class ParallelTrainerTest {
+
+    @Test
+    public void testSameGradient() {
+        SyntheticData data = new SyntheticData(200, new Random(42L));
+        assertSameTraining(data, 4);
+    }
+
+    @Test
+    public void testMoreThreadsThanSequences() {
+        SyntheticData data = new SyntheticData(3, new Random(7L));
+        assertSameTraining(data, 8);
+    }
+
+    private static void assertSameTraining(SyntheticData data, int numThreads) {
+        String options = "debugLvl 0 maxIters 10 epsForConvergence 1e-12 numThreads ";
+        RecordingCRF serial = new RecordingCRF(options + 1);
+        double serialLambda[] = serial.train(data);
+        RecordingCRF parallel = new RecordingCRF(options + numThreads);
+        double parallelLambda[] = parallel.train(data);
+        assertTrue(serial.trainer instanceof Trainer && !(serial.trainer instanceof ParallelTrainer));
+        assertTrue(parallel.trainer instanceof ParallelTrainer);
+        assertTrue(serial.calls.size() > 1);
+        assertEquals(parallel.calls.size(), serial.calls.size());
+        for (int i = 0; i < serial.calls.size(); i++) {
+            Call s = serial.calls.get(i);
+            Call p = parallel.calls.get(i);
+            assertClose(p.lambda, s.lambda, "lambda in call " + i);
+            assertEquals(p.logli, s.logli, 1e-9 * Math.abs(s.logli), "log likelihood in call " + i);
+            assertClose(p.grad, s.grad, "gradient in call " + i);
+        }
+        assertClose(parallelLambda, serialLambda, "learnt weights");
+    }
+
+    private static void assertClose(double actual[], double expected[], String message) {
+        assertEquals(actual.length, expected.length, message);
+        for (int f = 0; f < expected.length; f++) {
+            assertEquals(actual[f], expected[f], 1e-9 * Math.max(1, Math.abs(expected[f])), message + " at " + f);
+        }
+    }
+
+    static class Call {
+
+        final double lambda[], grad[], logli;
+
+        Call(double lambda[], double grad[], double logli) {
+            this.lambda = lambda.clone();
+            this.grad = grad.clone();
+            this.logli = logli;
+        }
+    }
+
+    /**
+     * Records the arguments and results of every log likelihood and gradient computation.
+     */
+    static class RecordingCRF extends CRF {
+
+        final List<Call> calls = new ArrayList<Call>();
+
+        RecordingCRF(String options) {
+            super(SyntheticData.NUM_LABELS, new SyntheticData.Features(), options);
+        }
+
+        @Override
+        protected Trainer getTrainer() {
+            if (params.numThreads > 1) {
+                return new ParallelTrainer(params) {
+                    @Override
+                    protected double computeFunctionGradient(double lambda[], double grad[]) {
+                        double logli = super.computeFunctionGradient(lambda, grad);
+                        calls.add(new Call(lambda, grad, logli));
+                        return logli;
+                    }
+                };
+            }
+            return new Trainer(params) {
+                @Override
+                protected double computeFunctionGradient(double lambda[], double grad[]) {
+                    double logli = super.computeFunctionGradient(lambda, grad);
+                    calls.add(new Call(lambda, grad, logli));
+                    return logli;
+                }
+            };
+        }
+    }
+}
@@ -0,0 +1,146 @@
+package iitb.CRF;
+
+import java.util.Random;
+
+/**
+ * Synthetic training data: random token sequences, with a label which mostly depends on the token
+ * and on the previous label.
+ */
+public class SyntheticData implements DataIter {
+
+    public static final int NUM_LABELS = 8;
+
+    public static final int NUM_TOKENS = 500;
+
+    static final int SEQ_LENGTH = 30;
+
+    Sequence sequences[];
+
+    int pos;
+
+    public SyntheticData(int numSequences, Random random) {
+        sequences = new Sequence[numSequences];
+        for (int i = 0; i < numSequences; i++) {
+            sequences[i] = new Sequence(SEQ_LENGTH, random);
+        }
+    }
+
+    public void startScan() {
+        pos = 0;
+    }
+
+    public boolean hasNext() {
+        return pos < sequences.length;
+    }
+
+    public DataSequence next() {
+        return sequences[pos++];
+    }
+
+    static class Sequence implements DataSequence {
+
+        private static final long serialVersionUID = 1L;
+
+        int x[], y[];
+
+        Sequence(int length, Random random) {
+            x = new int[length];
+            y = new int[length];
+            for (int i = 0; i < length; i++) {
+                x[i] = random.nextInt(NUM_TOKENS);
+                y[i] = (random.nextInt(4) == 0) ? random.nextInt(NUM_LABELS)
+                        : (x[i] + ((i > 0) ? y[i - 1] : 0)) % NUM_LABELS;
+            }
+        }
+
+        public int length() {
+            return x.length;
+        }
+
+        public int y(int i) {
+            return y[i];
+        }
+
+        public Object x(int i) {
+            return x[i];
+        }
+
+        public void set_y(int i, int label) {
+            y[i] = label;
+        }
+    }
+
+    /**
+     * A state feature for each token and label, and an edge feature for each pair of labels.
+     */
+    public static class Features implements FeatureGenerator, Feature {
+
+        private static final long serialVersionUID = 1L;
+
+        int index, label, prevLabel;
+
+        transient int token, pos;
+
+        public int numFeatures() {
+            return NUM_TOKENS * NUM_LABELS + NUM_LABELS * NUM_LABELS;
+        }
+
+        public void startScanFeaturesAt(DataSequence data, int pos) {
+            this.token = (Integer) data.x(pos);
+            this.pos = pos;
+            index = -1;
+            advance();
+        }
+
+        private void advance() {
+            index++;
+            if (index < NUM_LABELS) {
+                label = index;
+                prevLabel = -1;
+            } else if ((pos > 0) && (index < NUM_LABELS + NUM_LABELS * NUM_LABELS)) {
+                label = (index - NUM_LABELS) % NUM_LABELS;
+                prevLabel = (index - NUM_LABELS) / NUM_LABELS;
+            } else {
+                index = Integer.MAX_VALUE;
+            }
+        }
+
+        public boolean hasNext() {
+            return index != Integer.MAX_VALUE;
+        }
+
+        public Feature next() {
+            Features feature = new Features();
+            feature.index = (prevLabel < 0) ? token * NUM_LABELS + label
+                    : NUM_TOKENS * NUM_LABELS + prevLabel * NUM_LABELS + label;
+            feature.label = label;
+            feature.prevLabel = prevLabel;
+            advance();
+            return feature;
+        }
+
+        public String featureName(int featureIndex) {
+            return "f" + featureIndex;
+        }
+
+        public int index() {
+            return index;
+        }
+
+        public int y() {
+            return label;
+        }
+
+        public int yprev() {
+            return prevLabel;
+        }
+
+        public float value() {
+            return 1;
+        }
+
+        public int[] yprevArray() {
+            return null;
+        }
+    }
+}
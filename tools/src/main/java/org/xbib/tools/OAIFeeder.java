@@ -36,10 +36,12 @@ import org.apache.logging.log4j.Logger;
 import org.elasticsearch.common.joda.time.DateTime;
 import org.elasticsearch.common.joda.time.format.DateTimeFormat;
 import org.elasticsearch.common.unit.TimeValue;
+import org.xbib.io.NullWriter;
 import org.xbib.oai.OAIConstants;
 import org.xbib.oai.OAIDateResolution;
 import org.xbib.oai.client.OAIClient;
 import org.xbib.oai.client.OAIClientFactory;
+import org.xbib.oai.client.listrecords.ListRecordsHarvester;
 import org.xbib.oai.client.listrecords.ListRecordsListener;
 import org.xbib.oai.client.listrecords.ListRecordsRequest;
 import org.xbib.oai.rdf.RdfResourceHandler;
@@ -116,6 +118,25 @@ public abstract class OAIFeeder extends TimewindowFeeder {
             logger.warn("no verb {}, returning", OAIConstants.LIST_RECORDS);
             return;
         }
+        int windows = settings.getAsInt("windows", 0);
+        if (windows > 0) {
+            ListRecordsHarvester harvester = new ListRecordsHarvester(client)
+                    .setMetadataPrefix(metadataPrefix)
+                    .setSet(set)
+                    .setFrom(from, OAIDateResolution.DAY)
+                    .setUntil(until, OAIDateResolution.DAY)
+                    .setWindows(windows)
+                    .setQueueSize(settings.getAsInt("queuesize", 4))
+                    .addHandler(newMetadataHandler());
+            try {
+                int pages = harvester.harvest(new NullWriter());
+                logger.debug("got {} OAI responses", pages);
+            } catch (IOException e) {
+                logger.error(e.getMessage(), e);
+            }
+            client.close();
+            return;
+        }
         ListRecordsRequest request = client.newListRecordsRequest()
                 .setMetadataPrefix(metadataPrefix)
                 .setSet(set)
@@ -42,6 +42,7 @@ import org.xbib.io.archive.tar.TarSession;
 import org.xbib.oai.OAIDateResolution;
 import org.xbib.oai.client.OAIClient;
 import org.xbib.oai.client.OAIClientFactory;
+import org.xbib.oai.client.listrecords.ListRecordsHarvester;
 import org.xbib.oai.client.listrecords.ListRecordsListener;
 import org.xbib.oai.client.listrecords.ListRecordsRequest;
 import org.xbib.oai.rdf.RdfSimpleMetadataHandler;
@@ -106,6 +107,28 @@ public abstract class OAIHarvester extends Converter {
         Date until = DateUtil.parseDateISO(params.get("until"));
         final OAIClient client = OAIClientFactory.newClient(server);
         client.setTimeout(settings.getAsInt("timeout", 60000));
+        int windows = settings.getAsInt("windows", 0);
+        if (windows > 0) {
+            // pipelined, the handlers and the tar session are only used by this thread
+            ListRecordsHarvester harvester = new ListRecordsHarvester(client)
+                    .setMetadataPrefix(metadataPrefix)
+                    .setSet(set)
+                    .setFrom(from, OAIDateResolution.DAY)
+                    .setUntil(until, OAIDateResolution.DAY)
+                    .setWindows(windows)
+                    .setQueueSize(settings.getAsInt("queuesize", 4));
+            SimpleMetadataHandler handler = metadataHandler();
+            if (handler != null) {
+                harvester.addHandler(handler);
+            }
+            try {
+                harvester.harvest(new NullWriter());
+            } catch (IOException e) {
+                logger.error(e.getMessage(), e);
+            }
+            client.close();
+            return;
+        }
         ListRecordsRequest request = client.newListRecordsRequest()
                 .setMetadataPrefix(metadataPrefix)
                 .setSet(set)
@@ -113,14 +136,9 @@ public abstract class OAIHarvester extends Converter {
                 .setUntil(until, OAIDateResolution.DAY);
         do {
             try {
-                if ("xml".equals(settings.get("handler"))) {
-                    request.addHandler(xmlMetadataHandler());
-                } else if ("turtle".equals(settings.get("handler"))) {
-                    request.addHandler(turtleMetadataHandler());
-                } else if ("ntriples".equals(settings.get("handler"))) {
-                    request.addHandler(ntripleMetadataHandler());
-                } else {
-                    logger.warn("no handler defined? (xml, turtle, ntriples)");
+                SimpleMetadataHandler handler = metadataHandler();
+                if (handler != null) {
+                    request.addHandler(handler);
                 }
                 ListRecordsListener listener = new ListRecordsListener(request);
                 request.prepare().execute(listener).waitFor();
@@ -137,6 +155,18 @@ public abstract class OAIHarvester extends Converter {
         client.close();
     }
 
+    protected SimpleMetadataHandler metadataHandler() throws IOException {
+        if ("xml".equals(settings.get("handler"))) {
+            return xmlMetadataHandler();
+        } else if ("turtle".equals(settings.get("handler"))) {
+            return turtleMetadataHandler();
+        } else if ("ntriples".equals(settings.get("handler"))) {
+            return ntripleMetadataHandler();
+        }
+        logger.warn("no handler defined? (xml, turtle, ntriples)");
+        return null;
+    }
+
     protected SimpleMetadataHandler xmlMetadataHandler() {
         return new XmlPacketHandlerSimple().setWriter(new StringWriter());
     }
@@ -0,0 +1,175 @@
+/*
+ * Licensed to Jörg Prante and xbib under one or more contributor
+ * license agreements. See the NOTICE.txt file distributed with this work
+ * for additional information regarding copyright ownership.
+ *
+ * Copyright (C) 2012 Jörg Prante and xbib
+ *
+ * This program is free software; you can redistribute it and/or modify
+ * it under the terms of the GNU Affero General Public License as published
+ * by the Free Software Foundation; either version 3 of the License, or
+ * (at your option) any later version.
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the
+ * GNU Affero General Public License for more details.
+ *
+ * You should have received a copy of the GNU Affero General Public License
+ * along with this program; if not, see http://www.gnu.org/licenses
+ * or write to the Free Software Foundation, Inc., 51 Franklin Street,
+ * Fifth Floor, Boston, MA 02110-1301 USA.
+ *
+ * The interactive user interfaces in modified source and object code
+ * versions of this program must display Appropriate Legal Notices,
+ * as required under Section 5 of the GNU Affero General Public License.
+ *
+ * In accordance with Section 7(b) of the GNU Affero General Public
+ * License, these Appropriate Legal Notices must retain the display of the
+ * "Powered by xbib" logo. If the display of the logo is not reasonably
+ * feasible for technical reasons, the Appropriate Legal Notices must display
+ * the words "Powered by xbib".
+ */
+package org.xbib.tools.merge.zdb.cluster;
+
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.util.Arrays;
+import java.util.List;
+import java.util.zip.GZIPInputStream;
+import java.util.zip.GZIPOutputStream;
+
+/**
+ * The cluster assignment of manifestations, as computed by {@link ClusterBuilder}.
+ *
+ * Only manifestations in clusters of two or more are kept, a manifestation which is not
+ * in the assignment forms a cluster of its own. The IDs are sorted, the members of a
+ * cluster are stored as index ranges into the IDs, so a lookup is a binary search.
+ *
+ * The file is a header "ZDBC" with a version, the number of IDs and clusters, the IDs in
+ * order, and the cluster number of each ID. It is gzipped if the file name ends with ".gz".
+ */
+public class ClusterAssignment {
+
+    private final static int MAGIC = 0x5a444243; // "ZDBC"
+
+    private final static int VERSION = 1;
+
+    private final String[] ids;
+
+    private final int[] clusters;
+
+    private final int[] offsets;
+
+    private final int[] members;
+
+    /**
+     * @param ids the sorted IDs
+     * @param clusters the cluster number of each ID, from 0 to the number of clusters
+     * @param count the number of clusters
+     */
+    public ClusterAssignment(String[] ids, int[] clusters, int count) {
+        this.ids = ids;
+        this.clusters = clusters;
+        this.offsets = new int[count + 1];
+        for (int c : clusters) {
+            offsets[c + 1]++;
+        }
+        for (int i = 0; i < count; i++) {
+            offsets[i + 1] += offsets[i];
+        }
+        this.members = new int[ids.length];
+        int[] next = Arrays.copyOf(offsets, count);
+        for (int i = 0; i < ids.length; i++) {
+            members[next[clusters[i]]++] = i;
+        }
+    }
+
+    public static ClusterAssignment read(File file) throws IOException {
+        InputStream in = new FileInputStream(file);
+        if (file.getName().endsWith(".gz")) {
+            in = new GZIPInputStream(in);
+        }
+        try (DataInputStream data = new DataInputStream(new BufferedInputStream(in))) {
+            if (data.readInt() != MAGIC || data.readInt() != VERSION) {
+                throw new IOException("not a cluster assignment: " + file);
+            }
+            int size = data.readInt();
+            int count = data.readInt();
+            String[] ids = new String[size];
+            for (int i = 0; i < size; i++) {
+                ids[i] = data.readUTF();
+            }
+            int[] clusters = new int[size];
+            for (int i = 0; i < size; i++) {
+                clusters[i] = data.readInt();
+            }
+            return new ClusterAssignment(ids, clusters, count);
+        }
+    }
+
+    public void write(File file) throws IOException {
+        OutputStream out = new FileOutputStream(file);
+        if (file.getName().endsWith(".gz")) {
+            out = new GZIPOutputStream(out);
+        }
+        try (DataOutputStream data = new DataOutputStream(new BufferedOutputStream(out))) {
+            data.writeInt(MAGIC);
+            data.writeInt(VERSION);
+            data.writeInt(ids.length);
+            data.writeInt(size());
+            for (String id : ids) {
+                data.writeUTF(id);
+            }
+            for (int c : clusters) {
+                data.writeInt(c);
+            }
+        }
+    }
+
+    /**
+     * The number of clusters.
+     */
+    public int size() {
+        return offsets.length - 1;
+    }
+
+    /**
+     * The number of manifestations in clusters.
+     */
+    public int getManifestationCount() {
+        return ids.length;
+    }
+
+    /**
+     * Get the cluster number of a manifestation.
+     *
+     * @param id the manifestation ID
+     * @return the cluster number, or -1 if the manifestation forms a cluster of its own
+     */
+    public int getCluster(String id) {
+        int i = Arrays.binarySearch(ids, id);
+        return i < 0 ? -1 : clusters[i];
+    }
+
+    /**
+     * Get the IDs of the manifestations in a cluster.
+     *
+     * @param cluster the cluster number
+     * @return the IDs
+     */
+    public List<String> getMembers(int cluster) {
+        String[] list = new String[offsets[cluster + 1] - offsets[cluster]];
+        for (int i = 0; i < list.length; i++) {
+            list[i] = ids[members[offsets[cluster] + i]];
+        }
+        return Arrays.asList(list);
+    }
+}
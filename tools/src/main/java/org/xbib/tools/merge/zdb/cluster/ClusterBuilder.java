@@ -0,0 +1,331 @@
+/*
+ * Licensed to Jörg Prante and xbib under one or more contributor
+ * license agreements. See the NOTICE.txt file distributed with this work
+ * for additional information regarding copyright ownership.
+ *
+ * Copyright (C) 2012 Jörg Prante and xbib
+ *
+ * This program is free software; you can redistribute it and/or modify
+ * it under the terms of the GNU Affero General Public License as published
+ * by the Free Software Foundation; either version 3 of the License, or
+ * (at your option) any later version.
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the
+ * GNU Affero General Public License for more details.
+ *
+ * You should have received a copy of the GNU Affero General Public License
+ * along with this program; if not, see http://www.gnu.org/licenses
+ * or write to the Free Software Foundation, Inc., 51 Franklin Street,
+ * Fifth Floor, Boston, MA 02110-1301 USA.
+ *
+ * The interactive user interfaces in modified source and object code
+ * versions of this program must display Appropriate Legal Notices,
+ * as required under Section 5 of the GNU Affero General Public License.
+ *
+ * In accordance with Section 7(b) of the GNU Affero General Public
+ * License, these Appropriate Legal Notices must retain the display of the
+ * "Powered by xbib" logo. If the display of the logo is not reasonably
+ * feasible for technical reasons, the Appropriate Legal Notices must display
+ * the words "Powered by xbib".
+ */
+package org.xbib.tools.merge.zdb.cluster;
+
+import org.apache.logging.log4j.LogManager;
+import org.apache.logging.log4j.Logger;
+import org.xbib.common.settings.Settings;
+import org.xbib.common.xcontent.XContentHelper;
+import org.xbib.tools.CommandLineInterpreter;
+import org.xbib.tools.merge.zdb.entities.Manifestation;
+
+import java.io.BufferedReader;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.InputStream;
+import java.io.InputStreamReader;
+import java.io.Reader;
+import java.io.Writer;
+import java.util.Arrays;
+import java.util.BitSet;
+import java.util.Comparator;
+import java.util.LinkedList;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.zip.GZIPInputStream;
+
+import static com.google.common.collect.Lists.newArrayList;
+import static com.google.common.collect.Lists.newLinkedList;
+import static org.xbib.common.settings.ImmutableSettings.settingsBuilder;
+
+/**
+ * Build the clusters of manifestations offline from a dump of the title index.
+ *
+ * The dump is read once, one title source per line, gzipped if the file name ends
+ * with ".gz". The lines are parsed in parallel, every manifestation gets an int ID,
+ * and every temporal relation (precededBy, succeededBy) and every carrier edition relation
+ * ({@link Manifestation#carrierEditions()}) becomes an edge. These are the relations the
+ * search-based cluster build follows, other relations like supplements or series are not
+ * unioned, because they would chain unrelated timelines into one cluster. The connected
+ * components are computed with a {@link ConcurrentUnionFind} over the edges, also in
+ * parallel, and written as a {@link ClusterAssignment}. Databases and websites are never
+ * joined, like in the search-based cluster build, and relations to manifestations which
+ * are not in the dump are dropped.
+ *
+ * The merge reads the assignment with the "clusters" setting and looks up the members of
+ * a cluster by ID instead of discovering them by searching the relations.
+ */
+public class ClusterBuilder implements CommandLineInterpreter {
+
+    private final static Logger logger = LogManager.getLogger(ClusterBuilder.class.getSimpleName());
+
+    private Settings settings;
+
+    private final ConcurrentHashMap<String, Integer> ids = new ConcurrentHashMap<String, Integer>();
+
+    private final AtomicInteger counter = new AtomicInteger();
+
+    public ClusterBuilder reader(Reader reader) {
+        settings = settingsBuilder().loadFromReader(reader).build();
+        return this;
+    }
+
+    public ClusterBuilder writer(Writer writer) {
+        return this;
+    }
+
+    @Override
+    public void run() throws Exception {
+        String input = settings.get("input");
+        if (input == null) {
+            throw new IllegalArgumentException("no input given");
+        }
+        String output = settings.get("output");
+        if (output == null) {
+            throw new IllegalArgumentException("no output given");
+        }
+        int concurrency = settings.getAsInt("concurrency", Runtime.getRuntime().availableProcessors());
+        int batchSize = settings.getAsInt("batchsize", 1000);
+        long t0 = System.currentTimeMillis();
+        ExecutorService executorService = Executors.newFixedThreadPool(concurrency);
+        try {
+            BitSet present = new BitSet();
+            BitSet excluded = new BitSet();
+            IntList edges = new IntList();
+            long docs = read(new File(input), batchSize, concurrency, executorService, present, excluded, edges);
+            long t1 = System.currentTimeMillis();
+            logger.info("read {} manifestations with {} relations in {} ms", docs, edges.size / 2, t1 - t0);
+            ConcurrentUnionFind unionFind = union(edges, present, excluded, concurrency, executorService);
+            ClusterAssignment assignment = assign(unionFind);
+            assignment.write(new File(output));
+            logger.info("{} clusters with {} manifestations written to {} in {} ms",
+                    assignment.size(), assignment.getManifestationCount(), output,
+                    System.currentTimeMillis() - t1);
+        } finally {
+            executorService.shutdownNow();
+        }
+    }
+
+    private long read(File file, int batchSize, int concurrency, ExecutorService executorService,
+                      BitSet present, BitSet excluded, IntList edges) throws Exception {
+        InputStream in = new FileInputStream(file);
+        if (file.getName().endsWith(".gz")) {
+            in = new GZIPInputStream(in);
+        }
+        long docs = 0L;
+        LinkedList<Future<Batch>> futures = newLinkedList();
+        try (BufferedReader reader = new BufferedReader(new InputStreamReader(in, "UTF-8"))) {
+            List<String> lines = newArrayList();
+            String line;
+            while ((line = reader.readLine()) != null) {
+                if (line.isEmpty()) {
+                    continue;
+                }
+                lines.add(line);
+                if (lines.size() == batchSize) {
+                    futures.add(executorService.submit(new ParseTask(lines)));
+                    lines = newArrayList();
+                    // do not read ahead more than two batches per thread
+                    while (futures.size() > 2 * concurrency) {
+                        docs += futures.removeFirst().get().merge(present, excluded, edges);
+                    }
+                }
+            }
+            if (!lines.isEmpty()) {
+                futures.add(executorService.submit(new ParseTask(lines)));
+            }
+        }
+        while (!futures.isEmpty()) {
+            docs += futures.removeFirst().get().merge(present, excluded, edges);
+        }
+        return docs;
+    }
+
+    private ConcurrentUnionFind union(final IntList edges, final BitSet present, final BitSet excluded,
+                                      int concurrency, ExecutorService executorService) throws Exception {
+        final ConcurrentUnionFind unionFind = new ConcurrentUnionFind(counter.get());
+        int pairs = edges.size / 2;
+        int chunk = (pairs + concurrency - 1) / concurrency;
+        List<Future<?>> futures = newArrayList();
+        for (int begin = 0; begin < pairs; begin += chunk) {
+            final int from = begin;
+            final int to = Math.min(begin + chunk, pairs);
+            futures.add(executorService.submit(new Runnable() {
+                @Override
+                public void run() {
+                    for (int i = from; i < to; i++) {
+                        int a = edges.values[2 * i];
+                        int b = edges.values[2 * i + 1];
+                        if (present.get(a) && present.get(b) && !excluded.get(a) && !excluded.get(b)) {
+                            unionFind.union(a, b);
+                        }
+                    }
+                }
+            }));
+        }
+        for (Future<?> future : futures) {
+            future.get();
+        }
+        return unionFind;
+    }
+
+    private ClusterAssignment assign(ConcurrentUnionFind unionFind) {
+        int n = unionFind.size();
+        int[] roots = new int[n];
+        int[] sizes = new int[n];
+        for (int i = 0; i < n; i++) {
+            roots[i] = unionFind.find(i);
+            sizes[roots[i]]++;
+        }
+        final String[] names = new String[n];
+        for (Map.Entry<String, Integer> entry : ids.entrySet()) {
+            names[entry.getValue()] = entry.getKey();
+        }
+        List<Integer> members = newArrayList();
+        int largest = 0;
+        for (int i = 0; i < n; i++) {
+            if (sizes[roots[i]] > 1) {
+                members.add(i);
+                largest = Math.max(largest, sizes[roots[i]]);
+            }
+        }
+        Integer[] sorted = members.toArray(new Integer[members.size()]);
+        Arrays.sort(sorted, new Comparator<Integer>() {
+            @Override
+            public int compare(Integer o1, Integer o2) {
+                return names[o1].compareTo(names[o2]);
+            }
+        });
+        int[] numbers = new int[n];
+        Arrays.fill(numbers, -1);
+        int count = 0;
+        String[] clusterIds = new String[sorted.length];
+        int[] clusters = new int[sorted.length];
+        for (int i = 0; i < sorted.length; i++) {
+            int root = roots[sorted[i]];
+            if (numbers[root] < 0) {
+                numbers[root] = count++;
+            }
+            clusterIds[i] = names[sorted[i]];
+            clusters[i] = numbers[root];
+        }
+        logger.info("largest cluster has {} manifestations", largest);
+        return new ClusterAssignment(clusterIds, clusters, count);
+    }
+
+    private int id(String name) {
+        Integer id = ids.get(name);
+        if (id == null) {
+            Integer newId = counter.getAndIncrement();
+            id = ids.putIfAbsent(name, newId);
+            if (id == null) {
+                id = newId;
+            }
+        }
+        return id;
+    }
+
+    static boolean isUnionRelation(String relation) {
+        return "precededBy".equals(relation) || "succeededBy".equals(relation)
+                || Manifestation.carrierEditions().contains(relation);
+    }
+
+    private class ParseTask implements Callable<Batch> {
+
+        private final List<String> lines;
+
+        ParseTask(List<String> lines) {
+            this.lines = lines;
+        }
+
+        @Override
+        public Batch call() throws Exception {
+            Batch batch = new Batch();
+            for (String line : lines) {
+                Manifestation manifestation = new Manifestation(XContentHelper.convertToMap(line));
+                if ("undefined".equals(manifestation.id())) {
+                    continue;
+                }
+                int id = id(manifestation.id());
+                batch.docs.add(id);
+                if (manifestation.isDatabase() || manifestation.isWebsite()) {
+                    batch.excluded.add(id);
+                }
+                for (Map.Entry<String, String> relation : manifestation.getRelations().entries()) {
+                    if (isUnionRelation(relation.getKey())) {
+                        batch.edges.add(id);
+                        batch.edges.add(id(relation.getValue()));
+                    }
+                }
+            }
+            return batch;
+        }
+    }
+
+    private static class Batch {
+
+        final IntList docs = new IntList();
+
+        final IntList excluded = new IntList();
+
+        final IntList edges = new IntList();
+
+        int merge(BitSet present, BitSet excluded, IntList edges) {
+            for (int i = 0; i < docs.size; i++) {
+                present.set(docs.values[i]);
+            }
+            for (int i = 0; i < this.excluded.size; i++) {
+                excluded.set(this.excluded.values[i]);
+            }
+            edges.addAll(this.edges);
+            return docs.size;
+        }
+    }
+
+    private static class IntList {
+
+        int[] values = new int[16];
+
+        int size;
+
+        void add(int value) {
+            if (size == values.length) {
+                values = Arrays.copyOf(values, size * 2);
+            }
+            values[size++] = value;
+        }
+
+        void addAll(IntList list) {
+            if (size + list.size > values.length) {
+                values = Arrays.copyOf(values, Math.max(size + list.size, values.length * 2));
+            }
+            System.arraycopy(list.values, 0, values, size, list.size);
+            size += list.size;
+        }
+    }
+}
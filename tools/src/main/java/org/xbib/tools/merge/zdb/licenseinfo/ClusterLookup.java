@@ -0,0 +1,417 @@
+/*
+ * Licensed to Jörg Prante and xbib under one or more contributor
+ * license agreements. See the NOTICE.txt file distributed with this work
+ * for additional information regarding copyright ownership.
+ *
+ * Copyright (C) 2012 Jörg Prante and xbib
+ *
+ * This program is free software; you can redistribute it and/or modify
+ * it under the terms of the GNU Affero General Public License as published
+ * by the Free Software Foundation; either version 3 of the License, or
+ * (at your option) any later version.
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the
+ * GNU Affero General Public License for more details.
+ *
+ * You should have received a copy of the GNU Affero General Public License
+ * along with this program; if not, see http://www.gnu.org/licenses
+ * or write to the Free Software Foundation, Inc., 51 Franklin Street,
+ * Fifth Floor, Boston, MA 02110-1301 USA.
+ *
+ * The interactive user interfaces in modified source and object code
+ * versions of this program must display Appropriate Legal Notices,
+ * as required under Section 5 of the GNU Affero General Public License.
+ *
+ * In accordance with Section 7(b) of the GNU Affero General Public
+ * License, these Appropriate Legal Notices must retain the display of the
+ * "Powered by xbib" logo. If the display of the logo is not reasonably
+ * feasible for technical reasons, the Appropriate Legal Notices must display
+ * the words "Powered by xbib".
+ */
+package org.xbib.tools.merge.zdb.licenseinfo;
+
+import com.google.common.cache.Cache;
+import com.google.common.cache.CacheBuilder;
+import org.apache.logging.log4j.LogManager;
+import org.apache.logging.log4j.Logger;
+import org.elasticsearch.action.search.SearchRequestBuilder;
+import org.elasticsearch.action.search.SearchResponse;
+import org.elasticsearch.action.search.SearchType;
+import org.elasticsearch.client.Client;
+import org.elasticsearch.common.unit.TimeValue;
+import org.elasticsearch.index.query.QueryBuilder;
+import org.elasticsearch.search.SearchHit;
+import org.elasticsearch.search.SearchHits;
+import org.xbib.common.settings.Settings;
+import org.xbib.common.xcontent.XContentHelper;
+import org.xbib.metric.MeterMetric;
+
+import java.util.Collection;
+import java.util.Collections;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Queue;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.locks.ReentrantLock;
+
+import static com.google.common.collect.Lists.newArrayList;
+import static com.google.common.collect.Maps.newHashMap;
+import static org.elasticsearch.index.query.QueryBuilders.termQuery;
+import static org.elasticsearch.index.query.QueryBuilders.termsQuery;
+
+/**
+ * Batched and cached lookups of manifestations, holdings, licenses and indicators,
+ * shared by all pipelines of a merge run.
+ *
+ * IDs which are not in the cache are queued. The pipeline which gets the lock of a kind
+ * drains the IDs queued by all pipelines, up to 1024 per terms query, and resolves them
+ * in one scan search. An ID which is already queued or in flight is not queued again, the
+ * second pipeline waits for the result of the first. Resolved IDs are kept in a size-bounded
+ * cache until the end of the run, also if nothing was found.
+ *
+ * The documents are cached as source bytes, each lookup returns freshly parsed maps,
+ * because the entities modify the maps they are built from.
+ */
+public class ClusterLookup {
+
+    private final static Logger logger = LogManager.getLogger(ClusterLookup.class.getSimpleName());
+
+    // default max clauses for Lucene
+    private final static int MAX_CLAUSES = 1024;
+
+    public enum Kind {
+        MANIFESTATIONS, REFERRERS, HOLDINGS, LICENSES, INDICATORS
+    }
+
+    private final Client client;
+
+    private final int size;
+
+    private final long millis;
+
+    private final MeterMetric queryMetric;
+
+    private final Map<Kind, Source> sources;
+
+    public ClusterLookup(Client client, Settings settings, int size, long millis, MeterMetric queryMetric) {
+        this.client = client;
+        this.size = size;
+        this.millis = millis;
+        this.queryMetric = queryMetric;
+        this.sources = newHashMap();
+        int cacheSize = settings.getAsInt("lookupCacheSize", 100000);
+        String titleIndex = settings.get("bib-index");
+        String titleType = settings.get("bib-type");
+        sources.put(Kind.MANIFESTATIONS, new Source(Kind.MANIFESTATIONS, titleIndex, titleType,
+                "IdentifierDNB.identifierDNB", MAX_CLAUSES, cacheSize));
+        // the other direction: manifestations which mention an ID anywhere, one ID per search
+        sources.put(Kind.REFERRERS, new Source(Kind.REFERRERS, titleIndex, titleType,
+                "_all", 1, cacheSize));
+        sources.put(Kind.HOLDINGS, new Source(Kind.HOLDINGS, settings.get("hol-index"), settings.get("hol-type"),
+                "identifierForTheParentRecord", MAX_CLAUSES, cacheSize));
+        sources.put(Kind.LICENSES, new Source(Kind.LICENSES, settings.get("xml-license-index"), settings.get("xml-license-type"),
+                "ezb:zdbid", MAX_CLAUSES, cacheSize));
+        sources.put(Kind.INDICATORS, new Source(Kind.INDICATORS, settings.get("web-license-index"), settings.get("web-license-type"),
+                "xbib:identifier", MAX_CLAUSES, cacheSize));
+    }
+
+    /**
+     * Look up the documents of the given IDs. A document found for more than one ID is returned once.
+     *
+     * @param kind the kind of documents
+     * @param ids the IDs
+     * @return the document sources, in the order of the IDs
+     */
+    public List<Map<String, Object>> get(Kind kind, Collection<String> ids) {
+        Source source = sources.get(kind);
+        List<Map<String, Object>> list = newArrayList();
+        if (source.index == null || ids.isEmpty()) {
+            return list;
+        }
+        Map<String, Document> documents = new LinkedHashMap<String, Document>();
+        for (List<Document> docs : source.resolve(ids)) {
+            for (Document doc : docs) {
+                documents.put(doc.id, doc);
+            }
+        }
+        for (Document doc : documents.values()) {
+            list.add(XContentHelper.convertToMap(doc.source, false));
+        }
+        return list;
+    }
+
+    public List<Map<String, Object>> get(Kind kind, String id) {
+        return get(kind, Collections.singletonList(id));
+    }
+
+    public void logStatistics() {
+        for (Source source : sources.values()) {
+            long requests = source.requests.get();
+            if (requests == 0L) {
+                continue;
+            }
+            long hits = source.hits.get();
+            long saved = source.unbatched.get() - source.searches.get();
+            logger.info("lookup {}: requests={} cache hits={} ({}%) joined={} cached={} searches={} round trips={} searches saved={}",
+                    source.kind.name().toLowerCase(),
+                    requests, hits, hits * 100 / requests, source.joined.get(),
+                    source.cache.size(), source.searches.get(), source.roundTrips.get(), Math.max(saved, 0L));
+        }
+    }
+
+    /**
+     * Search the documents of a batch of IDs in one scan search and return all hits.
+     *
+     * @param kind the kind of documents
+     * @param ids the IDs
+     * @return the hits
+     */
+    protected List<Hit> search(Kind kind, List<String> ids) {
+        Source source = sources.get(kind);
+        List<Hit> list = newArrayList();
+        QueryBuilder queryBuilder = ids.size() == 1 ?
+                termQuery(source.field, ids.get(0)) :
+                termsQuery(source.field, ids.toArray());
+        // size is per shard
+        SearchRequestBuilder searchRequest = client.prepareSearch()
+                .setQuery(queryBuilder)
+                .setSize(size)
+                .setSearchType(SearchType.SCAN)
+                .setScroll(TimeValue.timeValueMillis(millis));
+        searchRequest.setIndices(source.index);
+        if (source.type != null) {
+            searchRequest.setTypes(source.type);
+        }
+        SearchResponse searchResponse = searchRequest.execute().actionGet();
+        source.roundTrips.incrementAndGet();
+        queryMetric.mark();
+        logger.debug("lookup {} search request = {} hits={}",
+                kind, searchRequest.toString(), searchResponse.getHits().getTotalHits());
+        while (searchResponse.getScrollId() != null) {
+            searchResponse = client.prepareSearchScroll(searchResponse.getScrollId())
+                    .setScroll(TimeValue.timeValueMillis(millis))
+                    .execute().actionGet();
+            source.roundTrips.incrementAndGet();
+            queryMetric.mark();
+            SearchHits hits = searchResponse.getHits();
+            if (hits.getHits().length == 0) {
+                break;
+            }
+            for (SearchHit hit : hits) {
+                list.add(new Hit(hit.getId(), hit.source(), hit.getSource()));
+            }
+        }
+        return list;
+    }
+
+    private class Source {
+
+        final Kind kind;
+
+        final String index;
+
+        final String type;
+
+        final String field;
+
+        final String[] path;
+
+        final int batchSize;
+
+        final Cache<String, List<Document>> cache;
+
+        final ConcurrentMap<String, Pending> pending = new ConcurrentHashMap<String, Pending>();
+
+        final Queue<String> queue = new ConcurrentLinkedQueue<String>();
+
+        final ReentrantLock lock = new ReentrantLock();
+
+        final AtomicLong requests = new AtomicLong();
+
+        final AtomicLong hits = new AtomicLong();
+
+        final AtomicLong joined = new AtomicLong();
+
+        final AtomicLong searches = new AtomicLong();
+
+        final AtomicLong unbatched = new AtomicLong();
+
+        final AtomicLong roundTrips = new AtomicLong();
+
+        Source(Kind kind, String index, String type, String field, int batchSize, int cacheSize) {
+            this.kind = kind;
+            this.index = index;
+            this.type = type;
+            this.field = field;
+            this.path = field.split("\\.");
+            this.batchSize = batchSize;
+            this.cache = CacheBuilder.newBuilder()
+                    .maximumSize(cacheSize)
+                    .build();
+        }
+
+        List<List<Document>> resolve(Collection<String> ids) {
+            requests.addAndGet(ids.size());
+            // the searches the caller would have executed on its own
+            unbatched.addAndGet((ids.size() + batchSize - 1) / batchSize);
+            List<List<Document>> result = newArrayList();
+            List<Pending> waiting = newArrayList();
+            for (String id : ids) {
+                List<Document> docs = cache.getIfPresent(id);
+                if (docs != null) {
+                    hits.incrementAndGet();
+                    result.add(docs);
+                    continue;
+                }
+                Pending p = new Pending();
+                Pending previous = pending.putIfAbsent(id, p);
+                if (previous == null) {
+                    queue.offer(id);
+                } else {
+                    joined.incrementAndGet();
+                    p = previous;
+                }
+                waiting.add(p);
+            }
+            if (waiting.isEmpty()) {
+                return result;
+            }
+            lock.lock();
+            try {
+                for (Pending p : waiting) {
+                    // resolve the queued IDs of all pipelines until ours are done
+                    while (!p.done) {
+                        List<String> batch = newArrayList();
+                        String id;
+                        while (batch.size() < batchSize && (id = queue.poll()) != null) {
+                            batch.add(id);
+                        }
+                        if (batch.isEmpty()) {
+                            // the pipeline which published the pending ID has not queued it yet
+                            Thread.yield();
+                            continue;
+                        }
+                        fetch(batch);
+                    }
+                    if (p.failure != null) {
+                        throw p.failure;
+                    }
+                    result.add(p.docs);
+                }
+            } finally {
+                lock.unlock();
+            }
+            return result;
+        }
+
+        private void fetch(List<String> batch) {
+            // IDs are matched case-insensitively, IDs may differ only in case
+            Map<String, List<String>> keys = newHashMap();
+            Map<String, List<Document>> found = newHashMap();
+            for (String id : batch) {
+                String key = id.toLowerCase();
+                List<String> list = keys.get(key);
+                if (list == null) {
+                    list = newArrayList();
+                    keys.put(key, list);
+                }
+                list.add(id);
+                List<Document> docs = newArrayList();
+                found.put(id, docs);
+            }
+            try {
+                List<Hit> list = search(kind, batch);
+                searches.incrementAndGet();
+                for (Hit hit : list) {
+                    Document doc = new Document(hit.id, hit.source);
+                    if (batch.size() == 1) {
+                        found.get(batch.get(0)).add(doc);
+                        continue;
+                    }
+                    for (String value : values(hit.map, 0)) {
+                        List<String> ids = keys.get(value.toLowerCase());
+                        if (ids != null) {
+                            for (String id : ids) {
+                                found.get(id).add(doc);
+                            }
+                        }
+                    }
+                }
+            } catch (RuntimeException e) {
+                for (String id : batch) {
+                    Pending p = pending.remove(id);
+                    p.failure = e;
+                    p.done = true;
+                }
+                throw e;
+            }
+            for (String id : batch) {
+                List<Document> docs = found.get(id);
+                cache.put(id, docs);
+                Pending p = pending.remove(id);
+                p.docs = docs;
+                p.done = true;
+            }
+        }
+
+        private List<String> values(Object o, int level) {
+            List<String> list = newArrayList();
+            if (o instanceof List) {
+                for (Object element : (List) o) {
+                    list.addAll(values(element, level));
+                }
+            } else if (o instanceof Map) {
+                if (level < path.length) {
+                    list.addAll(values(((Map) o).get(path[level]), level + 1));
+                }
+            } else if (o != null && level == path.length) {
+                list.add(o.toString());
+            }
+            return list;
+        }
+    }
+
+    private static class Pending {
+
+        volatile boolean done;
+
+        volatile List<Document> docs;
+
+        volatile RuntimeException failure;
+    }
+
+    /**
+     * A search hit, with the source as bytes for the cache and as map for matching the IDs.
+     */
+    protected static class Hit {
+
+        final String id;
+
+        final byte[] source;
+
+        final Map<String, Object> map;
+
+        public Hit(String id, byte[] source, Map<String, Object> map) {
+            this.id = id;
+            this.source = source;
+            this.map = map;
+        }
+    }
+
+    private static class Document {
+
+        final String id;
+
+        final byte[] source;
+
+        Document(String id, byte[] source) {
+            this.id = id;
+            this.source = source;
+        }
+    }
+}
@@ -55,6 +55,7 @@ import org.xbib.metric.MeterMetric;
 import org.xbib.pipeline.PipelineProvider;
 import org.xbib.pipeline.queue.QueuePipelineExecutor;
 import org.xbib.tools.CommandLineInterpreter;
+import org.xbib.tools.merge.zdb.cluster.ClusterAssignment;
 import org.xbib.tools.merge.zdb.entities.BibdatLookup;
 import org.xbib.tools.merge.zdb.entities.BlackListedISIL;
 import org.xbib.tools.merge.zdb.entities.Manifestation;
@@ -63,6 +64,7 @@ import org.xbib.util.DateUtil;
 import org.xbib.util.ExceptionFormatter;
 import org.xbib.util.Strings;
 
+import java.io.File;
 import java.io.FileWriter;
 import java.io.IOException;
 import java.io.InputStream;
@@ -122,6 +124,10 @@ public class WithHoldingsAndLicenses
 
     private static MeterMetric indexMetric;
 
+    private static ClusterLookup lookup;
+
+    private static ClusterAssignment clusters;
+
     private final static AtomicLong extraCounter = new AtomicLong();
 
     private long total;
@@ -171,6 +177,19 @@ public class WithHoldingsAndLicenses
         statusCodeMapper.add(statuscodes);
         logger.info("status code mapper prepared");
 
+        if (settings.get("clusters") != null) {
+            logger.info("reading cluster assignment...");
+            try {
+                clusters = ClusterAssignment.read(new File(settings.get("clusters")));
+            } catch (IOException e) {
+                logger.error(e.getMessage(), e);
+            }
+            if (clusters != null) {
+                logger.info("cluster assignment read, {} clusters with {} manifestations",
+                        clusters.size(), clusters.getManifestationCount());
+            }
+        }
+
         processed = newSetFromMap(new ConcurrentHashMap<String, Boolean>(16, 0.75f, settings.getAsInt("concurrency", 1)));
         indexed = newSetFromMap(new ConcurrentHashMap<String, Boolean>(16, 0.75f, settings.getAsInt("concurrency", 1)));
         skipped = newSetFromMap(new ConcurrentHashMap<String, Boolean>(16, 0.75f, settings.getAsInt("concurrency", 1)));
@@ -235,6 +254,7 @@ public class WithHoldingsAndLicenses
 
         queryMetric = new MeterMetric(5L, TimeUnit.SECONDS);
         indexMetric = new MeterMetric(5L, TimeUnit.SECONDS);
+        lookup = new ClusterLookup(client, settings, size, millis, queryMetric);
 
         super.setPipelineProvider(new PipelineProvider<WithHoldingsAndLicensesPipeline>() {
             int i = 0;
@@ -264,6 +284,7 @@ public class WithHoldingsAndLicenses
                 DateUtil.formatDateISO(indexMetric.stoppedAt()),
                 TimeValue.timeValueMillis(indexMetric.elapsed() / 1000000).format(),
                 indexMetric.count());
+        lookup.logStatistics();
 
         logger.info("ingest shutdown in progress");
         ingest.flushIngest();
@@ -468,6 +489,14 @@ public class WithHoldingsAndLicenses
         return indexMetric;
     }
 
+    public ClusterLookup lookup() {
+        return lookup;
+    }
+
+    public ClusterAssignment clusters() {
+        return clusters;
+    }
+
     class ScheduleThread extends Thread {
 
         public void run() {
@@ -40,7 +40,6 @@ import org.elasticsearch.action.search.SearchRequestBuilder;
 import org.elasticsearch.action.search.SearchResponse;
 import org.elasticsearch.action.search.SearchType;
 import org.elasticsearch.common.unit.TimeValue;
-import org.elasticsearch.index.query.QueryBuilder;
 import org.elasticsearch.search.SearchHit;
 import org.elasticsearch.search.SearchHits;
 import org.xbib.common.settings.Settings;
@@ -77,7 +76,6 @@ import static com.google.common.collect.Sets.newHashSet;
 import static com.google.common.collect.Sets.newSetFromMap;
 import static org.elasticsearch.index.query.QueryBuilders.boolQuery;
 import static org.elasticsearch.index.query.QueryBuilders.termQuery;
-import static org.elasticsearch.index.query.QueryBuilders.termsQuery;
 import static org.xbib.common.xcontent.XContentFactory.jsonBuilder;
 
 public class WithHoldingsAndLicensesPipeline implements Pipeline<Boolean, Manifestation> {
@@ -270,8 +268,13 @@ public class WithHoldingsAndLicensesPipeline implements Pipeline<Boolean, Manife
             state = State.COLLECTING;
             // there are certain serial genres which are not fitting into our model of timelines
             if (dirty || (!manifestation.isDatabase() && !manifestation.isPacket())) {
-                // retrieve all docs that are connected by relationships into the candidate set
-                retrieveCandidates(manifestation, candidates);
+                if (service.clusters() != null) {
+                    // the docs of the precomputed cluster
+                    retrieveCluster(manifestation, candidates);
+                } else {
+                    // retrieve all docs that are connected by relationships into the candidate set
+                    retrieveCandidates(manifestation, candidates);
+                }
             } else {
                 logger.debug("{} skipped candidate retrieval, dirty={} isDatabase={} isNewspaper={} isPacket={}",
                         manifestation, dirty,
@@ -424,79 +427,57 @@ public class WithHoldingsAndLicensesPipeline implements Pipeline<Boolean, Manife
         if (!manifestation.hasPrint() && !manifestation.hasOnline()) {
             return;
         }
-        QueryBuilder queryBuilder = null;
+        String id = null;
         if (manifestation.getOnlineID() != null && manifestation.isPrint()) {
-            queryBuilder = termQuery("IdentifierDNB.identifierDNB", manifestation.getOnlineID());
+            id = manifestation.getOnlineID();
         }
         if (manifestation.getPrintID() != null && manifestation.isOnline()) {
-            queryBuilder = termQuery("IdentifierDNB.identifierDNB", manifestation.getPrintID());
+            id = manifestation.getPrintID();
         }
-        if (queryBuilder == null) {
+        if (id == null) {
             return;
         }
-        SearchRequestBuilder searchRequest = service.client().prepareSearch()
-                .setQuery(queryBuilder)
-                .setSize(service.size()) // size is per shard!
-                .setSearchType(SearchType.SCAN)
-                .setScroll(TimeValue.timeValueMillis(service.millis()));
-        searchRequest.setIndices(sourceTitleIndex);
-        if (sourceTitleType != null) {
-            searchRequest.setTypes(sourceTitleType);
+        // we expect single hit
+        for (Map<String, Object> source : service.lookup().get(ClusterLookup.Kind.MANIFESTATIONS, id)) {
+            cluster.add(new Manifestation(source));
         }
-        SearchResponse searchResponse = searchRequest.execute().actionGet();
-        service.queryMetric().mark();
-        searchResponse = service.client().prepareSearchScroll(searchResponse.getScrollId())
-                .setScroll(TimeValue.timeValueMillis(service.millis()))
-                .execute().actionGet();
-        service.queryMetric().mark();
-        SearchHits hits = searchResponse.getHits();
-        if (hits.getHits().length == 0) {
+    }
+
+    private void retrieveCluster(Manifestation manifestation, Collection<Manifestation> cluster) {
+        int clusterNumber = service.clusters().getCluster(manifestation.id());
+        if (clusterNumber < 0) {
             return;
         }
-        // we expect single hit, but we scroll although.
-        do {
-            for (int i = 0; i < hits.getHits().length; i++) {
-                SearchHit hit = hits.getAt(i);
-                //Manifestation m = new Manifestation(mapper.readValue(hit.source(), Map.class));
-                Manifestation m = new Manifestation(hit.getSource());
-                cluster.add(m);
+        List<String> ids = newArrayList();
+        for (String id : service.clusters().getMembers(clusterNumber)) {
+            if (!id.equals(manifestation.id())) {
+                ids.add(id);
             }
-            searchResponse = service.client().prepareSearchScroll(searchResponse.getScrollId())
-                    .setScroll(TimeValue.timeValueMillis(service.millis()))
-                    .execute().actionGet();
-            service.queryMetric().mark();
-            hits = searchResponse.getHits();
-        } while (hits.getHits().length > 0);
+        }
+        for (Map<String, Object> source : service.lookup().get(ClusterLookup.Kind.MANIFESTATIONS, ids)) {
+            Manifestation m = new Manifestation(source);
+            if (cluster.contains(m)) {
+                continue;
+            }
+            cluster.add(m);
+            service.processed().add(m.externalID());
+        }
     }
 
     private void retrieveCandidates(Manifestation manifestation, Collection<Manifestation> cluster)
             throws IOException {
         SetMultimap<String, String> relations = ImmutableSetMultimap.copyOf(manifestation.getRelations());
         Set<String> neighbors = newHashSet(relations.values());
-        QueryBuilder queryBuilder = neighbors.isEmpty() ?
-                termQuery("_all", manifestation.id()) :
-                boolQuery().should(termQuery("_all", manifestation.id()))
-                        .should(termsQuery("IdentifierDNB.identifierDNB", neighbors.toArray()));
-        SearchRequestBuilder searchRequest = service.client().prepareSearch()
-                .setQuery(queryBuilder)
-                .setSize(service.size()) // size is per shard!
-                .setSearchType(SearchType.SCAN)
-                .setScroll(TimeValue.timeValueMillis(service.millis()));
-        searchRequest.setIndices(sourceTitleIndex);
-        if (sourceTitleType != null) {
-            searchRequest.setTypes(sourceTitleType);
+        // the neighbors by ID, and all manifestations which refer to this manifestation
+        List<Map<String, Object>> hits = newArrayList();
+        if (!neighbors.isEmpty()) {
+            hits.addAll(service.lookup().get(ClusterLookup.Kind.MANIFESTATIONS, neighbors));
         }
-        logger.debug("retrieveCandidates search request = {}", searchRequest.toString());
-        SearchResponse searchResponse = searchRequest.execute().actionGet();
-        searchResponse = service.client().prepareSearchScroll(searchResponse.getScrollId())
-                .setScroll(TimeValue.timeValueMillis(service.millis()))
-                .execute().actionGet();
-        service.queryMetric().mark();
-        SearchHits hits = searchResponse.getHits();
-        if (hits.getHits().length == 0) {
+        hits.addAll(service.lookup().get(ClusterLookup.Kind.REFERRERS, manifestation.id()));
+        if (hits.isEmpty()) {
             return;
         }
-        ClusterBuildContinuation cont = new ClusterBuildContinuation(manifestation, searchResponse, cluster, 0);
+        ClusterBuildContinuation cont = new ClusterBuildContinuation(manifestation, hits, cluster, 0);
         buildQueue.offer(cont);
         while (!buildQueue.isEmpty()) {
             cont = buildQueue.poll();
@@ -507,89 +488,79 @@ public class WithHoldingsAndLicensesPipeline implements Pipeline<Boolean, Manife
 
     private void continueClusterBuild(Collection<Manifestation> cluster, ClusterBuildContinuation c)
             throws IOException {
-        SearchResponse searchResponse = c.searchResponse;
-        SearchHits hits;
-        do {
-            hits = searchResponse.getHits();
-            for (int i = c.pos; i < hits.getHits().length; i++) {
-                SearchHit hit = hits.getAt(i);
-                Manifestation m = new Manifestation(hit.getSource());
-                if (m.id().equals(c.manifestation.id())) {
-                    continue;
-                }
-                if (m.isDatabase()) {
+        List<Map<String, Object>> hits = c.hits;
+        for (int i = c.pos; i < hits.size(); i++) {
+            Manifestation m = new Manifestation(hits.get(i));
+            if (m.id().equals(c.manifestation.id())) {
+                continue;
+            }
+            if (m.isDatabase()) {
+                continue;
+            }
+            if (m.isWebsite()) {
+                continue;
+            }
+            if (cluster.contains(m)) {
+                continue;
+            }
+            cluster.add(m);
+            service.processed().add(m.externalID());
+            boolean collided = detectCollisionAndTransfer(m, c, i);
+            if (collided) {
+                // break out
+                return;
+            }
+            boolean temporalRelation = false;
+            boolean carrierRelation = false;
+            Collection<String> rels = findTheRelationsBetween(c.manifestation, m.id());
+            for (String relation : rels) {
+                if (relation == null) {
+                    // shoud not happen
+                    logger.debug("unknown relation {}", relation);
                     continue;
                 }
-                if (m.isWebsite()) {
-                    continue;
+                c.manifestation.addRelatedManifestation(relation, m);
+                String inverse = inverseRelations.get(relation);
+                if (inverse == null) {
+                    logger.debug("no inverse relation for {}", relation);
+                    //m.addRelatedManifestation("hasRelationTo", c.manifestation);
+                } else {
+                    m.addRelatedManifestation(inverse, c.manifestation);
                 }
-                if (cluster.contains(m)) {
+                temporalRelation = temporalRelation
+                        || "precededBy".equals(relation)
+                        || "succeededBy".equals(relation);
+                carrierRelation = carrierRelation
+                        || Manifestation.carrierEditions().contains(relation);
+            }
+            // other direction (missing entries in catalog are possible)
+            for (String relation : rels) {
+                if (relation == null) {
+                    logger.debug("unknown relation {}", relation);
                     continue;
                 }
-                cluster.add(m);
-                service.processed().add(m.externalID());
-                boolean collided = detectCollisionAndTransfer(m, c, i);
-                if (collided) {
-                    // break out
-                    return;
-                }
-                boolean temporalRelation = false;
-                boolean carrierRelation = false;
-                Collection<String> rels = findTheRelationsBetween(c.manifestation, m.id());
-                for (String relation : rels) {
-                    if (relation == null) {
-                        // shoud not happen
-                        logger.debug("unknown relation {}", relation);
-                        continue;
-                    }
-                    c.manifestation.addRelatedManifestation(relation, m);
-                    String inverse = inverseRelations.get(relation);
-                    if (inverse == null) {
-                        logger.debug("no inverse relation for {}", relation);
-                        //m.addRelatedManifestation("hasRelationTo", c.manifestation);
-                    } else {
-                        m.addRelatedManifestation(inverse, c.manifestation);
-                    }
-                    temporalRelation = temporalRelation
-                            || "precededBy".equals(relation)
-                            || "succeededBy".equals(relation);
-                    carrierRelation = carrierRelation
-                            || Manifestation.carrierEditions().contains(relation);
-                }
-                // other direction (missing entries in catalog are possible)
-                for (String relation : rels) {
-                    if (relation == null) {
-                        logger.debug("unknown relation {}", relation);
-                        continue;
-                    }
-                    m.addRelatedManifestation(relation, c.manifestation);
-                    String inverse = inverseRelations.get(relation);
-                    if (inverse == null) {
-                        logger.debug("no inverse relation for {}", relation);
-                        //c.manifestation.addRelatedManifestation("isRelatedTo", m);
-                    } else {
-                        c.manifestation.addRelatedManifestation(inverse, m);
-                    }
-                    temporalRelation = temporalRelation
-                            || "precededBy".equals(relation)
-                            || "succeededBy".equals(relation);
-                    carrierRelation = carrierRelation
-                            || Manifestation.carrierEditions().contains(relation);
-                }
-                // Look for more candidates for this manifestation iff temporal or carrier relation.
-                // Also expand if there are any other print/online editions.
-                logger.debug("id={} temporalRelation={} carrierRelation={} hasCarrierRelations={}",
-                        m.id(), temporalRelation, carrierRelation, m.hasCarrierRelations());
-                if (temporalRelation || carrierRelation || m.hasCarrierRelations()) {
-                    retrieveCandidates(m, cluster);
+                m.addRelatedManifestation(relation, c.manifestation);
+                String inverse = inverseRelations.get(relation);
+                if (inverse == null) {
+                    logger.debug("no inverse relation for {}", relation);
+                    //c.manifestation.addRelatedManifestation("isRelatedTo", m);
+                } else {
+                    c.manifestation.addRelatedManifestation(inverse, m);
                 }
+                temporalRelation = temporalRelation
+                        || "precededBy".equals(relation)
+                        || "succeededBy".equals(relation);
+                carrierRelation = carrierRelation
+                        || Manifestation.carrierEditions().contains(relation);
             }
-            searchResponse = service.client().prepareSearchScroll(searchResponse.getScrollId())
-                    .setScroll(TimeValue.timeValueMillis(service.millis()))
-                    .execute().actionGet();
-            service.queryMetric().mark();
-            hits = searchResponse.getHits();
-        } while (hits.getHits().length > 0);
+            // Look for more candidates for this manifestation iff temporal or carrier relation.
+            // Also expand if there are any other print/online editions.
+            logger.debug("id={} temporalRelation={} carrierRelation={} hasCarrierRelations={}",
+                    m.id(), temporalRelation, carrierRelation, m.hasCarrierRelations());
+            if (temporalRelation || carrierRelation || m.hasCarrierRelations()) {
+                retrieveCandidates(m, cluster);
+            }
+        }
     }
 
     private boolean detectCollisionAndTransfer(Manifestation manifestation,
@@ -632,62 +603,31 @@ public class WithHoldingsAndLicensesPipeline implements Pipeline<Boolean, Manife
         if (manifestations == null || manifestations.isEmpty()) {
             return;
         }
-        // split ids into portions of 1024 (default max clauses for Lucene)
-        Object[] array = manifestations.keySet().toArray();
-        for (int begin = 0; begin < array.length; begin += 1024) {
-            int end = begin + 1024 > array.length ? array.length : begin + 1024;
-            Object[] subarray = Arrays.copyOfRange(array, begin, end);
-            QueryBuilder queryBuilder = termsQuery("identifierForTheParentRecord", subarray);
-            // getSize is per shard
-            SearchRequestBuilder searchRequest = service.client().prepareSearch()
-                    .setQuery(queryBuilder)
-                    .setSize(service.size())
-                    .setSearchType(SearchType.SCAN)
-                    .setScroll(TimeValue.timeValueMillis(service.millis()));
-            searchRequest.setIndices(sourceHoldingsIndex);
-            if (sourceHoldingsType != null) {
-                searchRequest.setTypes(sourceHoldingsType);
+        // the lookup splits the ids into portions of 1024 (default max clauses for Lucene)
+        for (Map<String, Object> source : service.lookup().get(ClusterLookup.Kind.HOLDINGS, manifestations.keySet())) {
+            Holding holding = new Holding(source);
+            if (holding.isDeleted()) {
+                continue;
             }
-            SearchResponse searchResponse = searchRequest.execute().actionGet();
-            logger.debug("searchHoldings search request = {}/{} {} hits={}",
-                    sourceHoldingsIndex, sourceHoldingsType,
-                    searchRequest.toString(), searchResponse.getHits().getTotalHits());
-            while (searchResponse.getScrollId() != null) {
-                searchResponse = service.client().prepareSearchScroll(searchResponse.getScrollId())
-                        .setScroll(TimeValue.timeValueMillis(service.millis()))
-                        .execute().actionGet();
-                service.queryMetric().mark();
-                SearchHits hits = searchResponse.getHits();
-                if (hits.getHits().length == 0) {
-                    break;
-                }
-                for (SearchHit hit : hits) {
-                    //Holding holding = new Holding(mapper.readValue(hit.source(), Map.class));
-                    Holding holding = new Holding(hit.getSource());
-                    if (holding.isDeleted()) {
-                        continue;
-                    }
-                    String isil = holding.getISIL();
-                    if (isil == null) {
-                        continue;
-                    }
-                    if (service.blackListedISIL().lookup().contains(isil)) {
-                        continue;
-                    }
-                    holding.setRegion(service.bibdatLookup().lookupRegion().get(isil));
-                    holding.setOrganization(service.bibdatLookup().lookupOrganization().get(isil));
-                    for (String parent : holding.parents()) {
-                        Manifestation parentManifestation = manifestations.get(parent);
-                        parentManifestation.addRelatedHolding(isil, holding);
-                        holding.addManifestation(parentManifestation);
-                    }
-                    holdings.add(holding);
-                }
+            String isil = holding.getISIL();
+            if (isil == null) {
+                continue;
             }
-        }
-            for (Manifestation m : manifestations.values()) {
-                logger.debug("found holdings of {} = {} ", m.externalID(), m.getVolumesByHolder().size());
+            if (service.blackListedISIL().lookup().contains(isil)) {
+                continue;
             }
+            holding.setRegion(service.bibdatLookup().lookupRegion().get(isil));
+            holding.setOrganization(service.bibdatLookup().lookupOrganization().get(isil));
+            for (String parent : holding.parents()) {
+                Manifestation parentManifestation = manifestations.get(parent);
+                parentManifestation.addRelatedHolding(isil, holding);
+                holding.addManifestation(parentManifestation);
+            }
+            holdings.add(holding);
+        }
+        for (Manifestation m : manifestations.values()) {
+            logger.debug("found holdings of {} = {} ", m.externalID(), m.getVolumesByHolder().size());
+        }
     }
 
     private Set<License> searchLicensesAndIndicators(Collection<Manifestation> manifestations) throws IOException {
@@ -719,67 +659,38 @@ public class WithHoldingsAndLicensesPipeline implements Pipeline<Boolean, Manife
         if (manifestations == null || manifestations.isEmpty()) {
             return;
         }
-        // split ids into portions of 1024 (default max clauses for Lucene)
-        Object[] array = manifestations.keySet().toArray();
-        for (int begin = 0; begin < array.length; begin += 1024) {
-            int end = begin + 1024 > array.length ? array.length : begin + 1024;
-            Object[] subarray = Arrays.copyOfRange(array, begin, end);
-            QueryBuilder queryBuilder = termsQuery("ezb:zdbid", subarray);
-            // getSize is per shard
-            SearchRequestBuilder searchRequest = service.client().prepareSearch()
-                    .setQuery(queryBuilder)
-                    .setSize(service.size())
-                    .setSearchType(SearchType.SCAN)
-                    .setScroll(TimeValue.timeValueMillis(service.millis()));
-            searchRequest.setIndices(sourceLicenseIndex);
-            if (sourceLicenseType != null) {
-                searchRequest.setTypes(sourceLicenseType);
+        // the lookup splits the ids into portions of 1024 (default max clauses for Lucene)
+        for (Map<String, Object> source : service.lookup().get(ClusterLookup.Kind.LICENSES, manifestations.keySet())) {
+            License license = new License(source);
+            if (license.isDeleted()) {
+                continue;
             }
-            SearchResponse searchResponse = searchRequest.execute().actionGet();
-            logger.debug("searchLicenses search request = {} hits={}",
-                    searchRequest.toString(), searchResponse.getHits().getTotalHits());
-            while (searchResponse.getScrollId() != null) {
-                searchResponse = service.client().prepareSearchScroll(searchResponse.getScrollId())
-                        .setScroll(TimeValue.timeValueMillis(service.millis()))
-                        .execute().actionGet();
-                service.queryMetric().mark();
-                SearchHits hits = searchResponse.getHits();
-                if (hits.getHits().length == 0) {
-                    break;
-                }
-                for (SearchHit hit : hits) {
-                    License license = new License(hit.getSource());
-                    if (license.isDeleted()) {
-                        continue;
-                    }
-                    String isil = license.getISIL();
-                    if (isil == null) {
-                        continue;
-                    }
-                    if (service.blackListedISIL().lookup().contains(isil)) {
-                        continue;
-                    }
-                    license.setRegion(service.bibdatLookup().lookupRegion().get(isil));
-                    license.setOrganization(service.bibdatLookup().lookupOrganization().get(isil));
-                    for (String parent : license.parents()) {
-                        Manifestation m = manifestations.get(parent);
-                        m.addRelatedHolding(isil, license);
-                        logger.debug("license {} attached to manifestation {} print={} online={}",
-                                license.identifier(), m.externalID(), m.getPrintExternalID(), m.getOnlineExternalID());
-                        license.addManifestation(m);
-                        // trick: add also to print manifestation if possible
-                        if (m.hasPrint()) {
-                            Manifestation p = manifestations.get(m.getPrintExternalID());
-                            if (p != null) {
-                                logger.debug("license {} attached to another manifestation {}",
-                                            license.identifier(), p.externalID());
-                                license.addManifestation(p);
-                            }
-                        }
+            String isil = license.getISIL();
+            if (isil == null) {
+                continue;
+            }
+            if (service.blackListedISIL().lookup().contains(isil)) {
+                continue;
+            }
+            license.setRegion(service.bibdatLookup().lookupRegion().get(isil));
+            license.setOrganization(service.bibdatLookup().lookupOrganization().get(isil));
+            for (String parent : license.parents()) {
+                Manifestation m = manifestations.get(parent);
+                m.addRelatedHolding(isil, license);
+                logger.debug("license {} attached to manifestation {} print={} online={}",
+                        license.identifier(), m.externalID(), m.getPrintExternalID(), m.getOnlineExternalID());
+                license.addManifestation(m);
+                // trick: add also to print manifestation if possible
+                if (m.hasPrint()) {
+                    Manifestation p = manifestations.get(m.getPrintExternalID());
+                    if (p != null) {
+                        logger.debug("license {} attached to another manifestation {}",
+                                    license.identifier(), p.externalID());
+                        license.addManifestation(p);
                     }
-                    licenses.add(license);
                 }
             }
+            licenses.add(license);
         }
         logger.debug("found {} licenses for manifestations {}",
                     licenses.size(), manifestations);
@@ -792,63 +703,35 @@ public class WithHoldingsAndLicensesPipeline implements Pipeline<Boolean, Manife
         if (manifestations == null || manifestations.isEmpty()) {
             return;
         }
-        // split ids into portions of 1024 (default max clauses for Lucene)
-        Object[] array = manifestations.keySet().toArray();
-        for (int begin = 0; begin < array.length; begin += 1024) {
-            int end = begin + 1024 > array.length ? array.length : begin + 1024;
-            Object[] subarray = Arrays.copyOfRange(array, begin, end);
-            QueryBuilder queryBuilder = termsQuery("xbib:identifier", subarray);
-            // getSize is per shard
-            SearchRequestBuilder searchRequest = service.client().prepareSearch()
-                    .setQuery(queryBuilder)
-                    .setSize(service.size())
-                    .setSearchType(SearchType.SCAN)
-                    .setScroll(TimeValue.timeValueMillis(service.millis()));
-            searchRequest.setIndices(sourceIndicatorIndex);
-            if (sourceLicenseType != null) {
-                searchRequest.setTypes(sourceIndicatorType);
+        // the lookup splits the ids into portions of 1024 (default max clauses for Lucene)
+        for (Map<String, Object> source : service.lookup().get(ClusterLookup.Kind.INDICATORS, manifestations.keySet())) {
+            Indicator indicator = new Indicator(source);
+            String isil = indicator.getISIL();
+            if (isil == null) {
+                continue;
             }
-            SearchResponse searchResponse = searchRequest.execute().actionGet();
-            logger.debug("searchIndicators search request = {} hits={}",
-                    searchRequest.toString(), searchResponse.getHits().getTotalHits());
-            while (searchResponse.getScrollId() != null) {
-                searchResponse = service.client().prepareSearchScroll(searchResponse.getScrollId())
-                        .setScroll(TimeValue.timeValueMillis(service.millis()))
-                        .execute().actionGet();
-                SearchHits hits = searchResponse.getHits();
-                if (hits.getHits().length == 0) {
-                    break;
-                }
-                for (SearchHit hit : hits) {
-                    Indicator indicator = new Indicator(hit.getSource());
-                    String isil = indicator.getISIL();
-                    if (isil == null) {
-                        continue;
-                    }
-                    indicator.setRegion(service.bibdatLookup().lookupRegion().get(isil));
-                    indicator.setOrganization(service.bibdatLookup().lookupOrganization().get(isil));
-                    if (service.blackListedISIL().lookup().contains(isil)) {
-                        continue;
-                    }
-                    for (String parent : indicator.parents()) {
-                        Manifestation m = manifestations.get(parent);
-                        m.addRelatedHolding(isil, indicator);
-                        indicator.addManifestation(m);
+            indicator.setRegion(service.bibdatLookup().lookupRegion().get(isil));
+            indicator.setOrganization(service.bibdatLookup().lookupOrganization().get(isil));
+            if (service.blackListedISIL().lookup().contains(isil)) {
+                continue;
+            }
+            for (String parent : indicator.parents()) {
+                Manifestation m = manifestations.get(parent);
+                m.addRelatedHolding(isil, indicator);
+                indicator.addManifestation(m);
+                logger.debug("indicator {} parent {} attached to manifestation {}",
+                            indicator.identifier(), parent, m.externalID());
+                // trick: add also to print manifestation if possible
+                if (m.hasPrint()) {
+                    Manifestation p = manifestations.get(m.getPrintExternalID());
+                    if (p != null) {
+                        indicator.addManifestation(p);
                         logger.debug("indicator {} parent {} attached to manifestation {}",
-                                    indicator.identifier(), parent, m.externalID());
-                        // trick: add also to print manifestation if possible
-                        if (m.hasPrint()) {
-                            Manifestation p = manifestations.get(m.getPrintExternalID());
-                            if (p != null) {
-                                indicator.addManifestation(p);
-                                logger.debug("indicator {} parent {} attached to manifestation {}",
-                                            indicator.identifier(), parent, p.externalID());
-                            }
-                        }
+                                    indicator.identifier(), parent, p.externalID());
                     }
-                    indicators.add(indicator);
                 }
             }
+            indicators.add(indicator);
         }
         logger.debug("found {} indicators for manifestations {}",
                     indicators.size(), manifestations);
@@ -1151,16 +1034,16 @@ public class WithHoldingsAndLicensesPipeline implements Pipeline<Boolean, Manife
 
     private class ClusterBuildContinuation {
         final Manifestation manifestation;
-        final SearchResponse searchResponse;
+        final List<Map<String, Object>> hits;
         final Collection<Manifestation> cluster;
         int pos;
 
         ClusterBuildContinuation(Manifestation manifestation,
-                                 SearchResponse searchResponse,
+                                 List<Map<String, Object>> hits,
                                  Collection<Manifestation> cluster,
                                  int pos) {
             this.manifestation = manifestation;
-            this.searchResponse = searchResponse;
+            this.hits = hits;
             this.cluster = cluster;
             this.pos = pos;
         }
@@ -0,0 +1,91 @@
+/*
+ * Licensed to Jörg Prante and xbib under one or more contributor
+ * license agreements. See the NOTICE.txt file distributed with this work
+ * for additional information regarding copyright ownership.
+ *
+ * Copyright (C) 2012 Jörg Prante and xbib
+ *
+ * This program is free software; you can redistribute it and/or modify
+ * it under the terms of the GNU Affero General Public License as published
+ * by the Free Software Foundation; either version 3 of the License, or
+ * (at your option) any later version.
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the
+ * GNU Affero General Public License for more details.
+ *
+ * You should have received a copy of the GNU Affero General Public License
+ * along with this program; if not, see http://www.gnu.org/licenses
+ * or write to the Free Software Foundation, Inc., 51 Franklin Street,
+ * Fifth Floor, Boston, MA 02110-1301 USA.
+ *
+ * The interactive user interfaces in modified source and object code
+ * versions of this program must display Appropriate Legal Notices,
+ * as required under Section 5 of the GNU Affero General Public License.
+ *
+ * In accordance with Section 7(b) of the GNU Affero General Public
+ * License, these Appropriate Legal Notices must retain the display of the
+ * "Powered by xbib" logo. If the display of the logo is not reasonably
+ * feasible for technical reasons, the Appropriate Legal Notices must display
+ * the words "Powered by xbib".
+ */
+package org.xbib.tools.merge.zdb.cluster;
+
+import org.testng.annotations.Test;
+
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.util.Arrays;
+
+import static org.testng.Assert.assertEquals;
+
+public class ClusterAssignmentTest {
+
+    @Test
+    public void testLookup() {
+        ClusterAssignment assignment = assignment();
+        assertEquals(assignment.size(), 3);
+        assertEquals(assignment.getManifestationCount(), 7);
+        assertEquals(assignment.getCluster("1"), 0);
+        assertEquals(assignment.getCluster("4"), 2);
+        assertEquals(assignment.getCluster("3a"), -1);
+        assertEquals(assignment.getMembers(0), Arrays.asList("1", "3", "7"));
+        assertEquals(assignment.getMembers(1), Arrays.asList("2", "6"));
+        assertEquals(assignment.getMembers(2), Arrays.asList("4", "5"));
+    }
+
+    @Test
+    public void testWriteRead() throws Exception {
+        for (String suffix : new String[]{".bin", ".gz"}) {
+            File file = File.createTempFile("clusters.", suffix);
+            file.deleteOnExit();
+            ClusterAssignment expected = assignment();
+            expected.write(file);
+            ClusterAssignment actual = ClusterAssignment.read(file);
+            assertEquals(actual.size(), expected.size());
+            assertEquals(actual.getManifestationCount(), expected.getManifestationCount());
+            for (String id : new String[]{"1", "2", "3", "4", "5", "6", "7", "8"}) {
+                assertEquals(actual.getCluster(id), expected.getCluster(id), id);
+            }
+            for (int c = 0; c < expected.size(); c++) {
+                assertEquals(actual.getMembers(c), expected.getMembers(c));
+            }
+        }
+    }
+
+    @Test(expectedExceptions = IOException.class)
+    public void testReadInvalid() throws Exception {
+        File file = File.createTempFile("clusters.", ".bin");
+        file.deleteOnExit();
+        try (FileOutputStream out = new FileOutputStream(file)) {
+            out.write(new byte[]{0, 0, 0, 1, 0, 0, 0, 1});
+        }
+        ClusterAssignment.read(file);
+    }
+
+    private static ClusterAssignment assignment() {
+        return new ClusterAssignment(new String[]{"1", "2", "3", "4", "5", "6", "7"},
+                new int[]{0, 1, 0, 2, 2, 1, 0}, 3);
+    }
+}
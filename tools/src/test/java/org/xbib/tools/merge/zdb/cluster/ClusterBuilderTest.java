@@ -0,0 +1,119 @@
+/*
+ * Licensed to Jörg Prante and xbib under one or more contributor
+ * license agreements. See the NOTICE.txt file distributed with this work
+ * for additional information regarding copyright ownership.
+ *
+ * Copyright (C) 2012 Jörg Prante and xbib
+ *
+ * This program is free software; you can redistribute it and/or modify
+ * it under the terms of the GNU Affero General Public License as published
+ * by the Free Software Foundation; either version 3 of the License, or
+ * (at your option) any later version.
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the
+ * GNU Affero General Public License for more details.
+ *
+ * You should have received a copy of the GNU Affero General Public License
+ * along with this program; if not, see http://www.gnu.org/licenses
+ * or write to the Free Software Foundation, Inc., 51 Franklin Street,
+ * Fifth Floor, Boston, MA 02110-1301 USA.
+ *
+ * The interactive user interfaces in modified source and object code
+ * versions of this program must display Appropriate Legal Notices,
+ * as required under Section 5 of the GNU Affero General Public License.
+ *
+ * In accordance with Section 7(b) of the GNU Affero General Public
+ * License, these Appropriate Legal Notices must retain the display of the
+ * "Powered by xbib" logo. If the display of the logo is not reasonably
+ * feasible for technical reasons, the Appropriate Legal Notices must display
+ * the words "Powered by xbib".
+ */
+package org.xbib.tools.merge.zdb.cluster;
+
+import org.testng.annotations.Test;
+
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.OutputStream;
+import java.io.OutputStreamWriter;
+import java.io.StringReader;
+import java.io.Writer;
+import java.util.Arrays;
+import java.util.zip.GZIPOutputStream;
+
+import static org.testng.Assert.assertEquals;
+
+public class ClusterBuilderTest {
+
+    private final static String[] dump = {
+            // a timeline 1 -> 2, with an online edition 3 of 2
+            "{\"IdentifierDNB\":{\"identifierDNB\":\"1\"},"
+                    + "\"SucceedingEntry\":{\"relation\":\"succeededBy\",\"identifierDNB\":\"2\"}}",
+            "{\"IdentifierDNB\":{\"identifierDNB\":\"2\"},"
+                    + "\"PrecedingEntry\":{\"relation\":\"precededBy\",\"identifierDNB\":\"1\"},"
+                    + "\"OtherEditionEntry\":[{\"relation\":\"hasOnlineEdition\",\"identifierDNB\":\"3\"}]}",
+            "{\"IdentifierDNB\":{\"identifierDNB\":\"3\"}}",
+            // a supplement is no union edge
+            "{\"IdentifierDNB\":{\"identifierDNB\":\"4\"},"
+                    + "\"SupplementSpecialIssueEntry\":{\"relation\":\"hasSupplement\",\"identifierDNB\":\"5\"}}",
+            "{\"IdentifierDNB\":{\"identifierDNB\":\"5\"}}",
+            // databases and websites are never joined
+            "{\"IdentifierDNB\":{\"identifierDNB\":\"6\"},\"typeOfContinuingResource\":\"Updating database\","
+                    + "\"SucceedingEntry\":{\"relation\":\"succeededBy\",\"identifierDNB\":\"7\"}}",
+            "{\"IdentifierDNB\":{\"identifierDNB\":\"7\"},"
+                    + "\"PrecedingEntry\":{\"relation\":\"precededBy\",\"identifierDNB\":\"6\"},"
+                    + "\"SucceedingEntry\":{\"relation\":\"succeededBy\",\"identifierDNB\":\"9\"}}",
+            "{\"IdentifierDNB\":{\"identifierDNB\":\"9\"},\"typeOfContinuingResource\":\"Updating Web site\","
+                    + "\"PrecedingEntry\":{\"relation\":\"precededBy\",\"identifierDNB\":\"7\"}}",
+            // a relation to a manifestation which is not in the dump is dropped
+            "{\"IdentifierDNB\":{\"identifierDNB\":\"8\"},"
+                    + "\"SucceedingEntry\":{\"relation\":\"succeededBy\",\"identifierDNB\":\"99\"}}",
+            // a second timeline, in another batch
+            "{\"IdentifierDNB\":{\"identifierDNB\":\"10\"},"
+                    + "\"OtherEditionEntry\":{\"relation\":\"hasPrintEdition\",\"identifierDNB\":\"11\"}}",
+            "{\"IdentifierDNB\":{\"identifierDNB\":\"11\"}}"
+    };
+
+    @Test
+    public void testBuild() throws Exception {
+        for (String suffix : new String[]{".json", ".json.gz"}) {
+            File input = File.createTempFile("dump.", suffix);
+            input.deleteOnExit();
+            OutputStream out = new FileOutputStream(input);
+            if (suffix.endsWith(".gz")) {
+                out = new GZIPOutputStream(out);
+            }
+            try (Writer writer = new OutputStreamWriter(out, "UTF-8")) {
+                for (String line : dump) {
+                    writer.write(line);
+                    writer.write('\n');
+                }
+            }
+            File output = File.createTempFile("clusters.", ".bin");
+            output.deleteOnExit();
+            new ClusterBuilder()
+                    .reader(new StringReader("{\"input\":\"" + input.getAbsolutePath() + "\","
+                            + "\"output\":\"" + output.getAbsolutePath() + "\","
+                            + "\"concurrency\":3,\"batchsize\":2}"))
+                    .run();
+            ClusterAssignment assignment = ClusterAssignment.read(output);
+            assertEquals(assignment.size(), 2);
+            assertEquals(assignment.getManifestationCount(), 5);
+            assertEquals(assignment.getMembers(assignment.getCluster("1")), Arrays.asList("1", "2", "3"));
+            assertEquals(assignment.getMembers(assignment.getCluster("11")), Arrays.asList("10", "11"));
+            for (String id : new String[]{"4", "5", "6", "7", "8", "9", "99"}) {
+                assertEquals(assignment.getCluster(id), -1, id);
+            }
+        }
+    }
+
+    @Test
+    public void testUnionRelations() {
+        assertEquals(ClusterBuilder.isUnionRelation("precededBy"), true);
+        assertEquals(ClusterBuilder.isUnionRelation("succeededBy"), true);
+        assertEquals(ClusterBuilder.isUnionRelation("hasOnlineEdition"), true);
+        assertEquals(ClusterBuilder.isUnionRelation("hasSupplement"), false);
+        assertEquals(ClusterBuilder.isUnionRelation("isPartOf"), false);
+    }
+}
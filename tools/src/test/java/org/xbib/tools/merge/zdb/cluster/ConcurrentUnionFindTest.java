@@ -0,0 +1,107 @@
+/*
+ * Licensed to Jörg Prante and xbib under one or more contributor
+ * license agreements. See the NOTICE.txt file distributed with this work
+ * for additional information regarding copyright ownership.
+ *
+ * Copyright (C) 2012 Jörg Prante and xbib
+ *
+ * This program is free software; you can redistribute it and/or modify
+ * it under the terms of the GNU Affero General Public License as published
+ * by the Free Software Foundation; either version 3 of the License, or
+ * (at your option) any later version.
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the
+ * GNU Affero General Public License for more details.
+ *
+ * You should have received a copy of the GNU Affero General Public License
+ * along with this program; if not, see http://www.gnu.org/licenses
+ * or write to the Free Software Foundation, Inc., 51 Franklin Street,
+ * Fifth Floor, Boston, MA 02110-1301 USA.
+ *
+ * The interactive user interfaces in modified source and object code
+ * versions of this program must display Appropriate Legal Notices,
+ * as required under Section 5 of the GNU Affero General Public License.
+ *
+ * In accordance with Section 7(b) of the GNU Affero General Public
+ * License, these Appropriate Legal Notices must retain the display of the
+ * "Powered by xbib" logo. If the display of the logo is not reasonably
+ * feasible for technical reasons, the Appropriate Legal Notices must display
+ * the words "Powered by xbib".
+ */
+package org.xbib.tools.merge.zdb.cluster;
+
+import org.testng.annotations.Test;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.Random;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+
+import static org.testng.Assert.assertEquals;
+import static org.testng.Assert.assertNotEquals;
+
+public class ConcurrentUnionFindTest {
+
+    @Test
+    public void testUnion() {
+        ConcurrentUnionFind unionFind = new ConcurrentUnionFind(6);
+        unionFind.union(0, 1);
+        unionFind.union(4, 3);
+        unionFind.union(1, 3);
+        assertEquals(unionFind.size(), 6);
+        assertEquals(unionFind.find(4), 0);
+        assertEquals(unionFind.find(1), unionFind.find(3));
+        assertEquals(unionFind.find(2), 2);
+        assertEquals(unionFind.find(5), 5);
+    }
+
+    @Test
+    public void testConcurrentUnions() throws Exception {
+        final int n = 100000;
+        final int components = 37;
+        // the edges of a chain through each component, shuffled, so the threads interleave
+        final List<int[]> edges = new ArrayList<int[]>();
+        for (int i = components; i < n; i++) {
+            edges.add(new int[]{i - components, i});
+        }
+        Collections.shuffle(edges, new Random(42L));
+        final ConcurrentUnionFind unionFind = new ConcurrentUnionFind(n);
+        int threads = 8;
+        ExecutorService executorService = Executors.newFixedThreadPool(threads);
+        try {
+            List<Future<?>> futures = new ArrayList<Future<?>>();
+            for (int t = 0; t < threads; t++) {
+                final int offset = t;
+                final int step = threads;
+                futures.add(executorService.submit(new Callable<Void>() {
+                    @Override
+                    public Void call() {
+                        // every edge is unioned by two threads, in opposite directions
+                        for (int i = offset; i < edges.size(); i += step) {
+                            int[] edge = edges.get(i);
+                            unionFind.union(edge[0], edge[1]);
+                            int[] other = edges.get(edges.size() - 1 - i);
+                            unionFind.union(other[1], other[0]);
+                        }
+                        return null;
+                    }
+                }));
+            }
+            for (Future<?> future : futures) {
+                future.get();
+            }
+        } finally {
+            executorService.shutdownNow();
+        }
+        for (int i = 0; i < n; i++) {
+            // the smallest ID of a component is its root
+            assertEquals(unionFind.find(i), i % components);
+        }
+        assertNotEquals(unionFind.find(0), unionFind.find(1));
+    }
+}
@@ -0,0 +1,231 @@
+package org.xbib.tools.merge.zdb.licenseinfo;
+
+import org.testng.Assert;
+import org.testng.annotations.Test;
+import org.xbib.common.settings.ImmutableSettings;
+import org.xbib.common.settings.Settings;
+import org.xbib.common.xcontent.XContentHelper;
+import org.xbib.metric.MeterMetric;
+
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.Callable;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+
+public class ClusterLookupTest extends Assert {
+
+    private final static Settings settings = ImmutableSettings.settingsBuilder()
+            .put("bib-index", "bib")
+            .put("hol-index", "hol")
+            .put("xml-license-index", "xml")
+            .put("web-license-index", "web")
+            .build();
+
+    @Test
+    public void testCache() {
+        MockLookup lookup = new MockLookup();
+        assertEquals(ids(lookup.get(ClusterLookup.Kind.MANIFESTATIONS, Arrays.asList("1", "2", "x"))),
+                Arrays.asList("1", "2"));
+        assertEquals(lookup.batches.size(), 1);
+        // found and not found IDs are both cached
+        assertEquals(ids(lookup.get(ClusterLookup.Kind.MANIFESTATIONS, Arrays.asList("x", "2", "1"))),
+                Arrays.asList("2", "1"));
+        assertTrue(lookup.get(ClusterLookup.Kind.MANIFESTATIONS, "x").isEmpty());
+        assertEquals(lookup.batches.size(), 1);
+        // a new ID is searched alone
+        assertEquals(ids(lookup.get(ClusterLookup.Kind.MANIFESTATIONS, Arrays.asList("1", "3"))),
+                Arrays.asList("1", "3"));
+        assertEquals(lookup.batches.get(1), Collections.singletonList("3"));
+    }
+
+    @Test
+    public void testSplit() {
+        MockLookup lookup = new MockLookup();
+        List<String> ids = new ArrayList<String>();
+        for (int i = 0; i < 2500; i++) {
+            ids.add(Integer.toString(i));
+        }
+        assertEquals(lookup.get(ClusterLookup.Kind.MANIFESTATIONS, ids).size(), 2500);
+        assertEquals(lookup.batches.size(), 3);
+        assertEquals(lookup.batches.get(0).size(), 1024);
+        assertEquals(lookup.batches.get(1).size(), 1024);
+        assertEquals(lookup.batches.get(2).size(), 452);
+    }
+
+    @Test
+    public void testIdsDifferingInCase() {
+        MockLookup lookup = new MockLookup();
+        List<Map<String, Object>> docs = lookup.get(ClusterLookup.Kind.MANIFESTATIONS, Arrays.asList("a1", "A1", "2"));
+        assertEquals(lookup.batches.size(), 1);
+        assertEquals(ids(docs), Arrays.asList("a1", "2"));
+        assertEquals(ids(lookup.get(ClusterLookup.Kind.MANIFESTATIONS, "A1")), Collections.singletonList("a1"));
+        assertEquals(ids(lookup.get(ClusterLookup.Kind.MANIFESTATIONS, "a1")), Collections.singletonList("a1"));
+        assertEquals(lookup.batches.size(), 1);
+    }
+
+    @Test
+    public void testBatchingAcrossPipelines() throws Exception {
+        MockLookup lookup = new MockLookup();
+        CountDownLatch gate = new CountDownLatch(1);
+        lookup.gate = gate;
+        ExecutorService executor = Executors.newFixedThreadPool(3);
+        try {
+            Future<List<Map<String, Object>>> first = submit(executor, lookup, Arrays.asList("1", "2"));
+            lookup.searching.await(10, TimeUnit.SECONDS);
+            Future<List<Map<String, Object>>> second = submit(executor, lookup, Arrays.asList("3", "4"));
+            Future<List<Map<String, Object>>> third = submit(executor, lookup, Arrays.asList("5", "2"));
+            lookup.awaitWaiting(2);
+            gate.countDown();
+            assertEquals(ids(first.get(10, TimeUnit.SECONDS)), Arrays.asList("1", "2"));
+            assertEquals(ids(second.get(10, TimeUnit.SECONDS)), Arrays.asList("3", "4"));
+            assertEquals(ids(third.get(10, TimeUnit.SECONDS)), Arrays.asList("5", "2"));
+        } finally {
+            executor.shutdownNow();
+        }
+        // "2" was in flight and joined, the IDs of the waiting pipelines were searched together
+        assertEquals(lookup.batches.size(), 2);
+        assertEquals(lookup.batches.get(0), Arrays.asList("1", "2"));
+        List<String> batch = new ArrayList<String>(lookup.batches.get(1));
+        Collections.sort(batch);
+        assertEquals(batch, Arrays.asList("3", "4", "5"));
+    }
+
+    @Test
+    public void testFailureInSharedBatch() throws Exception {
+        MockLookup lookup = new MockLookup();
+        CountDownLatch gate = new CountDownLatch(1);
+        lookup.gate = gate;
+        lookup.failing = "4";
+        ExecutorService executor = Executors.newFixedThreadPool(3);
+        try {
+            Future<List<Map<String, Object>>> first = submit(executor, lookup, Arrays.asList("1", "2"));
+            lookup.searching.await(10, TimeUnit.SECONDS);
+            Future<List<Map<String, Object>>> second = submit(executor, lookup, Arrays.asList("3", "4"));
+            Future<List<Map<String, Object>>> third = submit(executor, lookup, Collections.singletonList("5"));
+            lookup.awaitWaiting(2);
+            gate.countDown();
+            assertEquals(ids(first.get(10, TimeUnit.SECONDS)), Arrays.asList("1", "2"));
+            assertFailed(second);
+            assertFailed(third);
+        } finally {
+            executor.shutdownNow();
+        }
+        // failures are not cached
+        lookup.failing = null;
+        assertEquals(ids(lookup.get(ClusterLookup.Kind.MANIFESTATIONS, Arrays.asList("4", "5"))),
+                Arrays.asList("4", "5"));
+    }
+
+    private static void assertFailed(Future<?> future) throws Exception {
+        try {
+            future.get(10, TimeUnit.SECONDS);
+            fail("lookup did not fail");
+        } catch (ExecutionException e) {
+            assertEquals(e.getCause().getMessage(), "search failed");
+        }
+    }
+
+    private static Future<List<Map<String, Object>>> submit(ExecutorService executor,
+                                                           final ClusterLookup lookup, final List<String> ids) {
+        return executor.submit(new Callable<List<Map<String, Object>>>() {
+            @Override
+            public List<Map<String, Object>> call() {
+                return lookup.get(ClusterLookup.Kind.MANIFESTATIONS, ids);
+            }
+        });
+    }
+
+    private static List<String> ids(List<Map<String, Object>> docs) {
+        List<String> ids = new ArrayList<String>();
+        for (Map<String, Object> doc : docs) {
+            ids.add((String) ((Map) doc.get("IdentifierDNB")).get("identifierDNB"));
+        }
+        return ids;
+    }
+
+    /**
+     * Finds a manifestation for every ID that is a number or starts with "a", records the batches,
+     * and optionally blocks the first search or fails a batch with a given ID.
+     */
+    private static class MockLookup extends ClusterLookup {
+
+        final List<List<String>> batches = Collections.synchronizedList(new ArrayList<List<String>>());
+
+        final CountDownLatch searching = new CountDownLatch(1);
+
+        final List<Thread> threads = Collections.synchronizedList(new ArrayList<Thread>());
+
+        volatile CountDownLatch gate;
+
+        volatile String failing;
+
+        MockLookup() {
+            super(null, settings, 10, 1000L, new MeterMetric(5L, TimeUnit.SECONDS));
+        }
+
+        @Override
+        public List<Map<String, Object>> get(Kind kind, Collection<String> ids) {
+            threads.add(Thread.currentThread());
+            return super.get(kind, ids);
+        }
+
+        @Override
+        protected List<Hit> search(Kind kind, List<String> ids) {
+            batches.add(new ArrayList<String>(ids));
+            searching.countDown();
+            CountDownLatch latch = gate;
+            if (latch != null) {
+                gate = null;
+                try {
+                    latch.await(10, TimeUnit.SECONDS);
+                } catch (InterruptedException e) {
+                    Thread.currentThread().interrupt();
+                }
+            }
+            if (failing != null && ids.contains(failing)) {
+                throw new IllegalStateException("search failed");
+            }
+            List<Hit> hits = new ArrayList<Hit>();
+            for (String id : ids) {
+                if (Character.isDigit(id.charAt(0)) || id.charAt(0) == 'a') {
+                    byte[] source = ("{\"IdentifierDNB\":{\"identifierDNB\":\"" + id + "\"}}")
+                            .getBytes(StandardCharsets.UTF_8);
+                    hits.add(new Hit(id, source, XContentHelper.convertToMap(source, false)));
+                }
+            }
+            return hits;
+        }
+
+        /**
+         * Wait until the given number of other pipelines wait for the lock.
+         */
+        void awaitWaiting(int n) throws InterruptedException {
+            long deadline = System.currentTimeMillis() + 10000L;
+            while (System.currentTimeMillis() < deadline) {
+                int waiting = 0;
+                synchronized (threads) {
+                    for (Thread thread : threads) {
+                        if (thread.getState() == Thread.State.WAITING) {
+                            waiting++;
+                        }
+                    }
+                }
+                if (waiting >= n) {
+                    return;
+                }
+                Thread.sleep(10L);
+            }
+            fail("pipelines are not waiting");
+        }
+    }
+}